@@ -0,0 +1,81 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.benchmark;
+
+import com.ibm.icu.text.Bidi;
+import icyllis.modernui.text.TextDirectionHeuristics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Bidi analysis of each paragraph, creating a new ICU Bidi per paragraph versus
+ * reusing one, and the cheap direction heuristic used before full analysis.
+ */
+@State(Scope.Thread)
+public class BidiBenchmark {
+
+    @Param({"chat", "cjk", "arabic", "emoji"})
+    public String corpus;
+
+    private char[][] paragraphs;
+
+    private final Bidi bidi = new Bidi();
+
+    @Setup
+    public void setup() {
+        final List<String> lines = Corpus.lines(corpus);
+        paragraphs = new char[lines.size()][];
+        for (int i = 0; i < paragraphs.length; i++) {
+            paragraphs[i] = lines.get(i).toCharArray();
+        }
+    }
+
+    @Benchmark
+    public void requiresBidi(Blackhole bh) {
+        for (char[] text : paragraphs) {
+            bh.consume(Bidi.requiresBidi(text, 0, text.length));
+        }
+    }
+
+    @Benchmark
+    public void newBidi(Blackhole bh) {
+        for (char[] text : paragraphs) {
+            Bidi bidi = new Bidi(text, 0, null, 0, text.length, Bidi.DIRECTION_DEFAULT_LEFT_TO_RIGHT);
+            bh.consume(bidi.getRunCount());
+        }
+    }
+
+    @Benchmark
+    public void reuseBidi(Blackhole bh) {
+        final Bidi bidi = this.bidi;
+        for (char[] text : paragraphs) {
+            bidi.setPara(text, Bidi.LEVEL_DEFAULT_LTR, null);
+            bh.consume(bidi.getRunCount());
+        }
+    }
+
+    @Benchmark
+    public void firstStrongHeuristic(Blackhole bh) {
+        for (char[] text : paragraphs) {
+            bh.consume(TextDirectionHeuristics.FIRSTSTRONG_LTR.isRtl(text, 0, text.length));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.benchmark;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Text corpora for benchmarks, each line is a paragraph. Available corpora are
+ * {@code chat} (Minecraft chat log with formatting codes), {@code cjk} (Chinese,
+ * Japanese and Korean), {@code arabic} (Arabic and Hebrew mixed with English)
+ * and {@code emoji} (emoji sequences and modifiers).
+ */
+public final class Corpus {
+
+    private Corpus() {
+    }
+
+    @Nonnull
+    public static List<String> lines(@Nonnull String name) {
+        InputStream stream = Corpus.class.getResourceAsStream("/corpus/" + name + ".txt");
+        if (stream == null) {
+            throw new IllegalArgumentException("No corpus named " + name);
+        }
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lines;
+    }
+
+    /**
+     * All lines of a corpus joined by line breaks.
+     */
+    @Nonnull
+    public static String text(@Nonnull String name) {
+        return String.join("\n", lines(name));
+    }
+
+    /**
+     * Synthetic advances in vanilla GUI scale, approximating what the layout engine
+     * produces: only the first char of a grapheme has an advance, wide chars are wider.
+     *
+     * @param text the text
+     * @return advance of each char
+     */
+    @Nonnull
+    public static float[] advances(@Nonnull char[] text) {
+        final float[] advances = new float[text.length];
+        for (int i = 0; i < text.length; ) {
+            final int codePoint = Character.codePointAt(text, i);
+            final int type = Character.getType(codePoint);
+            final float advance;
+            if (type == Character.NON_SPACING_MARK || type == Character.ENCLOSING_MARK || type == Character.FORMAT ||
+                    (codePoint >= 0xFE00 && codePoint <= 0xFE0F) || (codePoint >= 0x1F3FB && codePoint <= 0x1F3FF)) {
+                // combining marks, joiners, variation selectors and skin tone modifiers
+                advance = 0;
+            } else if (codePoint < 0x80) {
+                advance = 6;
+            } else if (codePoint >= 0x1100) {
+                advance = 9;
+            } else {
+                advance = 7;
+            }
+            advances[i] = advance;
+            i += Character.charCount(codePoint);
+        }
+        return advances;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.benchmark;
+
+import icyllis.modernui.text.GraphemeBreak;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Cursor movement over a whole corpus by grapheme clusters, with the built-in
+ * implementation and ICU break iterator.
+ */
+@State(Scope.Benchmark)
+public class GraphemeBreakBenchmark {
+
+    @Param({"chat", "cjk", "arabic", "emoji"})
+    public String corpus;
+
+    @Param({"false", "true"})
+    public boolean icu;
+
+    private char[] text;
+
+    @Setup
+    public void setup() {
+        text = Corpus.text(corpus).toCharArray();
+        GraphemeBreak.sUseICU = icu;
+    }
+
+    @Benchmark
+    public int forward() {
+        final int length = text.length;
+        int offset = 0, count = 0;
+        while (offset < length) {
+            offset = GraphemeBreak.getTextRunCursor(text, 0, length, offset, GraphemeBreak.AFTER);
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int backward() {
+        final int length = text.length;
+        int offset = length, count = 0;
+        while (offset > 0) {
+            offset = GraphemeBreak.getTextRunCursor(text, 0, length, offset, GraphemeBreak.BEFORE);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.benchmark;
+
+import icyllis.modernui.text.LineBreaker;
+import icyllis.modernui.text.MeasuredText;
+import icyllis.modernui.text.TextPaint;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Line breaking of each paragraph in a corpus, with advances measured in advance.
+ */
+@State(Scope.Benchmark)
+public class LineBreakerBenchmark {
+
+    @Param({"chat", "cjk", "arabic", "emoji"})
+    public String corpus;
+
+    @Param({"100", "300"})
+    public int width;
+
+    private MeasuredText[] paragraphs;
+
+    private final LineBreaker.ParagraphConstraints constraints = new LineBreaker.ParagraphConstraints();
+
+    @Setup
+    public void setup() {
+        final List<String> lines = Corpus.lines(corpus);
+        final TextPaint paint = new TextPaint();
+        paragraphs = new MeasuredText[lines.size()];
+        for (int i = 0; i < paragraphs.length; i++) {
+            final char[] text = lines.get(i).toCharArray();
+            paragraphs[i] = new MeasuredText.Builder(text)
+                    .setAdvances(Corpus.advances(text))
+                    .appendStyleRun(paint, text.length, false)
+                    .build();
+        }
+        constraints.setWidth(width);
+        constraints.setIndent(width);
+        constraints.setTabStops(null, 16);
+    }
+
+    @Benchmark
+    public void computeLineBreaks(Blackhole bh) {
+        for (MeasuredText paragraph : paragraphs) {
+            bh.consume(LineBreaker.computeLineBreaks(paragraph, constraints, null, 0).getLineCount());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.benchmark;
+
+import icyllis.modernui.text.SpannableString;
+import icyllis.modernui.text.TextPaint;
+import icyllis.modernui.text.style.CharacterStyle;
+import icyllis.modernui.text.style.MetricAffectingSpan;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.annotation.Nonnull;
+import java.util.Random;
+
+/**
+ * Span queries on a chat log with random spans, as a layout and a renderer do.
+ */
+@State(Scope.Benchmark)
+public class SpanQueryBenchmark {
+
+    /**
+     * Query window, about a word or a short style run
+     */
+    private static final int WINDOW = 32;
+
+    @Param({"16", "256"})
+    public int spanCount;
+
+    private SpannableString text;
+
+    @Setup
+    public void setup() {
+        text = new SpannableString(Corpus.text("chat"), false);
+        final Random random = new Random(0x5eed);
+        final int length = text.length();
+        for (int i = 0; i < spanCount; i++) {
+            int start = random.nextInt(length);
+            int end = Math.min(length, start + 1 + random.nextInt(64));
+            Object span;
+            switch (i % 3) {
+                case 0:
+                    span = new AppearanceSpan();
+                    break;
+                case 1:
+                    span = new MetricSpan();
+                    break;
+                default:
+                    span = new Object();
+                    break;
+            }
+            text.setSpan(span, start, end, 0);
+        }
+    }
+
+    @Benchmark
+    public void getSpans(Blackhole bh) {
+        for (int start = 0, length = text.length(); start < length; start += WINDOW) {
+            bh.consume(text.getSpans(start, Math.min(start + WINDOW, length), CharacterStyle.class));
+        }
+    }
+
+    /**
+     * Walk through metric affecting span transitions, like measuring a paragraph.
+     */
+    @Benchmark
+    public void nextSpanTransition(Blackhole bh) {
+        final int length = text.length();
+        int spanEnd;
+        for (int spanStart = 0; spanStart < length; spanStart = spanEnd) {
+            spanEnd = text.nextSpanTransition(spanStart, length, MetricAffectingSpan.class);
+            bh.consume(text.getSpans(spanStart, spanEnd, MetricAffectingSpan.class));
+        }
+    }
+
+    private static class AppearanceSpan extends CharacterStyle {
+
+        @Override
+        public void updateDrawState(@Nonnull TextPaint paint) {
+        }
+    }
+
+    private static class MetricSpan extends MetricAffectingSpan {
+
+        @Override
+        public void updateDrawState(@Nonnull TextPaint paint) {
+        }
+
+        @Override
+        public void updateMeasureState(@Nonnull TextPaint paint) {
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.benchmark;
+
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.font.GlyphManager;
+import icyllis.modernui.graphics.text.TextLayoutProcessor;
+import net.minecraft.network.chat.Style;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * The font engine without a GL context: TextLayoutProcessor generates render nodes and
+ * measurements, GlyphManager rasterizes glyphs and converts pixels for upload, only the
+ * OpenGL calls are skipped. Run with {@code -Djava.awt.headless=true}.
+ */
+@State(Scope.Thread)
+public class TextLayoutBenchmark {
+
+    @Param({"chat", "cjk", "arabic"})
+    public String corpus;
+
+    /**
+     * GUI scale 2 and 4
+     */
+    @Param({"1", "2"})
+    public int resolutionLevel;
+
+    @Param({"true", "false"})
+    public boolean antiAliasing;
+
+    private TextLayoutProcessor processor;
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        // the base class provides the cache directory of the font index
+        new ModernUI();
+        GlyphManager.sPreferredFont = "";
+        GlyphManager.sAntiAliasing = antiAliasing;
+        GlyphManager.sResolutionLevel = resolutionLevel;
+        TextLayoutProcessor.sDefaultFontSize = 16;
+
+        processor = TextLayoutProcessor.getInstance();
+        processor.initHeadless();
+        lines = Corpus.lines(corpus);
+        // rasterize all glyphs once, and create glyph tables of fonts
+        for (String line : lines) {
+            processor.lookupVanillaNode(line, Style.EMPTY);
+        }
+    }
+
+    /**
+     * Lookup render nodes of laid-out strings, as each frame does.
+     */
+    @Benchmark
+    public void lookupNodes(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(processor.lookupVanillaNode(line, Style.EMPTY));
+        }
+    }
+
+    /**
+     * Layout strings whose glyphs are rasterized already, shaped runs are cleared too.
+     */
+    @Benchmark
+    public void layoutNodes(Blackhole bh) {
+        processor.clearStringCache();
+        for (String line : lines) {
+            bh.consume(processor.lookupVanillaNode(line, Style.EMPTY));
+        }
+    }
+
+    /**
+     * Measure strings without render nodes, as the string splitter does.
+     */
+    @Benchmark
+    public void layoutMeasurements(Blackhole bh) {
+        processor.clearStringCache();
+        for (String line : lines) {
+            bh.consume(processor.lookupMeasurement(line, Style.EMPTY));
+        }
+    }
+
+    /**
+     * Layout strings and rasterize all their glyphs from an empty glyph texture.
+     */
+    @Benchmark
+    public void layoutAndRasterize(EmptyGlyphs empty, Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(processor.lookupVanillaNode(line, Style.EMPTY));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EmptyGlyphs {
+
+        /**
+         * Drop all glyphs and layouts, fonts are reloaded too, which is small
+         * compared to rasterizing a corpus. Glyph tables of fonts are created
+         * again in the measured layout.
+         */
+        @Setup(Level.Invocation)
+        public void reload() {
+            TextLayoutProcessor.getInstance().reload();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.benchmark;
+
+import icyllis.modernui.graphics.Canvas;
+import icyllis.modernui.graphics.RecordingCanvas;
+import icyllis.modernui.view.Gravity;
+import icyllis.modernui.view.MeasureSpec;
+import icyllis.modernui.view.View;
+import icyllis.modernui.view.ViewGroup;
+import icyllis.modernui.widget.FrameLayout;
+import icyllis.modernui.widget.LinearLayout;
+import icyllis.modernui.widget.Orientation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-frame cost of a list screen: full measure and layout passes and the draw pass
+ * of a real view tree, recorded by {@link RecordingCanvas} without a GL context.
+ */
+@State(Scope.Thread)
+public class ViewTreeBenchmark {
+
+    private static final int SCREEN_WIDTH = 427;
+    private static final int SCREEN_HEIGHT = 240;
+
+    @Param({"16", "128"})
+    public int rowCount;
+
+    private final RecordingCanvas canvas = new RecordingCanvas();
+    private final List<View> views = new ArrayList<>();
+
+    private LinearLayout root;
+    private int widthSpec;
+    private int heightSpec;
+
+    @Setup
+    public void setup() {
+        root = new LinearLayout();
+        root.setOrientation(Orientation.VERTICAL);
+        views.add(root);
+        for (int i = 0; i < rowCount; i++) {
+            root.addView(createRow(i), new LinearLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 20));
+        }
+        widthSpec = MeasureSpec.makeMeasureSpec(SCREEN_WIDTH, MeasureSpec.EXACTLY);
+        heightSpec = MeasureSpec.makeMeasureSpec(SCREEN_HEIGHT, MeasureSpec.EXACTLY);
+        measureAndLayout();
+    }
+
+    @Nonnull
+    private View createRow(int index) {
+        final LinearLayout row = new LinearLayout();
+        row.setOrientation(Orientation.HORIZONTAL);
+        row.setGravity(Gravity.VERTICAL_CENTER);
+        views.add(row);
+
+        final View icon = new IconView();
+        row.addView(icon, new LinearLayout.LayoutParams(16, 16));
+        views.add(icon);
+
+        final View label = new LabelView("Entry " + index);
+        row.addView(label, new LinearLayout.LayoutParams(0, ViewGroup.LayoutParams.MATCH_PARENT, 1));
+        views.add(label);
+
+        final FrameLayout bar = new FrameLayout();
+        row.addView(bar, new LinearLayout.LayoutParams(80, 8));
+        views.add(bar);
+
+        final View progress = new ProgressView((index % 10 + 1) / 10.0f);
+        bar.addView(progress, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT, Gravity.CENTER));
+        views.add(progress);
+
+        // a fading row, as in an opening animation
+        if (index % 4 == 0) {
+            row.setAlpha(0.5f);
+        }
+        return row;
+    }
+
+    private void measureAndLayout() {
+        root.measure(widthSpec, heightSpec);
+        root.layout(0, 0, root.getMeasuredWidth(), root.getMeasuredHeight());
+    }
+
+    /**
+     * Measure and layout the whole tree, as when the window is resized.
+     */
+    @Benchmark
+    public void layout() {
+        for (View view : views) {
+            view.forceLayout();
+        }
+        measureAndLayout();
+    }
+
+    @Benchmark
+    public void draw(Blackhole bh) {
+        canvas.reset();
+        root.draw(canvas);
+        bh.consume(canvas.getDrawCalls());
+    }
+
+    @Benchmark
+    public void frame(Blackhole bh) {
+        layout();
+        draw(bh);
+    }
+
+    private static class IconView extends View {
+
+        @Override
+        protected void onDraw(@Nonnull Canvas canvas) {
+            canvas.setRGB(0x404040);
+            canvas.setAlpha(0.5f);
+            canvas.drawRoundedRect(0, 0, getWidth(), getHeight(), 3);
+            canvas.resetColor();
+            canvas.drawCircle(getWidth() * 0.5f, getHeight() * 0.5f, 4);
+        }
+    }
+
+    private static class LabelView extends View {
+
+        private final String text;
+
+        LabelView(String text) {
+            this.text = text;
+        }
+
+        @Override
+        protected void onDraw(@Nonnull Canvas canvas) {
+            canvas.resetColor();
+            canvas.drawText(text, 4, 6);
+        }
+    }
+
+    private static class ProgressView extends View {
+
+        private final float progress;
+
+        ProgressView(float progress) {
+            this.progress = progress;
+        }
+
+        @Override
+        protected void onDraw(@Nonnull Canvas canvas) {
+            canvas.setARGB(0x80000000);
+            canvas.drawRect(0, 0, getWidth(), getHeight());
+            canvas.setRGB(0x52c45c);
+            canvas.drawRect(0, 0, getWidth() * progress, getHeight());
+            canvas.setRGB(0xa0a0a0);
+            canvas.drawRectOutline(0, 0, getWidth(), getHeight(), 1);
+        }
+    }
+}
@@ -24,6 +24,8 @@ import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 
 import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Locale;
 
 /**
@@ -55,4 +57,14 @@ public class ModernUI {
     public Locale getSelectedLocale() {
         return Locale.getDefault();
     }
+
+    /**
+     * Get the directory to save data that can be rebuilt, such as the font index.
+     *
+     * @return the cache directory, may not exist
+     */
+    @Nonnull
+    public Path getCacheDirectory() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), NAME_CPT);
+    }
 }
@@ -0,0 +1,234 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics;
+
+import icyllis.modernui.util.FrameProfiler;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Attributes draw calls and GPU state changes to View subtrees and text render
+ * nodes. The counters themselves are per-frame counters of {@link FrameProfiler}
+ * ({@link FrameProfiler#DRAW_CALL} to {@link FrameProfiler#SCISSOR_CHANGE}), a
+ * scope records their values on entry and adds the difference on exit, so
+ * nested scopes are inclusive. Only used on render thread, and only when the
+ * profiler is recording, so the profiler overlay is not recorded.
+ */
+public final class DrawStats {
+
+    /**
+     * Counters attributed to scopes
+     */
+    private static final int FIRST_COUNTER = FrameProfiler.DRAW_CALL;
+    private static final int COUNTER_COUNT = FrameProfiler.SCISSOR_CHANGE - FIRST_COUNTER + 1;
+
+    /**
+     * Limit distinct text entries, texts such as numbers may change every frame
+     */
+    private static final int MAX_TEXT_ENTRIES = 1024;
+
+    // counter values on entry of each scope
+    private static int[] sStack = new int[COUNTER_COUNT * 32];
+    private static int sDepth;
+
+    private static final Reference2ObjectOpenHashMap<Class<?>, Entry> sViews = new Reference2ObjectOpenHashMap<>();
+    private static final Object2ObjectOpenHashMap<String, Entry> sTexts = new Object2ObjectOpenHashMap<>();
+
+    private DrawStats() {
+    }
+
+    /**
+     * Clear all collected data.
+     */
+    public static void reset() {
+        sDepth = 0;
+        sViews.clear();
+        sTexts.clear();
+    }
+
+    /**
+     * Enter a scope, must be paired with {@link #endView(Class, boolean)} or
+     * {@link #endText(CharSequence, boolean)}.
+     *
+     * @return whether a scope is entered, pass it to the end method
+     */
+    public static boolean begin() {
+        if (!FrameProfiler.isRecording()) {
+            return false;
+        }
+        final int offset = sDepth++ * COUNTER_COUNT;
+        if (offset + COUNTER_COUNT > sStack.length) {
+            int[] stack = new int[sStack.length << 1];
+            System.arraycopy(sStack, 0, stack, 0, offset);
+            sStack = stack;
+        }
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            sStack[offset + i] = FrameProfiler.getCount(FIRST_COUNTER + i);
+        }
+        return true;
+    }
+
+    /**
+     * Exit a scope and add counts to the subtree of a View class.
+     *
+     * @param clazz the class of the view
+     * @param began the value returned by {@link #begin()}
+     */
+    public static void endView(@Nonnull Class<?> clazz, boolean began) {
+        if (began) {
+            Entry entry = sViews.get(clazz);
+            if (entry == null) {
+                final String name = clazz.getName();
+                entry = new Entry(name.substring(name.lastIndexOf('.') + 1));
+                sViews.put(clazz, entry);
+            }
+            end(entry);
+        }
+    }
+
+    /**
+     * Exit a scope and add counts to a text.
+     *
+     * @param text  the text of the render node
+     * @param began the value returned by {@link #begin()}
+     */
+    public static void endText(@Nonnull CharSequence text, boolean began) {
+        if (began) {
+            final String key = text.toString();
+            Entry entry = sTexts.get(key);
+            if (entry == null) {
+                if (sTexts.size() >= MAX_TEXT_ENTRIES) {
+                    sDepth--;
+                    return;
+                }
+                entry = new Entry('"' + key + '"');
+                sTexts.put(key, entry);
+            }
+            end(entry);
+        }
+    }
+
+    private static void end(@Nonnull Entry entry) {
+        final int offset = --sDepth * COUNTER_COUNT;
+        for (int i = 0; i < COUNTER_COUNT; i++) {
+            entry.mCounts[i] += FrameProfiler.getCount(FIRST_COUNTER + i) - sStack[offset + i];
+        }
+        entry.mCalls++;
+    }
+
+    /**
+     * Get View subtrees with most draw calls.
+     *
+     * @param maxCount max number of results
+     * @return a new list sorted by draw calls, descending
+     */
+    @Nonnull
+    public static List<Entry> getTopViews(int maxCount) {
+        return top(new ArrayList<>(sViews.values()), maxCount);
+    }
+
+    /**
+     * Get texts with most draw calls.
+     *
+     * @param maxCount max number of results
+     * @return a new list sorted by draw calls, descending
+     */
+    @Nonnull
+    public static List<Entry> getTopTexts(int maxCount) {
+        return top(new ArrayList<>(sTexts.values()), maxCount);
+    }
+
+    @Nonnull
+    private static List<Entry> top(@Nonnull List<Entry> list, int maxCount) {
+        list.sort((a, b) -> Long.compare(b.getCount(FrameProfiler.DRAW_CALL), a.getCount(FrameProfiler.DRAW_CALL)));
+        return list.size() > maxCount ? new ArrayList<>(list.subList(0, maxCount)) : list;
+    }
+
+    /**
+     * Get a report of top offenders, for logging or chat.
+     *
+     * @param maxCount max number of entries in each category
+     * @return lines of the report
+     */
+    @Nonnull
+    public static List<String> dump(int maxCount) {
+        final List<String> lines = new ArrayList<>();
+        final int frames = Math.max(FrameProfiler.getFrameCount(), 1);
+        lines.add(String.format("Draw stats of %d frames, last frame: %d draws, %d shaders, %d textures, %d scissors",
+                FrameProfiler.getFrameCount(), FrameProfiler.getCounter(0, FrameProfiler.DRAW_CALL),
+                FrameProfiler.getCounter(0, FrameProfiler.SHADER_CHANGE),
+                FrameProfiler.getCounter(0, FrameProfiler.TEXTURE_BIND),
+                FrameProfiler.getCounter(0, FrameProfiler.SCISSOR_CHANGE)));
+        lines.add("View subtrees (per frame):");
+        for (Entry entry : getTopViews(maxCount)) {
+            lines.add("  " + entry.toString(frames));
+        }
+        lines.add("Texts (per frame):");
+        for (Entry entry : getTopTexts(maxCount)) {
+            lines.add("  " + entry.toString(frames));
+        }
+        return lines;
+    }
+
+    /**
+     * Counts of a View class or a text.
+     */
+    public static class Entry {
+
+        private final String mName;
+        private final long[] mCounts = new long[COUNTER_COUNT];
+        private int mCalls;
+
+        private Entry(String name) {
+            mName = name;
+        }
+
+        @Nonnull
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * @param counter one of {@link FrameProfiler#DRAW_CALL}, {@link FrameProfiler#SHADER_CHANGE},
+         *                {@link FrameProfiler#TEXTURE_BIND} and {@link FrameProfiler#SCISSOR_CHANGE}
+         * @return total count
+         */
+        public long getCount(int counter) {
+            return mCounts[counter - FIRST_COUNTER];
+        }
+
+        /**
+         * @return the number of times drawn
+         */
+        public int getCalls() {
+            return mCalls;
+        }
+
+        @Nonnull
+        public String toString(int frames) {
+            return String.format("%s: %.1f draws, %.1f shaders, %.1f textures, %.1f scissors, %.1f calls", mName,
+                    (float) mCounts[0] / frames, (float) mCounts[1] / frames, (float) mCounts[2] / frames,
+                    (float) mCounts[3] / frames, (float) mCalls / frames);
+        }
+    }
+}
@@ -24,6 +24,8 @@ import icyllis.modernui.ModernUI;
 import icyllis.modernui.graphics.font.GlyphManager;
 import icyllis.modernui.graphics.shader.ShaderProgram;
 import icyllis.modernui.graphics.shader.program.*;
+import icyllis.modernui.graphics.text.ModernFontRenderer;
+import icyllis.modernui.util.FrameProfiler;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 import net.minecraft.server.packs.resources.ResourceManager;
@@ -44,21 +46,44 @@ public final class RenderCore {
 
     static boolean renderEngineStarted = false;
 
+    private static boolean textShadersLinked;
+
     public static void compileShaders(ResourceManager manager) {
         RingShader.INSTANCE.compile(manager);
         RoundedRectShader.INSTANCE.compile(manager);
         RoundedFrameShader.INSTANCE.compile(manager);
         CircleShader.INSTANCE.compile(manager);
         FeatheredRectShader.INSTANCE.compile(manager);
+        TextShader.INSTANCE.compile(manager);
+        TextShader.WORLD.compile(manager);
+        BlurShader.DOWN.compile(manager);
+        BlurShader.UP.compile(manager);
+
+        textShadersLinked = TextShader.INSTANCE.isLinked() && TextShader.WORLD.isLinked();
+        if (!textShadersLinked) {
+            ModernUI.LOGGER.fatal(MARKER, "Text shaders are not available, vanilla text renderer is used instead");
+        }
+        ModernFontRenderer.updateGlobalRenderer();
+    }
+
+    /**
+     * Text glyphs are sampled from a texture array, which can only be done by the text shaders.
+     *
+     * @return {@code true} if the text shaders are linked
+     */
+    public static boolean isTextShadersLinked() {
+        return textShadersLinked;
     }
 
     public static <T extends ShaderProgram> void useShader(@Nonnull T shader) {
         int program = shader.getId();
         ProgramManager.glUseProgram(program);
+        FrameProfiler.count(FrameProfiler.SHADER_CHANGE);
     }
 
     public static void releaseShader() {
         ProgramManager.glUseProgram(0);
+        FrameProfiler.count(FrameProfiler.SHADER_CHANGE);
     }
 
     /**
@@ -100,6 +125,10 @@ public final class RenderCore {
             ModernUI.LOGGER.fatal(MARKER, "Explicit uniform location is not supported");
             i++;
         }
+        if (!capabilities.OpenGL30 && !capabilities.GL_EXT_texture_array) {
+            ModernUI.LOGGER.fatal(MARKER, "Texture array is not supported");
+            i++;
+        }
 
         int v;
         if ((v = RenderSystem.maxSupportedTextureSize()) < GlyphManager.TEXTURE_SIZE ||
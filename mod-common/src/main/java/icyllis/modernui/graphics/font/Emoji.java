@@ -0,0 +1,70 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.font;
+
+import javax.annotation.Nonnull;
+
+/**
+ * An emoji defined in the emoji index, it has a shortcode name and a sprite in an atlas page,
+ * and maps to a code point or a sequence of code points if it's a Unicode emoji.
+ *
+ * @see EmojiManager
+ * @since 2.0
+ */
+public final class Emoji {
+
+    /**
+     * The index in the emoji index, lower ids are preferred in search results
+     */
+    public final int id;
+
+    /**
+     * The shortcode without colons, lower case with underscores, e.g. {@code face_with_tears_of_joy}
+     */
+    @Nonnull
+    public final String name;
+
+    /**
+     * The UTF-16 chars of the code point sequence, or empty if this emoji can only be inserted by name
+     */
+    @Nonnull
+    public final String sequence;
+
+    /*
+     * Sprite location, the page index and the cell in the grid of the page
+     */
+    final int page;
+    final int x;
+    final int y;
+
+    Emoji(int id, @Nonnull String name, @Nonnull String sequence, int page, int x, int y) {
+        this.id = id;
+        this.name = name;
+        this.sequence = sequence;
+        this.page = page;
+        this.x = x;
+        this.y = y;
+    }
+
+    @Nonnull
+    @Override
+    public String toString() {
+        return ":" + name + ":";
+    }
+}
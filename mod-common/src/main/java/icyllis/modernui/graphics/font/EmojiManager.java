@@ -0,0 +1,323 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.font;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.text.TextLayoutProcessor;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.client.Minecraft;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Load emoji from {@code assets/<namespace>/emoji/emoji.json}, which defines sprite atlas pages
+ * and the emoji with their shortcodes, code point sequences and sprite cells:
+ * <pre>
+ * {
+ *   "pages": [
+ *     {"texture": "modernui:textures/emoji/page_0.png", "columns": 22, "rows": 20}
+ *   ],
+ *   "emoji": [
+ *     {"name": "face_with_tears_of_joy", "sequence": "1f602", "page": 0, "x": 1, "y": 0},
+ *     {"name": "family_man_woman_girl", "sequence": "1f468 200d 1f469 200d 1f467", "page": 1, "x": 0, "y": 0}
+ *   ]
+ * }
+ * </pre>
+ * Only the index is loaded on resource reload, a page image is read when a sprite on it is
+ * first requested, usually by {@link GlyphManager#lookupEmoji(Emoji)} that copies the sprite
+ * into the glyph atlas. Text layout replaces the sequences with sprites, see
+ * {@link #findEmoji(char[], int, int)}. Emoji pickers can search shortcodes with {@link #search(String, int)}.
+ *
+ * @since 2.0
+ */
+public final class EmojiManager extends SimplePreparableReloadListener<EmojiManager.Index> {
+
+    public static final Marker MARKER = MarkerManager.getMarker("Emoji");
+
+    private static final EmojiManager INSTANCE = new EmojiManager();
+
+    private static final String INDEX_PATH = "emoji/emoji.json";
+
+    // replaced as a whole on reload
+    private volatile Index index = new Index(Collections.emptyList(), new Page[0]);
+
+    private EmojiManager() {
+    }
+
+    @Nonnull
+    public static EmojiManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the emoji of a single code point.
+     *
+     * @param codePoint the code point
+     * @return the emoji or {@code null}
+     */
+    @Nullable
+    public Emoji getEmoji(int codePoint) {
+        return index.singles.get(codePoint);
+    }
+
+    /**
+     * Get the emoji by its shortcode, without colons.
+     *
+     * @param name the shortcode
+     * @return the emoji or {@code null}
+     */
+    @Nullable
+    public Emoji getEmoji(@Nonnull String name) {
+        return index.names.get(name);
+    }
+
+    /**
+     * Find the longest emoji sequence at the start of the text, the length of matched chars is
+     * the length of {@link Emoji#sequence}. A following variation selector is not a part of the
+     * match unless the index defines it.
+     *
+     * @param text  the text
+     * @param start the start index
+     * @param limit the end index of the text
+     * @return the emoji or {@code null}
+     */
+    @Nullable
+    public Emoji findEmoji(@Nonnull char[] text, int start, int limit) {
+        if (start >= limit) {
+            return null;
+        }
+        final Index index = this.index;
+        final int codePoint = Character.codePointAt(text, start, limit);
+        // multi code point sequences are rare, don't create strings for other text
+        if (index.sequenceStarts.contains(codePoint)) {
+            for (int length = Math.min(index.maxSequenceLength, limit - start);
+                 length > Character.charCount(codePoint); length--) {
+                Emoji emoji = index.sequences.get(new String(text, start, length));
+                if (emoji != null) {
+                    return emoji;
+                }
+            }
+        }
+        return index.singles.get(codePoint);
+    }
+
+    /**
+     * Incremental search for emoji pickers, see {@link ShortcodeIndex#search(String, int)}.
+     *
+     * @param query the text typed by user
+     * @param limit max number of results
+     * @return ranked emoji
+     */
+    @Nonnull
+    public List<Emoji> search(@Nonnull String query, int limit) {
+        return index.shortcodes.search(query, limit);
+    }
+
+    /**
+     * Get all emoji in the index order.
+     *
+     * @return unmodifiable list of emoji
+     */
+    @Nonnull
+    public List<Emoji> getEmojis() {
+        return index.emojis;
+    }
+
+    /**
+     * Get the sprite image of an emoji, the atlas page is loaded on first use. This must be
+     * called on render thread.
+     *
+     * @param emoji the emoji
+     * @return the sprite, or {@code null} if the page is missing
+     */
+    @Nullable
+    public BufferedImage getSprite(@Nonnull Emoji emoji) {
+        final Page[] pages = index.pages;
+        if (emoji.page < 0 || emoji.page >= pages.length) {
+            return null;
+        }
+        final Page page = pages[emoji.page];
+        if (!page.loaded) {
+            page.load();
+        }
+        final BufferedImage image = page.image;
+        if (image == null || emoji.x < 0 || emoji.x >= page.columns || emoji.y < 0 || emoji.y >= page.rows) {
+            return null;
+        }
+        final int width = image.getWidth() / page.columns;
+        final int height = image.getHeight() / page.rows;
+        if (width == 0 || height == 0) {
+            return null;
+        }
+        return image.getSubimage(emoji.x * width, emoji.y * height, width, height);
+    }
+
+    @Nonnull
+    @Override
+    protected Index prepare(@Nonnull ResourceManager manager, @Nonnull ProfilerFiller profiler) {
+        final List<Emoji> emojis = new ArrayList<>();
+        final List<Page> pages = new ArrayList<>();
+        for (String namespace : manager.getNamespaces()) {
+            final ResourceLocation location = new ResourceLocation(namespace, INDEX_PATH);
+            if (!manager.hasResource(location)) {
+                continue;
+            }
+            try (Resource resource = manager.getResource(location);
+                 Reader reader = new BufferedReader(
+                         new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+                parse(GsonHelper.parse(reader), emojis, pages);
+            } catch (IOException | RuntimeException e) {
+                ModernUI.LOGGER.error(MARKER, "Failed to load emoji index {}", location, e);
+            }
+        }
+        return new Index(emojis, pages.toArray(new Page[0]));
+    }
+
+    /**
+     * Pages are appended, so page indices in the json are relative to its own pages.
+     */
+    private static void parse(@Nonnull JsonObject json, @Nonnull List<Emoji> emojis, @Nonnull List<Page> pages) {
+        final int pageBase = pages.size();
+        for (JsonElement element : GsonHelper.getAsJsonArray(json, "pages")) {
+            JsonObject page = GsonHelper.convertToJsonObject(element, "page");
+            pages.add(new Page(new ResourceLocation(GsonHelper.getAsString(page, "texture")),
+                    GsonHelper.getAsInt(page, "columns"), GsonHelper.getAsInt(page, "rows")));
+        }
+        final JsonArray array = GsonHelper.getAsJsonArray(json, "emoji");
+        for (JsonElement element : array) {
+            JsonObject emoji = GsonHelper.convertToJsonObject(element, "emoji");
+            String sequence = GsonHelper.getAsString(emoji, "sequence", "");
+            StringBuilder chars = new StringBuilder();
+            for (String s : sequence.trim().split("\\s+")) {
+                if (!s.isEmpty()) {
+                    chars.appendCodePoint(Integer.parseInt(s, 16));
+                }
+            }
+            emojis.add(new Emoji(emojis.size(), GsonHelper.getAsString(emoji, "name"), chars.toString(),
+                    pageBase + GsonHelper.getAsInt(emoji, "page"),
+                    GsonHelper.getAsInt(emoji, "x"), GsonHelper.getAsInt(emoji, "y")));
+        }
+    }
+
+    @Override
+    protected void apply(@Nonnull Index index, @Nonnull ResourceManager manager, @Nonnull ProfilerFiller profiler) {
+        this.index = index;
+        // glyphs and layouts of the replaced emoji
+        final GlyphManager glyphManager = GlyphManager.getInstance();
+        if (glyphManager != null) {
+            glyphManager.clearEmojis();
+            TextLayoutProcessor.getInstance().clearStringCache();
+        }
+        ModernUI.LOGGER.debug(MARKER, "Loaded {} emoji in {} pages", index.emojis.size(), index.pages.length);
+    }
+
+    /**
+     * Immutable lookup tables of a loaded emoji index.
+     */
+    static final class Index {
+
+        private final List<Emoji> emojis;
+        private final Page[] pages;
+
+        private final Map<String, Emoji> names = new Object2ObjectOpenHashMap<>();
+        private final Int2ObjectMap<Emoji> singles = new Int2ObjectOpenHashMap<>();
+
+        // sequences of multiple code points
+        private final Map<String, Emoji> sequences = new Object2ObjectOpenHashMap<>();
+        private final IntSet sequenceStarts = new IntOpenHashSet();
+        private int maxSequenceLength;
+
+        private final ShortcodeIndex shortcodes;
+
+        private Index(@Nonnull List<Emoji> emojis, @Nonnull Page[] pages) {
+            this.emojis = Collections.unmodifiableList(emojis);
+            this.pages = pages;
+            for (Emoji emoji : emojis) {
+                // the first one takes precedence
+                names.putIfAbsent(emoji.name, emoji);
+                final String sequence = emoji.sequence;
+                if (sequence.isEmpty()) {
+                    continue;
+                }
+                final int first = sequence.codePointAt(0);
+                if (Character.charCount(first) == sequence.length()) {
+                    singles.putIfAbsent(first, emoji);
+                } else if (sequences.putIfAbsent(sequence, emoji) == null) {
+                    sequenceStarts.add(first);
+                    maxSequenceLength = Math.max(maxSequenceLength, sequence.length());
+                }
+            }
+            shortcodes = new ShortcodeIndex(this.emojis);
+        }
+    }
+
+    /**
+     * A sprite sheet, the image is read on first use.
+     */
+    private static final class Page {
+
+        private final ResourceLocation texture;
+        private final int columns;
+        private final int rows;
+
+        private BufferedImage image;
+        private boolean loaded;
+
+        private Page(@Nonnull ResourceLocation texture, int columns, int rows) {
+            this.texture = texture;
+            this.columns = Math.max(columns, 1);
+            this.rows = Math.max(rows, 1);
+        }
+
+        private void load() {
+            loaded = true;
+            try (Resource resource = Minecraft.getInstance().getResourceManager().getResource(texture);
+                 InputStream stream = resource.getInputStream()) {
+                image = ImageIO.read(stream);
+                ModernUI.LOGGER.debug(MARKER, "Loaded emoji page {}", texture);
+            } catch (IOException e) {
+                ModernUI.LOGGER.warn(MARKER, "Failed to load emoji page {}", texture, e);
+            }
+        }
+    }
+}
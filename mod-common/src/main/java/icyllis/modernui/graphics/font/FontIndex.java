@@ -0,0 +1,555 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.font;
+
+import icyllis.modernui.ModernUI;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import net.minecraft.Util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.GraphicsEnvironment;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Index of font files installed on the system, each face with its family, full name and
+ * Unicode coverage read from the OpenType tables. The index is built on a background thread
+ * and persisted, then fallback fonts are resolved without creating all system fonts by
+ * {@link GraphicsEnvironment#getAllFonts()}. On later launches, only added or modified
+ * font files are read again.
+ *
+ * @since 2.0
+ */
+final class FontIndex {
+
+    private static final int MAGIC = 0x4D55_4649; // MUFI
+    private static final int VERSION = 1;
+
+    private static final String FILE_NAME = "font_index.bin";
+
+    private static final int MAX_DEPTH = 8;
+
+    /**
+     * Tables larger than this are considered broken
+     */
+    private static final int MAX_TABLE_LENGTH = 1 << 24;
+
+    private static final int TAG_TTCF = 0x74746366;
+    private static final int TAG_CMAP = 0x636D6170;
+    private static final int TAG_NAME = 0x6E616D65;
+
+    /**
+     * Faces sorted by full name, the same order as {@link GraphicsEnvironment#getAllFonts()}
+     */
+    private final List<Entry> entries;
+
+    private FontIndex(@Nonnull List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Load the index from the cache directory and update it with font files on the system.
+     *
+     * @param cacheDir the directory of the persisted index
+     * @return the future of the index
+     */
+    @Nonnull
+    static CompletableFuture<FontIndex> loadAsync(@Nonnull Path cacheDir) {
+        return CompletableFuture.supplyAsync(() -> load(cacheDir), Util.backgroundExecutor());
+    }
+
+    @Nonnull
+    private static FontIndex load(@Nonnull Path cacheDir) {
+        final long startTime = System.nanoTime();
+        final Path file = cacheDir.resolve(FILE_NAME);
+        final Map<String, FontFile> cached = read(file);
+
+        final List<FontFile> files = new ArrayList<>();
+        final Set<String> visited = new ObjectOpenHashSet<>();
+        int updated = 0;
+        for (Path path : findFontFiles()) {
+            final String key = path.toString();
+            if (!visited.add(key)) {
+                continue;
+            }
+            long lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(path).toMillis();
+            } catch (IOException e) {
+                continue;
+            }
+            FontFile fontFile = cached.remove(key);
+            if (fontFile == null || fontFile.lastModified != lastModified) {
+                fontFile = new FontFile(key, lastModified, readFaces(path));
+                updated++;
+            }
+            files.add(fontFile);
+        }
+        if (updated > 0 || !cached.isEmpty()) {
+            write(file, files);
+        }
+
+        final List<Entry> entries = new ArrayList<>();
+        for (FontFile fontFile : files) {
+            entries.addAll(fontFile.faces);
+        }
+        entries.sort(Comparator.comparing(e -> e.name));
+        ModernUI.LOGGER.debug(GlyphManager.MARKER, "Indexed {} font faces in {} files, {} updated, took {}ms",
+                entries.size(), files.size(), updated, (System.nanoTime() - startTime) / 1000000);
+        return new FontIndex(entries);
+    }
+
+    /**
+     * Find the first system font that can display the given code point.
+     *
+     * @param codePoint   the code point
+     * @param allowCreate whether to create fonts from files, if a face cannot be found by name
+     * @return the font without fontStyle and fontSize, or {@code null} if not found
+     */
+    @Nullable
+    Font findFont(int codePoint, boolean allowCreate) {
+        for (Entry entry : entries) {
+            if (entry.covers(codePoint)) {
+                Font font = entry.getFont(allowCreate);
+                if (font != null && font.canDisplay(codePoint)) {
+                    return font;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    private static List<Path> getFontDirectories() {
+        final List<Path> dirs = new ArrayList<>();
+        final String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+        final String home = System.getProperty("user.home", "");
+        if (os.startsWith("windows")) {
+            String windir = System.getenv("WINDIR");
+            if (windir != null) {
+                dirs.add(Paths.get(windir, "Fonts"));
+            }
+            String localAppData = System.getenv("LOCALAPPDATA");
+            if (localAppData != null) {
+                dirs.add(Paths.get(localAppData, "Microsoft", "Windows", "Fonts"));
+            }
+        } else if (os.startsWith("mac")) {
+            dirs.add(Paths.get("/System/Library/Fonts"));
+            dirs.add(Paths.get("/Library/Fonts"));
+            dirs.add(Paths.get(home, "Library", "Fonts"));
+        } else {
+            dirs.add(Paths.get("/usr/share/fonts"));
+            dirs.add(Paths.get("/usr/local/share/fonts"));
+            dirs.add(Paths.get(home, ".fonts"));
+            dirs.add(Paths.get(home, ".local", "share", "fonts"));
+        }
+        dirs.add(Paths.get(System.getProperty("java.home"), "lib", "fonts"));
+        return dirs;
+    }
+
+    @Nonnull
+    private static List<Path> findFontFiles() {
+        final List<Path> files = new ArrayList<>();
+        for (Path dir : getFontDirectories()) {
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (Stream<Path> stream = Files.walk(dir, MAX_DEPTH)) {
+                files.addAll(stream.filter(FontIndex::isFontFile)
+                        .map(Path::toAbsolutePath)
+                        .collect(Collectors.toList()));
+            } catch (IOException | UncheckedIOException e) {
+                ModernUI.LOGGER.debug(GlyphManager.MARKER, "Failed to list fonts in {}", dir, e);
+            }
+        }
+        return files;
+    }
+
+    private static boolean isFontFile(@Nonnull Path path) {
+        final String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return (name.endsWith(".ttf") || name.endsWith(".otf") || name.endsWith(".ttc"))
+                && Files.isRegularFile(path);
+    }
+
+    @Nonnull
+    private static Map<String, FontFile> read(@Nonnull Path file) {
+        final Map<String, FontFile> files = new Object2ObjectOpenHashMap<>();
+        if (!Files.isRegularFile(file)) {
+            return files;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return files;
+            }
+            for (int i = 0, fileCount = in.readInt(); i < fileCount; i++) {
+                final String path = in.readUTF();
+                final long lastModified = in.readLong();
+                final int faceCount = in.readInt();
+                final List<Entry> faces = new ArrayList<>(faceCount);
+                for (int j = 0; j < faceCount; j++) {
+                    final int index = in.readInt();
+                    final String family = in.readUTF();
+                    final String name = in.readUTF();
+                    final int[] ranges = new int[in.readInt()];
+                    for (int k = 0; k < ranges.length; k++) {
+                        ranges[k] = in.readInt();
+                    }
+                    faces.add(new Entry(path, index, family, name, ranges));
+                }
+                files.put(path, new FontFile(path, lastModified, faces));
+            }
+        } catch (IOException | RuntimeException e) {
+            ModernUI.LOGGER.warn(GlyphManager.MARKER, "Failed to read font index, rebuilding", e);
+            files.clear();
+        }
+        return files;
+    }
+
+    private static void write(@Nonnull Path file, @Nonnull List<FontFile> files) {
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(files.size());
+                for (FontFile fontFile : files) {
+                    out.writeUTF(fontFile.path);
+                    out.writeLong(fontFile.lastModified);
+                    out.writeInt(fontFile.faces.size());
+                    for (Entry entry : fontFile.faces) {
+                        out.writeInt(entry.index);
+                        out.writeUTF(entry.family);
+                        out.writeUTF(entry.name);
+                        out.writeInt(entry.ranges.length);
+                        for (int r : entry.ranges) {
+                            out.writeInt(r);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            ModernUI.LOGGER.warn(GlyphManager.MARKER, "Failed to write font index", e);
+        }
+    }
+
+    /**
+     * Read all faces in an OpenType font file or collection. Faces without Unicode cmap are skipped.
+     */
+    @Nonnull
+    private static List<Entry> readFaces(@Nonnull Path path) {
+        final List<Entry> faces = new ArrayList<>(1);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = read(channel, 0, 12);
+            if (header.getInt(0) == TAG_TTCF) {
+                final int count = header.getInt(8);
+                // each face has at least a 12-byte offset table besides its 4-byte entry
+                if (count <= 0 || count > (channel.size() - 12) / 16) {
+                    return faces;
+                }
+                final ByteBuffer offsets = read(channel, 12, count << 2);
+                for (int i = 0; i < count; i++) {
+                    readFace(channel, offsets.getInt(i << 2) & 0xFFFFFFFFL, path.toString(), i, faces);
+                }
+            } else {
+                readFace(channel, 0, path.toString(), 0, faces);
+            }
+        } catch (IOException | RuntimeException e) {
+            ModernUI.LOGGER.debug(GlyphManager.MARKER, "Failed to read font file {}", path, e);
+        }
+        return faces;
+    }
+
+    private static void readFace(@Nonnull FileChannel channel, long offset, @Nonnull String path, int index,
+                                 @Nonnull List<Entry> faces) throws IOException {
+        final int numTables = read(channel, offset, 12).getShort(4) & 0xFFFF;
+        final ByteBuffer records = read(channel, offset + 12, numTables << 4);
+        ByteBuffer cmap = null;
+        ByteBuffer name = null;
+        for (int i = 0; i < numTables; i++) {
+            final int tag = records.getInt(i << 4);
+            if (tag == TAG_CMAP || tag == TAG_NAME) {
+                final long tableOffset = records.getInt((i << 4) + 8) & 0xFFFFFFFFL;
+                final int tableLength = records.getInt((i << 4) + 12);
+                if (tableLength <= 0 || tableLength > MAX_TABLE_LENGTH) {
+                    return;
+                }
+                if (tag == TAG_CMAP) {
+                    cmap = read(channel, tableOffset, tableLength);
+                } else {
+                    name = read(channel, tableOffset, tableLength);
+                }
+            }
+        }
+        if (cmap == null || name == null) {
+            return;
+        }
+        final String fullName = readName(name, 4);
+        if (fullName == null) {
+            return;
+        }
+        final String family = readName(name, 1);
+        final int[] ranges = readCoverage(cmap);
+        if (ranges.length > 0) {
+            faces.add(new Entry(path, index, family != null ? family : fullName, fullName, ranges));
+        }
+    }
+
+    @Nonnull
+    private static ByteBuffer read(@Nonnull FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Read an English name from the name table, prefer Windows platform.
+     *
+     * @param name   the name table
+     * @param nameID 1 for family, 4 for full name
+     * @return the name or {@code null} if not found
+     */
+    @Nullable
+    private static String readName(@Nonnull ByteBuffer name, int nameID) {
+        final int count = name.getShort(2) & 0xFFFF;
+        final int storage = name.getShort(4) & 0xFFFF;
+        int best = -1;
+        int bestScore = 0;
+        for (int i = 0; i < count; i++) {
+            final int record = 6 + i * 12;
+            if ((name.getShort(record + 6) & 0xFFFF) != nameID) {
+                continue;
+            }
+            final int platformID = name.getShort(record) & 0xFFFF;
+            final int languageID = name.getShort(record + 4) & 0xFFFF;
+            final int score;
+            if (platformID == 3) {
+                score = languageID == 0x409 ? 4 : 2;
+            } else if (platformID == 1) {
+                score = languageID == 0 ? 3 : 0;
+            } else if (platformID == 0) {
+                score = 1;
+            } else {
+                score = 0;
+            }
+            if (score > bestScore) {
+                best = record;
+                bestScore = score;
+            }
+        }
+        if (best == -1) {
+            return null;
+        }
+        final int length = name.getShort(best + 8) & 0xFFFF;
+        final int offset = storage + (name.getShort(best + 10) & 0xFFFF);
+        final byte[] bytes = new byte[length];
+        ((ByteBuffer) name.duplicate().position(offset)).get(bytes);
+        // Mac Roman is ASCII compatible for English names
+        final String s = new String(bytes, (name.getShort(best) & 0xFFFF) == 1
+                ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_16BE).trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    /**
+     * Read the code points that map to a glyph other than missing glyph from the cmap table.
+     *
+     * @param cmap the cmap table
+     * @return sorted pairs of the first and last code point
+     */
+    @Nonnull
+    private static int[] readCoverage(@Nonnull ByteBuffer cmap) {
+        final int numTables = cmap.getShort(2) & 0xFFFF;
+        int format4 = -1;
+        int format12 = -1;
+        for (int i = 0; i < numTables; i++) {
+            final int record = 4 + (i << 3);
+            final int platformID = cmap.getShort(record) & 0xFFFF;
+            final int encodingID = cmap.getShort(record + 2) & 0xFFFF;
+            if (platformID != 0 && (platformID != 3 || (encodingID != 1 && encodingID != 10))) {
+                // not Unicode, symbol fonts are skipped
+                continue;
+            }
+            final int offset = cmap.getInt(record + 4);
+            final int format = cmap.getShort(offset) & 0xFFFF;
+            if (format == 12) {
+                format12 = offset;
+            } else if (format == 4) {
+                format4 = offset;
+            }
+        }
+        final IntArrayList ranges = new IntArrayList();
+        if (format12 != -1) {
+            final int numGroups = cmap.getInt(format12 + 12);
+            for (int i = 0; i < numGroups; i++) {
+                final int group = format12 + 16 + i * 12;
+                final int start = cmap.getInt(group);
+                final int end = cmap.getInt(group + 4);
+                addRange(ranges, cmap.getInt(group + 8) == 0 ? start + 1 : start, end);
+            }
+        } else if (format4 != -1) {
+            final int segCount = (cmap.getShort(format4 + 6) & 0xFFFF) >> 1;
+            final int endCodes = format4 + 14;
+            final int startCodes = endCodes + (segCount << 1) + 2;
+            final int idDeltas = startCodes + (segCount << 1);
+            final int idRangeOffsets = idDeltas + (segCount << 1);
+            for (int i = 0; i < segCount; i++) {
+                final int start = cmap.getShort(startCodes + (i << 1)) & 0xFFFF;
+                final int end = cmap.getShort(endCodes + (i << 1)) & 0xFFFF;
+                if (start == 0xFFFF) {
+                    continue;
+                }
+                final int idDelta = cmap.getShort(idDeltas + (i << 1));
+                final int rangeOffsetPos = idRangeOffsets + (i << 1);
+                final int idRangeOffset = cmap.getShort(rangeOffsetPos) & 0xFFFF;
+                if (idRangeOffset == 0) {
+                    // glyph ID is (c + idDelta) & 0xFFFF, only one code point can map to glyph 0
+                    final int missing = -idDelta & 0xFFFF;
+                    if (missing >= start && missing <= end) {
+                        addRange(ranges, start, missing - 1);
+                        addRange(ranges, missing + 1, end);
+                    } else {
+                        addRange(ranges, start, end);
+                    }
+                } else {
+                    for (int c = start; c <= end; c++) {
+                        final int glyphPos = rangeOffsetPos + idRangeOffset + ((c - start) << 1);
+                        if (glyphPos + 1 < cmap.limit() && cmap.getShort(glyphPos) != 0) {
+                            addRange(ranges, c, c);
+                        }
+                    }
+                }
+            }
+        }
+        return ranges.toIntArray();
+    }
+
+    private static void addRange(@Nonnull IntArrayList ranges, int start, int end) {
+        if (start > end) {
+            return;
+        }
+        final int size = ranges.size();
+        if (size > 0 && ranges.getInt(size - 1) + 1 >= start) {
+            ranges.set(size - 1, Math.max(ranges.getInt(size - 1), end));
+        } else {
+            ranges.add(start);
+            ranges.add(end);
+        }
+    }
+
+    private static class FontFile {
+
+        private final String path;
+        private final long lastModified;
+        private final List<Entry> faces;
+
+        private FontFile(String path, long lastModified, List<Entry> faces) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.faces = faces;
+        }
+    }
+
+    /**
+     * A face in a font file.
+     */
+    private static class Entry {
+
+        private final String path;
+        private final int index;
+        private final String family;
+        private final String name;
+
+        // pairs of the first and last code point, sorted
+        private final int[] ranges;
+
+        @Nullable
+        private Font font;
+        private boolean rejected;
+
+        private Entry(String path, int index, String family, String name, int[] ranges) {
+            this.path = path;
+            this.index = index;
+            this.family = family;
+            this.name = name;
+            this.ranges = ranges;
+        }
+
+        private boolean covers(int codePoint) {
+            int low = 0;
+            int high = (ranges.length >> 1) - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (codePoint < ranges[mid << 1]) {
+                    high = mid - 1;
+                } else if (codePoint > ranges[(mid << 1) + 1]) {
+                    low = mid + 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Create the font by its full name, or from the font file if the name is not
+         * recognized by AWT. Font collections can only be found by name.
+         */
+        @Nullable
+        private Font getFont(boolean allowCreate) {
+            if (font == null && !rejected) {
+                Font f = new Font(name, Font.PLAIN, 1);
+                if (!name.equalsIgnoreCase(f.getFontName(Locale.ROOT))) {
+                    f = null;
+                    if (allowCreate && index == 0 && !path.toLowerCase(Locale.ROOT).endsWith(".ttc")) {
+                        try {
+                            f = Font.createFont(Font.TRUETYPE_FONT, new File(path));
+                        } catch (FontFormatException | IOException e) {
+                            ModernUI.LOGGER.debug(GlyphManager.MARKER, "Failed to create font {}", path, e);
+                        }
+                    }
+                }
+                if (f == null) {
+                    rejected = true;
+                    ModernUI.LOGGER.debug(GlyphManager.MARKER, "Font {} ({}) in {} is unavailable", name, family, path);
+                }
+                font = f;
+            }
+            return font;
+        }
+    }
+}
@@ -18,35 +18,35 @@
 
 package icyllis.modernui.graphics.font;
 
-import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.graphics.font.pipeline.TextRenderNode;
 import icyllis.modernui.graphics.font.pipeline.TextRenderType;
 import icyllis.modernui.graphics.text.VanillaTextKey;
-import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
+import icyllis.modernui.util.FrameProfiler;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
-import it.unimi.dsi.fastutil.longs.Long2ObjectArrayMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
-import it.unimi.dsi.fastutil.objects.Object2IntArrayMap;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
-import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.*;
 import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.texture.AbstractTexture;
-import net.minecraft.client.renderer.texture.SimpleTexture;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.packs.resources.Resource;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
 import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL14;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL44;
+import org.lwjgl.system.MemoryStack;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.awt.*;
+import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
@@ -54,18 +54,19 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Find matching fonts and glyphs, measure glyph metrics and draw them of
  * different sizes and styles, and upload them to generated OpenGL textures.
  * <p>
  * RAM usage: &lt; 10MB
- * GPU memory usage: &lt; 22MB
+ * GPU memory usage: about 5.3MB per layer of the glyph texture array (RGBA with mipmaps)
  */
 @SuppressWarnings("unused")
 public class GlyphManager {
@@ -113,6 +114,16 @@ public class GlyphManager {
 
     public static final int TEXTURE_SIZE = 1024;
 
+    /**
+     * The advance and the size of emoji in GUI scaled pixels
+     */
+    public static final int EMOJI_SIZE = 12;
+
+    /**
+     * Initial number of layers of the glyph texture array, doubled when all layers are used.
+     */
+    private static final int INITIAL_LAYER_COUNT = 1;
+
     /**
      * Initial width in pixels of the stringImage buffer used to extract individual glyph images.
      */
@@ -129,6 +140,13 @@ public class GlyphManager {
      */
     private static final int GLYPH_BORDER = 2;
 
+    /**
+     * Glyph index page size
+     */
+    private static final int PAGE_SHIFT = 8;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
     /**
      * The width in pixels of a transparent border between individual glyphs in the cache texture. This border keeps neighboring
      * glyphs from "bleeding through" when the scaled GUI resolution is not pixel aligned and sometimes results in off-by-one
@@ -179,10 +197,10 @@ public class GlyphManager {
     private final int[] imageData = new int[((1 << 6) * (1 << 6)) << 1];
 
     /**
-     * A direct buffer used with glTexSubImage2D(). Used for loading the pre-rendered glyph
-     * images from the glyphCacheImage BufferedImage into OpenGL textures.
+     * A direct buffer used with glTexSubImage3D(). Used for loading the pre-rendered glyph
+     * images from the glyphCacheImage BufferedImage into OpenGL textures, 4 bytes per pixel.
      */
-    private final ByteBuffer uploadBuffer = BufferUtils.createByteBuffer(imageData.length);
+    private final ByteBuffer uploadBuffer = BufferUtils.createByteBuffer(imageData.length << 2);
 
     /**
      * A single integer direct buffer with native byte ordering used for returning values from glGenTextures().
@@ -190,49 +208,81 @@ public class GlyphManager {
     private final IntBuffer textureGenBuffer = BufferUtils.createIntBuffer(1);
 
     /**
-     * List of all available physical fonts on the system. Used by lookupFont() to find alternate fonts.
+     * Index of font files on the system, loaded in background. Used by lookupFont() to find alternate fonts.
      */
-    private final List<Font> allFonts;
+    private final CompletableFuture<FontIndex> fontIndex;
 
     /**
      * A list of all fonts that have been returned so far by lookupFont(), and that will always be searched first for a usable font before
-     * searching through allFonts[]. This list will only have plain variation of a font at a dummy point size, unlike fontCache which could
+     * searching through fontIndex. This list will only have plain variation of a font at a dummy point size, unlike fontCache which could
      * have multiple entries for the various styles (i.e. bold, italic, etc.) of a font.
      */
     private final List<Font> selectedFonts = new ObjectArrayList<>();
 
 
     /**
-     * ID of current OpenGL cache texture being used by cacheGlyphs() to store pre-rendered glyph images.
+     * ID of the OpenGL texture array used to store pre-rendered glyph images and emoji, each layer is a page of
+     * glyphTextureImage. All glyphs share the texture, so text can be drawn with a single render type.
      */
     private int textureName;
 
     /**
-     * A cache of all fonts that have at least one glyph pre-rendered in a texture. Each font maps to an integer (monotonically
-     * increasing) which forms the upper 32 bits of the key into the glyphCache map. This font cache can include different styles
-     * of the same font family like bold or italic and different size.
+     * The number of allocated layers in the texture array.
+     */
+    private int layerCount;
+
+    /**
+     * The layer of the texture array that glyphTextureImage is currently uploaded to.
+     */
+    private int currLayer = -1;
+
+    /**
+     * Glyphs are rasterized and converted for upload, but there's no OpenGL texture.
+     */
+    private final boolean headless;
+
+    /**
+     * Derived fonts of each base font (in selectedFonts), keyed by {@code (fontStyle << 24) | fontSize}.
+     * Derived fonts are canonical instances, so that fonts can be compared by identity rather than
+     * {@link Font#equals(Object)}, which compares names, sizes and transforms.
+     */
+    private final Reference2ObjectMap<Font, Int2ObjectMap<Font>> derivedFonts = new Reference2ObjectOpenHashMap<>();
+
+    /**
+     * A cache of all derived fonts. Each font maps to an integer (monotonically increasing) which indexes
+     * {@link #glyphPages} and {@link #digitsTable}. This font cache can include different styles of the same
+     * font family like bold or italic and different size.
      */
-    private final Object2IntMap<Font> fontKeyMap = new Object2IntArrayMap<>(8);
+    private final Reference2IntMap<Font> fontIds = new Reference2IntOpenHashMap<>();
 
     /**
-     * A cache of pre-rendered glyphs mapping each glyph by its glyphcode to the position of its pre-rendered image within
-     * the cache texture. The key is a 64 bit number such that the lower 32 bits are the glyphcode and the upper 32 are the
-     * index of the font in the fontCache. This makes for a single globally unique number to identify any glyph from any font.
+     * A cache of pre-rendered glyphs, font ID to pages of {@link #PAGE_SIZE} glyphs indexed by glyph code.
+     * Pages are allocated on demand, a lookup is three array accesses regardless of how many glyphs are cached.
+     * Glyph codes are 16-bit glyph IDs, composite fonts put the slot of the physical font in the upper 8 bits,
+     * see {@link #getPage(int)}.
      */
-    private final Long2ObjectMap<TexturedGlyph> glyphCache = new Long2ObjectArrayMap<>(4096);
+    private TexturedGlyph[][][] glyphPages = new TexturedGlyph[8][][];
 
     /**
-     * Font ID {@link #fontKeyMap} to an array of length 10 represent 0-9 digits (in that order)
+     * Glyphs whose codes don't fit in pages, keyed by {@code (fontId << 32) | glyphCode}, generally empty.
+     */
+    private final Long2ObjectMap<TexturedGlyph> overflowGlyphs = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Font ID {@link #fontIds} to an array of length 10 represent 0-9 digits (in that order)
      * These glyph advance are equal for fast rendering. For example {@link VanillaTextKey#hashCode()} did.
      */
-    private final Int2ObjectMap<TexturedGlyph[]> digitsMap = new Int2ObjectArrayMap<>(4);
+    private TexturedGlyph[][] digitsTable = new TexturedGlyph[8][];
 
-    private final Int2ObjectMap<TexturedGlyph> emojiMap = new Int2ObjectArrayMap<>(32);
+    /**
+     * Font ID to the advance of '0' for measurement, without rasterizing digits, zero if absent.
+     */
+    private float[] digitAdvances = new float[8];
 
     /**
-     * Emoji texture atlas
+     * Emoji instances are replaced on resource reload, so they are compared by identity
      */
-    private int emojiTexture;
+    private final Reference2ObjectMap<Emoji, TexturedGlyph> emojiMap = new Reference2ObjectOpenHashMap<>();
 
 
     /**
@@ -260,7 +310,19 @@ public class GlyphManager {
      * A single instance of GlyphManager is allocated for internal use.
      */
     public GlyphManager() {
+        this(false);
+    }
+
+    /**
+     * Create the instance without a GL context, for benchmarks. Everything is done
+     * as usual until the pixels are ready for upload.
+     *
+     * @param headless {@code true} to skip all OpenGL calls
+     */
+    public GlyphManager(boolean headless) {
+        this.headless = headless;
         instance = this;
+        fontIds.defaultReturnValue(-1);
         checkJava();
         /* Set background color for use with clearRect() */
         glyphTextureGraphics.setBackground(BG_COLOR);
@@ -275,7 +337,8 @@ public class GlyphManager {
         /* Use Java's logical font as the default initial font if user does not override it in some configuration file */
         environment.preferLocaleFonts();
 
-        allFonts = Arrays.asList(environment.getAllFonts());
+        /* Enumerating all fonts takes seconds on some systems, use an index of font files instead */
+        fontIndex = FontIndex.loadAsync(ModernUI.get().getCacheDirectory());
 
         loadPreferredFonts();
 
@@ -321,13 +384,19 @@ public class GlyphManager {
         currPosX = GLYPH_SPACING;
         currPosY = GLYPH_SPACING;
         currLineHeight = 0;
-        fontKeyMap.clear();
-        glyphCache.clear();
-        digitsMap.clear();
+        derivedFonts.clear();
+        fontIds.clear();
+        Arrays.fill(glyphPages, null);
+        overflowGlyphs.clear();
+        Arrays.fill(digitsTable, null);
+        Arrays.fill(digitAdvances, 0);
         emojiMap.clear();
+        if (!headless) {
+            TextRenderType.clearTextures();
+        }
         textureName = 0;
-        emojiTexture = 0;
-        TextRenderType.clearTextures();
+        layerCount = 0;
+        currLayer = -1;
         selectedFonts.clear();
         allocateGlyphTexture();
         loadPreferredFonts();
@@ -370,8 +439,10 @@ public class GlyphManager {
                     ModernUI.LOGGER.warn(MARKER, "Preferred font {} is invalid", typeface);
                 }
             } else {
-                Optional<Font> font = allFonts.stream().filter(f -> f.getFamily(Locale.ROOT).equals(typeface)).findFirst();
-                if (font.isPresent()) {
+                /* AWT falls back to Dialog if no such font */
+                Font font = new Font(typeface, Font.PLAIN, 12);
+                if (typeface.equalsIgnoreCase(font.getFamily(Locale.ROOT))
+                        || typeface.equalsIgnoreCase(font.getFontName(Locale.ROOT))) {
                     selectedFonts.add(new Font(typeface, Font.PLAIN, 12));
                     ModernUI.LOGGER.debug(MARKER, "Preferred font {} was loaded", typeface);
                 } else {
@@ -408,9 +479,28 @@ public class GlyphManager {
         return font.layoutGlyphVector(glyphTextureGraphics.getFontRenderContext(), text, start, limit, layoutFlags);
     }
 
+    /**
+     * Get the font render context of glyph rasterization, render thread only. The context is
+     * immutable, so it can be used on other threads to layout text in the same way.
+     *
+     * @return the font render context
+     */
+    @Nonnull
+    public FontRenderContext getFontRenderContext() {
+        return glyphTextureGraphics.getFontRenderContext();
+    }
+
+    /**
+     * @return {@code true} if created without a GL context, see {@link #GlyphManager(boolean)}
+     */
+    public boolean isHeadless() {
+        return headless;
+    }
+
     /**
      * Find the first font in the system able to render the given codePoint. The function always tries searching first
-     * in the selected fonts followed by the allFonts.
+     * in the selected fonts followed by the font index. The first lookup that requires an alternate font
+     * waits for the font index to be loaded.
      *
      * @param codePoint the codePoint to check against the font
      * @return the font to use in selection list (without fontStyle and fontSize),
@@ -426,31 +516,88 @@ public class GlyphManager {
         }
 
         /* If still not found, try searching through all fonts installed on the system for the first that can layout this string */
-        for (Font font : allFonts) {
-            /* Only use the font if it can layout at least the first character of the requested string range */
-            if (font.canDisplay(codePoint)) {
-                /* If found, add this font to the selectedFonts list so it can be looked up faster next time */
-                selectedFonts.add(font);
-                ModernUI.LOGGER.debug(MARKER, "Extra font {} was loaded", font.getName());
-                return font;
-            }
+        Font font = findSystemFont(codePoint);
+        if (font != null) {
+            return font;
         }
 
         /* If no supported fonts found, use the default one (first in selectedFonts) so it can draw its unknown character glyphs */
         return selectedFonts.get(0);
     }
 
-    // test only
-    public TexturedGlyph lookupEmoji(int codePoint) {
-        return emojiMap.computeIfAbsent(codePoint, l -> {
-            if (emojiTexture == 0) {
-                ResourceLocation resourceLocation = new ResourceLocation(ModernUI.ID, "textures/gui/emoji.png");
-                AbstractTexture texture = new SimpleTexture(resourceLocation);
-                Minecraft.getInstance().getTextureManager().register(resourceLocation, texture);
-                emojiTexture = texture.getId();
-            }
-            return new TexturedGlyph(emojiTexture, 12, 0, -8, 12, 12, 0, 0, 0.046875f, 0.046875f);
-        });
+    @Nullable
+    private Font findSystemFont(int codePoint) {
+        final Font font = fontIndex.join().findFont(codePoint, !sOldJava);
+        if (font != null) {
+            /* If found, add this font to the selectedFonts list so it can be looked up faster next time */
+            selectedFonts.add(font);
+            ModernUI.LOGGER.debug(MARKER, "Extra font {} was loaded", font.getName());
+        }
+        return font;
+    }
+
+    /**
+     * Lookup the textured glyph of an emoji, the sprite is copied into the glyph texture on first use.
+     *
+     * @param emoji the emoji from {@link EmojiManager}
+     * @return the textured glyph
+     */
+    @Nonnull
+    public TexturedGlyph lookupEmoji(@Nonnull Emoji emoji) {
+        TexturedGlyph glyph = emojiMap.get(emoji);
+        if (glyph == null) {
+            glyph = cacheEmoji(EmojiManager.getInstance().getSprite(emoji));
+            emojiMap.put(emoji, glyph);
+        }
+        return glyph;
+    }
+
+    /**
+     * Drop textured glyphs of emoji when the emoji index is reloaded. Their cells in
+     * the glyph texture are released with the next font reload.
+     */
+    void clearEmojis() {
+        emojiMap.clear();
+    }
+
+    /**
+     * Copy the emoji sprite into the glyph texture, so that emoji are drawn with text in the same render type.
+     *
+     * @param sprite the sprite image, or {@code null} if missing
+     * @return created textured glyph
+     */
+    @Nonnull
+    private TexturedGlyph cacheEmoji(@Nullable BufferedImage sprite) {
+        if (sprite == null) {
+            // keep the advance, draw nothing
+            return new TexturedGlyph(currLayer, EMOJI_SIZE, 0, -8, 0, 0, 0, 0, 0, 0);
+        }
+        // no larger than the upload buffer
+        final int size = Math.min(Math.max(sprite.getWidth(), sprite.getHeight()), 1 << 6);
+
+        if (currPosX + size + GLYPH_SPACING >= TEXTURE_SIZE) {
+            currPosX = GLYPH_SPACING;
+            currPosY += currLineHeight + GLYPH_SPACING * 2;
+            currLineHeight = 0;
+        }
+        if (currPosY + size + GLYPH_SPACING >= TEXTURE_SIZE) {
+            currPosX = GLYPH_SPACING;
+            currPosY = GLYPH_SPACING;
+            allocateGlyphTexture();
+        }
+
+        glyphTextureGraphics.drawImage(sprite, currPosX, currPosY, currPosX + size, currPosY + size,
+                0, 0, sprite.getWidth(), sprite.getHeight(), null);
+        uploadTexture(currPosX, currPosY, size, size);
+
+        final int x = currPosX;
+        final int y = currPosY;
+        currLineHeight = Math.max(currLineHeight, size);
+        currPosX += size + GLYPH_SPACING * 2;
+
+        return new TexturedGlyph(currLayer, EMOJI_SIZE, 0, -8, EMOJI_SIZE, EMOJI_SIZE,
+                (float) x / TEXTURE_SIZE, (float) y / TEXTURE_SIZE,
+                (float) (x + size) / TEXTURE_SIZE, (float) (y + size) / TEXTURE_SIZE);
     }
 
     /**
@@ -463,11 +610,68 @@ public class GlyphManager {
      */
     @Nonnull
     public Font deriveFont(@Nonnull Font font, int fontStyle, int fontSize) {
-        fontSize *= sResolutionLevel;
-        font = font.deriveFont(fontStyle, fontSize);
-        /* Ensure this font is already in fontKeyMap so it can be referenced by lookupGlyph() later on */
-        fontKeyMap.putIfAbsent(font, fontKeyMap.size());
-        return font;
+        return getDerivedFont(font, fontStyle, fontSize * sResolutionLevel);
+    }
+
+    @Nonnull
+    private Font getDerivedFont(@Nonnull Font font, int fontStyle, int fontSize) {
+        Int2ObjectMap<Font> fonts = derivedFonts.get(font);
+        if (fonts == null) {
+            fonts = new Int2ObjectOpenHashMap<>();
+            derivedFonts.put(font, fonts);
+        }
+        final int key = (fontStyle << 24) | fontSize;
+        Font derived = fonts.get(key);
+        if (derived == null) {
+            derived = font.deriveFont(fontStyle, fontSize);
+            fonts.put(key, derived);
+            /* Ensure this font is already in fontIds so it can be referenced by lookupGlyph() later on */
+            registerFont(derived);
+        }
+        return derived;
+    }
+
+    private int registerFont(@Nonnull Font font) {
+        final int id = fontIds.size();
+        fontIds.put(font, id);
+        if (id == glyphPages.length) {
+            glyphPages = Arrays.copyOf(glyphPages, id << 1);
+            digitsTable = Arrays.copyOf(digitsTable, id << 1);
+            digitAdvances = Arrays.copyOf(digitAdvances, id << 1);
+        }
+        return id;
+    }
+
+    private int getFontId(@Nonnull Font font) {
+        final int id = fontIds.getInt(font);
+        // a font that was not derived by this manager
+        return id == -1 ? registerFont(font) : id;
+    }
+
+    /**
+     * Get the page index of a glyph code, the upper 8 bits are the slot of a composite font.
+     *
+     * @param glyphCode the glyph code
+     * @return the page index, or -1 if the glyph code is not a 16-bit glyph ID
+     */
+    private static int getPage(int glyphCode) {
+        if ((glyphCode & 0xff0000) != 0) {
+            return -1;
+        }
+        return ((glyphCode >>> 24) << (16 - PAGE_SHIFT)) | ((glyphCode & 0xffff) >>> PAGE_SHIFT);
+    }
+
+    @Nullable
+    private TexturedGlyph getCachedGlyph(int fontId, int glyphCode) {
+        final int page = getPage(glyphCode);
+        if (page == -1) {
+            return overflowGlyphs.get(((long) fontId << 32) | (glyphCode & 0xffffffffL));
+        }
+        final TexturedGlyph[][] pages = glyphPages[fontId];
+        if (pages == null || page >= pages.length || pages[page] == null) {
+            return null;
+        }
+        return pages[page][glyphCode & PAGE_MASK];
     }
 
     // (vanilla mode)
@@ -479,7 +683,7 @@ public class GlyphManager {
     /**
      * Find the first font in the system able to render the given codePoint. The function always tries searching first
      * in the fontCache (based on the request style and size).
-     * Failing that, it searches the selectedFonts list followed by the allFonts[] array.
+     * Failing that, it searches the selectedFonts list followed by the font index.
      *
      * @param codePoint the codePoint to check against the font
      * @param fontStyle combination of the Font.PLAIN, Font.BOLD, and Font.ITALIC to request a particular font style
@@ -495,28 +699,19 @@ public class GlyphManager {
             /* Only use the font if it can layout at least the first character of the requested string range */
             if (font.canDisplay(codePoint)) {
                 /* Return a font instance of the proper point size and style; selectedFonts has only 1pt sized plain style fonts */
-                return font.deriveFont(fontStyle, fontSize);
+                return getDerivedFont(font, fontStyle, fontSize);
             }
         }
 
         /* If still not found, try searching through all fonts installed on the system for the first that can layout this string */
-        for (Font font : allFonts) {
-            /* Only use the font if it can layout at least the first character of the requested string range */
-            if (font.canDisplay(codePoint)) {
-                /* If found, add this font to the selectedFonts list so it can be looked up faster next time */
-                selectedFonts.add(font);
-                ModernUI.LOGGER.debug(MARKER, "Extra font {} was loaded", font.getName());
-
-                /* Return a font instance of the proper point size and style; allFonts has only 1pt sized plain style fonts */
-                return font.deriveFont(fontStyle, fontSize);
-            }
+        Font font = findSystemFont(codePoint);
+        if (font == null) {
+            /* If no supported fonts found, use the default one (first in selectedFonts) so it can draw its unknown character glyphs */
+            font = selectedFonts.get(0);
         }
 
-        /* If no supported fonts found, use the default one (first in selectedFonts) so it can draw its unknown character glyphs */
-        Font font = selectedFonts.get(0);
-
         /* Return a font instance of the proper point size and style; selectedFonts only 1pt sized plain style fonts */
-        return font.deriveFont(fontStyle, fontSize);
+        return getDerivedFont(font, fontStyle, fontSize);
     }
 
     /**
@@ -531,11 +726,29 @@ public class GlyphManager {
      * @return the cache textured glyph
      */
     @Nonnull
-    public TexturedGlyph lookupGlyph(Font font, int glyphCode) {
-        // the key should be cached in layout step
-        long fontKey = (long) fontKeyMap.getInt(font) << 32;
-        return glyphCache.computeIfAbsent(fontKey | glyphCode,
-                l -> cacheGlyph(font, glyphCode));
+    public TexturedGlyph lookupGlyph(@Nonnull Font font, int glyphCode) {
+        // the font ID should be assigned in layout step
+        final int fontId = getFontId(font);
+        final int page = getPage(glyphCode);
+        if (page == -1) {
+            return overflowGlyphs.computeIfAbsent(((long) fontId << 32) | (glyphCode & 0xffffffffL),
+                    l -> cacheGlyph(font, glyphCode));
+        }
+        TexturedGlyph[][] pages = glyphPages[fontId];
+        if (pages == null || page >= pages.length) {
+            final int count = Math.max((font.getNumGlyphs() + PAGE_MASK) >>> PAGE_SHIFT, page + 1);
+            pages = glyphPages[fontId] = pages == null ? new TexturedGlyph[count][] : Arrays.copyOf(pages, count);
+        }
+        TexturedGlyph[] glyphs = pages[page];
+        if (glyphs == null) {
+            glyphs = pages[page] = new TexturedGlyph[PAGE_SIZE];
+        }
+        final int index = glyphCode & PAGE_MASK;
+        TexturedGlyph glyph = glyphs[index];
+        if (glyph == null) {
+            glyph = glyphs[index] = cacheGlyph(font, glyphCode);
+        }
+        return glyph;
     }
 
     /**
@@ -562,6 +775,9 @@ public class GlyphManager {
     @Nonnull
     private TexturedGlyph cacheGlyph(@Nonnull Font font, int glyphCode) {
 
+        final long start = FrameProfiler.begin();
+        FrameProfiler.count(FrameProfiler.GLYPH_CACHE_MISS);
+
         /* There's no need to layout glyph vector, we only draw the specific glyphCode
          * which is already laid-out in TextProcessor */
         GlyphVector vector = font.createGlyphVector(glyphTextureGraphics.getFontRenderContext(), new int[]{glyphCode});
@@ -593,6 +809,7 @@ public class GlyphManager {
         int height = renderHeight + GLYPH_BORDER * 2;
 
         glyphTextureGraphics.drawGlyphVector(vector, currPosX - baselineX, currPosY - baselineY);
+        FrameProfiler.end(FrameProfiler.RASTERIZE, start);
 
         uploadTexture(x, y, width, height);
 
@@ -600,7 +817,7 @@ public class GlyphManager {
         currPosX += renderWidth + GLYPH_SPACING * 2;
         final float f = getResolutionFactor();
 
-        return new TexturedGlyph(textureName, advance / f, baselineX / f, baselineY / f,
+        return new TexturedGlyph(currLayer, advance / f, baselineX / f, baselineY / f,
                 width / f, height / f,
                 (float) x / TEXTURE_SIZE, (float) y / TEXTURE_SIZE,
                 (float) (x + width) / TEXTURE_SIZE, (float) (y + height) / TEXTURE_SIZE);
@@ -612,11 +829,37 @@ public class GlyphManager {
      * @param font derived font including style and font size
      * @return array of all digit glyphs 0-9 (in that order)
      */
-    public TexturedGlyph[] lookupDigits(Font font) {
-        // the key should be cached in layout step
-        int fontKey = fontKeyMap.getInt(font);
-        return digitsMap.computeIfAbsent(fontKey,
-                l -> cacheDigits(font));
+    public TexturedGlyph[] lookupDigits(@Nonnull Font font) {
+        // the font ID should be assigned in layout step
+        final int fontId = getFontId(font);
+        TexturedGlyph[] digits = digitsTable[fontId];
+        if (digits == null) {
+            digits = digitsTable[fontId] = cacheDigits(font);
+        }
+        return digits;
+    }
+
+    /**
+     * Get the advance of digit glyphs with given font, all digits have the same advance as '0'.
+     * Unlike {@link #lookupDigits(Font)}, nothing is rasterized or uploaded, this is used to measure text.
+     *
+     * @param font derived font including style and font size
+     * @return the advance of a digit
+     */
+    public float getDigitAdvance(@Nonnull Font font) {
+        final int fontId = getFontId(font);
+        float advance = digitAdvances[fontId];
+        if (advance == 0) {
+            final TexturedGlyph[] digits = digitsTable[fontId];
+            if (digits != null) {
+                advance = digits[0].advance;
+            } else {
+                GlyphVector vector = font.createGlyphVector(glyphTextureGraphics.getFontRenderContext(), "0");
+                advance = vector.getGlyphMetrics(0).getAdvanceX() / getResolutionFactor();
+            }
+            digitAdvances[fontId] = advance;
+        }
+        return advance;
     }
 
     /**
@@ -709,7 +952,7 @@ public class GlyphManager {
             currLineHeight = Math.max(currLineHeight, renderHeight);
             currPosX += standardRenderWidth + GLYPH_SPACING * 2;
 
-            digits[i] = new TexturedGlyph(textureName,
+            digits[i] = new TexturedGlyph(currLayer,
                     standardAdvance / f, baselineX / f, baselineY / f,
                     width / f, height / f,
                     (float) x / TEXTURE_SIZE, (float) y / TEXTURE_SIZE,
@@ -721,7 +964,7 @@ public class GlyphManager {
 
     /**
      * Given an OpenType font and a string, make sure that every glyph used by that string is pre-rendered into an OpenGL texture and cached
-     * in the glyphCache map for later retrieval by lookupGlyph()
+     * in the glyph pages for later retrieval by lookupGlyph()
      *
      * @param font        the font used to create a GlyphVector for the string and to actually draw the individual glyphs
      * @param text        the string from which to cache glyph images
@@ -739,17 +982,17 @@ public class GlyphManager {
         /* Pixel aligned bounding box for the entire vector; only set if the vector has to be drawn to cache a glyph image */
         Rectangle vectorBounds = null;
 
-        /* This forms the upper 32 bits of the fontCache key to make every font/glyph code point unique */
-        long fontKey = (long) fontKeyMap.get(font) << 32;
+        /* This indexes the glyph pages of the font */
+        final int fontId = getFontId(font);
 
         int numGlyphs = vector.getNumGlyphs(); /* Length of the GlyphVector */
         Rectangle dirty = null;                /* Total area within texture that needs to be updated with glTexSubImage2D() */
         boolean vectorRendered = false;        /* True if entire GlyphVector was rendered into stringImage */
 
         for (int index = 0; index < numGlyphs; index++) {
-            /* If this glyph code is already in glyphCache, then there is no reason to pre-render it again */
+            /* If this glyph code is already in glyph pages, then there is no reason to pre-render it again */
             int glyphCode = vector.getGlyphCode(index);
-            if (glyphCache.containsKey(fontKey | glyphCode)) {
+            if (getCachedGlyph(fontId, glyphCode) != null) {
                 continue;
             }
 
@@ -902,22 +1145,7 @@ public class GlyphManager {
     private void updateTexture(@Nullable Rectangle dirty) {
         /* Only update OpenGL texture if changes were made to the texture */
         if (dirty != null) {
-            /* Load imageBuffer with pixel data ready for transfer to OpenGL texture */
-            updateImageBuffer(dirty.x, dirty.y, dirty.width, dirty.height);
-
-            GlStateManager._bindTexture(textureName);
-
-            /* Due to changes in 1.14+, so this ensure pixels are correctly stored from CPU to GPU */
-            GlStateManager._pixelStore(GL11.GL_UNPACK_ROW_LENGTH, dirty.width);
-            GlStateManager._pixelStore(GL11.GL_UNPACK_SKIP_ROWS, 0);
-            GlStateManager._pixelStore(GL11.GL_UNPACK_SKIP_PIXELS, 0);
-            GlStateManager._pixelStore(GL11.GL_UNPACK_ALIGNMENT, 4); // 4 is RGBA
-
-            GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, dirty.x, dirty.y, dirty.width, dirty.height,
-                    GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, uploadBuffer);
-
-            /* Auto generate mipmap texture */
-            GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
+            uploadTexture(dirty.x, dirty.y, dirty.width, dirty.height);
         }
     }
 
@@ -930,37 +1158,39 @@ public class GlyphManager {
      * @param height height
      */
     private void uploadTexture(int x, int y, int width, int height) {
+        final long start = FrameProfiler.begin();
+        FrameProfiler.count(FrameProfiler.TEXTURE_UPLOAD);
+
         /* Load imageBuffer with pixel data ready for transfer to OpenGL texture */
         updateImageBuffer(x, y, width, height);
 
-        GlStateManager._bindTexture(textureName);
+        if (headless) {
+            FrameProfiler.end(FrameProfiler.UPLOAD, start);
+            return;
+        }
+
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, textureName);
 
         /* Due to changes in 1.14+, so this ensures pixels are correctly stored from CPU to GPU */
         GL11.glPixelStorei(GL11.GL_UNPACK_ROW_LENGTH, width); // not full texture
         GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_ROWS, 0);
         GL11.glPixelStorei(GL11.GL_UNPACK_SKIP_PIXELS, 0);
-        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1); // 1 is alpha, 4 bytes
-
-        GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, 0, x, y, width, height,
-                GL11.GL_ALPHA, GL11.GL_UNSIGNED_BYTE, uploadBuffer);
+        GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 4); // 4 is RGBA
 
-        // WRONG CODE HERE
-        /* int mipmapLevel = sEnableMipmap ? sMipmapLevel : 0;
+        GL12.glTexSubImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, x, y, currLayer, width, height, 1,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, uploadBuffer);
 
-        for (int level = 0; level <= mipmapLevel; level++) {
-            GL11.glTexSubImage2D(GL11.GL_TEXTURE_2D, level, x, y, width, height,
-                    GL11.GL_ALPHA, GL11.GL_UNSIGNED_BYTE, uploadBuffer);
-        }*/
-
-        /* Auto generate mipmap texture */
+        /* Mipmaps are generated once before next draw, not for every glyph */
         if (sEnableMipmap) {
-            GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
+            TextRenderType.invalidateMipmaps();
         }
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, 0);
+        FrameProfiler.end(FrameProfiler.UPLOAD, start);
     }
 
     /**
      * Copy pixel data from a region in glyphCacheImage into imageBuffer and prepare it for use with glText(Sub)Image2D(). This
-     * function takes care of converting the ARGB format used with BufferedImage into the LA format used by OpenGL.
+     * function takes care of converting the ARGB format used with BufferedImage into the RGBA format used by OpenGL.
      *
      * @param x      the horizontal coordinate of the region's upper-left corner
      * @param y      the vertical coordinate of the region's upper-left corner
@@ -974,14 +1204,14 @@ public class GlyphManager {
         /* Copy int array to direct buffer */
         uploadBuffer.clear();
 
-        /* Swizzle each color integer from Java's ARGB format to OpenGL's grayscale */
+        /* Swizzle each color integer from Java's ARGB format to OpenGL's RGBA, glyphs are drawn in white */
         final int size = width * height;
         for (int i = 0; i < size; i++) {
-            //int color = imageData[i];
-            //uploadData[i] = (color << 8) | (color >>> 24);
-
-            /* alpha channel for grayscale texture */
-            uploadBuffer.put((byte) (imageData[i] >>> 24));
+            int color = imageData[i];
+            uploadBuffer.put((byte) (color >> 16))
+                    .put((byte) (color >> 8))
+                    .put((byte) color)
+                    .put((byte) (color >>> 24));
         }
 
         uploadBuffer.flip();
@@ -1016,70 +1246,139 @@ public class GlyphManager {
         /* Initialize the background to all black but fully transparent. */
         glyphTextureGraphics.clearRect(0, 0, TEXTURE_SIZE, TEXTURE_SIZE);
 
+        /* Move to the next layer of the texture array, grow the array if all layers are used */
+        if (++currLayer >= layerCount) {
+            resizeGlyphTexture(Math.max(layerCount << 1, INITIAL_LAYER_COUNT));
+        }
+
+        if (headless) {
+            return;
+        }
+
+        clearLayer(currLayer);
+
+        if (sEnableMipmap) {
+            TextRenderType.invalidateMipmaps();
+        }
+    }
+
+    /**
+     * Clear the base level of a layer to transparent at once.
+     *
+     * @param layer the layer index
+     */
+    private void clearLayer(int layer) {
+        if (GL.getCapabilities().GL_ARB_clear_texture) {
+            // null data means zero, this ignores all the framebuffer states
+            GL44.glClearTexSubImage(textureName, 0, 0, 0, layer, TEXTURE_SIZE, TEXTURE_SIZE, 1,
+                    GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+            return;
+        }
+        /* Attached to a draw framebuffer, the states that affect clearing are saved and restored */
+        final int lastFramebuffer = GL11.glGetInteger(GL30.GL_DRAW_FRAMEBUFFER_BINDING);
+        final int framebuffer = GL30.glGenFramebuffers();
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, framebuffer);
+        GL30.glFramebufferTextureLayer(GL30.GL_DRAW_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0,
+                textureName, 0, layer);
+        final boolean scissor = GL11.glIsEnabled(GL11.GL_SCISSOR_TEST);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            final ByteBuffer colorMask = stack.malloc(4);
+            final FloatBuffer clearColor = stack.mallocFloat(4);
+            GL11.glGetBooleanv(GL11.GL_COLOR_WRITEMASK, colorMask);
+            GL11.glGetFloatv(GL11.GL_COLOR_CLEAR_VALUE, clearColor);
+            GL11.glDisable(GL11.GL_SCISSOR_TEST);
+            GL11.glColorMask(true, true, true, true);
+            GL11.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+            GL11.glClear(GL11.GL_COLOR_BUFFER_BIT);
+            GL11.glColorMask(colorMask.get(0) != 0, colorMask.get(1) != 0,
+                    colorMask.get(2) != 0, colorMask.get(3) != 0);
+            GL11.glClearColor(clearColor.get(0), clearColor.get(1), clearColor.get(2), clearColor.get(3));
+        }
+        if (scissor) {
+            GL11.glEnable(GL11.GL_SCISSOR_TEST);
+        }
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, lastFramebuffer);
+        GL30.glDeleteFramebuffers(framebuffer);
+    }
+
+    /**
+     * Allocate a new texture array with given layers, and copy the layers of the old one through a framebuffer.
+     * Textured glyphs only have their layer index, so they remain valid.
+     *
+     * @param layers the new layer count
+     */
+    private void resizeGlyphTexture(int layers) {
+        if (headless) {
+            layerCount = layers;
+            return;
+        }
+        final int oldTexture = textureName;
+
         /* Allocate new OpenGL texture */
         textureGenBuffer.position(0);
         GL11.glGenTextures(textureGenBuffer);
         textureName = textureGenBuffer.get(0);
 
-        /* Load imageBuffer with pixel data ready for transfer to OpenGL texture */
-        //updateImageBuffer(0, 0, TEXTURE_WIDTH, TEXTURE_HEIGHT);
-
         /*
-         * Initialize texture with the now cleared BufferedImage. Using a texture with GL_ALPHA8 internal format may result in
-         * faster rendering since the GPU has to only fetch 1 byte per texel instead of 4 with a regular RGBA texture.
+         * Initialize texture array with RGBA format, so that colored glyphs like emoji can be stored in the same texture,
+         * glyphs are white with alpha.
          */
-        GlStateManager._bindTexture(textureName);
-
-        /* Due to changes in 1.14+, so this ensure pixels are correctly stored from CPU to GPU */
-        /*GlStateManager.pixelStore(GL11.GL_UNPACK_ROW_LENGTH, 0); // 0 is unspecific
-        GlStateManager.pixelStore(GL11.GL_UNPACK_SKIP_ROWS, 0);
-        GlStateManager.pixelStore(GL11.GL_UNPACK_SKIP_PIXELS, 0);
-        GlStateManager.pixelStore(GL11.GL_UNPACK_ALIGNMENT, 4); // 4 is RGBA, has 4 channels*/
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, textureName);
 
         int mipmapLevel = sEnableMipmap ? sMipmapLevel : 0;
 
         if (mipmapLevel >= 0) {
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LEVEL, mipmapLevel);
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MIN_LOD, 0);
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL12.GL_TEXTURE_MAX_LOD, mipmapLevel);
-            GL11.glTexParameterf(GL11.GL_TEXTURE_2D, GL14.GL_TEXTURE_LOD_BIAS, 0.0f);
+            GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL12.GL_TEXTURE_MAX_LEVEL, mipmapLevel);
+            GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL12.GL_TEXTURE_MIN_LOD, 0);
+            GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL12.GL_TEXTURE_MAX_LOD, mipmapLevel);
+            GL11.glTexParameterf(GL30.GL_TEXTURE_2D_ARRAY, GL14.GL_TEXTURE_LOD_BIAS, 0.0f);
         }
 
         for (int level = 0; level <= mipmapLevel; level++) {
-            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, level, GL11.GL_ALPHA4, TEXTURE_SIZE >> level,
-                    TEXTURE_SIZE >> level, 0, GL11.GL_ALPHA, GL11.GL_UNSIGNED_BYTE, (IntBuffer) null);
+            GL12.glTexImage3D(GL30.GL_TEXTURE_2D_ARRAY, level, GL11.GL_RGBA8, TEXTURE_SIZE >> level,
+                    TEXTURE_SIZE >> level, layers, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
         }
 
         /* We set MinMag params here, just call once for a texture */
         if (sAntiAliasing) {
             if (sEnableMipmap) {
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_LINEAR);
+                GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_LINEAR);
             } else {
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+                GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
             }
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+            GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
         } else {
             if (sEnableMipmap) {
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST_MIPMAP_LINEAR);
+                GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST_MIPMAP_LINEAR);
             } else {
-                GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
+                GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
             }
-            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
+            GL11.glTexParameteri(GL30.GL_TEXTURE_2D_ARRAY, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
         }
 
-        /* Auto generate mipmap */
-        if (sEnableMipmap) {
-            GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
+        if (oldTexture != 0) {
+            /* Copy the base level of old layers, attached to a read framebuffer one by one */
+            final int lastFramebuffer = GL11.glGetInteger(GL30.GL_READ_FRAMEBUFFER_BINDING);
+            final int framebuffer = GL30.glGenFramebuffers();
+            GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, framebuffer);
+            for (int layer = 0; layer < layerCount; layer++) {
+                GL30.glFramebufferTextureLayer(GL30.GL_READ_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0,
+                        oldTexture, 0, layer);
+                GL12.glCopyTexSubImage3D(GL30.GL_TEXTURE_2D_ARRAY, 0, 0, 0, layer, 0, 0, TEXTURE_SIZE, TEXTURE_SIZE);
+            }
+            GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, lastFramebuffer);
+            GL30.glDeleteFramebuffers(framebuffer);
+            GL11.glDeleteTextures(oldTexture);
         }
 
-        /* Clear mipmap data, current grayscale value is zero, this is a little inefficient */
-        // 64 here is the max size of a glyph, the max res level is 3, the max config font size is 20
-        final int size = (TEXTURE_SIZE >> 6) * (TEXTURE_SIZE >> 6);
-        for (int i = 0; i < size; i++) {
-            int x = (i & ((TEXTURE_SIZE >> 6) - 1)) << 6;
-            int y = (i / (TEXTURE_SIZE >> 6)) << 6;
-            uploadTexture(x, y, 1 << 6, 1 << 6);
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, 0);
+
+        layerCount = layers;
+        TextRenderType.setTexture(textureName);
+        if (sEnableMipmap) {
+            TextRenderType.invalidateMipmaps();
         }
+        ModernUI.LOGGER.debug(MARKER, "Glyph texture resized to {} layers", layers);
     }
 
     /**
@@ -0,0 +1,164 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.font;
+
+import it.unimi.dsi.fastutil.chars.Char2ObjectArrayMap;
+import it.unimi.dsi.fastutil.chars.Char2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A trie of emoji shortcodes for incremental search. Each word of a shortcode starts a suffix
+ * in the trie, so that "joy" finds {@code face_with_tears_of_joy}, and every node holds the ranked
+ * emoji below it. A query walks the trie once and takes the head of the node's list, there's no
+ * scanning over all names per keystroke.
+ * <p>
+ * Results are ranked by: names starting with the query first, then shorter names, then the
+ * order in the emoji index.
+ *
+ * @since 2.0
+ */
+final class ShortcodeIndex {
+
+    private final Node root;
+
+    private final List<Emoji> emojis;
+
+    ShortcodeIndex(@Nonnull List<Emoji> emojis) {
+        this.emojis = emojis;
+        root = new Node();
+        for (Emoji emoji : emojis) {
+            final String name = emoji.name;
+            final int length = name.length();
+            for (int start = 0; start < length; start++) {
+                if (start != 0 && name.charAt(start - 1) != '_') {
+                    continue;
+                }
+                // rank key, the emoji id in the lower 32 bits
+                final long key = (start == 0 ? 0L : 1L << 62) | (long) length << 32 | emoji.id;
+                Node node = root;
+                for (int i = start; i < length; i++) {
+                    node = node.getOrCreate(name.charAt(i));
+                    node.keys.add(key);
+                }
+            }
+        }
+        root.freeze();
+    }
+
+    /**
+     * Find emoji whose shortcode has a word starting with the query. Leading and trailing
+     * colons are ignored, spaces and hyphens match underscores.
+     *
+     * @param query the text typed by user
+     * @param limit max number of results
+     * @return ranked emoji
+     */
+    @Nonnull
+    public List<Emoji> search(@Nonnull String query, int limit) {
+        final String s = normalize(query);
+        if (s.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Node node = root;
+        for (int i = 0, e = s.length(); i < e; i++) {
+            node = node.children == null ? null : node.children.get(s.charAt(i));
+            if (node == null) {
+                return Collections.emptyList();
+            }
+        }
+        final int[] ids = node.ids;
+        final int count = Math.min(ids.length, limit);
+        final List<Emoji> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(emojis.get(ids[i]));
+        }
+        return results;
+    }
+
+    @Nonnull
+    private static String normalize(@Nonnull String query) {
+        int start = 0;
+        int end = query.length();
+        while (start < end && (query.charAt(start) == ':' || Character.isWhitespace(query.charAt(start)))) {
+            start++;
+        }
+        while (end > start && (query.charAt(end - 1) == ':' || Character.isWhitespace(query.charAt(end - 1)))) {
+            end--;
+        }
+        return query.substring(start, end).toLowerCase(Locale.ROOT).replace(' ', '_').replace('-', '_');
+    }
+
+    private static final class Node {
+
+        private static final int[] EMPTY = new int[0];
+
+        private Char2ObjectMap<Node> children;
+
+        // rank keys while building
+        private LongArrayList keys = new LongArrayList(1);
+
+        // emoji ids sorted by rank, without duplicates
+        private int[] ids = EMPTY;
+
+        @Nonnull
+        Node getOrCreate(char c) {
+            if (children == null) {
+                // most nodes have only one child
+                children = new Char2ObjectArrayMap<>(1);
+            }
+            Node node = children.get(c);
+            if (node == null) {
+                node = new Node();
+                children.put(c, node);
+            }
+            return node;
+        }
+
+        void freeze() {
+            final long[] k = keys.toLongArray();
+            keys = null;
+            if (k.length != 0) {
+                Arrays.sort(k);
+                final IntOpenHashSet seen = new IntOpenHashSet(k.length);
+                final int[] a = new int[k.length];
+                int n = 0;
+                for (long key : k) {
+                    // an emoji can reach the same node from multiple words, keep the best rank
+                    if (seen.add((int) key)) {
+                        a[n++] = (int) key;
+                    }
+                }
+                ids = n == a.length ? a : Arrays.copyOf(a, n);
+            }
+            if (children != null) {
+                for (Node node : children.values()) {
+                    node.freeze();
+                }
+            }
+        }
+    }
+}
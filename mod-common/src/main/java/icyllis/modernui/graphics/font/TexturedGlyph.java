@@ -18,28 +18,20 @@
 
 package icyllis.modernui.graphics.font;
 
-import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.math.Matrix4f;
-import icyllis.modernui.graphics.font.pipeline.TextRenderType;
-import net.minecraft.client.renderer.MultiBufferSource;
 
 import javax.annotation.Nonnull;
 
 /**
- * This class holds information for a glyph about its pre-rendered image in an OpenGL texture. The texture coordinates in
- * this class are normalized in the standard 0.0 - 1.0 OpenGL range.
+ * This class holds information for a glyph about its pre-rendered image in a layer of the OpenGL texture array. The
+ * texture coordinates in this class are normalized in the standard 0.0 - 1.0 OpenGL range, and the layer index is
+ * added to the horizontal coordinates, the text shader splits them.
  *
  * @since 2.0
  */
 public class TexturedGlyph {
 
-    /**
-     * Render type for render type buffer system.
-     */
-    private final TextRenderType renderType;
-    private final TextRenderType seeThroughType;
-
     /**
      * The horizontal advance in high-precision pixels of this glyph.
      */
@@ -76,7 +68,7 @@ public class TexturedGlyph {
     private final float height;
 
     /**
-     * The horizontal texture coordinate of the upper-left corner.
+     * The horizontal texture coordinate of the upper-left corner, plus the layer index.
      */
     private final float u1;
 
@@ -86,7 +78,7 @@ public class TexturedGlyph {
     private final float v1;
 
     /**
-     * The horizontal texture coordinate of the lower-right corner.
+     * The horizontal texture coordinate of the lower-right corner, plus the layer index.
      */
     private final float u2;
 
@@ -95,22 +87,19 @@ public class TexturedGlyph {
      */
     private final float v2;
 
-    public TexturedGlyph(int textureName, float advance, float baselineX, float baselineY, float width, float height, float u1, float v1, float u2, float v2) {
-        renderType = TextRenderType.getOrCacheType(textureName, false);
-        seeThroughType = TextRenderType.getOrCacheType(textureName, true);
+    public TexturedGlyph(int layer, float advance, float baselineX, float baselineY, float width, float height, float u1, float v1, float u2, float v2) {
         this.advance = advance;
         this.baselineX = baselineX;
         this.baselineY = baselineY;
         this.width = width;
         this.height = height;
-        this.u1 = u1;
+        this.u1 = layer + u1;
         this.v1 = v1;
-        this.u2 = u2;
+        this.u2 = layer + u2;
         this.v2 = v2;
     }
 
     public void drawGlyph(@Nonnull VertexConsumer builder, float x, float y, int r, int g, int b, int a) {
-        RenderSystem.bindTexture(renderType.textureName);
         x += baselineX;
         y += baselineY;
         builder.vertex(x, y, 0).color(r, g, b, a).uv(u1, v1).endVertex();
@@ -119,13 +108,12 @@ public class TexturedGlyph {
         builder.vertex(x + width, y, 0).color(r, g, b, a).uv(u2, v1).endVertex();
     }
 
-    public void drawGlyph(Matrix4f matrix, @Nonnull MultiBufferSource buffer, float x, float y, int r, int g, int b, int a, boolean seeThrough, int packedLight) {
-        VertexConsumer builder = buffer.getBuffer(seeThrough ? seeThroughType : renderType);
+    public void drawGlyph(Matrix4f matrix, @Nonnull VertexConsumer builder, float x, float y, float z, int r, int g, int b, int a, int packedLight) {
         x += baselineX;
         y += baselineY;
-        builder.vertex(matrix, x, y, 0).color(r, g, b, a).uv(u1, v1).uv2(packedLight).endVertex();
-        builder.vertex(matrix, x, y + height, 0).color(r, g, b, a).uv(u1, v2).uv2(packedLight).endVertex();
-        builder.vertex(matrix, x + width, y + height, 0).color(r, g, b, a).uv(u2, v2).uv2(packedLight).endVertex();
-        builder.vertex(matrix, x + width, y, 0).color(r, g, b, a).uv(u2, v1).uv2(packedLight).endVertex();
+        builder.vertex(matrix, x, y, z).color(r, g, b, a).uv(u1, v1).uv2(packedLight).endVertex();
+        builder.vertex(matrix, x, y + height, z).color(r, g, b, a).uv(u1, v2).uv2(packedLight).endVertex();
+        builder.vertex(matrix, x + width, y + height, z).color(r, g, b, a).uv(u2, v2).uv2(packedLight).endVertex();
+        builder.vertex(matrix, x + width, y, z).color(r, g, b, a).uv(u2, v1).uv2(packedLight).endVertex();
     }
 }
@@ -32,6 +32,8 @@ public class EffectRenderType extends RenderType {
     private static final EffectRenderType INSTANCE = new EffectRenderType();
     private static final EffectRenderType SEE_THROUGH = new EffectRenderType(ModernUI.ID + ":text_effect_see_through");
 
+    private static boolean sRegistered;
+
     private static final ImmutableList<RenderStateShard> STATES;
     private static final ImmutableList<RenderStateShard> SEE_THROUGH_STATES;
 
@@ -93,6 +95,11 @@ public class EffectRenderType extends RenderType {
     }
 
     public static EffectRenderType getRenderType(boolean seeThrough) {
+        if (!sRegistered) {
+            TextRenderType.registerFixedBuffer(INSTANCE);
+            TextRenderType.registerFixedBuffer(SEE_THROUGH);
+            sRegistered = true;
+        }
         return seeThrough ? SEE_THROUGH : INSTANCE;
     }
 
@@ -99,6 +99,48 @@ public class TextRenderEffect {
         return seeThrough ? seeThroughType : normalType;
     }*/
 
+    /**
+     * Draw the effect of a glyph
+     *
+     * @param builder vertex builder
+     * @param effect  the effect type
+     * @param start   start x of the effect
+     * @param end     end x of the effect
+     * @param y       baseline y
+     */
+    public static void drawEffect(@Nonnull VertexConsumer builder, int effect, float start, float end, float y,
+                                  int r, int g, int b, int a) {
+        if (effect == UNDERLINE)
+            Underline.drawEffect(builder, start, end, y, r, g, b, a);
+        else if (effect == STRIKETHROUGH)
+            Strikethrough.drawEffect(builder, start, end, y, r, g, b, a);
+        else if (effect == UNDERLINE_STRIKETHROUGH)
+            UnderlineStrikethrough.drawEffect(builder, start, end, y, r, g, b, a);
+    }
+
+    /**
+     * Draw the effect of a glyph
+     *
+     * @param matrix  matrix
+     * @param builder vertex builder
+     * @param effect  the effect type
+     * @param start   start x of the effect
+     * @param end     end x of the effect
+     * @param y       baseline y
+     * @param z       offset z, added to {@link #EFFECT_DEPTH}
+     * @param light   packed light
+     */
+    public static void drawEffect(Matrix4f matrix, @Nonnull VertexConsumer builder, int effect, float start, float end,
+                                  float y, float z, int r, int g, int b, int a, int light) {
+        z += EFFECT_DEPTH;
+        if (effect == UNDERLINE)
+            Underline.drawEffect(matrix, builder, start, end, y, z, r, g, b, a, light);
+        else if (effect == STRIKETHROUGH)
+            Strikethrough.drawEffect(matrix, builder, start, end, y, z, r, g, b, a, light);
+        else if (effect == UNDERLINE_STRIKETHROUGH)
+            UnderlineStrikethrough.drawEffect(matrix, builder, start, end, y, z, r, g, b, a, light);
+    }
+
     public static class Underline {
 
         public static void drawEffect(@Nonnull VertexConsumer builder, float start, float end, float y, int r, int g, int b, int a) {
@@ -109,12 +151,12 @@ public class TextRenderEffect {
             builder.vertex(start, y, EFFECT_DEPTH).color(r, g, b, a).endVertex();
         }
 
-        public static void drawEffect(Matrix4f matrix, @Nonnull VertexConsumer builder, float start, float end, float y, int r, int g, int b, int a, int light) {
+        public static void drawEffect(Matrix4f matrix, @Nonnull VertexConsumer builder, float start, float end, float y, float z, int r, int g, int b, int a, int light) {
             y += UNDERLINE_OFFSET;
-            builder.vertex(matrix, start, y + UNDERLINE_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y + UNDERLINE_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, start, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y + UNDERLINE_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y + UNDERLINE_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y, z).color(r, g, b, a).uv2(light).endVertex();
         }
     }
 
@@ -128,12 +170,12 @@ public class TextRenderEffect {
             builder.vertex(start, y, EFFECT_DEPTH).color(r, g, b, a).endVertex();
         }
 
-        public static void drawEffect(Matrix4f matrix, @Nonnull VertexConsumer builder, float start, float end, float y, int r, int g, int b, int a, int light) {
+        public static void drawEffect(Matrix4f matrix, @Nonnull VertexConsumer builder, float start, float end, float y, float z, int r, int g, int b, int a, int light) {
             y += STRIKETHROUGH_OFFSET;
-            builder.vertex(matrix, start, y + STRIKETHROUGH_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y + STRIKETHROUGH_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, start, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y + STRIKETHROUGH_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y + STRIKETHROUGH_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y, z).color(r, g, b, a).uv2(light).endVertex();
         }
     }
 
@@ -152,17 +194,17 @@ public class TextRenderEffect {
             builder.vertex(start, y, EFFECT_DEPTH).color(r, g, b, a).endVertex();
         }
 
-        public static void drawEffect(Matrix4f matrix, @Nonnull VertexConsumer builder, float start, float end, float y, int r, int g, int b, int a, int light) {
+        public static void drawEffect(Matrix4f matrix, @Nonnull VertexConsumer builder, float start, float end, float y, float z, int r, int g, int b, int a, int light) {
             y += UNDERLINE_OFFSET;
-            builder.vertex(matrix, start, y + UNDERLINE_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y + UNDERLINE_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, start, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y + UNDERLINE_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y + UNDERLINE_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y, z).color(r, g, b, a).uv2(light).endVertex();
             y += UNDERLINE_STRIKETHROUGH_OFFSET;
-            builder.vertex(matrix, start, y + STRIKETHROUGH_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y + STRIKETHROUGH_THICKNESS, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, end, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
-            builder.vertex(matrix, start, y, EFFECT_DEPTH).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y + STRIKETHROUGH_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y + STRIKETHROUGH_THICKNESS, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, end, y, z).color(r, g, b, a).uv2(light).endVertex();
+            builder.vertex(matrix, start, y, z).color(r, g, b, a).uv2(light).endVertex();
         }
     }
 }
@@ -24,22 +24,31 @@ import com.mojang.blaze3d.vertex.BufferUploader;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.math.Matrix4f;
+import icyllis.modernui.graphics.DrawStats;
+import icyllis.modernui.graphics.RenderCore;
 import icyllis.modernui.graphics.font.GlyphManager;
+import icyllis.modernui.graphics.font.TexturedGlyph;
+import icyllis.modernui.graphics.shader.program.TextShader;
+import icyllis.modernui.graphics.text.FormattingStyle;
+import icyllis.modernui.util.FrameProfiler;
 import net.minecraft.client.renderer.MultiBufferSource;
-import net.minecraft.client.renderer.Sheets;
 import org.lwjgl.opengl.GL11;
 
 import javax.annotation.Nonnull;
+import java.util.Random;
 
 /**
- * The complete node, including final rendering results and layout information
+ * The complete node, including final rendering results and layout information.
+ * Glyphs are stored in parallel arrays sorted by string index, rather than an
+ * object per glyph.
  */
 public class TextRenderNode {
 
     /**
      * Sometimes naive, too simple
      */
-    public static final TextRenderNode EMPTY = new TextRenderNode(new GlyphRender[0], 0, false) {
+    public static final TextRenderNode EMPTY = new TextRenderNode(new Object[0], new float[0], new int[0],
+            new byte[0], new int[0], 0, false) {
 
         @Override
         public float drawText(@Nonnull BufferBuilder builder, @Nonnull String raw, float x, float y, int r, int g, int b, int a) {
@@ -48,7 +57,8 @@ public class TextRenderNode {
 
         @Override
         public float drawText(Matrix4f matrix, MultiBufferSource buffer, @Nonnull CharSequence raw, float x, float y,
-                              int r, int g, int b, int a, boolean isShadow, boolean seeThrough, int colorBackground, int packedLight) {
+                              int r, int g, int b, int a, boolean dropShadow, float shadowLifting, boolean seeThrough,
+                              int colorBackground, int packedLight) {
             return 0;
         }
     };
@@ -63,16 +73,54 @@ public class TextRenderNode {
      */
     public static final int VANILLA_BASELINE_OFFSET = 6;
 
+    /**
+     * Offset X and Y of drop shadow.
+     */
+    public static final float SHADOW_OFFSET = 0.8f;
 
     /**
-     * All glyphs to render.
+     * Change to params color
      */
-    public final GlyphRender[] glyphs;
+    public static final int USE_INPUT_COLOR = FormattingStyle.NO_SPECIFIED_COLOR;
 
-    /*
-     * Switch current color
+    /**
+     * Glyph types, stored in the flags with the effect
      */
-    //private final ColorStateInfo[] colors;
+    public static final byte TYPE_STANDARD = 0;
+    public static final byte TYPE_DIGIT = 1 << 2;
+    public static final byte TYPE_RANDOM = 2 << 2;
+
+    public static final int EFFECT_MASK = 0x3;
+    public static final int TYPE_MASK = 0x3 << 2;
+
+    private static final Random RANDOM = new Random();
+
+    /**
+     * For standard glyphs, the {@link TexturedGlyph}; for digit and random glyphs,
+     * the cached {@code TexturedGlyph[]} of digits 0-9 in GlyphManager.
+     */
+    private final Object[] glyphs;
+
+    /**
+     * Offset X of each glyph to the start of the text
+     */
+    private final float[] offsets;
+
+    /**
+     * String index of each glyph, in the original string with formatting codes
+     */
+    private final int[] stringIndices;
+
+    /**
+     * Type and effect of each glyph
+     */
+    private final byte[] flags;
+
+    /**
+     * Pairs of glyph index and the RGB color to switch to from that glyph,
+     * or {@link #USE_INPUT_COLOR}, sorted by glyph index.
+     */
+    private final int[] colors;
 
     /**
      * Total advance of this text node.
@@ -81,26 +129,89 @@ public class TextRenderNode {
 
     private final boolean hasEffect;
 
-    public TextRenderNode(GlyphRender[] glyphs, float advance, boolean hasEffect) {
+    public TextRenderNode(@Nonnull Object[] glyphs, @Nonnull float[] offsets, @Nonnull int[] stringIndices,
+                          @Nonnull byte[] flags, @Nonnull int[] colors, float advance, boolean hasEffect) {
         this.glyphs = glyphs;
-        //this.colors = colors;
+        this.offsets = offsets;
+        this.stringIndices = stringIndices;
+        this.flags = flags;
+        this.colors = colors;
         this.advance = advance;
         this.hasEffect = hasEffect;
     }
 
+    /**
+     * @return the number of glyphs
+     */
+    public int getGlyphCount() {
+        return flags.length;
+    }
+
+    /**
+     * @param i glyph index
+     * @return the string index of the glyph
+     */
+    public int getStringIndex(int i) {
+        return stringIndices[i];
+    }
+
+    /**
+     * @param i glyph index
+     * @return offset X of the glyph to the start of the text
+     */
+    public float getOffsetX(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * @param i glyph index
+     * @return the advance of the glyph
+     */
+    public float getAdvance(int i) {
+        if ((flags[i] & TYPE_MASK) == TYPE_STANDARD) {
+            return ((TexturedGlyph) glyphs[i]).advance;
+        }
+        return ((TexturedGlyph[]) glyphs[i])[0].advance;
+    }
+
+    @Nonnull
+    private TexturedGlyph getGlyph(int i, @Nonnull CharSequence raw) {
+        final Object glyph = glyphs[i];
+        switch (flags[i] & TYPE_MASK) {
+            case TYPE_DIGIT:
+                return ((TexturedGlyph[]) glyph)[raw.charAt(stringIndices[i]) - '0'];
+            case TYPE_RANDOM: {
+                TexturedGlyph[] digits = (TexturedGlyph[]) glyph;
+                return digits[RANDOM.nextInt(digits.length)];
+            }
+            default:
+                return (TexturedGlyph) glyph;
+        }
+    }
+
     public float drawText(@Nonnull BufferBuilder builder, @Nonnull String raw, float x, float y, int r, int g, int b, int a) {
         final int startR = r;
         final int startG = g;
         final int startB = b;
+        final boolean stats = DrawStats.begin();
 
         y += BASELINE_OFFSET;
         x -= GlyphManager.GLYPH_OFFSET;
         RenderSystem.enableTexture();
 
-        for (GlyphRender glyph : glyphs) {
-            if (glyph.color != GlyphRender.COLOR_NO_CHANGE) {
-                int color = glyph.color;
-                if (color == GlyphRender.USE_INPUT_COLOR) {
+        final int count = flags.length;
+        final int[] colors = this.colors;
+        int colorIndex = 0;
+        // all glyphs are in the same texture array, so the whole text is one draw call
+        TextRenderType.bindTexture();
+        FrameProfiler.count(FrameProfiler.TEXTURE_BIND);
+        RenderCore.useShader(TextShader.INSTANCE);
+        builder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR_TEX);
+        for (int i = 0; i < count; i++) {
+            if (colorIndex < colors.length && colors[colorIndex] == i) {
+                int color = colors[colorIndex + 1];
+                colorIndex += 2;
+                if (color == USE_INPUT_COLOR) {
                     r = startR;
                     g = startG;
                     b = startB;
@@ -110,8 +221,13 @@ public class TextRenderNode {
                     b = color & 0xff;
                 }
             }
-            glyph.drawGlyph(builder, raw, x, y, r, g, b, a);
+            getGlyph(i, raw).drawGlyph(builder, x + offsets[i], y, r, g, b, a);
         }
+        builder.end();
+        BufferUploader.end(builder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+        RenderCore.releaseShader();
+        TextRenderType.unbindTexture();
 
         if (hasEffect) {
             r = startR;
@@ -120,10 +236,12 @@ public class TextRenderNode {
             x += GlyphManager.GLYPH_OFFSET;
             RenderSystem.disableTexture();
             builder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
-            for (GlyphRender glyph : glyphs) {
-                if (glyph.color != GlyphRender.COLOR_NO_CHANGE) {
-                    int color = glyph.color;
-                    if (color == GlyphRender.USE_INPUT_COLOR) {
+            colorIndex = 0;
+            for (int i = 0; i < count; i++) {
+                if (colorIndex < colors.length && colors[colorIndex] == i) {
+                    int color = colors[colorIndex + 1];
+                    colorIndex += 2;
+                    if (color == USE_INPUT_COLOR) {
                         r = startR;
                         g = startG;
                         b = startB;
@@ -133,75 +251,58 @@ public class TextRenderNode {
                         b = color & 0xff;
                     }
                 }
-                glyph.drawEffect(builder, x, y, r, g, b, a);
+                int effect = flags[i] & EFFECT_MASK;
+                if (effect != TextRenderEffect.NO_EFFECT) {
+                    float start = x + offsets[i];
+                    TextRenderEffect.drawEffect(builder, effect, start, start + getAdvance(i), y, r, g, b, a);
+                }
             }
             builder.end();
             BufferUploader.end(builder);
+            FrameProfiler.count(FrameProfiler.DRAW_CALL);
         }
+        DrawStats.endText(raw, stats);
         return advance;
     }
 
+    /**
+     * Draw the text with a buffer source. If drop shadow, the shadow quads of all glyphs are written
+     * before the glyph quads into the same vertex consumer, and the text is lifted on Z axis over its
+     * shadow, rather than drawing the node twice with a translated copy of the matrix. Shadows go
+     * first as a whole, otherwise the shadow of a glyph would overdraw the previous glyph when depth
+     * test is disabled.
+     *
+     * @param shadowLifting offset Z of the text over its shadow, used if drop shadow
+     * @return the advance
+     */
     public float drawText(Matrix4f matrix, MultiBufferSource buffer, @Nonnull CharSequence raw, float x, float y,
-                          int r, int g, int b, int a, boolean isShadow, boolean seeThrough, int colorBackground, int packedLight) {
-        final int startR = r;
-        final int startG = g;
-        final int startB = b;
-        //TODO mixin GameRenderer to disable depth test
-        if (buffer instanceof MultiBufferSource.BufferSource)
-            ((MultiBufferSource.BufferSource) buffer).endBatch(Sheets.signSheet());
+                          int r, int g, int b, int a, boolean dropShadow, float shadowLifting, boolean seeThrough,
+                          int colorBackground, int packedLight) {
+        // text render types are fixed buffers of the level's buffer source, they are drawn after sign sheet
+        // at the end of the batch, see TextRenderType.registerFixedBuffer()
 
         y += VANILLA_BASELINE_OFFSET;
         x -= GlyphManager.GLYPH_OFFSET;
+        final float z = dropShadow ? shadowLifting : 0;
 
-        for (GlyphRender glyph : glyphs) {
-            if (glyph.color != GlyphRender.COLOR_NO_CHANGE) {
-                int color = glyph.color;
-                if (color == GlyphRender.USE_INPUT_COLOR) {
-                    r = startR;
-                    g = startG;
-                    b = startB;
-                } else {
-                    r = color >> 16 & 0xff;
-                    g = color >> 8 & 0xff;
-                    b = color & 0xff;
-                    if (isShadow) {
-                        r >>= 2;
-                        g >>= 2;
-                        b >>= 2;
-                    }
-                }
-            }
-            glyph.drawGlyph(matrix, buffer, raw, x, y, r, g, b, a, seeThrough, packedLight);
+        // all glyphs share the render type, since they are in the same texture array
+        VertexConsumer builder = buffer.getBuffer(TextRenderType.getRenderType(seeThrough));
+        if (dropShadow) {
+            drawGlyphs(matrix, builder, raw, x + SHADOW_OFFSET, y + SHADOW_OFFSET, 0, r, g, b, a,
+                    true, packedLight);
         }
+        drawGlyphs(matrix, builder, raw, x, y, z, r, g, b, a, false, packedLight);
 
-        VertexConsumer builder = null;
+        builder = null;
         x += GlyphManager.GLYPH_OFFSET;
 
         if (hasEffect) {
-            r = startR;
-            g = startG;
-            b = startB;
             builder = buffer.getBuffer(EffectRenderType.getRenderType(seeThrough));
-            for (GlyphRender glyph : glyphs) {
-                if (glyph.color != GlyphRender.COLOR_NO_CHANGE) {
-                    int color = glyph.color;
-                    if (color == GlyphRender.USE_INPUT_COLOR) {
-                        r = startR;
-                        g = startG;
-                        b = startB;
-                    } else {
-                        r = color >> 16 & 0xff;
-                        g = color >> 8 & 0xff;
-                        b = color & 0xff;
-                        if (isShadow) {
-                            r >>= 2;
-                            g >>= 2;
-                            b >>= 2;
-                        }
-                    }
-                }
-                glyph.drawEffect(matrix, builder, x, y, r, g, b, a, packedLight);
+            if (dropShadow) {
+                drawEffects(matrix, builder, x + SHADOW_OFFSET, y + SHADOW_OFFSET, 0, r, g, b, a,
+                        true, packedLight);
             }
+            drawEffects(matrix, builder, x, y, z, r, g, b, a, false, packedLight);
         }
 
         if (colorBackground != 0) {
@@ -212,12 +313,91 @@ public class TextRenderNode {
             b = colorBackground & 0xff;
             if (builder == null)
                 builder = buffer.getBuffer(EffectRenderType.getRenderType(seeThrough));
-            builder.vertex(matrix, x - 1, y + 9, TextRenderEffect.EFFECT_DEPTH).color(r, g, b, a).uv2(packedLight).endVertex();
-            builder.vertex(matrix, x + advance + 1, y + 9, TextRenderEffect.EFFECT_DEPTH).color(r, g, b, a).uv2(packedLight).endVertex();
-            builder.vertex(matrix, x + advance + 1, y, TextRenderEffect.EFFECT_DEPTH).color(r, g, b, a).uv2(packedLight).endVertex();
-            builder.vertex(matrix, x - 1, y, TextRenderEffect.EFFECT_DEPTH).color(r, g, b, a).uv2(packedLight).endVertex();
+            if (dropShadow) {
+                drawBackground(matrix, builder, x + SHADOW_OFFSET, y + SHADOW_OFFSET, 0, r, g, b, a, packedLight);
+            }
+            drawBackground(matrix, builder, x, y, z, r, g, b, a, packedLight);
         }
 
         return advance;
     }
+
+    private void drawGlyphs(Matrix4f matrix, @Nonnull VertexConsumer builder, @Nonnull CharSequence raw,
+                            float x, float y, float z, final int startR, final int startG, final int startB, int a,
+                            boolean shadow, int packedLight) {
+        int r = startR;
+        int g = startG;
+        int b = startB;
+        final int count = flags.length;
+        final int[] colors = this.colors;
+        int colorIndex = 0;
+        for (int i = 0; i < count; i++) {
+            if (colorIndex < colors.length && colors[colorIndex] == i) {
+                int color = colors[colorIndex + 1];
+                colorIndex += 2;
+                if (color == USE_INPUT_COLOR) {
+                    r = startR;
+                    g = startG;
+                    b = startB;
+                } else {
+                    r = color >> 16 & 0xff;
+                    g = color >> 8 & 0xff;
+                    b = color & 0xff;
+                }
+            }
+            if (shadow) {
+                getGlyph(i, raw).drawGlyph(matrix, builder, x + offsets[i], y, z, r >> 2, g >> 2, b >> 2, a,
+                        packedLight);
+            } else {
+                getGlyph(i, raw).drawGlyph(matrix, builder, x + offsets[i], y, z, r, g, b, a, packedLight);
+            }
+        }
+    }
+
+    private void drawEffects(Matrix4f matrix, @Nonnull VertexConsumer builder, float x, float y, float z,
+                             final int startR, final int startG, final int startB, int a,
+                             boolean shadow, int packedLight) {
+        int r = startR;
+        int g = startG;
+        int b = startB;
+        final int count = flags.length;
+        final int[] colors = this.colors;
+        int colorIndex = 0;
+        for (int i = 0; i < count; i++) {
+            if (colorIndex < colors.length && colors[colorIndex] == i) {
+                int color = colors[colorIndex + 1];
+                colorIndex += 2;
+                if (color == USE_INPUT_COLOR) {
+                    r = startR;
+                    g = startG;
+                    b = startB;
+                } else {
+                    r = color >> 16 & 0xff;
+                    g = color >> 8 & 0xff;
+                    b = color & 0xff;
+                }
+            }
+            int effect = flags[i] & EFFECT_MASK;
+            if (effect != TextRenderEffect.NO_EFFECT) {
+                float start = x + offsets[i];
+                float end = start + getAdvance(i);
+                if (shadow) {
+                    TextRenderEffect.drawEffect(matrix, builder, effect, start, end, y, z,
+                            r >> 2, g >> 2, b >> 2, a, packedLight);
+                } else {
+                    TextRenderEffect.drawEffect(matrix, builder, effect, start, end, y, z,
+                            r, g, b, a, packedLight);
+                }
+            }
+        }
+    }
+
+    private void drawBackground(Matrix4f matrix, @Nonnull VertexConsumer builder, float x, float y, float z,
+                                int r, int g, int b, int a, int packedLight) {
+        z += TextRenderEffect.EFFECT_DEPTH;
+        builder.vertex(matrix, x - 1, y + 9, z).color(r, g, b, a).uv2(packedLight).endVertex();
+        builder.vertex(matrix, x + advance + 1, y + 9, z).color(r, g, b, a).uv2(packedLight).endVertex();
+        builder.vertex(matrix, x + advance + 1, y, z).color(r, g, b, a).uv2(packedLight).endVertex();
+        builder.vertex(matrix, x - 1, y, z).color(r, g, b, a).uv2(packedLight).endVertex();
+    }
 }
@@ -21,26 +21,52 @@ package icyllis.modernui.graphics.font.pipeline;
 import com.google.common.collect.ImmutableList;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
-import it.unimi.dsi.fastutil.ints.Int2ObjectLinkedOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.RenderCore;
+import icyllis.modernui.graphics.shader.program.TextShader;
+import icyllis.modernui.mcimpl.mixin.AccessBufferSource;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.RenderBuffers;
 import net.minecraft.client.renderer.RenderStateShard;
 import net.minecraft.client.renderer.RenderType;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL30;
 
+import javax.annotation.Nonnull;
+import java.util.Map;
 import java.util.Objects;
 
+/**
+ * Glyphs are stored in the layers of one texture array, so all text shares one render type,
+ * and one for see-through text.
+ */
 public class TextRenderType extends RenderType {
 
+    private static final TextRenderType INSTANCE;
+    private static final TextRenderType SEE_THROUGH;
+
+    /**
+     * The OpenGL texture array that contains all glyph images, see GlyphManager
+     */
+    private static int sTexture;
+
     /**
-     * Texture id to render type map
+     * Glyphs were uploaded since mipmaps were generated last time
      */
-    //TODO remove some old textures depend on put order
-    private static final Int2ObjectMap<TextRenderType> TYPES             = new Int2ObjectLinkedOpenHashMap<>();
-    private static final Int2ObjectMap<TextRenderType> SEE_THROUGH_TYPES = new Int2ObjectLinkedOpenHashMap<>();
+    private static boolean sMipmapDirty;
+
+    private static boolean sRegistered;
 
     /**
-     * Only the texture id is different, the rest state are same
+     * Fixed buffers of the buffer source that renders the level, see {@link #registerFixedBuffer(RenderType)}
+     */
+    private static Map<RenderType, BufferBuilder> sFixedBuffers;
+
+    /**
+     * The texture is bound in the setup, the rest states are same
      */
     private static final ImmutableList<RenderStateShard> GENERAL_STATES;
     private static final ImmutableList<RenderStateShard> SEE_THROUGH_STATES;
@@ -78,56 +104,103 @@ public class TextRenderType extends RenderType {
                 RenderStateShard.COLOR_WRITE,
                 RenderStateShard.DEFAULT_LINE
         );
+        INSTANCE = new TextRenderType(ModernUI.ID + ":text", GENERAL_STATES);
+        SEE_THROUGH = new TextRenderType(ModernUI.ID + ":text_see_through", SEE_THROUGH_STATES);
     }
 
     private final int hashCode;
 
-    /**
-     * The OpenGL texture ID that contains this glyph image.
-     */
-    public final int textureName;
-
-    private TextRenderType(int textureName) {
-        super("modern_text",
+    private TextRenderType(String t, ImmutableList<RenderStateShard> states) {
+        super(t,
                 DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP,
                 GL11.GL_QUADS, 256, false, true,
                 () -> {
-                    GENERAL_STATES.forEach(RenderStateShard::setupRenderState);
-                    RenderSystem.enableTexture();
-                    RenderSystem.bindTexture(textureName);
+                    states.forEach(RenderStateShard::setupRenderState);
+                    bindTexture();
+                    RenderCore.useShader(TextShader.WORLD);
+                    // GUI text has no fog, which is EXP2 with zero density, see FogRenderer.setupNoFog()
+                    TextShader.WORLD.setFogMode(GL11.glIsEnabled(GL11.GL_FOG) ?
+                            GL11.glGetInteger(GL11.GL_FOG_MODE) : 0);
                 },
-                () -> GENERAL_STATES.forEach(RenderStateShard::clearRenderState));
-        this.textureName = textureName;
-        this.hashCode = Objects.hash(super.hashCode(), GENERAL_STATES, textureName);
+                () -> {
+                    RenderCore.releaseShader();
+                    unbindTexture();
+                    states.forEach(RenderStateShard::clearRenderState);
+                });
+        this.hashCode = Objects.hash(super.hashCode(), states);
     }
 
-    private TextRenderType(int textureName, String t) {
-        super(t,
-                DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP,
-                GL11.GL_QUADS, 256, false, true,
-                () -> {
-                    SEE_THROUGH_STATES.forEach(RenderStateShard::setupRenderState);
-                    RenderSystem.enableTexture();
-                    RenderSystem.bindTexture(textureName);
-                },
-                () -> SEE_THROUGH_STATES.forEach(RenderStateShard::clearRenderState));
-        this.textureName = textureName;
-        this.hashCode = Objects.hash(super.hashCode(), SEE_THROUGH_STATES, textureName);
+    @Nonnull
+    public static TextRenderType getRenderType(boolean seeThrough) {
+        if (!sRegistered) {
+            registerFixedBuffer(INSTANCE);
+            registerFixedBuffer(SEE_THROUGH);
+            sRegistered = true;
+        }
+        return seeThrough ? SEE_THROUGH : INSTANCE;
+    }
+
+    /**
+     * Bind the glyph texture array to texture unit 0, the text shaders sample it.
+     * Mipmaps of all layers are regenerated here if any glyph was uploaded.
+     */
+    public static void bindTexture() {
+        RenderSystem.activeTexture(GL13.GL_TEXTURE0);
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, sTexture);
+        if (sMipmapDirty) {
+            GL30.glGenerateMipmap(GL30.GL_TEXTURE_2D_ARRAY);
+            sMipmapDirty = false;
+        }
+    }
+
+    public static void unbindTexture() {
+        RenderSystem.activeTexture(GL13.GL_TEXTURE0);
+        GL11.glBindTexture(GL30.GL_TEXTURE_2D_ARRAY, 0);
+    }
+
+    /**
+     * Called by GlyphManager after glyphs are uploaded to the base level, mipmaps will be
+     * generated before next draw, so a batch of new glyphs only costs one generation.
+     */
+    public static void invalidateMipmaps() {
+        sMipmapDirty = true;
     }
 
-    public static TextRenderType getOrCacheType(int textureName, boolean seeThrough) {
-        if (seeThrough) {
-            return SEE_THROUGH_TYPES.computeIfAbsent(textureName, n -> new TextRenderType(n, "modern_text_see_through"));
+    /**
+     * Called by GlyphManager when the texture array is (re)allocated with more layers.
+     *
+     * @param texture the OpenGL texture array
+     */
+    public static void setTexture(int texture) {
+        sTexture = texture;
+    }
+
+    /**
+     * Register a render type as a fixed buffer of the buffer source that renders the level.
+     * Fixed buffers are not flushed when other render types are requested, and they are
+     * drawn in insertion order at the end of the batch, that is after the sign sheet. So text
+     * of all signs and name tags in a frame is drawn once per render type over sign models,
+     * without flushing the sign sheet before each string.
+     *
+     * @param type the text or effect render type
+     */
+    static void registerFixedBuffer(@Nonnull RenderType type) {
+        if (sFixedBuffers == null) {
+            RenderBuffers buffers = Minecraft.getInstance().renderBuffers();
+            if (buffers == null) {
+                return;
+            }
+            sFixedBuffers = ((AccessBufferSource) buffers.bufferSource()).getFixedBuffers();
         }
-        return TYPES.computeIfAbsent(textureName, TextRenderType::new);
+        sFixedBuffers.putIfAbsent(type, new BufferBuilder(type.bufferSize()));
     }
 
     public static void clearTextures() {
-        for (Int2ObjectMap.Entry<TextRenderType> entry : TYPES.int2ObjectEntrySet()) {
-            GlStateManager._deleteTexture(entry.getIntKey());
+        if (sTexture != 0) {
+            GlStateManager._deleteTexture(sTexture);
+            sTexture = 0;
+            sMipmapDirty = false;
         }
-        TYPES.clear();
-        SEE_THROUGH_TYPES.clear();
     }
 
     @Override
@@ -0,0 +1,229 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.shader;
+
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.RenderCore;
+import net.minecraft.Util;
+import net.minecraft.resources.ResourceLocation;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Cache of linked program binaries under the cache directory, one file per program. A binary is
+ * only valid for the same sources on the same driver, so each file is keyed by a digest of both
+ * sources and the GL vendor, renderer and version strings. If program binary is not supported, or
+ * the driver rejects a cached binary, programs are compiled from sources as usual.
+ *
+ * @since 2.0
+ */
+final class ProgramBinaryCache {
+
+    private static final int MAGIC = 0x4D55_5042; // MUPB
+    private static final int VERSION = 1;
+
+    private static final String DIRECTORY = "shaders";
+    private static final String SUFFIX = ".bin";
+
+    private static final int DIGEST_LENGTH = 20;
+
+    /**
+     * Sanity limit of a program binary
+     */
+    private static final int MAX_LENGTH = 1 << 24;
+
+    private static boolean sInitialized;
+    private static boolean sSupported;
+
+    /**
+     * Vendor, renderer and version, binaries are invalidated when the driver changes
+     */
+    private static byte[] sDriver;
+
+    private ProgramBinaryCache() {
+    }
+
+    private static boolean isSupported() {
+        if (!sInitialized) {
+            GLCapabilities capabilities = GL.getCapabilities();
+            sSupported = (capabilities.OpenGL41 || capabilities.GL_ARB_get_program_binary) &&
+                    GL11.glGetInteger(GL41.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+            sDriver = (GL11.glGetString(GL11.GL_VENDOR) + '\n' + GL11.glGetString(GL11.GL_RENDERER) + '\n' +
+                    GL11.glGetString(GL11.GL_VERSION)).getBytes(StandardCharsets.UTF_8);
+            sInitialized = true;
+            if (!sSupported) {
+                ModernUI.LOGGER.debug(RenderCore.MARKER, "Program binary is not supported, shaders will be " +
+                        "compiled from sources");
+            }
+        }
+        return sSupported;
+    }
+
+    /**
+     * Compute the cache key of a program.
+     *
+     * @param vertSource vertex shader source
+     * @param fragSource fragment shader source
+     * @return the digest, or {@code null} if program binary is not supported
+     */
+    @Nullable
+    static byte[] digest(@Nonnull byte[] vertSource, @Nonnull byte[] fragSource) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(vertSource);
+            digest.update((byte) 0);
+            digest.update(fragSource);
+            digest.update((byte) 0);
+            digest.update(sDriver);
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create a program from the cached binary.
+     *
+     * @param vert   vertex shader location
+     * @param frag   fragment shader location
+     * @param digest the key from {@link #digest(byte[], byte[])}
+     * @return the linked program, or 0 if there's no valid binary
+     */
+    static int load(@Nonnull ResourceLocation vert, @Nonnull ResourceLocation frag, @Nonnull byte[] digest) {
+        final Path file = getFile(vert, frag);
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        final int format;
+        final ByteBuffer binary;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return 0;
+            }
+            final byte[] key = new byte[DIGEST_LENGTH];
+            in.readFully(key);
+            if (!Arrays.equals(key, digest)) {
+                return 0;
+            }
+            format = in.readInt();
+            final int length = in.readInt();
+            if (length <= 0 || length > MAX_LENGTH) {
+                return 0;
+            }
+            final byte[] data = new byte[length];
+            in.readFully(data);
+            binary = BufferUtils.createByteBuffer(length);
+            binary.put(data).flip();
+        } catch (IOException e) {
+            ModernUI.LOGGER.debug(RenderCore.MARKER, "Failed to read program binary {}", file, e);
+            return 0;
+        }
+        final int program = GL20.glCreateProgram();
+        GL41.glProgramBinary(program, format, binary);
+        if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) != GL11.GL_TRUE) {
+            // the driver may reject binaries even if the strings are the same
+            GL20.glDeleteProgram(program);
+            return 0;
+        }
+        return program;
+    }
+
+    /**
+     * Call before linking a program that will be saved.
+     *
+     * @param program the program to link
+     */
+    static void setRetrievable(int program) {
+        GL41.glProgramParameteri(program, GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+    }
+
+    /**
+     * Retrieve the binary of a linked program and write it to the cache on a background thread.
+     *
+     * @param program the linked program
+     * @param vert    vertex shader location
+     * @param frag    fragment shader location
+     * @param digest  the key from {@link #digest(byte[], byte[])}
+     */
+    static void save(int program, @Nonnull ResourceLocation vert, @Nonnull ResourceLocation frag,
+                     @Nonnull byte[] digest) {
+        if (GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) != GL11.GL_TRUE) {
+            return;
+        }
+        final int length = GL20.glGetProgrami(program, GL41.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0 || length > MAX_LENGTH) {
+            return;
+        }
+        final ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        final IntBuffer format = BufferUtils.createIntBuffer(1);
+        GL41.glGetProgramBinary(program, null, format, binary);
+        final byte[] data = new byte[length];
+        binary.get(data);
+        final int binaryFormat = format.get(0);
+        final Path file = getFile(vert, frag);
+        CompletableFuture.runAsync(() -> write(file, digest, binaryFormat, data), Util.backgroundExecutor());
+    }
+
+    private static void write(@Nonnull Path file, @Nonnull byte[] digest, int format, @Nonnull byte[] data) {
+        try {
+            Files.createDirectories(file.getParent());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(digest);
+                out.writeInt(format);
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        } catch (IOException e) {
+            ModernUI.LOGGER.warn(RenderCore.MARKER, "Failed to write program binary {}", file, e);
+        }
+    }
+
+    @Nonnull
+    private static Path getFile(@Nonnull ResourceLocation vert, @Nonnull ResourceLocation frag) {
+        final String name = vert.getNamespace() + '_' + getName(vert) + '_' + getName(frag);
+        return ModernUI.get().getCacheDirectory().resolve(DIRECTORY).resolve(name + SUFFIX);
+    }
+
+    // the file name of the shader without extension
+    @Nonnull
+    private static String getName(@Nonnull ResourceLocation location) {
+        String path = location.getPath();
+        int start = path.lastIndexOf('/') + 1;
+        int end = path.lastIndexOf('.');
+        return path.substring(start, end > start ? end : path.length());
+    }
+}
@@ -18,16 +18,22 @@
 
 package icyllis.modernui.graphics.shader;
 
+import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.shaders.Effect;
 import com.mojang.blaze3d.shaders.Program;
 import com.mojang.blaze3d.shaders.ProgramManager;
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.graphics.RenderCore;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
 import net.minecraft.server.packs.resources.ResourceManager;
+import org.apache.commons.io.IOUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
 
 import javax.annotation.Nonnull;
-import java.io.BufferedInputStream;
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -53,23 +59,64 @@ public class ShaderProgram implements Effect {
                 new ResourceLocation(namespace, String.format("shaders/%s.frag", frag)));
     }
 
+    /**
+     * Compile and link the program, or load the linked program from the program binary cache
+     * if the sources and the driver are not changed.
+     *
+     * @param manager resource manager to read sources
+     */
     public void compile(ResourceManager manager) {
-        if (vertex != null || fragment != null) {
-            ProgramManager.releaseProgram(this);
-        }
+        release();
         try {
-            vertex = createShader(manager, vert, Program.Type.VERTEX);
-            fragment = createShader(manager, frag, Program.Type.FRAGMENT);
+            final byte[] vertSource = readSource(manager, vert);
+            final byte[] fragSource = readSource(manager, frag);
+            final byte[] digest = ProgramBinaryCache.digest(vertSource, fragSource);
+            if (digest != null) {
+                program = ProgramBinaryCache.load(vert, frag, digest);
+                if (program != 0) {
+                    return;
+                }
+            }
+            vertex = createShader(vertSource, vert, Program.Type.VERTEX);
+            fragment = createShader(fragSource, frag, Program.Type.FRAGMENT);
             program = ProgramManager.createProgram();
+            if (digest != null) {
+                ProgramBinaryCache.setRetrievable(program);
+            }
             ProgramManager.linkProgram(this);
+            if (digest != null) {
+                ProgramBinaryCache.save(program, vert, frag, digest);
+            }
         } catch (IOException e) {
             ModernUI.LOGGER.fatal(RenderCore.MARKER, "An error occurred while compiling shader: {}", this, e);
         }
     }
 
+    private void release() {
+        if (vertex != null) {
+            vertex.close();
+            vertex = null;
+        }
+        if (fragment != null) {
+            fragment.close();
+            fragment = null;
+        }
+        if (program != 0) {
+            GlStateManager.glDeleteProgram(program);
+            program = 0;
+        }
+    }
+
+    @Nonnull
+    private static byte[] readSource(@Nonnull ResourceManager manager, @Nonnull ResourceLocation location) throws IOException {
+        try (Resource resource = manager.getResource(location)) {
+            return IOUtils.toByteArray(resource.getInputStream());
+        }
+    }
+
     @Nonnull
-    private Program createShader(ResourceManager manager, @Nonnull ResourceLocation location, Program.Type type) throws IOException {
-        try (InputStream stream = new BufferedInputStream(manager.getResource(location).getInputStream())) {
+    private Program createShader(@Nonnull byte[] source, @Nonnull ResourceLocation location, Program.Type type) throws IOException {
+        try (InputStream stream = new ByteArrayInputStream(source)) {
             return Program.compileShader(type, location.toString(), stream, getClass().getSimpleName());
         }
     }
@@ -79,18 +126,31 @@ public class ShaderProgram implements Effect {
         return program;
     }
 
+    /**
+     * @return {@code true} if the program is linked and can be used
+     */
+    public boolean isLinked() {
+        return program != 0 && GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) == GL11.GL_TRUE;
+    }
+
     @Override
     public void markDirty() {
 
     }
 
-    @Nonnull
+    /**
+     * @return the vertex shader, or {@code null} if the program is loaded from binary
+     */
+    @Nullable
     @Override
     public Program getVertexProgram() {
         return vertex;
     }
 
-    @Nonnull
+    /**
+     * @return the fragment shader, or {@code null} if the program is loaded from binary
+     */
+    @Nullable
     @Override
     public Program getFragmentProgram() {
         return fragment;
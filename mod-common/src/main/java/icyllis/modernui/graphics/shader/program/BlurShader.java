@@ -0,0 +1,54 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.shader.program;
+
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.shader.ShaderProgram;
+import org.lwjgl.opengl.GL20;
+
+/**
+ * Dual filter (Kawase) blur passes, sampling the previous level from texture unit 0.
+ */
+public class BlurShader extends ShaderProgram {
+
+    /**
+     * Downsample to the next (half size) level
+     */
+    public static final BlurShader DOWN = new BlurShader("blur", "blur_down");
+
+    /**
+     * Upsample to the previous (double size) level
+     */
+    public static final BlurShader UP = new BlurShader("blur", "blur_up");
+
+    private BlurShader(String vert, String frag) {
+        super(ModernUI.ID, vert, frag);
+    }
+
+    /**
+     * Set the half texel size of the destination level.
+     */
+    public void setHalfTexel(float x, float y) {
+        GL20.glUniform2f(0, x, y);
+    }
+
+    public void setOffset(float offset) {
+        GL20.glUniform1f(1, offset);
+    }
+}
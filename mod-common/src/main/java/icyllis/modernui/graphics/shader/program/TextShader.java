@@ -0,0 +1,54 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.shader.program;
+
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.shader.ShaderProgram;
+import org.lwjgl.opengl.GL20;
+
+/**
+ * Samples glyphs from the layers of glyph texture array. The world variant also
+ * applies lightmap and fog, the fog mode is a uniform.
+ */
+public class TextShader extends ShaderProgram {
+
+    /**
+     * For text in GUI
+     */
+    public static final TextShader INSTANCE = new TextShader("text", "text");
+
+    /**
+     * For text in world, with lightmap and fog
+     */
+    public static final TextShader WORLD = new TextShader("text_world", "text_world");
+
+    private TextShader(String vert, String frag) {
+        super(ModernUI.ID, vert, frag);
+    }
+
+    /**
+     * Set the fog mode of {@link #WORLD}, the rest fog parameters are read from the
+     * fixed function state.
+     *
+     * @param mode GL_LINEAR, GL_EXP or GL_EXP2, 0 if fog is disabled
+     */
+    public void setFogMode(int mode) {
+        GL20.glUniform1i(0, mode);
+    }
+}
@@ -18,6 +18,7 @@
 
 package icyllis.modernui.graphics.text;
 
+import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.Style;
 
 import javax.annotation.Nonnull;
@@ -25,7 +26,7 @@ import java.awt.*;
 
 /**
  * Identifies the location and value of a formatting info in the original string
- * This is for text processing only, will be destroyed after processing.
+ * This is for text processing only, will be reused by {@link TextProcessData}.
  */
 public class FormattingStyle {
 
@@ -65,17 +66,17 @@ public class FormattingStyle {
     /**
      * The index into the original string (i.e. with formatting codes) for the location of this formatting.
      */
-    public final int stringIndex;
+    public int stringIndex;
 
     /**
      * The index into the stripped string (i.e. with no formatting codes) of where this formatting would have appeared
      */
-    public final int stripIndex;
+    public int stripIndex;
 
     /**
      * The color in 0xRRGGBB format; {@link #NO_SPECIFIED_COLOR} to reset default (original parameter) color
      */
-    private final int color;
+    private int color;
 
     /*
      * |--------|
@@ -91,13 +92,20 @@ public class FormattingStyle {
      * Combination of {@link #PLAIN}, {@link #BOLD}, {@link #ITALIC}, {@link #UNDERLINE_MASK},
      * {@link #STRIKETHROUGH_MASK} and {@link #OBFUSCATED_MASK} specifying font specific styles.
      */
-    private final byte flags;
+    private byte flags;
+
+    FormattingStyle() {
+    }
 
     public FormattingStyle(int stringIndex, int stripIndex, Style style) {
+        set(stringIndex, stripIndex, getColor(style), getFlags(style));
+    }
+
+    void set(int stringIndex, int stripIndex, int color, byte flags) {
         this.stringIndex = stringIndex;
         this.stripIndex = stripIndex;
-        color = getColor(style);
-        flags = getFlags(style);
+        this.color = color;
+        this.flags = flags;
     }
 
     public static int getColor(@Nonnull Style style) {
@@ -133,6 +141,31 @@ public class FormattingStyle {
         return v;
     }
 
+    /**
+     * Apply a formatting code to flags, same as {@link Style#applyLegacyFormat(ChatFormatting)}
+     * but without creating new styles. Color formatting will reset all flags.
+     *
+     * @param flags      the flags to apply to
+     * @param formatting the formatting, except for {@link ChatFormatting#RESET}
+     * @return new flags
+     */
+    public static byte applyLegacyFormat(byte flags, @Nonnull ChatFormatting formatting) {
+        switch (formatting) {
+            case OBFUSCATED:
+                return (byte) (flags | OBFUSCATED_MASK);
+            case BOLD:
+                return (byte) (flags | BOLD);
+            case STRIKETHROUGH:
+                return (byte) (flags | STRIKETHROUGH_MASK);
+            case UNDERLINE:
+                return (byte) (flags | UNDERLINE_MASK);
+            case ITALIC:
+                return (byte) (flags | ITALIC);
+            default:
+                return PLAIN;
+        }
+    }
+
     /**
      * Combination of {@link #PLAIN}, {@link #BOLD}, and {@link #ITALIC} specifying font specific styles.
      *
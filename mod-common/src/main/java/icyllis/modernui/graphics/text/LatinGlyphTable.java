@@ -0,0 +1,174 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.text;
+
+import icyllis.modernui.graphics.font.GlyphManager;
+import icyllis.modernui.graphics.font.TexturedGlyph;
+import icyllis.modernui.graphics.font.pipeline.TextRenderNode;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+
+/**
+ * Glyph codes and advances of printable ASCII characters in a derived font, used to
+ * layout simple left-to-right text without {@link GlyphVector}. The table is verified
+ * against a full layout of every character pair, the pairs that the font adjusts
+ * (kerning) or the fonts that substitute glyphs (ligatures) go to the slow path.
+ *
+ * @see ShapingCache
+ * @since 2.0
+ */
+public class LatinGlyphTable {
+
+    public static final char FIRST = 0x20;
+    public static final char LAST = 0x7e;
+
+    private static final int COUNT = LAST - FIRST + 1;
+
+    /**
+     * Max difference of a glyph position in GUI scale
+     */
+    private static final float TOLERANCE = 0.001f;
+
+    private final int[] glyphCodes = new int[COUNT];
+    private final float[] advances = new float[COUNT];
+
+    // resolved on demand
+    private final TexturedGlyph[] glyphs = new TexturedGlyph[COUNT];
+
+    // first char * COUNT + second char, true if the advance of first char is adjusted
+    private final boolean[] kernPairs = new boolean[COUNT * COUNT];
+
+    private LatinGlyphTable() {
+    }
+
+    /**
+     * Create the table of a font, this can be called from any thread.
+     *
+     * @param font    the derived font with fontStyle and fontSize
+     * @param context the font render context of glyph manager, taken on render thread
+     * @param factor  the resolution factor of glyph manager
+     * @return the table, or {@code null} if the font substitutes glyphs of ASCII text
+     */
+    @Nullable
+    public static LatinGlyphTable create(@Nonnull Font font, @Nonnull FontRenderContext context, float factor) {
+        final LatinGlyphTable table = new LatinGlyphTable();
+
+        char[] chars = new char[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            chars[i] = (char) (FIRST + i);
+        }
+        GlyphVector vector = font.createGlyphVector(context, chars);
+        for (int i = 0; i < COUNT; i++) {
+            table.glyphCodes[i] = vector.getGlyphCode(i);
+            table.advances[i] = vector.getGlyphMetrics(i).getAdvanceX() / factor;
+            if (table.advances[i] <= 0) {
+                return null;
+            }
+        }
+
+        /* A de Bruijn sequence contains every pair exactly once */
+        chars = deBruijnPairs();
+        vector = font.layoutGlyphVector(context, chars, 0, chars.length, Font.LAYOUT_LEFT_TO_RIGHT);
+        if (vector.getNumGlyphs() != chars.length) {
+            return null;
+        }
+        for (int i = 0; i < chars.length - 1; i++) {
+            int c1 = chars[i] - FIRST;
+            if (vector.getGlyphCode(i) != table.glyphCodes[c1] || vector.getGlyphCharIndex(i) != i) {
+                return null;
+            }
+            float advance = (float) ((vector.getGlyphPosition(i + 1).getX() - vector.getGlyphPosition(i).getX()) / factor);
+            if (Math.abs(advance - table.advances[c1]) > TOLERANCE) {
+                table.kernPairs[c1 * COUNT + chars[i + 1] - FIRST] = true;
+            }
+        }
+        return table;
+    }
+
+    @Nonnull
+    private static char[] deBruijnPairs() {
+        /* Eulerian circuit on the complete digraph with loops, each vertex visits its out edges in reverse order */
+        final int[] next = new int[COUNT];
+        final char[] seq = new char[COUNT * COUNT + 1];
+        int len = 0;
+        int[] stack = new int[COUNT * COUNT + 1];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int v = stack[top - 1];
+            if (next[v] < COUNT) {
+                stack[top++] = next[v]++;
+            } else {
+                seq[len++] = (char) (FIRST + v);
+                top--;
+            }
+        }
+        return seq;
+    }
+
+    /**
+     * Layout a left-to-right run if all the characters are in the table and no pair is
+     * adjusted by the font.
+     *
+     * @param data         an object to store the results
+     * @param glyphManager the glyph manager
+     * @param font         the derived font of this table
+     * @param text         the plain text
+     * @param start        start index (inclusive) of the run
+     * @param limit        end index (exclusive) of the run
+     * @param offset       offset X of the run
+     * @param digits       the digit glyphs of the font, null in {@link TextProcessData#measureOnly} mode
+     * @param effect       text render effect
+     * @return the advance of the run, or a negative value if the run can't use the table
+     */
+    public float layout(@Nonnull TextProcessData data, @Nonnull GlyphManager glyphManager, @Nonnull Font font,
+                        char[] text, int start, int limit, float offset, TexturedGlyph[] digits, byte effect) {
+        int prev = -1;
+        for (int i = start; i < limit; i++) {
+            int c = text[i] - FIRST;
+            if (c < 0 || c >= COUNT) {
+                return -1;
+            }
+            if (prev >= 0 && kernPairs[prev * COUNT + c]) {
+                return -1;
+            }
+            prev = c;
+        }
+        float advance = 0;
+        for (int i = start; i < limit; i++) {
+            char o = text[i];
+            int c = o - FIRST;
+            if (o == '0') {
+                data.addGlyph(digits, TextRenderNode.TYPE_DIGIT | effect, i, offset + advance);
+            } else {
+                TexturedGlyph glyph = glyphs[c];
+                if (glyph == null && !data.measureOnly) {
+                    glyph = glyphs[c] = glyphManager.lookupGlyph(font, glyphCodes[c]);
+                }
+                data.addGlyph(glyph, TextRenderNode.TYPE_STANDARD | effect, i, offset + advance);
+            }
+            advance += advances[c];
+        }
+        return advance;
+    }
+}
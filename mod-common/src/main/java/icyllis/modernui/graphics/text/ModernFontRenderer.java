@@ -61,6 +61,11 @@ public class ModernFontRenderer extends Font {
     private boolean allowShadow = true;
     private boolean globalRenderer = false;
 
+    /**
+     * The config value, the global renderer is disabled without text shaders
+     */
+    private boolean preferGlobalRenderer = false;
+
     private final TextLayoutProcessor fontEngine = TextLayoutProcessor.getInstance();
 
     // temporary float value used in lambdas
@@ -92,14 +97,30 @@ public class ModernFontRenderer extends Font {
     public static void change(boolean global, boolean shadow) {
         RenderSystem.assertThread(RenderSystem::isOnRenderThread);
         if (RenderCore.isRenderEngineStarted()) {
-            if (instance.globalRenderer != global) {
-                ((AccessFontRenderer) instance).setSplitter(global ? instance.modernStringSplitter : instance.vanillaStringSplitter);
-                instance.globalRenderer = global;
-            }
+            instance.preferGlobalRenderer = global;
+            instance.setGlobalRenderer(global && RenderCore.isTextShadersLinked());
             instance.allowShadow = shadow;
         }
     }
 
+    /**
+     * Called when shaders are recompiled, fall back to vanilla renderer if the text shaders
+     * failed to link, or switch back if they are linked now.
+     */
+    public static void updateGlobalRenderer() {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        if (instance != null && RenderCore.isRenderEngineStarted()) {
+            instance.setGlobalRenderer(instance.preferGlobalRenderer && RenderCore.isTextShadersLinked());
+        }
+    }
+
+    private void setGlobalRenderer(boolean global) {
+        if (globalRenderer != global) {
+            ((AccessFontRenderer) this).setSplitter(global ? modernStringSplitter : vanillaStringSplitter);
+            globalRenderer = global;
+        }
+    }
+
     public static boolean isGlobalRenderer() {
         return instance.globalRenderer;
     }
@@ -225,14 +246,9 @@ public class ModernFontRenderer extends Font {
         int b = color & 0xff;
 
         TextRenderNode node = fontEngine.lookupVanillaNode(text, style);
-        if (dropShadow && allowShadow) {
-            node.drawText(matrix, buffer, text, x + 0.8f, y + 0.8f, r >> 2, g >> 2, b >> 2, a, true,
-                    seeThrough, colorBackground, packedLight);
-            matrix = matrix.copy(); // if not drop shadow, we don't need to copy the matrix
-            matrix.translate(AccessFontRenderer.shadowLifting());
-        }
-
-        return node.drawText(matrix, buffer, text, x, y, r, g, b, a, false, seeThrough, colorBackground, packedLight);
+        // shadow is drawn in the same pass, the text is lifted by offset Z rather than a translated matrix
+        return node.drawText(matrix, buffer, text, x, y, r, g, b, a, dropShadow && allowShadow,
+                AccessFontRenderer.shadowLifting().z(), seeThrough, colorBackground, packedLight);
     }
 
     /*@Override
@@ -18,9 +18,16 @@
 
 package icyllis.modernui.graphics.text;
 
-import icyllis.modernui.graphics.font.pipeline.GlyphRender;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import icyllis.modernui.text.LineBreaker;
+import icyllis.modernui.text.MeasuredText;
+import icyllis.modernui.text.TextPaint;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
+import net.minecraft.ChatFormatting;
 import net.minecraft.client.ComponentCollector;
 import net.minecraft.client.StringSplitter;
 import net.minecraft.network.chat.FormattedText;
@@ -31,8 +38,12 @@ import org.apache.commons.lang3.mutable.MutableObject;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 
 /**
  * Handle line breaks, get text width, etc. For Vanilla Only.
@@ -44,6 +55,29 @@ public class ModernStringSplitter extends StringSplitter {
 
     private final MutableFloat v = new MutableFloat();
 
+    /**
+     * Tab stop of line breaker, 4 spaces in vanilla
+     */
+    private static final float DEFAULT_TAB_STOP = 16;
+
+    /**
+     * Wrapped lines of recently seen texts, tooltips may be wrapped every frame
+     */
+    private final Cache<WrapKey, LineWrap> wrapCache = Caffeine.newBuilder()
+            .expireAfterAccess(20, TimeUnit.SECONDS)
+            .build();
+
+    private final WrapKey wrapKey = new WrapKey();
+
+    private int cacheGeneration;
+
+    // flattened text and sibling styles for lookup
+    private final StringBuilder flatText = new StringBuilder();
+    private final ObjectArrayList<Style> flatStyles = new ObjectArrayList<>();
+    private final IntArrayList flatEnds = new IntArrayList();
+
+    private final TextPaint paint = new TextPaint();
+
     /**
      * Constructor
      *
@@ -65,7 +99,7 @@ public class ModernStringSplitter extends StringSplitter {
         if (text == null || text.isEmpty()) {
             return 0;
         }
-        return fontEngine.lookupVanillaNode(text, Style.EMPTY).advance;
+        return fontEngine.lookupMeasurement(text, Style.EMPTY).advance;
     }
 
     /**
@@ -80,7 +114,7 @@ public class ModernStringSplitter extends StringSplitter {
         // iterate all siblings
         text.visit((s, t) -> {
             if (!t.isEmpty()) {
-                v.add(fontEngine.lookupVanillaNode(t, s).advance);
+                v.add(fontEngine.lookupMeasurement(t, s).advance);
             }
             // continue
             return Optional.empty();
@@ -99,7 +133,7 @@ public class ModernStringSplitter extends StringSplitter {
         v.setValue(0);
         fontEngine.handleSequence(text, (t, s) -> {
             if (t.length() != 0) {
-                v.add(fontEngine.lookupVanillaNode(t, s).advance);
+                v.add(fontEngine.lookupMeasurement(t, s).advance);
             }
             return false;
         });
@@ -127,24 +161,8 @@ public class ModernStringSplitter extends StringSplitter {
         if (text.length() == 0) {
             return 0;
         }
-        /* The glyph array for a string is sorted by the string's logical character position */
-        GlyphRender[] glyphs = fontEngine.lookupVanillaNode(text, style).glyphs;
-
-        /* Add up the individual advance of each glyph until it exceeds the specified width */
-        float advance = 0;
-        int glyphIndex = 0;
-        while (glyphIndex < glyphs.length) {
-
-            advance += glyphs[glyphIndex].getAdvance();
-            if (advance <= width) {
-                glyphIndex++;
-            } else {
-                break;
-            }
-        }
-
-        /* The string index of the last glyph that wouldn't fit gives the total desired length of the string in characters */
-        return glyphIndex < glyphs.length ? glyphs[glyphIndex].stringIndex : text.length();
+        /* The glyphs are sorted by the string's logical character position, search the prefix sums of advances */
+        return fontEngine.lookupMeasurement(text, style).indexAtWidth(width, text.length());
     }
 
     /**
@@ -175,25 +193,8 @@ public class ModernStringSplitter extends StringSplitter {
         if (text.isEmpty()) {
             return text;
         }
-        /* The glyph array for a string is sorted by the string's logical character position */
-        GlyphRender[] glyphs = fontEngine.lookupVanillaNode(text, style).glyphs;
-
-        /* Add up the individual advance of each glyph until it exceeds the specified width */
-        float advance = 0;
-        int glyphIndex = glyphs.length - 1;
-        while (glyphIndex >= 0) {
-
-            advance += glyphs[glyphIndex].getAdvance();
-            if (advance <= width) {
-                glyphIndex--;
-            } else {
-                break;
-            }
-        }
-
-        /* The string index of the last glyph that wouldn't fit gives the total desired length of the string in characters */
-        int l = glyphIndex >= 0 ? glyphs[glyphIndex].stringIndex : 0;
-        return text.substring(l);
+        /* The string index of the last glyph that wouldn't fit gives the start of the tail */
+        return text.substring(fontEngine.lookupMeasurement(text, style).tailIndexAtWidth(width));
     }
 
     /**
@@ -212,7 +213,7 @@ public class ModernStringSplitter extends StringSplitter {
             if (sizeToWidth0(t, v.floatValue(), s) < t.length()) {
                 return Optional.of(s);
             }
-            v.subtract(fontEngine.lookupVanillaNode(t, s).advance);
+            v.subtract(fontEngine.lookupMeasurement(t, s).advance);
             // continue
             return Optional.empty();
         }, Style.EMPTY).orElse(null);
@@ -237,7 +238,7 @@ public class ModernStringSplitter extends StringSplitter {
                 // break with result
                 return true;
             }
-            v.subtract(fontEngine.lookupVanillaNode(t, s).advance);
+            v.subtract(fontEngine.lookupMeasurement(t, s).advance);
             // continue
             return false;
         })) {
@@ -276,7 +277,7 @@ public class ModernStringSplitter extends StringSplitter {
                 // add
                 collector.append(FormattedText.of(text, style));
             }
-            v.subtract(fontEngine.lookupVanillaNode(text, style).advance);
+            v.subtract(fontEngine.lookupMeasurement(text, style).advance);
             // continue
             return Optional.empty();
         }, styleIn).orElse(textIn); // full text
@@ -291,10 +292,35 @@ public class ModernStringSplitter extends StringSplitter {
      * @param retainEnd retain the last word on each line
      * @param consumer  accept each line result, params{current style, start index (inclusive), end index (exclusive)}
      */
-    //TODO handle complex line wrapping, including bidi analysis, style splitting
     @Override
-    public void splitLines(String text, int wrapWidth, @Nonnull Style style, boolean retainEnd, @Nonnull StringSplitter.LinePosConsumer consumer) {
-        super.splitLines(text, wrapWidth, style, retainEnd, consumer);
+    public void splitLines(@Nonnull String text, int wrapWidth, @Nonnull Style style, boolean retainEnd,
+                           @Nonnull StringSplitter.LinePosConsumer consumer) {
+        final LineWrap wrap = lookupLineWrap(text, style, wrapWidth);
+        final Style[] styles = wrap.getLineStyles();
+        for (int i = 0, e = wrap.getStringLineCount(); i < e; i++) {
+            consumer.accept(styles[i], wrap.starts[i], retainEnd ? wrap.getRetainedEnd(i) : wrap.ends[i]);
+        }
+    }
+
+    /**
+     * Wrap lines
+     *
+     * @param text      text to handle
+     * @param wrapWidth max width of each line
+     * @param style     style for the text
+     * @return a list of text for each line
+     */
+    @Nonnull
+    @Override
+    public List<FormattedText> splitLines(@Nonnull String text, int wrapWidth, @Nonnull Style style) {
+        final LineWrap wrap = lookupLineWrap(text, style, wrapWidth);
+        final Style[] styles = wrap.getLineStyles();
+        final int count = wrap.getStringLineCount();
+        final List<FormattedText> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(FormattedText.of(text.substring(wrap.starts[i], wrap.ends[i]), styles[i]));
+        }
+        return list;
     }
 
     /**
@@ -307,7 +333,330 @@ public class ModernStringSplitter extends StringSplitter {
      */
     @Nonnull
     @Override
-    public List<FormattedText> splitLines(String text, int wrapWidth, @Nonnull Style style) {
-        return super.splitLines(text, wrapWidth, style);
+    public List<FormattedText> splitLines(@Nonnull FormattedText text, int wrapWidth, @Nonnull Style style) {
+        return new ArrayList<>(Arrays.asList(lookupLineWrap(text, style, wrapWidth).getLineTexts()));
+    }
+
+    /**
+     * Wrap lines
+     *
+     * @param text      text to handle
+     * @param wrapWidth max width of each line
+     * @param style     style for the text
+     * @param consumer  accept each line result, params{line text, whether the line is wrapped from the previous one}
+     */
+    @Override
+    public void splitLines(@Nonnull FormattedText text, int wrapWidth, @Nonnull Style style,
+                           @Nonnull BiConsumer<FormattedText, Boolean> consumer) {
+        final LineWrap wrap = lookupLineWrap(text, style, wrapWidth);
+        final FormattedText[] texts = wrap.getLineTexts();
+        for (int i = 0; i < texts.length; i++) {
+            consumer.accept(texts[i], wrap.isWrapped(i));
+        }
+    }
+
+    @Nonnull
+    private LineWrap lookupLineWrap(@Nonnull String text, @Nonnull Style style, int wrapWidth) {
+        flatStyles.clear();
+        flatEnds.clear();
+        if (!text.isEmpty()) {
+            flatStyles.add(style);
+            flatEnds.add(text.length());
+        }
+        return getLineWrap(text, style, wrapWidth);
+    }
+
+    @Nonnull
+    private LineWrap lookupLineWrap(@Nonnull FormattedText text, @Nonnull Style style, int wrapWidth) {
+        final StringBuilder builder = flatText;
+        builder.setLength(0);
+        flatStyles.clear();
+        flatEnds.clear();
+        // flatten all siblings
+        text.visit((s, t) -> {
+            if (!t.isEmpty()) {
+                builder.append(t);
+                flatStyles.add(s);
+                flatEnds.add(builder.length());
+            }
+            // continue
+            return Optional.empty();
+        }, style);
+        return getLineWrap(builder, style, wrapWidth);
+    }
+
+    @Nonnull
+    private LineWrap getLineWrap(@Nonnull CharSequence text, @Nonnull Style style, int wrapWidth) {
+        final int generation = fontEngine.getCacheGeneration();
+        if (cacheGeneration != generation) {
+            wrapCache.invalidateAll();
+            cacheGeneration = generation;
+        }
+        wrapKey.update(text, flatStyles.elements(), flatEnds.elements(), flatStyles.size(), style, wrapWidth);
+        LineWrap wrap = wrapCache.getIfPresent(wrapKey);
+        if (wrap == null) {
+            final WrapKey key = wrapKey.copy();
+            wrap = computeLineWrap(key);
+            wrapCache.put(key, wrap);
+        }
+        return wrap;
+    }
+
+    /**
+     * Break each paragraph of the text into lines with {@link LineBreaker}, the advances of chars
+     * are measured by the layout engine for each style run, so bidi and complex text are respected.
+     */
+    @Nonnull
+    private LineWrap computeLineWrap(@Nonnull WrapKey key) {
+        final String text = key.text.toString();
+        final char[] chars = text.toCharArray();
+        final int length = chars.length;
+        final float[] advances = new float[length];
+
+        for (int r = 0, runStart = 0; r < key.runCount; runStart = key.ends[r++]) {
+            fontEngine.lookupMeasurement(text.substring(runStart, key.ends[r]), (Style) key.styles[r])
+                    .getCharAdvances(advances, runStart);
+        }
+
+        final IntArrayList starts = new IntArrayList();
+        final IntArrayList ends = new IntArrayList();
+        final IntArrayList limits = new IntArrayList();
+        final LineBreaker.ParagraphConstraints constraints = new LineBreaker.ParagraphConstraints();
+        constraints.setWidth(key.width);
+        constraints.setIndent(key.width);
+        constraints.setTabStops(null, DEFAULT_TAB_STOP);
+
+        int paraStart = 0;
+        while (paraStart < length) {
+            int paraEnd = paraStart;
+            while (paraEnd < length && chars[paraEnd] != '\n') {
+                paraEnd++;
+            }
+            int lineStart = paraStart;
+            if (paraEnd > paraStart) {
+                final char[] para = Arrays.copyOfRange(chars, paraStart, paraEnd);
+                final MeasuredText.Builder builder = new MeasuredText.Builder(para)
+                        .setAdvances(Arrays.copyOfRange(advances, paraStart, paraEnd));
+                for (int r = 0, runStart = 0; r < key.runCount; runStart = key.ends[r++]) {
+                    int s = Math.max(runStart, paraStart);
+                    int e = Math.min(key.ends[r], paraEnd);
+                    if (s < e) {
+                        builder.appendStyleRun(paint, e - s, false);
+                    }
+                }
+                final LineBreaker.Result result = LineBreaker.computeLineBreaks(builder.build(), constraints,
+                        null, 0);
+                for (int i = 0, e = result.getLineCount(); i < e; i++) {
+                    int offset = paraStart + result.getLineBreakOffset(i);
+                    if (offset > lineStart && offset < paraEnd) {
+                        addLine(chars, lineStart, offset, offset, starts, ends, limits);
+                        lineStart = offset;
+                    }
+                }
+            }
+            // the line break char is retained in the limit
+            addLine(chars, lineStart, paraEnd, Math.min(paraEnd + 1, length), starts, ends, limits);
+            paraStart = paraEnd + 1;
+        }
+        // an empty line after the last line break
+        if (length > 0 && chars[length - 1] == '\n') {
+            addLine(chars, length, length, length, starts, ends, limits);
+        }
+
+        return new LineWrap(key, starts.toIntArray(), ends.toIntArray(), limits.toIntArray());
+    }
+
+    private static void addLine(@Nonnull char[] chars, int start, int end, int limit,
+                                @Nonnull IntArrayList starts, @Nonnull IntArrayList ends,
+                                @Nonnull IntArrayList limits) {
+        // trailing spaces are not drawn
+        while (end > start && chars[end - 1] != '\n' && LineBreaker.isLineEndSpace(chars[end - 1])) {
+            end--;
+        }
+        starts.add(start);
+        ends.add(end);
+        limits.add(limit);
+    }
+
+    /**
+     * Lines of a wrapped text, lines are ranges in the flattened text.
+     */
+    private static class LineWrap {
+
+        private final WrapKey key;
+
+        // start of each line
+        private final int[] starts;
+        // end of the visible part of each line, trailing spaces and line break excluded
+        private final int[] ends;
+        // start of the next line
+        private final int[] limits;
+
+        // lazily resolved
+        private Style[] lineStyles;
+        private FormattedText[] lineTexts;
+
+        private LineWrap(WrapKey key, int[] starts, int[] ends, int[] limits) {
+            this.key = key;
+            this.starts = starts;
+            this.ends = ends;
+            this.limits = limits;
+        }
+
+        /**
+         * The empty line after the last line break is only for components.
+         */
+        private int getStringLineCount() {
+            final int count = starts.length;
+            return count > 0 && starts[count - 1] == key.text.length() ? count - 1 : count;
+        }
+
+        /**
+         * The end of a line including the space or line break where the line is broken.
+         */
+        private int getRetainedEnd(int line) {
+            return ends[line] < limits[line] ? ends[line] + 1 : ends[line];
+        }
+
+        private boolean isWrapped(int line) {
+            return line > 0 && key.text.charAt(limits[line - 1] - 1) != '\n';
+        }
+
+        /**
+         * Get the style at the start of each line, with the formatting codes
+         * in the same sibling text before the line applied.
+         */
+        @Nonnull
+        private Style[] getLineStyles() {
+            if (lineStyles != null) {
+                return lineStyles;
+            }
+            final CharSequence text = key.text;
+            final Style[] styles = new Style[starts.length];
+            int r = 0, pos = 0;
+            Style style = key.runCount > 0 ? (Style) key.styles[0] : key.base;
+            for (int i = 0; i < starts.length; i++) {
+                final int start = starts[i];
+                while (r < key.runCount && key.ends[r] <= start) {
+                    pos = key.ends[r];
+                    if (++r < key.runCount) {
+                        style = (Style) key.styles[r];
+                    }
+                }
+                final int runEnd = r < key.runCount ? key.ends[r] : pos;
+                for (; pos < start; pos++) {
+                    if (text.charAt(pos) == '\u00a7' && pos + 1 < runEnd) {
+                        ChatFormatting formatting = TextLayoutProcessor.fromFormattingCode(text.charAt(++pos));
+                        if (formatting != null) {
+                            style = formatting == ChatFormatting.RESET ? key.base : style.applyLegacyFormat(formatting);
+                        }
+                    }
+                }
+                styles[i] = style;
+            }
+            return lineStyles = styles;
+        }
+
+        @Nonnull
+        private FormattedText[] getLineTexts() {
+            if (lineTexts != null) {
+                return lineTexts;
+            }
+            final String text = key.text.toString();
+            final Style[] styles = getLineStyles();
+            final FormattedText[] texts = new FormattedText[starts.length];
+            int r = 0;
+            for (int i = 0; i < texts.length; i++) {
+                final int start = starts[i];
+                final int end = ends[i];
+                while (r < key.runCount && key.ends[r] <= start) {
+                    r++;
+                }
+                if (start == end) {
+                    texts[i] = FormattedText.EMPTY;
+                    continue;
+                }
+                final ComponentCollector collector = new ComponentCollector();
+                for (int k = r, runStart = start; k < key.runCount && runStart < end; runStart = key.ends[k++]) {
+                    int e = Math.min(key.ends[k], end);
+                    collector.append(FormattedText.of(text.substring(runStart, e),
+                            k == r ? styles[i] : (Style) key.styles[k]));
+                }
+                texts[i] = collector.getResultOrEmpty();
+            }
+            return lineTexts = texts;
+        }
+    }
+
+    /**
+     * Key of {@link #wrapCache}, the flattened text with sibling styles.
+     */
+    private static class WrapKey {
+
+        private CharSequence text;
+        private Object[] styles;
+        private int[] ends;
+        private int runCount;
+        private Style base;
+        private int width;
+        private int hash;
+
+        private void update(CharSequence text, Object[] styles, int[] ends, int runCount, Style base, int width) {
+            this.text = text;
+            this.styles = styles;
+            this.ends = ends;
+            this.runCount = runCount;
+            this.base = base;
+            this.width = width;
+            int h = base.hashCode();
+            for (int i = 0, e = text.length(); i < e; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            for (int i = 0; i < runCount; i++) {
+                h = 31 * h + styles[i].hashCode();
+                h = 31 * h + ends[i];
+            }
+            hash = 31 * h + width;
+        }
+
+        @Nonnull
+        private WrapKey copy() {
+            WrapKey key = new WrapKey();
+            key.text = text.toString();
+            key.styles = Arrays.copyOf(styles, runCount);
+            key.ends = Arrays.copyOf(ends, runCount);
+            key.runCount = runCount;
+            key.base = base;
+            key.width = width;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            WrapKey key = (WrapKey) o;
+            if (hash != key.hash || width != key.width || runCount != key.runCount ||
+                    text.length() != key.text.length() || !base.equals(key.base)) {
+                return false;
+            }
+            for (int i = 0; i < runCount; i++) {
+                if (ends[i] != key.ends[i] || !styles[i].equals(key.styles[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0, e = text.length(); i < e; i++) {
+                if (text.charAt(i) != key.text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 }
@@ -0,0 +1,331 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.text;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.font.GlyphManager;
+import net.minecraft.Util;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The second level cache of text layout. Caches shaped glyphs of a run of text
+ * in a derived font and layout direction, shared across all strings, so that
+ * common words are only laid out by {@link GlyphVector} once.
+ * <p>
+ * A cached run is shaped as a standalone array, so it's only used when the chars
+ * around the run don't affect its shaping, see {@link #isContextFree(char[], int, int)}.
+ * Otherwise (e.g. a style changes in the middle of an Arabic word), the run is shaped
+ * in the context of the full text every time.
+ * <p>
+ * Render thread only, the lookup key is reused.
+ *
+ * @see TextLayoutProcessor
+ * @since 2.0
+ */
+public class ShapingCache {
+
+    /**
+     * Max number of runs
+     */
+    private static final int MAX_SIZE = 16384;
+
+    private final Cache<Key, ShapedRun> cache = Caffeine.newBuilder()
+            .maximumSize(MAX_SIZE)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+
+    private final Key lookupKey = new Key();
+
+    /**
+     * Derived font to {@link LatinGlyphTable}, or a marker if pending or unsupported.
+     * Tables are created on a background thread, since only AWT is involved, with the
+     * font render context taken on render thread.
+     */
+    private final Map<Font, Object> latinTables = new ConcurrentHashMap<>();
+
+    private static final Object PENDING = new Object();
+    private static final Object UNSUPPORTED = new Object();
+
+    private volatile int generation;
+
+    /**
+     * Get the shaped glyphs of the given text run, perform a layout if not cached.
+     * <p>
+     * A run split from a longer run can take the following chars as lookahead, they are
+     * shaped along with the run but their glyphs are dropped, so the kerning across the
+     * split is kept in the advance of the run.
+     *
+     * @param glyphManager the glyph manager
+     * @param font         the derived font with fontStyle and fontSize
+     * @param text         the plain text
+     * @param start        start index (inclusive) of the run
+     * @param limit        end index (exclusive) of the run
+     * @param lookahead    number of chars after the limit to shape along, left-to-right only
+     * @param flag         layout direction, either {@link Font#LAYOUT_LEFT_TO_RIGHT} or {@link Font#LAYOUT_RIGHT_TO_LEFT}
+     * @return the shaped run
+     */
+    @Nonnull
+    public ShapedRun lookup(@Nonnull GlyphManager glyphManager, @Nonnull Font font, char[] text, int start, int limit,
+                            int lookahead, int flag) {
+        final int end = limit + lookahead;
+        if (!isContextFree(text, start, end)) {
+            return ShapedRun.create(glyphManager, font, text, start, end, lookahead, flag);
+        }
+        lookupKey.update(font, text, start, end, lookahead, flag);
+        ShapedRun run = cache.getIfPresent(lookupKey);
+        if (run == null) {
+            final Key key = lookupKey.copy();
+            run = ShapedRun.create(glyphManager, font, key.chars, 0, key.chars.length, lookahead, flag);
+            cache.put(key, run);
+        }
+        return run;
+    }
+
+    /**
+     * Check if a run can be shaped without the chars around, that is, at each edge of the
+     * run, the char on at least one side is in a script without contextual shaping.
+     *
+     * @param text  the plain text, the length is exact
+     * @param start start index (inclusive) of the run
+     * @param end   end index (exclusive) of the run
+     * @return true if the run can be shaped as a standalone array
+     */
+    private static boolean isContextFree(char[] text, int start, int end) {
+        return (start == 0 || isSimple(text[start - 1]) || isSimple(text[start])) &&
+                (end == text.length || isSimple(text[end - 1]) || isSimple(text[end]));
+    }
+
+    /**
+     * Scripts that have no joining, reordering or mark positioning.
+     */
+    private static boolean isSimple(char c) {
+        if (c < 0x0300) {
+            return true;
+        }
+        if (Character.isSurrogate(c)) {
+            return false;
+        }
+        switch (Character.UnicodeScript.of(c)) {
+            case COMMON:
+            case LATIN:
+            case GREEK:
+            case CYRILLIC:
+            case HAN:
+            case HIRAGANA:
+            case KATAKANA:
+            case BOPOMOFO:
+            case HANGUL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the ASCII glyph table of a derived font for fast layout. The table is created
+     * asynchronously on the first request, until then this method returns {@code null}.
+     * Without a GL context, the table is created on the calling thread, so that
+     * benchmarks have no background work.
+     *
+     * @param glyphManager the glyph manager
+     * @param font         the derived font with fontStyle and fontSize
+     * @return the table, or {@code null} if not available yet or unsupported
+     */
+    @Nullable
+    public LatinGlyphTable getLatinTable(@Nonnull GlyphManager glyphManager, @Nonnull Font font) {
+        Object table = latinTables.putIfAbsent(font, PENDING);
+        if (table == null) {
+            if (glyphManager.isHeadless()) {
+                table = LatinGlyphTable.create(font, glyphManager.getFontRenderContext(),
+                        glyphManager.getResolutionFactor());
+                latinTables.put(font, table != null ? table : UNSUPPORTED);
+                return (LatinGlyphTable) table;
+            }
+            final int gen = generation;
+            final FontRenderContext context = glyphManager.getFontRenderContext();
+            final float factor = glyphManager.getResolutionFactor();
+            CompletableFuture.supplyAsync(() -> LatinGlyphTable.create(font, context, factor), Util.backgroundExecutor())
+                    .whenComplete((t, e) -> {
+                        if (e != null) {
+                            ModernUI.LOGGER.warn(GlyphManager.MARKER, "Failed to create glyph table for {}", font, e);
+                        }
+                        if (gen == generation) {
+                            latinTables.replace(font, PENDING, t != null ? t : UNSUPPORTED);
+                        }
+                    });
+            return null;
+        }
+        return table instanceof LatinGlyphTable ? (LatinGlyphTable) table : null;
+    }
+
+    /**
+     * Clear shaped runs, glyph tables only depend on fonts and are kept.
+     */
+    public void clearRuns() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Clear shaped runs and glyph tables, when fonts are reloaded.
+     */
+    public void clear() {
+        cache.invalidateAll();
+        generation++;
+        latinTables.clear();
+    }
+
+    /**
+     * Shaped glyphs of a run, indices are relative to the start of the run and
+     * positions are in vanilla GUI scale, relative to the left of the run.
+     */
+    public static class ShapedRun {
+
+        public final int[] glyphCodes;
+        public final int[] charIndices;
+        public final float[] positions;
+
+        public final float advance;
+
+        private ShapedRun(int[] glyphCodes, int[] charIndices, float[] positions, float advance) {
+            this.glyphCodes = glyphCodes;
+            this.charIndices = charIndices;
+            this.positions = positions;
+            this.advance = advance;
+        }
+
+        @Nonnull
+        private static ShapedRun create(@Nonnull GlyphManager glyphManager, @Nonnull Font font, char[] text,
+                                        int start, int end, int lookahead, int flag) {
+            final GlyphVector vector = glyphManager.layoutGlyphVector(font, text, start, end, flag);
+            final float factor = glyphManager.getResolutionFactor();
+            final int num = vector.getNumGlyphs();
+            final int length = end - start - lookahead;
+
+            /* The run ends where the glyphs of lookahead chars start */
+            double advance = vector.getGlyphPosition(num).getX();
+
+            int[] glyphCodes = new int[num];
+            int[] charIndices = new int[num];
+            float[] positions = new float[num];
+            int count = 0;
+            for (int i = 0; i < num; i++) {
+                /* back compatibility for Java 8, since LayoutGlyphVector should not have non-standard glyphs
+                 * HarfBuzz is introduced in Java 11 or higher
+                 */
+                if (vector.getGlyphMetrics(i).getAdvanceX() == 0 &&
+                        vector.getGlyphMetrics(i).getBounds2D().getWidth() == 0) {
+                    continue;
+                }
+                if (vector.getGlyphCharIndex(i) >= length) {
+                    advance = Math.min(advance, vector.getGlyphPosition(i).getX());
+                    continue;
+                }
+                glyphCodes[count] = vector.getGlyphCode(i);
+                charIndices[count] = vector.getGlyphCharIndex(i);
+                positions[count] = (float) (vector.getGlyphPosition(i).getX() / factor);
+                count++;
+            }
+            if (count < num) {
+                glyphCodes = Arrays.copyOf(glyphCodes, count);
+                charIndices = Arrays.copyOf(charIndices, count);
+                positions = Arrays.copyOf(positions, count);
+            }
+            return new ShapedRun(glyphCodes, charIndices, positions, (float) (advance / factor));
+        }
+    }
+
+    private static class Key {
+
+        private Font font;
+        private char[] chars;
+        private int start;
+        private int length;
+        private int lookahead;
+        private int flag;
+        private int hash;
+
+        Key() {
+        }
+
+        private Key(Font font, char[] chars, int lookahead, int flag, int hash) {
+            this.font = font;
+            this.chars = chars;
+            this.length = chars.length;
+            this.lookahead = lookahead;
+            this.flag = flag;
+            this.hash = hash;
+        }
+
+        void update(Font font, char[] text, int start, int end, int lookahead, int flag) {
+            this.font = font;
+            this.chars = text;
+            this.start = start;
+            this.length = end - start;
+            this.lookahead = lookahead;
+            this.flag = flag;
+            int h = font.hashCode();
+            for (int i = start; i < end; i++) {
+                h = 31 * h + text[i];
+            }
+            hash = 31 * (31 * h + lookahead) + flag;
+        }
+
+        /**
+         * @return a key with a copy of the chars, including lookahead
+         */
+        @Nonnull
+        Key copy() {
+            return new Key(font, Arrays.copyOfRange(chars, start, start + length), lookahead, flag, hash);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            if (hash != key.hash || length != key.length || lookahead != key.lookahead || flag != key.flag ||
+                    !font.equals(key.font)) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chars[start + i] != key.chars[key.start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
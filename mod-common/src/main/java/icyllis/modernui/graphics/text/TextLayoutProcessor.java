@@ -22,10 +22,13 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.ibm.icu.text.Bidi;
 import com.mojang.blaze3d.systems.RenderSystem;
+import icyllis.modernui.graphics.font.Emoji;
+import icyllis.modernui.graphics.font.EmojiManager;
 import icyllis.modernui.graphics.font.GlyphManager;
 import icyllis.modernui.graphics.font.TexturedGlyph;
 import icyllis.modernui.graphics.font.pipeline.*;
 import icyllis.modernui.graphics.math.Color3i;
+import icyllis.modernui.util.FrameProfiler;
 import net.minecraft.ChatFormatting;
 import net.minecraft.client.Minecraft;
 import net.minecraft.network.chat.Style;
@@ -35,15 +38,12 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.awt.*;
 import java.awt.font.GlyphVector;
-import java.awt.geom.Point2D;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Pattern;
 
 /**
  * Layout text component and extract key info and generate
@@ -71,6 +71,11 @@ public class TextLayoutProcessor {
      */
     private GlyphManager glyphManager;
 
+    /**
+     * Laid out on the calling thread without a GL context
+     */
+    private boolean headless;
+
     /*
      * A cache of recently seen strings to their fully laid-out state, complete with color changes and texture coordinates of
      * all pre-rendered glyph images needed to display this string. The weakRefCache holds strong references to the Key
@@ -97,6 +102,20 @@ public class TextLayoutProcessor {
      */
     private final VanillaTextKey lookupKey = new VanillaTextKey();
 
+    /**
+     * Width and index lookup for string splitter, these don't need glyph images or render nodes.
+     */
+    private final Cache<VanillaTextKey, TextMeasurement> measurementCache = Caffeine.newBuilder()
+            .expireAfterAccess(20, TimeUnit.SECONDS)
+            .build();
+
+    private final VanillaTextKey measurementKey = new VanillaTextKey();
+
+    /**
+     * Increased when layout caches are cleared, for caches depending on layout results
+     */
+    private int cacheGeneration;
+
     private final Object lock = new Object();
 
     // for async result
@@ -115,9 +134,9 @@ public class TextLayoutProcessor {
     private final ReorderTextHandler reorder = new ReorderTextHandler();
 
     /**
-     * Remove all formatting code even though it's invalid {@link #fromFormattingCode(char)} == null
+     * Shaped words shared across strings
      */
-    private static final Pattern FORMATTING_REMOVE_PATTERN = Pattern.compile("\u00a7.");
+    private final ShapingCache shapingCache = new ShapingCache();
 
     /**
      * A single StringCache object is allocated by Minecraft's FontRenderer which forwards all string drawing and requests for
@@ -177,6 +196,19 @@ public class TextLayoutProcessor {
         }
     }
 
+    /**
+     * Initialize without a GL context instead of {@link #initRenderer()}, for benchmarks.
+     * Text is laid out on the calling thread, and glyphs are rasterized but not uploaded.
+     */
+    public void initHeadless() {
+        if (glyphManager == null) {
+            glyphManager = new GlyphManager(true);
+            headless = true;
+        } else {
+            throw new IllegalStateException("Already initialized");
+        }
+    }
+
     /**
      * Reload glyph manager, delete all generated textures, clear all cached layout data
      */
@@ -187,6 +219,24 @@ public class TextLayoutProcessor {
 
     public void clearLayoutCache() {
         stringCache.invalidateAll();
+        measurementCache.invalidateAll();
+        shapingCache.clear();
+        cacheGeneration++;
+    }
+
+    /**
+     * Clear laid-out strings, measurements and shaped runs, but keep the glyph tables
+     * of fonts, so that the next layout takes the same paths as before.
+     */
+    public void clearStringCache() {
+        stringCache.invalidateAll();
+        measurementCache.invalidateAll();
+        shapingCache.clearRuns();
+        cacheGeneration++;
+    }
+
+    public int getCacheGeneration() {
+        return cacheGeneration;
     }
 
     /**
@@ -218,6 +268,46 @@ public class TextLayoutProcessor {
         return node;
     }
 
+    /**
+     * Lookup cached measurement for vanilla string splitter. Render nodes are reused if present,
+     * otherwise the text is laid out without textured glyphs.
+     *
+     * @param string raw formatted string
+     * @param style  text component style, or {@link Style#EMPTY}
+     * @return cached measurement
+     */
+    @Nonnull
+    public TextMeasurement lookupMeasurement(@Nonnull CharSequence string, @Nonnull Style style) {
+        measurementKey.updateKey(string, style);
+        TextMeasurement measurement = measurementCache.getIfPresent(measurementKey);
+        if (measurement == null) {
+            TextRenderNode node = stringCache.getIfPresent(measurementKey);
+            VanillaTextKey key = measurementKey.copy();
+            if (node != null) {
+                measurement = createMeasurement(node);
+                measurementCache.put(key, measurement);
+            } else {
+                measurement = generateMeasurement(key, string, style);
+            }
+        }
+        return measurement;
+    }
+
+    @Nonnull
+    private static TextMeasurement createMeasurement(@Nonnull TextRenderNode node) {
+        final int count = node.getGlyphCount();
+        if (count == 0) {
+            return TextMeasurement.EMPTY;
+        }
+        final int[] stringIndices = new int[count];
+        final float[] offsets = new float[count];
+        for (int i = 0; i < count; i++) {
+            stringIndices[i] = node.getStringIndex(i);
+            offsets[i] = node.getOffsetX(i);
+        }
+        return TextMeasurement.create(stringIndices, offsets, node.advance);
+    }
+
     /**
      * Get text formatting from formatting code
      *
@@ -443,7 +533,7 @@ public class TextLayoutProcessor {
         //register.finishProcess();
 
         // Async work, waiting for render thread
-        if (!RenderSystem.isOnRenderThread()) {
+        if (!headless && !RenderSystem.isOnRenderThread()) {
             // The game thread is equal to render thread now
             synchronized (lock) {
                 Minecraft.getInstance()
@@ -465,18 +555,21 @@ public class TextLayoutProcessor {
             }
         }
 
+        final long start = FrameProfiler.begin();
+        FrameProfiler.count(FrameProfiler.TEXT_CACHE_MISS);
+
         final TextProcessData data = this.data;
 
         /* Step 1 */
-        char[] text = resolveFormattingCodes(data, string, style);
+        final int length = resolveFormattingCodes(data, string, style);
 
         final TextRenderNode node;
 
-        if (text.length > 0) {
+        if (length > 0) {
             /* Step 2-5 */
-            startBidiAnalysis(data, text);
+            startBidiAnalysis(data, data.copyText(length));
 
-            if (data.allList.isEmpty()) {
+            if (data.getGlyphCount() == 0) {
                 /* Sometimes naive, too young too simple */
                 node = TextRenderNode.EMPTY;
             } else {
@@ -487,10 +580,7 @@ public class TextLayoutProcessor {
                 insertColorState(data);
 
                 /* Step 8 */
-                GlyphRender[] glyphs = data.wrapGlyphs();
-
-                /* Step 9 */
-                node = new TextRenderNode(glyphs, data.advance, data.hasEffect);
+                node = data.createNode();
             }
         }
 
@@ -502,9 +592,49 @@ public class TextLayoutProcessor {
 
         stringCache.put(key, node);
 
+        FrameProfiler.end(FrameProfiler.TEXT_LAYOUT, start);
+
         return node;
     }
 
+    @Nonnull
+    private TextMeasurement generateMeasurement(VanillaTextKey key, @Nonnull CharSequence string, @Nonnull final Style style) {
+        // Fonts are derived and digits are looked up on render thread
+        if (!headless && !RenderSystem.isOnRenderThread()) {
+            return Minecraft.getInstance().submit(() -> generateMeasurement(key, string, style)).join();
+        }
+
+        final long start = FrameProfiler.begin();
+        FrameProfiler.count(FrameProfiler.TEXT_CACHE_MISS);
+
+        final TextProcessData data = this.data;
+        data.measureOnly = true;
+
+        final int length = resolveFormattingCodes(data, string, style);
+
+        final TextMeasurement measurement;
+
+        if (length > 0) {
+            startBidiAnalysis(data, data.copyText(length));
+
+            if (data.getGlyphCount() == 0) {
+                measurement = TextMeasurement.EMPTY;
+            } else {
+                adjustGlyphIndex(data);
+                measurement = data.createMeasurement();
+            }
+        } else {
+            measurement = TextMeasurement.EMPTY;
+        }
+        data.release();
+
+        measurementCache.put(key, measurement);
+
+        FrameProfiler.end(FrameProfiler.TEXT_LAYOUT, start);
+
+        return measurement;
+    }
+
     /**
      * Add a string to the string cache by perform full layout on it, remembering its glyph positions, and making sure that
      * every font glyph used by the string is pre-rendering. If this string has already been cached, then simply return its
@@ -621,61 +751,51 @@ public class TextLayoutProcessor {
      * Formatting codes are not involved in rendering, so we should first extract formatting codes
      * from a formatted text into a stripped text. The color codes must be removed for a font's context
      * sensitive glyph substitution to work (like Arabic letter middle form) or Bidi analysis.
+     * <p>
+     * All formatting codes are removed even though they are invalid ({@link #fromFormattingCode(char)} == null).
+     * Styles are resolved to color and flags directly, so no {@link Style} is created.
      *
-     * @param data     an object to store the results
+     * @param data     an object to store the results, the stripped text is in {@link TextProcessData#copyText(int)}
      * @param string   text with formatting codes to strip
      * @param defStyle default/reset style
-     * @return a new char array with all formatting codes removed from the given string
+     * @return the length of the stripped text
      */
-    @Nonnull
-    private char[] resolveFormattingCodes(@Nonnull TextProcessData data, @Nonnull final CharSequence string, @Nonnull Style defStyle) {
-        int shift = 0;
-
-        Style style = defStyle;
-        data.codes.add(new FormattingStyle(0, 0, style));
-
-        int limit = string.length() - 1;
-        for (int next = 0; next < limit; next++) {
-            if (string.charAt(next) == '\u00a7') {
+    private int resolveFormattingCodes(@Nonnull TextProcessData data, @Nonnull final CharSequence string, @Nonnull Style defStyle) {
+        final int length = string.length();
+        final char[] text = data.obtainText(length);
+
+        final int defColor = FormattingStyle.getColor(defStyle);
+        final byte defFlags = FormattingStyle.getFlags(defStyle);
+        int color = defColor;
+        byte flags = defFlags;
+        data.addCode(0, 0, color, flags);
+
+        int stripIndex = 0;
+        for (int next = 0; next < length; next++) {
+            char c = string.charAt(next);
+            if (c == '\u00a7' && next + 1 < length) {
                 ChatFormatting formatting = fromFormattingCode(string.charAt(next + 1));
 
-                if (formatting != null) {
+                if (formatting == ChatFormatting.RESET) {
+                    color = defColor;
+                    flags = defFlags;
+                } else if (formatting != null) {
                     /* Classic formatting will set all FancyStyling (like BOLD, UNDERLINE) to false if it's a color formatting */
-                    style = formatting == ChatFormatting.RESET ? defStyle : style.applyLegacyFormat(formatting);
+                    if (!formatting.isFormat()) {
+                        //noinspection ConstantConditions
+                        color = formatting.getColor();
+                    }
+                    flags = FormattingStyle.applyLegacyFormat(flags, formatting);
                 }
-                data.codes.add(new FormattingStyle(next, next - shift, style));
+                data.addCode(next, stripIndex, color, flags);
 
                 next++;
-                shift += 2;
+            } else {
+                text[stripIndex++] = c;
             }
         }
 
-        /*while ((next = string.indexOf('\u00a7', start)) != -1 && next + 1 < string.length()) {
-            TextFormatting formatting = fromFormattingCode(string.charAt(next + 1));
-
-            *//*
-         * Remove the two char color code from text[] by shifting the remaining data in the array over on top of it.
-         * The "start" and "next" variables all contain offsets into the original unmodified "str" string. The "shift"
-         * variable keeps track of how many characters have been stripped so far, and it's used to compute offsets into
-         * the text[] array based on the start/next offsets in the original string.
-         *
-         * If string only contains 1 formatting code (2 chars in total), this doesn't work
-         *//*
-            //System.arraycopy(text, next - shift + 2, text, next - shift, text.length - next - 2);
-
-            if (formatting != null) {
-                *//* forceFormatting will set all FancyStyling (like BOLD, UNDERLINE) to false if this is a color formatting *//*
-                style = style.forceFormatting(formatting);
-
-
-                data.codes.add(new FormattingStyle(next, next - shift, style));
-            }
-
-            start = next + 2;
-            shift += 2;
-        }*/
-
-        return FORMATTING_REMOVE_PATTERN.matcher(string).replaceAll("").toCharArray();
+        return stripIndex;
     }
 
     /*private char[] resolveFormattingCodes(@Nonnull TextProcessData data) {
@@ -687,32 +807,34 @@ public class TextLayoutProcessor {
      * startStyleAnalysis() for each contiguous run to perform further analysis.
      *
      * @param data an object to store the results
-     * @param text the full plain text (without formatting codes) to analyze
+     * @param text the full plain text (without formatting codes) to analyze, the length is exact
      * @see #layoutStyle(TextProcessData, char[], int, int, int)
      */
     private void startBidiAnalysis(TextProcessData data, @Nonnull char[] text) {
+        final int length = text.length;
         /* Avoid performing full bidirectional analysis if text has no "strong" right-to-left characters */
-        if (Bidi.requiresBidi(text, 0, text.length)) {
-            /* Note that while requiresBidi() uses start/limit the Bidi constructor uses start/length */
-            Bidi bidi = new Bidi(text, 0, null, 0, text.length, Bidi.DIRECTION_DEFAULT_LEFT_TO_RIGHT);
+        if (mayRequireBidi(text, length) && Bidi.requiresBidi(text, 0, length)) {
+            /* The Bidi object is reused, it takes the whole array as paragraph */
+            final Bidi bidi = data.getBidi();
+            bidi.setPara(text, Bidi.LEVEL_DEFAULT_LTR, null);
 
             /* If text is entirely right-to-left, then insert an EntryText node for the entire string */
             if (bidi.isRightToLeft()) {
-                layoutStyle(data, text, 0, text.length, Font.LAYOUT_RIGHT_TO_LEFT);
+                layoutStyle(data, text, 0, length, Font.LAYOUT_RIGHT_TO_LEFT);
             }
 
             /* Otherwise text has a mixture of LTR and RLT, and it requires full bidirectional analysis */
             else {
                 int runCount = bidi.getRunCount();
-                byte[] levels = new byte[runCount];
-                Integer[] ranges = new Integer[runCount];
+                byte[] levels = data.obtainRunLevels(runCount);
+                int[] ranges = data.obtainVisualRuns(runCount);
 
                 /* Reorder contiguous runs of text into their display order from left to right */
                 for (int index = 0; index < runCount; index++) {
                     levels[index] = (byte) bidi.getRunLevel(index);
                     ranges[index] = index;
                 }
-                Bidi.reorderVisually(levels, 0, ranges, 0, runCount);
+                reorderVisually(levels, ranges, runCount);
 
                 /*
                  * Every GlyphVector must be created on a contiguous run of left-to-right or right-to-left text. Keep track of
@@ -723,7 +845,7 @@ public class TextLayoutProcessor {
                     int logicalIndex = ranges[visualIndex];
 
                     /* An odd numbered level indicates right-to-left ordering */
-                    int flag = (bidi.getRunLevel(logicalIndex) & 1) == 1 ? Font.LAYOUT_RIGHT_TO_LEFT : Font.LAYOUT_LEFT_TO_RIGHT;
+                    int flag = (levels[logicalIndex] & 1) == 1 ? Font.LAYOUT_RIGHT_TO_LEFT : Font.LAYOUT_LEFT_TO_RIGHT;
                     layoutStyle(data, text, bidi.getRunStart(logicalIndex), bidi.getRunLimit(logicalIndex), flag);
                 }
             }
@@ -731,10 +853,64 @@ public class TextLayoutProcessor {
 
         /* If text is entirely left-to-right, then insert an node for the entire string */
         else {
-            layoutStyle(data, text, 0, text.length, Font.LAYOUT_LEFT_TO_RIGHT);
+            layoutStyle(data, text, 0, length, Font.LAYOUT_LEFT_TO_RIGHT);
         }
     }
 
+    /**
+     * Reorder runs from logical order to visual order, same as {@link Bidi#reorderVisually(byte[], int, Object[], int, int)}
+     * but on primitive arrays. Sequences of runs are reversed from the highest level to the lowest odd level.
+     *
+     * @param levels  the levels of runs in logical order, not modified
+     * @param indices logical run indices, reordered to visual order
+     * @param count   the number of runs
+     */
+    private static void reorderVisually(@Nonnull byte[] levels, @Nonnull int[] indices, int count) {
+        int highest = 0, lowestOdd = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            int level = levels[i];
+            highest = Math.max(highest, level);
+            if ((level & 1) != 0) {
+                lowestOdd = Math.min(lowestOdd, level);
+            }
+        }
+        for (int level = highest; level >= lowestOdd; level--) {
+            for (int i = 0; i < count; ) {
+                if (levels[indices[i]] >= level) {
+                    int j = i + 1;
+                    while (j < count && levels[indices[j]] >= level) {
+                        j++;
+                    }
+                    for (int l = i, r = j - 1; l < r; l++, r--) {
+                        int t = indices[l];
+                        indices[l] = indices[r];
+                        indices[r] = t;
+                    }
+                    i = j;
+                } else {
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Right-to-left scripts and bidi controls start from Hebrew block, so text
+     * consisting of chars below it never needs bidi analysis.
+     *
+     * @param text   the plain text
+     * @param length the length of the text
+     * @return {@code false} if the text is known to be left-to-right
+     */
+    private static boolean mayRequireBidi(@Nonnull char[] text, int length) {
+        for (int i = 0; i < length; i++) {
+            if (text[i] >= '\u0590') {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Analyze the best matching font and paragraph context, according to layout direction and generate glyph vector.
      * In some languages, the original Unicode code is mapped to another Unicode code for visual rendering.
@@ -839,9 +1015,12 @@ public class TextLayoutProcessor {
             effect = TextRenderEffect.NO_EFFECT;
         }
 
+        final EmojiManager emojiManager = EmojiManager.getInstance();
+
         /* Scan code point one by one, to use best matched font into segments */
         int codePoint;
         for (int next = start; next < limit; next++) {
+            final int index = next;
             char c1 = text[next];
             if (Character.isHighSurrogate(c1) && next + 1 < limit) {
                 char c2 = text[next + 1];
@@ -855,19 +1034,37 @@ public class TextLayoutProcessor {
                 codePoint = c1;
             }
 
+            /* Emoji sequences are replaced by sprites, ASCII chars never start one here, since
+             * digits are replaced with '0' above */
+            if (codePoint >= 0x80 && !style.isObfuscated()) {
+                Emoji emoji = emojiManager.findEmoji(text, index, limit);
+                if (emoji != null) {
+                    if (font != null) {
+                        layoutFont(data, text, last, index, flag, glyphManager.deriveFont(
+                                font, style.getFontStyle(), sDefaultFontSize), false, effect);
+                        font = null;
+                    }
+                    layoutEmoji(data, emoji, index, flag, effect);
+                    last = index + emoji.sequence.length();
+                    next = last - 1;
+                    continue;
+                }
+            }
+
             /* init the first font to use */
             if (font == null) {
                 font = glyphManager.lookupFont(codePoint);
+                last = index;
             } else {
                 Font f = glyphManager.lookupFont(codePoint);
                 /* singleton, so don't have to use equals(); space character (32) should not affect the font */
                 boolean layout = font != f && codePoint != 32;
                 if (layout) {
-                    layoutFont(data, text, last, next, flag, glyphManager.deriveFont(
+                    layoutFont(data, text, last, index, flag, glyphManager.deriveFont(
                             font, style.getFontStyle(), sDefaultFontSize), style.isObfuscated(),
                             effect);
                     font = f;
-                    last = next;
+                    last = index;
                 }
             }
         }
@@ -898,47 +1095,36 @@ public class TextLayoutProcessor {
             /* Random is not worthy to layout */
             layoutRandom(data, text, start, limit, flag, font, effect);
         } else {
-            /* The glyphCode matched to the same codePoint is specified in the font, they are different in different font */
-            GlyphVector vector = glyphManager.layoutGlyphVector(font, text, start, limit, flag);
-            int num = vector.getNumGlyphs();
-
-            final TexturedGlyph[] digits = glyphManager.lookupDigits(font);
-            final float factor = glyphManager.getResolutionFactor();
+            final TexturedGlyph[] digits = data.measureOnly ? null : glyphManager.lookupDigits(font);
 
-            for (int i = 0; i < num; i++) {
-                /* back compatibility for Java 8, since LayoutGlyphVector should not have non-standard glyphs
-                 * HarfBuzz is introduced in Java 11 or higher
-                 */
-                if (vector.getGlyphMetrics(i).getAdvanceX() == 0 &&
-                        vector.getGlyphMetrics(i).getBounds2D().getWidth() == 0) {
-                    continue;
-                }
-
-                int stripIndex = vector.getGlyphCharIndex(i) + start;
-                Point2D point = vector.getGlyphPosition(i);
-
-                float offset = (float) (point.getX() / factor);
-
-                if (flag == Font.LAYOUT_RIGHT_TO_LEFT) {
-                    offset += data.layoutRight;
-                } else {
-                    offset += data.advance;
+            float totalAdvance;
+            if (flag == Font.LAYOUT_RIGHT_TO_LEFT) {
+                /* Words are in reverse visual order, layout the whole run */
+                ShapingCache.ShapedRun run = shapingCache.lookup(glyphManager, font, text, start, limit, 0, flag);
+                addShapedGlyphs(data, text, start, data.layoutRight, run, font, digits, effect);
+                totalAdvance = run.advance;
+            } else if ((totalAdvance = layoutLatin(data, text, start, limit, font, digits, effect)) < 0) {
+                /* Layout word by word, each word includes its trailing spaces, and takes the first char of
+                 * next word as lookahead, to keep the kerning across the space */
+                totalAdvance = 0;
+                int wordStart = start;
+                for (int i = start; i < limit; i++) {
+                    if (text[i] == ' ' && (i + 1 == limit || text[i + 1] != ' ')) {
+                        ShapingCache.ShapedRun run = shapingCache.lookup(glyphManager, font, text, wordStart, i + 1,
+                                i + 1 < limit ? 1 : 0, flag);
+                        addShapedGlyphs(data, text, wordStart, data.advance + totalAdvance, run, font,
+                                digits, effect);
+                        totalAdvance += run.advance;
+                        wordStart = i + 1;
+                    }
                 }
-
-                char o = text[stripIndex];
-                /* Digits are not on SMP */
-                if (o == '0') {
-                    data.minimalList.add(new DigitGlyphRender(digits, effect, stripIndex, offset));
-                    continue;
+                if (wordStart < limit) {
+                    ShapingCache.ShapedRun run = shapingCache.lookup(glyphManager, font, text, wordStart, limit, 0, flag);
+                    addShapedGlyphs(data, text, wordStart, data.advance + totalAdvance, run, font,
+                            digits, effect);
+                    totalAdvance += run.advance;
                 }
-
-                int glyphCode = vector.getGlyphCode(i);
-                TexturedGlyph glyph = glyphManager.lookupGlyph(font, glyphCode);
-
-                data.minimalList.add(new StandardGlyphRender(glyph, effect, stripIndex, offset));
             }
-
-            float totalAdvance = (float) (vector.getGlyphPosition(num).getX() / factor);
             data.advance += totalAdvance;
 
             if (flag == Font.LAYOUT_RIGHT_TO_LEFT) {
@@ -950,23 +1136,76 @@ public class TextLayoutProcessor {
         }
     }
 
-    private void layoutEmoji(TextProcessData data, int codePoint, int start, int flag) {
-        float offset;
+    /**
+     * Fast path of left-to-right layout for printable ASCII text, using glyph and advance tables
+     * instead of {@link GlyphVector}.
+     *
+     * @return the advance of the run, or a negative value if the run is not eligible
+     */
+    private float layoutLatin(TextProcessData data, char[] text, int start, int limit, Font font,
+                              TexturedGlyph[] digits, byte effect) {
+        LatinGlyphTable table = shapingCache.getLatinTable(glyphManager, font);
+        if (table == null) {
+            return -1;
+        }
+        return table.layout(data, glyphManager, font, text, start, limit, data.advance, digits, effect);
+    }
+
+    /**
+     * Add glyphs of a shaped run to the current font layout.
+     *
+     * @param data         an object to store the results
+     * @param text         the plain text (without formatting codes)
+     * @param start        start index of the run in the text
+     * @param offset       offset X of the run
+     * @param run          the shaped run
+     * @param font         the derived font with fontStyle and fontSize
+     * @param digits       the digit glyphs of the font, null in {@link TextProcessData#measureOnly} mode
+     * @param effect       text render effect
+     */
+    private void addShapedGlyphs(TextProcessData data, char[] text, int start, float offset,
+                                 @Nonnull ShapingCache.ShapedRun run, Font font, TexturedGlyph[] digits,
+                                 byte effect) {
+        final int[] glyphCodes = run.glyphCodes;
+        final int[] charIndices = run.charIndices;
+        final float[] positions = run.positions;
+        for (int i = 0; i < glyphCodes.length; i++) {
+            int stripIndex = charIndices[i] + start;
+            /* Digits are not on SMP */
+            if (text[stripIndex] == '0') {
+                data.addGlyph(digits, TextRenderNode.TYPE_DIGIT | effect, stripIndex, positions[i] + offset);
+            } else {
+                data.addGlyph(data.measureOnly ? null : glyphManager.lookupGlyph(font, glyphCodes[i]),
+                        TextRenderNode.TYPE_STANDARD | effect, stripIndex, positions[i] + offset);
+            }
+        }
+    }
+
+    /**
+     * Layout an emoji sequence as a single glyph, with the sprite from {@link EmojiManager}.
+     *
+     * @param data   an object to store the results
+     * @param emoji  the emoji found at the start index
+     * @param start  start index of the sequence in the text
+     * @param flag   layout direction, either {@link Font#LAYOUT_LEFT_TO_RIGHT} or {@link Font#LAYOUT_RIGHT_TO_LEFT}
+     * @param effect text render effect
+     */
+    private void layoutEmoji(TextProcessData data, Emoji emoji, int start, int flag, byte effect) {
+        final float offset;
         if (flag == Font.LAYOUT_RIGHT_TO_LEFT) {
             offset = data.layoutRight;
         } else {
             offset = data.advance;
         }
 
-        data.minimalList.add(new StandardGlyphRender(glyphManager.lookupEmoji(codePoint), TextRenderEffect.NO_EFFECT, start, offset));
+        data.addGlyph(data.measureOnly ? null : glyphManager.lookupEmoji(emoji),
+                TextRenderNode.TYPE_STANDARD | effect, start, offset);
 
-        offset += 12;
-
-        data.advance += offset;
+        data.advance += GlyphManager.EMOJI_SIZE;
 
         if (flag == Font.LAYOUT_RIGHT_TO_LEFT) {
-            data.finishFontLayout(-offset);
-            data.layoutRight -= offset;
+            data.finishFontLayout(-GlyphManager.EMOJI_SIZE);
+            data.layoutRight -= GlyphManager.EMOJI_SIZE;
         } else {
             data.finishFontLayout(0);
         }
@@ -985,19 +1224,20 @@ public class TextLayoutProcessor {
      */
     private void layoutRandom(TextProcessData data, char[] text, int start, int limit, int flag, Font font,
                               byte effect) {
-        final TexturedGlyph[] digits = glyphManager.lookupDigits(font);
-        final float stdAdv = digits[0].advance;
+        final TexturedGlyph[] digits = data.measureOnly ? null : glyphManager.lookupDigits(font);
+        final float stdAdv = digits != null ? digits[0].advance : glyphManager.getDigitAdvance(font);
 
-        float offset;
+        final float origin;
         if (flag == Font.LAYOUT_RIGHT_TO_LEFT) {
-            offset = data.layoutRight;
+            origin = data.layoutRight;
         } else {
-            offset = data.advance;
+            origin = data.advance;
         }
 
+        float offset = 0;
         /* Process code point */
         for (int i = start; i < limit; i++) {
-            data.minimalList.add(new RandomGlyphRender(digits, effect, start + i, offset));
+            data.addGlyph(digits, TextRenderNode.TYPE_RANDOM | effect, i, origin + offset);
 
             offset += stdAdv;
 
@@ -1027,31 +1267,32 @@ public class TextLayoutProcessor {
      */
     private void adjustGlyphIndex(@Nonnull TextProcessData data) {
         /* Sort by stripIndex, mixed with LTR and RTL layout */
-        data.allList.sort(Comparator.comparingInt(g -> g.stringIndex));
+        data.sortGlyphs();
 
         final List<FormattingStyle> codes = data.codes;
-        final List<GlyphRender> glyphs = data.allList;
+        final int count = data.getGlyphCount();
         /* Shift stripIndex to stringIndex */
         /* Skip the default code */
         int codeIndex = 1, shift = 0;
-        for (GlyphRender glyph : glyphs) {
+        for (int i = 0; i < count; i++) {
+            final int stripIndex = data.getStringIndex(i);
             /*
              * Adjust the string index for each glyph to point into the original string with un-stripped color codes. The while
              * loop is necessary to handle multiple consecutive color codes with no visible glyphs between them. These new adjusted
              * stringIndex can now be compared against the color stringIndex during rendering. It also allows lookups of ASCII
              * digits in the original string for fast glyph replacement during rendering.
              */
-            while (codeIndex < codes.size() && glyph.stringIndex + shift >= codes.get(codeIndex).stringIndex) {
+            while (codeIndex < codes.size() && stripIndex + shift >= codes.get(codeIndex).stringIndex) {
                 shift += 2;
                 codeIndex++;
             }
-            glyph.stringIndex += shift;
+            data.setStringIndex(i, stripIndex + shift);
         }
     }
 
     private void insertColorState(@Nonnull TextProcessData data) {
         final List<FormattingStyle> codes = data.codes;
-        final List<GlyphRender> glyphs = data.allList;
+        final int count = data.getGlyphCount();
 
         int codeIndex = 0;
         while (codeIndex < codes.size() - 1 &&
@@ -1064,13 +1305,11 @@ public class TextLayoutProcessor {
         int color = codes.get(codeIndex).getColor();
         /* The default is no color */
         if (color != FormattingStyle.NO_SPECIFIED_COLOR) {
-            glyphs.get(0).color = color;
+            data.addColor(0, color);
         }
 
         if (++codeIndex < codes.size()) {
-            GlyphRender glyph;
-            for (int glyphIndex = 1; glyphIndex < glyphs.size(); glyphIndex++) {
-                glyph = glyphs.get(glyphIndex);
+            for (int glyphIndex = 1; glyphIndex < count; glyphIndex++) {
                 /*if (underline) {
                     if (strikethrough) {
                         glyph.effect = TextRenderEffect.UNDERLINE_STRIKETHROUGH;
@@ -1083,7 +1322,7 @@ public class TextLayoutProcessor {
                     data.hasEffect = true;
                 }*/
 
-                if (codeIndex < codes.size() && glyph.stringIndex > codes.get(codeIndex).stringIndex) {
+                if (codeIndex < codes.size() && data.getStringIndex(glyphIndex) > codes.get(codeIndex).stringIndex) {
                     /* In case of multiple consecutive color codes with the same stripIndex,
                     select the last one which will have active font style */
                     while (codeIndex < codes.size() - 1 &&
@@ -1094,7 +1333,7 @@ public class TextLayoutProcessor {
                     FormattingStyle s = codes.get(codeIndex);
                     if (s.getColor() != color) {
                         color = s.getColor();
-                        glyph.color = color;
+                        data.addColor(glyphIndex, color);
                     }
                     /*underline = s.isUnderline();
                     strikethrough = s.isStrikethrough();*/
@@ -0,0 +1,169 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics.text;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The layout result of a text for measurement only, which doesn't require glyph
+ * images. Glyphs are sorted by string index, and their widths are stored as
+ * prefix sums, so that searching by width is a binary search. The width of a glyph
+ * is the distance to the next glyph on its right, so that kerning applied by the
+ * layout is measured the same as drawn.
+ *
+ * @see TextLayoutProcessor#lookupMeasurement(CharSequence, net.minecraft.network.chat.Style)
+ * @since 2.0
+ */
+public class TextMeasurement {
+
+    public static final TextMeasurement EMPTY = new TextMeasurement(new int[0], new float[1], 0);
+
+    /**
+     * String index of each glyph, in the original string with formatting codes
+     */
+    private final int[] stringIndices;
+
+    /**
+     * The sum of widths of glyphs before each index
+     */
+    private final float[] prefixAdvances;
+
+    /**
+     * Total advance of the text
+     */
+    public final float advance;
+
+    private TextMeasurement(@Nonnull int[] stringIndices, @Nonnull float[] prefixAdvances, float advance) {
+        this.stringIndices = stringIndices;
+        this.prefixAdvances = prefixAdvances;
+        this.advance = advance;
+    }
+
+    /**
+     * Create the measurement from glyph positions of a layout.
+     *
+     * @param stringIndices string index of each glyph, sorted
+     * @param offsets       offset X of each glyph to the start of the text
+     * @param advance       total advance of the text, where the rightmost glyph ends
+     * @return the measurement
+     */
+    @Nonnull
+    public static TextMeasurement create(@Nonnull int[] stringIndices, @Nonnull float[] offsets, float advance) {
+        final int count = stringIndices.length;
+        if (count == 0 && advance == 0) {
+            return EMPTY;
+        }
+        final float[] prefixAdvances = new float[count + 1];
+        boolean ascending = true;
+        for (int i = 1; i < count; i++) {
+            if (offsets[i] < offsets[i - 1]) {
+                ascending = false;
+                break;
+            }
+        }
+        if (ascending) {
+            for (int i = 0; i < count; i++) {
+                float end = i + 1 < count ? offsets[i + 1] : advance;
+                prefixAdvances[i + 1] = prefixAdvances[i] + end - offsets[i];
+            }
+        } else {
+            /* Mixed with right-to-left runs, find the next glyph in visual order */
+            final float[] widths = new float[count];
+            final int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            IntArrays.mergeSort(order, (a, b) -> Float.compare(offsets[a], offsets[b]));
+            for (int i = 0; i < count; i++) {
+                float end = i + 1 < count ? offsets[order[i + 1]] : advance;
+                widths[order[i]] = end - offsets[order[i]];
+            }
+            for (int i = 0; i < count; i++) {
+                prefixAdvances[i + 1] = prefixAdvances[i] + widths[i];
+            }
+        }
+        return new TextMeasurement(stringIndices, prefixAdvances, advance);
+    }
+
+    public int getGlyphCount() {
+        return stringIndices.length;
+    }
+
+    /**
+     * Add the advance of each glyph to the char at its string index, other chars
+     * (formatting codes, non-first chars of a cluster) are not grapheme bounds.
+     *
+     * @param advances the array to add advances to
+     * @param offset   the position of the text in the array
+     */
+    public void getCharAdvances(@Nonnull float[] advances, int offset) {
+        final float[] prefix = prefixAdvances;
+        for (int i = 0; i < stringIndices.length; i++) {
+            advances[offset + stringIndices[i]] += prefix[i + 1] - prefix[i];
+        }
+    }
+
+    /**
+     * Get the number of chars from the start of the text that completely fit in the width.
+     *
+     * @param width  the max width
+     * @param length the length of the text
+     * @return the string index of the first glyph that doesn't fit, or the length if all fit
+     */
+    public int indexAtWidth(float width, int length) {
+        final float[] prefix = prefixAdvances;
+        final int count = stringIndices.length;
+        /* Find the first glyph whose end exceeds the width */
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prefix[mid + 1] <= width) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < count ? stringIndices[low] : length;
+    }
+
+    /**
+     * Get the start index of the tail of the text that completely fits in the width.
+     *
+     * @param width the max width
+     * @return the string index of the last glyph that doesn't fit, or 0 if all fit
+     */
+    public int tailIndexAtWidth(float width) {
+        final float[] prefix = prefixAdvances;
+        final int count = stringIndices.length;
+        final float total = prefix[count];
+        /* Find the last glyph whose start is too far from the end */
+        int low = 0, high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (total - prefix[mid] > width) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low > 0 ? stringIndices[low - 1] : 0;
+    }
+}
@@ -18,9 +18,16 @@
 
 package icyllis.modernui.graphics.text;
 
-import icyllis.modernui.graphics.font.pipeline.GlyphRender;
+import com.ibm.icu.text.Bidi;
+import icyllis.modernui.graphics.font.pipeline.TextRenderNode;
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -35,24 +42,50 @@ public class TextProcessData {
     public final List<FormattingStyle> codes = new ArrayList<>();
 
     /**
-     * List of all processing glyphs
+     * Formatting styles are reused across layouts, codes are taken from the head
      */
-    public final List<GlyphRender> allList = new ArrayList<>();
+    private final List<FormattingStyle> stylePool = new ArrayList<>();
 
     /**
-     * List of processing glyphs with same layout direction
+     * The buffer of stripped text (without formatting codes), the length is the capacity
      */
-    public final List<GlyphRender> layoutList = new ArrayList<>();
+    private char[] text = new char[64];
 
     /**
-     * Used in layoutFont
+     * Reused for the text requiring bidi analysis
      */
-    public final List<GlyphRender> minimalList = new ArrayList<>();
+    private Bidi bidi;
 
     /*
-     * All color states
+     * Levels and visual order of bidi runs
      */
-    //public final List<ColorStateInfo> colors = new ArrayList<>();
+    private byte[] runLevels = new byte[8];
+    private int[] visualRuns = new int[8];
+
+    /*
+     * Processing glyphs in parallel lists, see TextRenderNode. Glyphs are laid out
+     * in font runs within style runs, both are contiguous ranges at the tail, so
+     * the ranges are tracked by start indices instead of moving between lists.
+     */
+    private final ObjectArrayList<Object> glyphs = new ObjectArrayList<>();
+    private final FloatArrayList offsets = new FloatArrayList();
+    private final IntArrayList stringIndices = new IntArrayList();
+    private final ByteArrayList flags = new ByteArrayList();
+
+    /**
+     * Start index of processing glyphs with same layout direction
+     */
+    private int layoutStart;
+
+    /**
+     * Start index of processing glyphs in layoutFont
+     */
+    private int fontStart;
+
+    /**
+     * Pairs of glyph index and color
+     */
+    private final IntArrayList colors = new IntArrayList();
 
     /**
      * Indicates current style index in {@link #codes} for layout processing
@@ -74,65 +107,201 @@ public class TextProcessData {
      */
     public boolean hasEffect;
 
-    public void finishStyleLayout(float adjust) {
-        if (adjust != 0) {
-            layoutList.forEach(e -> e.offsetX += adjust);
+    /**
+     * True if only advances are required, then textured glyphs are not looked up
+     * and {@link #createMeasurement()} is used instead of {@link #createNode()}
+     */
+    public boolean measureOnly;
+
+    /**
+     * Add a formatting style from the pool.
+     *
+     * @param stringIndex the index in the original string
+     * @param stripIndex  the index in the stripped text
+     * @param color       the color, or {@link FormattingStyle#NO_SPECIFIED_COLOR}
+     * @param flags       the font style and effect flags
+     */
+    public void addCode(int stringIndex, int stripIndex, int color, byte flags) {
+        final int index = codes.size();
+        final FormattingStyle style;
+        if (index < stylePool.size()) {
+            style = stylePool.get(index);
+        } else {
+            style = new FormattingStyle();
+            stylePool.add(style);
+        }
+        style.set(stringIndex, stripIndex, color, flags);
+        codes.add(style);
+    }
+
+    /**
+     * Get the buffer of stripped text with at least the given capacity.
+     *
+     * @param length the length of the original string
+     * @return the buffer
+     */
+    @Nonnull
+    public char[] obtainText(int length) {
+        if (text.length < length) {
+            text = new char[Math.max(length, text.length << 1)];
+        }
+        return text;
+    }
+
+    /**
+     * Get an exact copy of the stripped text. Shaping takes the chars around a run as
+     * context, so the leftover chars of a longer string in the buffer must not be seen.
+     *
+     * @param length the length of the stripped text
+     * @return the stripped text
+     */
+    @Nonnull
+    public char[] copyText(int length) {
+        final char[] result = new char[length];
+        System.arraycopy(text, 0, result, 0, length);
+        return result;
+    }
+
+    @Nonnull
+    public Bidi getBidi() {
+        if (bidi == null) {
+            bidi = new Bidi();
+        }
+        return bidi;
+    }
+
+    @Nonnull
+    public byte[] obtainRunLevels(int runCount) {
+        if (runLevels.length < runCount) {
+            runLevels = new byte[Math.max(runCount, runLevels.length << 1)];
         }
-        allList.addAll(layoutList);
-        layoutList.clear();
+        return runLevels;
+    }
+
+    @Nonnull
+    public int[] obtainVisualRuns(int runCount) {
+        if (visualRuns.length < runCount) {
+            visualRuns = new int[Math.max(runCount, visualRuns.length << 1)];
+        }
+        return visualRuns;
+    }
+
+    /**
+     * Add a glyph in current font layout.
+     *
+     * @param glyph      a textured glyph, or digits for digit and random type,
+     *                   can be null for standard type in {@link #measureOnly} mode
+     * @param flags      glyph type and effect
+     * @param stripIndex the index in the stripped text, adjusted to string index later
+     * @param offsetX    offset X to the start of the text
+     */
+    public void addGlyph(@Nullable Object glyph, int flags, int stripIndex, float offsetX) {
+        glyphs.add(glyph);
+        this.flags.add((byte) flags);
+        stringIndices.add(stripIndex);
+        offsets.add(offsetX);
+    }
+
+    public int getGlyphCount() {
+        return flags.size();
+    }
+
+    public int getStringIndex(int i) {
+        return stringIndices.getInt(i);
+    }
+
+    public void setStringIndex(int i, int stringIndex) {
+        stringIndices.set(i, stringIndex);
+    }
+
+    public void addColor(int glyphIndex, int color) {
+        colors.add(glyphIndex);
+        colors.add(color);
+    }
+
+    public void finishStyleLayout(float adjust) {
+        adjustOffsets(layoutStart, adjust);
+        layoutStart = fontStart = flags.size();
     }
 
     public void finishFontLayout(float adjust) {
+        adjustOffsets(fontStart, adjust);
+        fontStart = flags.size();
+    }
+
+    private void adjustOffsets(int from, float adjust) {
         if (adjust != 0) {
-            minimalList.forEach(e -> e.offsetX += adjust);
+            final float[] a = offsets.elements();
+            for (int i = from, e = offsets.size(); i < e; i++) {
+                a[i] += adjust;
+            }
         }
-        layoutList.addAll(minimalList);
-        minimalList.clear();
     }
 
-    /*private void merge(@Nonnull List<float[]> list, int color, byte type) {
-        if (list.isEmpty()) {
-            return;
-        }
-        list.sort((o1, o2) -> Float.compare(o1[0], o2[0]));
-        float[][] res = new float[list.size()][2];
-        int i = -1;
-        for (float[] interval : list) {
-            if (i == -1 || interval[0] > res[i][1]) {
-                res[++i] = interval;
-            } else {
-                res[i][1] = Math.max(res[i][1], interval[1]);
+    /**
+     * Stable sort glyphs by strip index, mixed with LTR and RTL layout.
+     */
+    public void sortGlyphs() {
+        final int[] indices = stringIndices.elements();
+        final int size = stringIndices.size();
+        boolean sorted = true;
+        for (int i = 1; i < size; i++) {
+            if (indices[i - 1] > indices[i]) {
+                sorted = false;
+                break;
             }
         }
-        res = Arrays.copyOf(res, i + 1);
-        for (float[] in : res) {
-            effects.add(new EffectRenderInfo(in[0], in[1], color, type));
+        if (sorted) {
+            return;
         }
-        list.clear();
-    }*/
+        final Object[] g = glyphs.elements();
+        final float[] o = offsets.elements();
+        final byte[] f = flags.elements();
+        Arrays.mergeSort(0, size, (a, b) -> Integer.compare(indices[a], indices[b]), (a, b) -> {
+            Object t = g[a];
+            g[a] = g[b];
+            g[b] = t;
+            float to = o[a];
+            o[a] = o[b];
+            o[b] = to;
+            int ti = indices[a];
+            indices[a] = indices[b];
+            indices[b] = ti;
+            byte tf = f[a];
+            f[a] = f[b];
+            f[b] = tf;
+        });
+    }
 
     @Nonnull
-    public GlyphRender[] wrapGlyphs() {
-        //return allList.stream().map(ProcessingGlyph::toGlyph).toArray(GlyphRenderInfo[]::new);
-        return allList.toArray(new GlyphRender[0]);
+    public TextRenderNode createNode() {
+        return new TextRenderNode(glyphs.toArray(), offsets.toFloatArray(), stringIndices.toIntArray(),
+                flags.toByteArray(), colors.toIntArray(), advance, hasEffect);
     }
 
-    /*@Nonnull
-    public ColorStateInfo[] wrapColors() {
-        if (colors.isEmpty()) {
-            return ColorStateInfo.NO_COLOR_STATE;
-        }
-        return colors.toArray(new ColorStateInfo[0]);
-    }*/
+    /**
+     * Create the measurement after glyphs are sorted and string indices are adjusted.
+     *
+     * @return the measurement
+     */
+    @Nonnull
+    public TextMeasurement createMeasurement() {
+        return TextMeasurement.create(stringIndices.toIntArray(), offsets.toFloatArray(), advance);
+    }
 
     public void release() {
-        allList.clear();
+        glyphs.clear();
+        offsets.clear();
+        stringIndices.clear();
+        flags.clear();
+        colors.clear();
         codes.clear();
-        //colors.clear();
+        layoutStart = 0;
+        fontStart = 0;
         codeIndex = 0;
         advance = 0;
         layoutRight = 0;
         hasEffect = false;
+        measureOnly = false;
     }
-
 }
@@ -18,16 +18,17 @@
 
 package icyllis.modernui.mcimpl.mixin;
 
-import net.minecraft.client.renderer.PostChain;
-import net.minecraft.client.renderer.PostPass;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import net.minecraft.client.renderer.MultiBufferSource;
+import net.minecraft.client.renderer.RenderType;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.gen.Accessor;
 
-import java.util.List;
+import java.util.Map;
 
-@Mixin(PostChain.class)
-public interface AccessPostChain {
+@Mixin(MultiBufferSource.BufferSource.class)
+public interface AccessBufferSource {
 
-    @Accessor("passes")
-    List<PostPass> getPasses();
+    @Accessor("fixedBuffers")
+    Map<RenderType, BufferBuilder> getFixedBuffers();
 }
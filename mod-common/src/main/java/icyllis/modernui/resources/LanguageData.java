@@ -18,30 +18,110 @@
 
 package icyllis.modernui.resources;
 
-import it.unimi.dsi.fastutil.objects.Object2ObjectAVLTreeMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.HashCommon;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.stream.IntStream;
 
+/**
+ * Immutable translation table, built once per language load. Keys and values are
+ * packed into a single char buffer and indexed by an open-addressed hash table with
+ * linear probing, so a lookup costs a hash and usually one comparison.
+ */
 public class LanguageData {
 
     private static LanguageData sInstance;
 
-    private Object2ObjectMap<String, String> mData;
+    // tables larger than this will be built in parallel
+    private static final int PARALLEL_THRESHOLD = 8192;
 
-    private boolean mDefaultRTL;
+    private static final int[] EMPTY_TABLE = new int[1];
 
-    public LanguageData() {
+    // slot to entry index + 1, 0 means empty, length is a power of two
+    private final int[] mTable;
+    private final int mMask;
+
+    // per entry, mixed hash of the key
+    private final int[] mHashes;
+    // per entry, start of the key in mChars, the last one is the length of mChars
+    private final int[] mOffsets;
+    // per entry, length of the key, the value follows the key
+    private final int[] mKeyLengths;
+
+    private final char[] mChars;
+
+    // values materialized on lookup, racy but benign
+    private final String[] mValues;
+
+    private final boolean mDefaultRTL;
 
+    public LanguageData() {
+        mTable = EMPTY_TABLE;
+        mMask = 0;
+        mHashes = mKeyLengths = new int[0];
+        mOffsets = new int[1];
+        mChars = new char[0];
+        mValues = new String[0];
+        mDefaultRTL = false;
     }
 
-    public LanguageData(Map<String, String> data, boolean defaultRTL) {
-        mData = new Object2ObjectAVLTreeMap<>(data);
+    public LanguageData(@Nonnull Map<String, String> data, boolean defaultRTL) {
+        final int size = data.size();
+        final String[] keys = new String[size];
+        final String[] values = new String[size];
+        int n = 0;
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            keys[n] = entry.getKey();
+            values[n++] = entry.getValue();
+        }
+        final boolean parallel = size >= PARALLEL_THRESHOLD;
+
+        mHashes = new int[size];
+        mKeyLengths = new int[size];
+        mOffsets = new int[size + 1];
+        range(size, parallel).forEach(i -> {
+            mHashes[i] = HashCommon.mix(keys[i].hashCode());
+            mKeyLengths[i] = keys[i].length();
+            mOffsets[i + 1] = mKeyLengths[i] + values[i].length();
+        });
+        if (parallel) {
+            Arrays.parallelPrefix(mOffsets, Integer::sum);
+        } else {
+            for (int i = 1; i <= size; i++) {
+                mOffsets[i] += mOffsets[i - 1];
+            }
+        }
+
+        mChars = new char[mOffsets[size]];
+        range(size, parallel).forEach(i -> {
+            int offset = mOffsets[i];
+            keys[i].getChars(0, mKeyLengths[i], mChars, offset);
+            values[i].getChars(0, values[i].length(), mChars, offset + mKeyLengths[i]);
+        });
+
+        mTable = new int[HashCommon.arraySize(size, 0.5f)];
+        mMask = mTable.length - 1;
+        for (int i = 0; i < size; i++) {
+            int pos = mHashes[i] & mMask;
+            while (mTable[pos] != 0) {
+                pos = (pos + 1) & mMask;
+            }
+            mTable[pos] = i + 1;
+        }
+
+        mValues = new String[size];
         mDefaultRTL = defaultRTL;
     }
 
+    @Nonnull
+    private static IntStream range(int size, boolean parallel) {
+        IntStream stream = IntStream.range(0, size);
+        return parallel ? stream.parallel() : stream;
+    }
+
     @Nonnull
     public static LanguageData getInstance() {
         return sInstance;
@@ -53,16 +133,60 @@ public class LanguageData {
 
     @Nullable
     public String get(@Nonnull String key) {
-        return mData.get(key);
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        String value = mValues[index];
+        if (value == null) {
+            int start = mOffsets[index] + mKeyLengths[index];
+            value = new String(mChars, start, mOffsets[index + 1] - start);
+            mValues[index] = value;
+        }
+        return value;
     }
 
     @Nonnull
     public String getOrDefault(@Nonnull String key) {
-        String ret = mData.get(key);
+        String ret = get(key);
         return ret == null ? key : ret;
     }
 
+    public boolean containsKey(@Nonnull String key) {
+        return indexOf(key) >= 0;
+    }
+
+    public int size() {
+        return mHashes.length;
+    }
+
     public boolean isDefaultRTL() {
         return mDefaultRTL;
     }
+
+    private int indexOf(@Nonnull String key) {
+        final int[] table = mTable;
+        final int hash = HashCommon.mix(key.hashCode());
+        final int length = key.length();
+        int pos = hash & mMask;
+        int slot;
+        while ((slot = table[pos]) != 0) {
+            int index = slot - 1;
+            if (mHashes[index] == hash && mKeyLengths[index] == length && matches(key, mOffsets[index], length)) {
+                return index;
+            }
+            pos = (pos + 1) & mMask;
+        }
+        return -1;
+    }
+
+    private boolean matches(@Nonnull String key, int offset, int length) {
+        final char[] chars = mChars;
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -455,5 +455,45 @@ public class LineBreaker {
         private Result(List<BreakPoint> breakPoints) {
             mBreakPoints = breakPoints;
         }
+
+        /**
+         * Returns the number of lines in the paragraph, the last line is not included
+         * if it doesn't end with a break point.
+         *
+         * @return number of lines
+         */
+        public int getLineCount() {
+            return mBreakPoints.size();
+        }
+
+        /**
+         * Returns character offset of the break for a given line.
+         *
+         * @param lineIndex an index of the line.
+         * @return the break offset.
+         */
+        public int getLineBreakOffset(int lineIndex) {
+            return mBreakPoints.get(lineIndex).mOffset;
+        }
+
+        /**
+         * Returns width of a given line in pixels.
+         *
+         * @param lineIndex an index of the line.
+         * @return width of the line in pixels
+         */
+        public float getLineWidth(int lineIndex) {
+            return mBreakPoints.get(lineIndex).mLineWidth;
+        }
+
+        /**
+         * Returns true if the line has a TAB character.
+         *
+         * @param lineIndex an index of the line.
+         * @return true if the line has a TAB character
+         */
+        public boolean hasLineTab(int lineIndex) {
+            return mBreakPoints.get(lineIndex).mHasTabChar;
+        }
     }
 }
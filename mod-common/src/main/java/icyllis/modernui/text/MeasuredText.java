@@ -53,6 +53,7 @@ public class MeasuredText {
         @Nonnull
         private final char[] mText;
         private int mCurrentOffset = 0;
+        private float[] mAdvances;
 
         public Builder(@Nonnull char[] text) {
             mText = text;
@@ -67,6 +68,19 @@ public class MeasuredText {
             return this;
         }
 
+        /**
+         * Use the given advances instead of measuring the style runs, when the text
+         * has been laid out by another layout engine.
+         *
+         * @param advances advance of each char, zero if the char is not a grapheme bound
+         * @return this builder
+         */
+        public Builder setAdvances(@Nonnull float[] advances) {
+            Preconditions.checkArgument(advances.length == mText.length, "Advances must match the text length");
+            mAdvances = advances;
+            return this;
+        }
+
         /**
          * Starts laying-out the text and creates a MeasuredText for the result.
          * <p>
@@ -78,7 +92,9 @@ public class MeasuredText {
             Preconditions.checkState(mCurrentOffset >= 0, "Builder can not be reused.");
             Preconditions.checkState(mCurrentOffset == mText.length, "Style info has not been provided for all text.");
             mCurrentOffset = -1;
-            return new MeasuredText(mText, mRuns);
+            MeasuredText measuredText = new MeasuredText(mText, mRuns);
+            measuredText.mAdvances = mAdvances;
+            return measuredText;
         }
     }
 
@@ -200,7 +200,8 @@ abstract class SpannableStringInternal {
         }
 
         if (mSpanCount + 1 >= mSpans.length) {
-            Object[] newSpans = new Object[mSpanCount + (mSpanCount >> 1)];
+            // the initial array is empty
+            Object[] newSpans = new Object[Math.max(mSpanCount + (mSpanCount >> 1), 8)];
             int[] newData = new int[newSpans.length * COLUMNS];
 
             System.arraycopy(mSpans, 0, newSpans, 0, mSpanCount);
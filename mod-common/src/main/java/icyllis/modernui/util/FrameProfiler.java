@@ -0,0 +1,486 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.util;
+
+import icyllis.modernui.ModernUI;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import org.apache.logging.log4j.Marker;
+import org.apache.logging.log4j.MarkerManager;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per-frame instrumentation of UI and text rendering, only used on render thread.
+ * All methods are no-op if the profiler is disabled, except a field read.
+ * <p>
+ * Sections are timed in nanoseconds and may be nested, for example text layout
+ * and glyph rasterization can happen in drawing, so their times are inclusive.
+ * View times are also aggregated per View class, where nested views are excluded
+ * (self time). Each frame is committed as a JFR event named {@code modernui.Frame}
+ * when Java Flight Recorder is available and recording.
+ * <pre>
+ * long start = FrameProfiler.begin();
+ * doWork();
+ * FrameProfiler.end(FrameProfiler.DRAW, start);
+ * </pre>
+ */
+public final class FrameProfiler {
+
+    public static final Marker MARKER = MarkerManager.getMarker("Profiler");
+
+    /**
+     * Timed sections
+     */
+    public static final int MEASURE = 0;
+    public static final int LAYOUT = 1;
+    public static final int DRAW = 2;
+    public static final int ANIMATION = 3;
+    public static final int INPUT = 4;
+    public static final int TEXT_LAYOUT = 5;
+    public static final int RASTERIZE = 6;
+    public static final int UPLOAD = 7;
+
+    public static final int SECTION_COUNT = 8;
+
+    /**
+     * Counters
+     */
+    public static final int TEXT_CACHE_MISS = 0;
+    public static final int GLYPH_CACHE_MISS = 1;
+    public static final int TEXTURE_UPLOAD = 2;
+    public static final int DRAW_CALL = 3;
+    public static final int SHADER_CHANGE = 4;
+    public static final int TEXTURE_BIND = 5;
+    public static final int SCISSOR_CHANGE = 6;
+
+    public static final int COUNTER_COUNT = 7;
+
+    private static final String[] SECTION_NAMES = {"measure", "layout", "draw", "animation", "input",
+            "textLayout", "rasterize", "upload"};
+    private static final String[] COUNTER_NAMES = {"textCacheMisses", "glyphCacheMisses", "textureUploads",
+            "drawCalls", "shaderChanges", "textureBinds", "scissorChanges"};
+
+    /**
+     * Number of frames kept in history
+     */
+    public static final int HISTORY_SIZE = 120;
+
+    private static boolean sEnabled;
+
+    // the work is not recorded in any frame, such as drawing the profiler itself
+    private static boolean sSuspended;
+
+    // current frame
+    private static final long[] sSections = new long[SECTION_COUNT];
+    private static final int[] sCounters = new int[COUNTER_COUNT];
+
+    // ring buffer of past frames
+    private static final long[] sHistory = new long[HISTORY_SIZE * SECTION_COUNT];
+    private static final int[] sCounterHistory = new int[HISTORY_SIZE * COUNTER_COUNT];
+    private static int sHistoryPos;
+    private static int sFrameCount;
+
+    // nested views, the total time of children at each depth
+    private static long[] sChildNanos = new long[32];
+    private static int sDepth;
+
+    private static final Reference2ObjectOpenHashMap<Class<?>, ViewStats> sViewStats =
+            new Reference2ObjectOpenHashMap<>();
+
+    @Nullable
+    private static FrameEventExporter sExporter;
+    private static boolean sExporterLoaded;
+
+    private FrameProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @return whether sections and counters are being recorded now
+     */
+    public static boolean isRecording() {
+        return sEnabled && !sSuspended;
+    }
+
+    /**
+     * Suspend or resume recording. While suspended, sections and counters are not recorded,
+     * this is used for the work that should not be counted, such as the profiler overlay.
+     *
+     * @param suspended whether to suspend
+     */
+    public static void setSuspended(boolean suspended) {
+        sSuspended = suspended;
+    }
+
+    /**
+     * Enable or disable the profiler, this also clears all collected data.
+     * Must not be called in a frame.
+     *
+     * @param enabled whether to profile
+     */
+    public static void setEnabled(boolean enabled) {
+        if (sEnabled == enabled) {
+            return;
+        }
+        sEnabled = enabled;
+        Arrays.fill(sSections, 0);
+        Arrays.fill(sCounters, 0);
+        Arrays.fill(sHistory, 0);
+        Arrays.fill(sCounterHistory, 0);
+        sHistoryPos = 0;
+        sFrameCount = 0;
+        sDepth = 0;
+        sViewStats.clear();
+        if (enabled && !sExporterLoaded) {
+            sExporterLoaded = true;
+            sExporter = FrameEventExporter.create();
+        }
+        ModernUI.LOGGER.info(MARKER, "Frame profiler {}", enabled ? "enabled" : "disabled");
+    }
+
+    /**
+     * Start timing a section.
+     *
+     * @return the start time, or 0 if disabled
+     */
+    public static long begin() {
+        return sEnabled && !sSuspended ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Finish timing a section.
+     *
+     * @param section the section
+     * @param start   the value returned by {@link #begin()}
+     */
+    public static void end(int section, long start) {
+        if (start != 0) {
+            sSections[section] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Start timing a View method, must be paired with {@link #endView(Class, int, long)}.
+     *
+     * @return the start time, or 0 if disabled
+     */
+    public static long beginView() {
+        if (!sEnabled || sSuspended) {
+            return 0;
+        }
+        if (++sDepth == sChildNanos.length) {
+            sChildNanos = Arrays.copyOf(sChildNanos, sDepth << 1);
+        }
+        sChildNanos[sDepth] = 0;
+        return System.nanoTime();
+    }
+
+    /**
+     * Finish timing a View method.
+     *
+     * @param clazz   the class of the view
+     * @param section one of {@link #MEASURE}, {@link #LAYOUT} and {@link #DRAW}
+     * @param start   the value returned by {@link #beginView()}
+     */
+    public static void endView(@Nonnull Class<?> clazz, int section, long start) {
+        if (start == 0) {
+            return;
+        }
+        final long total = System.nanoTime() - start;
+        final long self = total - sChildNanos[sDepth--];
+        sChildNanos[sDepth] += total;
+        ViewStats stats = sViewStats.get(clazz);
+        if (stats == null) {
+            stats = new ViewStats(clazz);
+            sViewStats.put(clazz, stats);
+        }
+        stats.mNanos[section] += self;
+        stats.mCalls[section]++;
+    }
+
+    /**
+     * Increase a counter in current frame.
+     *
+     * @param counter the counter
+     */
+    public static void count(int counter) {
+        if (sEnabled && !sSuspended) {
+            sCounters[counter]++;
+        }
+    }
+
+    /**
+     * Get the value of a counter in current frame.
+     *
+     * @param counter the counter
+     * @return counter value
+     */
+    public static int getCount(int counter) {
+        return sCounters[counter];
+    }
+
+    /**
+     * Commit current frame to history, called at the end of each frame.
+     */
+    public static void endFrame() {
+        if (!sEnabled) {
+            return;
+        }
+        final int pos = sHistoryPos;
+        System.arraycopy(sSections, 0, sHistory, pos * SECTION_COUNT, SECTION_COUNT);
+        System.arraycopy(sCounters, 0, sCounterHistory, pos * COUNTER_COUNT, COUNTER_COUNT);
+        if (sExporter != null) {
+            sExporter.commit(sSections, sCounters);
+        }
+        sHistoryPos = (pos + 1) % HISTORY_SIZE;
+        sFrameCount++;
+        Arrays.fill(sSections, 0);
+        Arrays.fill(sCounters, 0);
+    }
+
+    /**
+     * @return the number of frames profiled since enabled
+     */
+    public static int getFrameCount() {
+        return sFrameCount;
+    }
+
+    /**
+     * Get the time of a section in a past frame.
+     *
+     * @param framesAgo 0 is the last completed frame, must be less than {@link #HISTORY_SIZE}
+     * @param section   the section
+     * @return time in nanoseconds
+     */
+    public static long getSectionNanos(int framesAgo, int section) {
+        int pos = (sHistoryPos - 1 - framesAgo + HISTORY_SIZE) % HISTORY_SIZE;
+        return sHistory[pos * SECTION_COUNT + section];
+    }
+
+    /**
+     * Get the value of a counter in a past frame.
+     *
+     * @param framesAgo 0 is the last completed frame, must be less than {@link #HISTORY_SIZE}
+     * @param counter   the counter
+     * @return counter value
+     */
+    public static int getCounter(int framesAgo, int counter) {
+        int pos = (sHistoryPos - 1 - framesAgo + HISTORY_SIZE) % HISTORY_SIZE;
+        return sCounterHistory[pos * COUNTER_COUNT + counter];
+    }
+
+    /**
+     * Get the average time of a section in recent frames.
+     *
+     * @param section the section
+     * @return time in nanoseconds
+     */
+    public static long getAverageNanos(int section) {
+        final int frames = Math.min(sFrameCount, HISTORY_SIZE);
+        if (frames == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < frames; i++) {
+            sum += sHistory[i * SECTION_COUNT + section];
+        }
+        return sum / frames;
+    }
+
+    @Nonnull
+    public static String getSectionName(int section) {
+        return SECTION_NAMES[section];
+    }
+
+    @Nonnull
+    public static String getCounterName(int counter) {
+        return COUNTER_NAMES[counter];
+    }
+
+    /**
+     * Get View classes taking most time since enabled.
+     *
+     * @param maxCount max number of results
+     * @return a new list sorted by total self time, descending
+     */
+    @Nonnull
+    public static List<ViewStats> getTopViews(int maxCount) {
+        if (sViewStats.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ViewStats> list = new ArrayList<>(sViewStats.values());
+        list.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+        return list.size() > maxCount ? new ArrayList<>(list.subList(0, maxCount)) : list;
+    }
+
+    /**
+     * Aggregated self time of a View class.
+     */
+    public static class ViewStats {
+
+        private final Class<?> mClass;
+        private final long[] mNanos = new long[DRAW + 1];
+        private final int[] mCalls = new int[DRAW + 1];
+
+        private ViewStats(Class<?> clazz) {
+            mClass = clazz;
+        }
+
+        @Nonnull
+        public Class<?> getViewClass() {
+            return mClass;
+        }
+
+        /**
+         * @param section one of {@link #MEASURE}, {@link #LAYOUT} and {@link #DRAW}
+         * @return self time in nanoseconds
+         */
+        public long getNanos(int section) {
+            return mNanos[section];
+        }
+
+        /**
+         * @param section one of {@link #MEASURE}, {@link #LAYOUT} and {@link #DRAW}
+         * @return number of calls
+         */
+        public int getCalls(int section) {
+            return mCalls[section];
+        }
+
+        public long getTotalNanos() {
+            return mNanos[MEASURE] + mNanos[LAYOUT] + mNanos[DRAW];
+        }
+    }
+
+    /**
+     * Commits frames to Java Flight Recorder. The mod targets Java 8 where the JFR API
+     * is absent, so the event type is created dynamically through reflection, that is
+     * available on Java 11 and above.
+     */
+    private static final class FrameEventExporter {
+
+        private final Object mFactory;
+        private final Method mNewEvent;
+        private final Method mIsEnabled;
+        private final Object mEventType;
+        private final Method mBegin;
+        private final Method mEnd;
+        private final Method mSet;
+        private final Method mCommit;
+
+        // the event of current frame
+        @Nullable
+        private Object mEvent;
+
+        private FrameEventExporter(Object factory, Method newEvent, Object eventType, Method isEnabled,
+                                   Method begin, Method end, Method set, Method commit) {
+            mFactory = factory;
+            mNewEvent = newEvent;
+            mEventType = eventType;
+            mIsEnabled = isEnabled;
+            mBegin = begin;
+            mEnd = end;
+            mSet = set;
+            mCommit = commit;
+        }
+
+        @Nullable
+        static FrameEventExporter create() {
+            try {
+                final ClassLoader loader = ClassLoader.getSystemClassLoader();
+                final Class<?> elementClass = Class.forName("jdk.jfr.AnnotationElement", true, loader);
+                final Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor", true, loader);
+                final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory", true, loader);
+                final Class<?> eventClass = Class.forName("jdk.jfr.Event", true, loader);
+                final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType", true, loader);
+                final Class<?> nameClass = Class.forName("jdk.jfr.Name", true, loader);
+                final Class<?> labelClass = Class.forName("jdk.jfr.Label", true, loader);
+                final Class<?> categoryClass = Class.forName("jdk.jfr.Category", true, loader);
+                final Class<?> timespanClass = Class.forName("jdk.jfr.Timespan", true, loader);
+                final Class<?> stackTraceClass = Class.forName("jdk.jfr.StackTrace", true, loader);
+
+                final Constructor<?> element = elementClass.getConstructor(Class.class, Object.class);
+                final Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+
+                final List<Object> annotations = new ArrayList<>();
+                annotations.add(element.newInstance(nameClass, "modernui.Frame"));
+                annotations.add(element.newInstance(labelClass, "UI Frame"));
+                annotations.add(element.newInstance(categoryClass, new String[]{"Modern UI"}));
+                annotations.add(element.newInstance(stackTraceClass, false));
+
+                final List<Object> fields = new ArrayList<>();
+                for (String name : SECTION_NAMES) {
+                    fields.add(descriptor.newInstance(long.class, name, Collections.singletonList(
+                            element.newInstance(timespanClass, "NANOSECONDS"))));
+                }
+                for (String name : COUNTER_NAMES) {
+                    fields.add(descriptor.newInstance(int.class, name, Collections.emptyList()));
+                }
+
+                final Object factory = factoryClass.getMethod("create", List.class, List.class)
+                        .invoke(null, annotations, fields);
+                final Object eventType = factoryClass.getMethod("getEventType").invoke(factory);
+                factoryClass.getMethod("register").invoke(factory);
+                return new FrameEventExporter(factory, factoryClass.getMethod("newEvent"),
+                        eventType, eventTypeClass.getMethod("isEnabled"),
+                        eventClass.getMethod("begin"), eventClass.getMethod("end"),
+                        eventClass.getMethod("set", int.class, Object.class), eventClass.getMethod("commit"));
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                ModernUI.LOGGER.debug(MARKER, "Flight Recorder is not available, frame events disabled", e);
+                return null;
+            }
+        }
+
+        void commit(@Nonnull long[] sections, @Nonnull int[] counters) {
+            try {
+                final Object event = mEvent;
+                if (event != null) {
+                    mEnd.invoke(event);
+                    int index = 0;
+                    for (long nanos : sections) {
+                        mSet.invoke(event, index++, nanos);
+                    }
+                    for (int count : counters) {
+                        mSet.invoke(event, index++, count);
+                    }
+                    mCommit.invoke(event);
+                }
+                // the event spans from the end of last frame to the end of this frame
+                if ((Boolean) mIsEnabled.invoke(mEventType)) {
+                    mEvent = mNewEvent.invoke(mFactory);
+                    mBegin.invoke(mEvent);
+                } else {
+                    mEvent = null;
+                }
+            } catch (ReflectiveOperationException e) {
+                mEvent = null;
+            }
+        }
+    }
+}
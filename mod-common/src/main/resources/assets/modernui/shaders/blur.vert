@@ -0,0 +1,9 @@
+#version 430 compatibility
+
+out vec2 f_TexCoord;
+
+void main() {
+    // full screen quad, the vertices are already in clip space
+    f_TexCoord = gl_MultiTexCoord0.xy;
+    gl_Position = gl_Vertex;
+}
@@ -0,0 +1,19 @@
+#version 430 compatibility
+
+layout(location = 0) uniform vec2 u_HalfTexel;
+layout(location = 1) uniform float u_Offset;
+
+layout(binding = 0) uniform sampler2D u_Sampler;
+
+in vec2 f_TexCoord;
+
+// dual filter downsample, 5 taps
+void main() {
+    vec2 d = u_HalfTexel * u_Offset;
+    vec4 sum = texture(u_Sampler, f_TexCoord) * 4.0;
+    sum += texture(u_Sampler, f_TexCoord - d);
+    sum += texture(u_Sampler, f_TexCoord + d);
+    sum += texture(u_Sampler, f_TexCoord + vec2(d.x, -d.y));
+    sum += texture(u_Sampler, f_TexCoord - vec2(d.x, -d.y));
+    gl_FragColor = vec4(sum.rgb * 0.125, 1.0);
+}
@@ -0,0 +1,22 @@
+#version 430 compatibility
+
+layout(location = 0) uniform vec2 u_HalfTexel;
+layout(location = 1) uniform float u_Offset;
+
+layout(binding = 0) uniform sampler2D u_Sampler;
+
+in vec2 f_TexCoord;
+
+// dual filter upsample, 8 taps
+void main() {
+    vec2 d = u_HalfTexel * u_Offset;
+    vec4 sum = texture(u_Sampler, f_TexCoord + vec2(-d.x * 2.0, 0.0));
+    sum += texture(u_Sampler, f_TexCoord + vec2(-d.x, d.y)) * 2.0;
+    sum += texture(u_Sampler, f_TexCoord + vec2(0.0, d.y * 2.0));
+    sum += texture(u_Sampler, f_TexCoord + vec2(d.x, d.y)) * 2.0;
+    sum += texture(u_Sampler, f_TexCoord + vec2(d.x * 2.0, 0.0));
+    sum += texture(u_Sampler, f_TexCoord + vec2(d.x, -d.y)) * 2.0;
+    sum += texture(u_Sampler, f_TexCoord + vec2(0.0, -d.y * 2.0));
+    sum += texture(u_Sampler, f_TexCoord + vec2(-d.x, -d.y)) * 2.0;
+    gl_FragColor = vec4(sum.rgb / 12.0, 1.0);
+}
@@ -0,0 +1,14 @@
+#version 430 compatibility
+
+precision highp float;
+
+layout(binding = 0) uniform sampler2DArray u_Sampler;
+
+in vec2 f_TexCoord;
+flat in float f_Layer;
+
+out vec4 fragColor;
+
+void main() {
+    fragColor = texture(u_Sampler, vec3(f_TexCoord, f_Layer)) * gl_Color;
+}
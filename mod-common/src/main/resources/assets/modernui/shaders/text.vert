@@ -0,0 +1,14 @@
+#version 430 compatibility
+
+out vec2 f_TexCoord;
+flat out float f_Layer;
+
+void main() {
+    // the layer of glyph texture array is encoded in the integer part of U
+    float layer = floor(gl_MultiTexCoord0.x);
+    f_TexCoord = vec2(gl_MultiTexCoord0.x - layer, gl_MultiTexCoord0.y);
+    f_Layer = layer;
+
+    gl_Position = gl_ModelViewProjectionMatrix * gl_Vertex;
+    gl_FrontColor = gl_Color;
+}
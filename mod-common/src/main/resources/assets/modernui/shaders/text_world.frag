@@ -0,0 +1,35 @@
+#version 430 compatibility
+
+precision highp float;
+
+layout(binding = 0) uniform sampler2DArray u_Sampler;
+layout(binding = 2) uniform sampler2D u_LightMap;
+
+// GL_LINEAR, GL_EXP or GL_EXP2, 0 if fog is disabled
+layout(location = 0) uniform int u_FogMode;
+
+in vec2 f_TexCoord;
+flat in float f_Layer;
+in vec2 f_LightCoord;
+in float f_FogDistance;
+
+out vec4 fragColor;
+
+void main() {
+    vec4 color = texture(u_Sampler, vec3(f_TexCoord, f_Layer)) * gl_Color * texture(u_LightMap, f_LightCoord);
+
+    // same as the fixed function pipeline
+    float fog;
+    if (u_FogMode == 0x2601) {
+        fog = clamp((gl_Fog.end - f_FogDistance) * gl_Fog.scale, 0.0, 1.0);
+    } else if (u_FogMode == 0x0800) {
+        fog = clamp(exp(-gl_Fog.density * f_FogDistance), 0.0, 1.0);
+    } else if (u_FogMode == 0x0801) {
+        float d = gl_Fog.density * f_FogDistance;
+        fog = clamp(exp(-d * d), 0.0, 1.0);
+    } else {
+        fog = 1.0;
+    }
+
+    fragColor = vec4(mix(gl_Fog.color.rgb, color.rgb, fog), color.a);
+}
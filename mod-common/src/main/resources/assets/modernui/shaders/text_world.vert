@@ -0,0 +1,22 @@
+#version 430 compatibility
+
+out vec2 f_TexCoord;
+flat out float f_Layer;
+out vec2 f_LightCoord;
+out float f_FogDistance;
+
+void main() {
+    // the layer of glyph texture array is encoded in the integer part of U
+    float layer = floor(gl_MultiTexCoord0.x);
+    f_TexCoord = vec2(gl_MultiTexCoord0.x - layer, gl_MultiTexCoord0.y);
+    f_Layer = layer;
+
+    // lightmap is on texture unit 2, the texture matrix is set up by the game
+    f_LightCoord = (gl_TextureMatrix[2] * gl_MultiTexCoord2).xy;
+
+    vec4 eyePos = gl_ModelViewMatrix * gl_Vertex;
+    f_FogDistance = abs(eyePos.z);
+
+    gl_Position = gl_ProjectionMatrix * eyePos;
+    gl_FrontColor = gl_Color;
+}
@@ -26,7 +26,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-public class Animation {
+/**
+ * Legacy animation with a list of {@link Applier}s, prefer {@link Animator} for
+ * animating view properties.
+ */
+public class Animation implements AnimationHandler.FrameCallback {
 
     private final int duration;
 
@@ -46,6 +50,9 @@ public class Animation {
 
     private boolean reversed = false;
 
+    // registered in animation handler
+    private boolean registered = false;
+
     /**
      * New animation with fixed duration
      *
@@ -106,9 +113,15 @@ public class Animation {
         reversed = false;
         started = false;
         if (appliers != null) {
-            appliers.forEach(e -> e.record(reversed, isFull));
+            final List<Applier> list = appliers;
+            for (int i = 0, e = list.size(); i < e; i++) {
+                list.get(i).record(reversed, isFull);
+            }
+        }
+        if (!registered) {
+            registered = true;
+            AnimationHandler.getInstance().addFrameCallback(this);
         }
-        UIManager.getInstance().addAnimation(this);
     }
 
     /**
@@ -132,9 +145,15 @@ public class Animation {
         reversed = true;
         started = false;
         if (appliers != null) {
-            appliers.forEach(e -> e.record(reversed, isFull));
+            final List<Applier> list = appliers;
+            for (int i = 0, e = list.size(); i < e; i++) {
+                list.get(i).record(reversed, isFull);
+            }
+        }
+        if (!registered) {
+            registered = true;
+            AnimationHandler.getInstance().addFrameCallback(this);
         }
-        UIManager.getInstance().addAnimation(this);
     }
 
     /**
@@ -148,20 +167,24 @@ public class Animation {
     public void skipToStart() {
         cancel();
         if (appliers != null) {
-            appliers.forEach(e -> {
-                e.record(true, false);
-                e.update(1);
-            });
+            final List<Applier> list = appliers;
+            for (int i = 0, e = list.size(); i < e; i++) {
+                final Applier applier = list.get(i);
+                applier.record(true, false);
+                applier.update(1);
+            }
         }
     }
 
     public void skipToEnd() {
         cancel();
         if (appliers != null) {
-            appliers.forEach(e -> {
-                e.record(false, false);
-                e.update(1);
-            });
+            final List<Applier> list = appliers;
+            for (int i = 0, e = list.size(); i < e; i++) {
+                final Applier applier = list.get(i);
+                applier.record(false, false);
+                applier.update(1);
+            }
         }
     }
 
@@ -172,22 +195,48 @@ public class Animation {
         if (!started) {
             started = true;
             if (listeners != null) {
-                listeners.forEach(e -> e.onAnimationStart(this, reversed));
+                final List<IListener> list = listeners;
+                for (int i = 0, e = list.size(); i < e; i++) {
+                    list.get(i).onAnimationStart(this, reversed);
+                }
             }
         }
-        float p = Math.min((float) (time - startTime) / duration, 1);
+        final float p = Math.min((float) (time - startTime) / duration, 1);
         if (appliers != null) {
-            appliers.forEach(e -> e.update(p));
+            final List<Applier> list = appliers;
+            for (int i = 0, e = list.size(); i < e; i++) {
+                list.get(i).update(p);
+            }
         }
         if (p == 1) {
             waiting = true;
             started = false;
             if (listeners != null) {
-                listeners.forEach(e -> e.onAnimationEnd(this, reversed));
+                final List<IListener> list = listeners;
+                for (int i = 0, e = list.size(); i < e; i++) {
+                    list.get(i).onAnimationEnd(this, reversed);
+                }
             }
         }
     }
 
+    @Override
+    public boolean doAnimationFrame(long frameTime) {
+        update(frameTime);
+        // a listener may restart the animation on end
+        if (waiting) {
+            registered = false;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void onFrameCallbackRemoved() {
+        registered = false;
+        cancel();
+    }
+
     public int getDuration() {
         return duration;
     }
@@ -20,9 +20,7 @@ package icyllis.modernui.animation;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Control animation in two states
@@ -63,18 +61,8 @@ public class AnimationControl implements Animation.IListener {
         } else {
             closeArray = null;
         }
-        if (openList != null) {
-            Optional<Animation> d = openList.stream().max(Comparator.comparing(Animation::getDuration));
-            lastOpenAnimation = d.orElse(null);
-        } else {
-            lastOpenAnimation = null;
-        }
-        if (closeList != null) {
-            Optional<Animation> d = closeList.stream().max(Comparator.comparing(Animation::getDuration));
-            lastCloseAnimation = d.orElse(null);
-        } else {
-            lastCloseAnimation = null;
-        }
+        lastOpenAnimation = findLongest(openArray);
+        lastCloseAnimation = findLongest(closeArray);
         if (lastOpenAnimation != null) {
             lastOpenAnimation.listen(this);
         }
@@ -83,6 +71,20 @@ public class AnimationControl implements Animation.IListener {
         }
     }
 
+    @Nullable
+    private static Animation findLongest(@Nullable Animation[] animations) {
+        if (animations == null) {
+            return null;
+        }
+        Animation longest = null;
+        for (Animation a : animations) {
+            if (longest == null || a.getDuration() > longest.getDuration()) {
+                longest = a;
+            }
+        }
+        return longest;
+    }
+
     @Override
     public void onAnimationEnd(@Nonnull Animation animation, boolean isReverse) {
         if (animation == lastOpenAnimation) {
@@ -0,0 +1,153 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.animation;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+
+/**
+ * Drives all running animations on the render thread, synchronized with frames.
+ * The handler is only pumped while there are active callbacks, an idle UI doesn't
+ * pay anything for the animation system.
+ *
+ * @see Animator
+ * @see Animation
+ */
+public final class AnimationHandler {
+
+    private static final AnimationHandler sInstance = new AnimationHandler();
+
+    // removed callbacks are set to null and compacted after a frame
+    private final ArrayList<FrameCallback> mCallbacks = new ArrayList<>();
+
+    private boolean mListDirty = false;
+
+    private AnimationHandler() {
+    }
+
+    /**
+     * Returns the animation handler of the render thread.
+     *
+     * @return the instance
+     */
+    @Nonnull
+    public static AnimationHandler getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Register a callback to be invoked on every frame until it finishes. The caller
+     * should ensure that the callback is not registered twice.
+     *
+     * @param callback the callback to add
+     */
+    public void addFrameCallback(@Nonnull FrameCallback callback) {
+        mCallbacks.add(callback);
+    }
+
+    /**
+     * Unregister a callback before it finishes, this does nothing if the callback
+     * was not registered.
+     *
+     * @param callback the callback to remove
+     */
+    public void removeFrameCallback(@Nonnull FrameCallback callback) {
+        final int index = mCallbacks.indexOf(callback);
+        if (index >= 0) {
+            mCallbacks.set(index, null);
+            mListDirty = true;
+        }
+    }
+
+    /**
+     * @return whether there's any animation to run on next frame
+     */
+    public boolean hasCallbacks() {
+        return !mCallbacks.isEmpty();
+    }
+
+    /**
+     * Called by the UI system at the beginning of a frame.
+     *
+     * @param frameTime the drawing time in milliseconds
+     */
+    public void doAnimationFrame(long frameTime) {
+        final ArrayList<FrameCallback> callbacks = mCallbacks;
+        // callbacks added during this frame will be run on next frame
+        final int size = callbacks.size();
+        for (int i = 0; i < size; i++) {
+            final FrameCallback callback = callbacks.get(i);
+            if (callback != null && callback.doAnimationFrame(frameTime)) {
+                callbacks.set(i, null);
+                mListDirty = true;
+            }
+        }
+        if (mListDirty) {
+            cleanUpList();
+        }
+    }
+
+    private void cleanUpList() {
+        final ArrayList<FrameCallback> callbacks = mCallbacks;
+        int j = 0;
+        for (int i = 0, e = callbacks.size(); i < e; i++) {
+            final FrameCallback callback = callbacks.get(i);
+            if (callback != null) {
+                callbacks.set(j++, callback);
+            }
+        }
+        callbacks.subList(j, callbacks.size()).clear();
+        mListDirty = false;
+    }
+
+    /**
+     * Remove all callbacks without finishing them, called when the UI is closed.
+     */
+    public void clear() {
+        final ArrayList<FrameCallback> callbacks = mCallbacks;
+        for (int i = 0, e = callbacks.size(); i < e; i++) {
+            final FrameCallback callback = callbacks.get(i);
+            if (callback != null) {
+                callback.onFrameCallbackRemoved();
+            }
+        }
+        callbacks.clear();
+        mListDirty = false;
+    }
+
+    /**
+     * Callbacks that receive notifications for animation timing.
+     */
+    public interface FrameCallback {
+
+        /**
+         * Run animation based on the frame time.
+         *
+         * @param frameTime the drawing time in milliseconds
+         * @return true if this callback finished and should be removed
+         */
+        boolean doAnimationFrame(long frameTime);
+
+        /**
+         * Called when this callback is removed from the handler without finishing,
+         * for example, the UI was closed.
+         */
+        void onFrameCallbackRemoved();
+    }
+}
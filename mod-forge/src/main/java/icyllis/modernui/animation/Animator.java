@@ -0,0 +1,272 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.animation;
+
+import icyllis.modernui.view.UIManager;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+
+/**
+ * The base class of property animators, which are driven by {@link AnimationHandler}
+ * and write interpolated values directly into their targets.
+ *
+ * @see FloatAnimator
+ * @see IntAnimator
+ */
+public abstract class Animator implements AnimationHandler.FrameCallback {
+
+    private long mDuration = 300;
+
+    private long mStartDelay;
+
+    @Nonnull
+    private ITimeInterpolator mInterpolator = ITimeInterpolator.LINEAR;
+
+    @Nullable
+    private ArrayList<IListener> mListeners;
+
+    private long mStartTime;
+
+    // registered in animation handler
+    private boolean mRunning;
+
+    // start listeners have been notified
+    private boolean mStarted;
+
+    private boolean mReversed;
+
+    /**
+     * Set the length of the animation.
+     *
+     * @param duration in milliseconds, must not be negative
+     * @return this animator
+     */
+    public Animator setDuration(long duration) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Animators cannot have negative duration: " + duration);
+        }
+        mDuration = duration;
+        return this;
+    }
+
+    public long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * Set the delay of the animation after {@link #start()} is called.
+     *
+     * @param startDelay in milliseconds
+     * @return this animator
+     */
+    public Animator setStartDelay(long startDelay) {
+        mStartDelay = Math.max(startDelay, 0);
+        return this;
+    }
+
+    public long getStartDelay() {
+        return mStartDelay;
+    }
+
+    /**
+     * Set the time interpolator used in calculating the elapsed fraction of this animation.
+     * The default value is {@link ITimeInterpolator#LINEAR}.
+     *
+     * @param interpolator the interpolator to use
+     * @return this animator
+     */
+    public Animator setInterpolator(@Nonnull ITimeInterpolator interpolator) {
+        mInterpolator = interpolator;
+        return this;
+    }
+
+    @Nonnull
+    public ITimeInterpolator getInterpolator() {
+        return mInterpolator;
+    }
+
+    public void addListener(@Nonnull IListener listener) {
+        if (mListeners == null) {
+            mListeners = new ArrayList<>();
+        }
+        mListeners.add(listener);
+    }
+
+    public void removeListener(@Nonnull IListener listener) {
+        if (mListeners != null) {
+            mListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Play the animation from the start, restarts it if it is running.
+     */
+    public void start() {
+        start0(false);
+    }
+
+    /**
+     * Play the animation backwards from the end, restarts it if it is running.
+     */
+    public void reverse() {
+        start0(true);
+    }
+
+    private void start0(boolean reversed) {
+        mReversed = reversed;
+        mStartTime = UIManager.getInstance().getDrawingTime() + mStartDelay;
+        mStarted = false;
+        if (!mRunning) {
+            mRunning = true;
+            AnimationHandler.getInstance().addFrameCallback(this);
+        }
+    }
+
+    /**
+     * Cancel the animation, the target keeps its current value.
+     */
+    public void cancel() {
+        if (mRunning) {
+            mRunning = false;
+            mStarted = false;
+            AnimationHandler.getInstance().removeFrameCallback(this);
+            notifyCancel();
+        }
+    }
+
+    /**
+     * End the animation, the target will be set to its end value.
+     */
+    public void end() {
+        if (mRunning) {
+            AnimationHandler.getInstance().removeFrameCallback(this);
+            finish();
+        }
+    }
+
+    /**
+     * @return whether this animation has been started and not yet ended
+     */
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    @Override
+    public final boolean doAnimationFrame(long frameTime) {
+        if (!mRunning) {
+            return true;
+        }
+        if (frameTime < mStartTime) {
+            return false;
+        }
+        if (!mStarted) {
+            mStarted = true;
+            if (mListeners != null) {
+                final ArrayList<IListener> listeners = mListeners;
+                for (int i = 0, e = listeners.size(); i < e; i++) {
+                    listeners.get(i).onAnimationStart(this, mReversed);
+                }
+            }
+        }
+        final float fraction = mDuration > 0 ?
+                Math.min((float) (frameTime - mStartTime) / mDuration, 1.0f) : 1.0f;
+        if (fraction >= 1.0f) {
+            // the callback is removed by the handler
+            finish();
+            return true;
+        }
+        animateValue(mInterpolator.getInterpolation(mReversed ? 1.0f - fraction : fraction));
+        return false;
+    }
+
+    private void finish() {
+        animateValue(mInterpolator.getInterpolation(mReversed ? 0.0f : 1.0f));
+        mRunning = false;
+        mStarted = false;
+        if (mListeners != null) {
+            final ArrayList<IListener> listeners = mListeners;
+            for (int i = 0, e = listeners.size(); i < e; i++) {
+                listeners.get(i).onAnimationEnd(this, mReversed);
+            }
+        }
+    }
+
+    private void notifyCancel() {
+        if (mListeners != null) {
+            final ArrayList<IListener> listeners = mListeners;
+            for (int i = 0, e = listeners.size(); i < e; i++) {
+                listeners.get(i).onAnimationCancel(this);
+            }
+        }
+    }
+
+    /**
+     * The UI was closed while running, this is the same as {@link #cancel()}.
+     */
+    @Override
+    public final void onFrameCallbackRemoved() {
+        if (mRunning) {
+            mRunning = false;
+            mStarted = false;
+            notifyCancel();
+        }
+    }
+
+    /**
+     * Apply the interpolated fraction to the target.
+     *
+     * @param fraction the interpolated fraction, 0 represents the start value
+     *                 and 1 represents the end value
+     */
+    protected abstract void animateValue(float fraction);
+
+    public interface IListener {
+
+        /**
+         * Called when the animation actually started, after the start delay.
+         *
+         * @param animator  the started animator
+         * @param isReverse whether the animation is playing backwards
+         */
+        default void onAnimationStart(@Nonnull Animator animator, boolean isReverse) {
+
+        }
+
+        /**
+         * Called when the animation ended or {@link #end()} was called.
+         *
+         * @param animator  the ended animator
+         * @param isReverse whether the animation is playing backwards
+         */
+        default void onAnimationEnd(@Nonnull Animator animator, boolean isReverse) {
+
+        }
+
+        /**
+         * Called when the animation was cancelled.
+         *
+         * @param animator the cancelled animator
+         */
+        default void onAnimationCancel(@Nonnull Animator animator) {
+
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.animation;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Animates a float property of the target object, without boxing.
+ * <p>
+ * For example, fading a view in on hover:
+ * <pre>
+ * new FloatAnimator&lt;&gt;(view, View.ALPHA, 0.5f, 1.0f).setDuration(200).start();
+ * </pre>
+ *
+ * @param <T> the type of the target object
+ */
+public class FloatAnimator<T> extends Animator {
+
+    @Nonnull
+    private final T mTarget;
+
+    @Nonnull
+    private final FloatProperty<T> mProperty;
+
+    private float mStartValue;
+    private float mEndValue;
+
+    public FloatAnimator(@Nonnull T target, @Nonnull FloatProperty<T> property, float startValue, float endValue) {
+        mTarget = target;
+        mProperty = property;
+        mStartValue = startValue;
+        mEndValue = endValue;
+    }
+
+    /**
+     * Set the values to animate between, takes effect on the next frame.
+     *
+     * @param startValue the start value
+     * @param endValue   the end value
+     * @return this animator
+     */
+    public FloatAnimator<T> setValues(float startValue, float endValue) {
+        mStartValue = startValue;
+        mEndValue = endValue;
+        return this;
+    }
+
+    /**
+     * Animate from the current property value to the given end value.
+     *
+     * @param endValue the end value
+     */
+    public void startFromCurrent(float endValue) {
+        mStartValue = mProperty.get(mTarget);
+        mEndValue = endValue;
+        start();
+    }
+
+    public float getStartValue() {
+        return mStartValue;
+    }
+
+    public float getEndValue() {
+        return mEndValue;
+    }
+
+    @Nonnull
+    public T getTarget() {
+        return mTarget;
+    }
+
+    @Override
+    protected void animateValue(float fraction) {
+        mProperty.setValue(mTarget, mStartValue + (mEndValue - mStartValue) * fraction);
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.animation;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A property of an object holding a primitive float value, so that animators
+ * can write values directly without boxing.
+ *
+ * @param <T> the type of the target object
+ * @see FloatAnimator
+ */
+public abstract class FloatProperty<T> {
+
+    private final String mName;
+
+    public FloatProperty(@Nonnull String name) {
+        mName = name;
+    }
+
+    /**
+     * Set the value on the object.
+     *
+     * @param object the target object
+     * @param value  the new value
+     */
+    public abstract void setValue(@Nonnull T object, float value);
+
+    /**
+     * Returns the current value that this property represents on the given object.
+     *
+     * @param object the target object
+     * @return the current value
+     */
+    public abstract float get(@Nonnull T object);
+
+    @Nonnull
+    public String getName() {
+        return mName;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.animation;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Animates an int property of the target object, such as a color component
+ * or an offset in pixels, without boxing.
+ *
+ * @param <T> the type of the target object
+ */
+public class IntAnimator<T> extends Animator {
+
+    @Nonnull
+    private final T mTarget;
+
+    @Nonnull
+    private final IntProperty<T> mProperty;
+
+    private int mStartValue;
+    private int mEndValue;
+
+    public IntAnimator(@Nonnull T target, @Nonnull IntProperty<T> property, int startValue, int endValue) {
+        mTarget = target;
+        mProperty = property;
+        mStartValue = startValue;
+        mEndValue = endValue;
+    }
+
+    /**
+     * Set the values to animate between, takes effect on the next frame.
+     *
+     * @param startValue the start value
+     * @param endValue   the end value
+     * @return this animator
+     */
+    public IntAnimator<T> setValues(int startValue, int endValue) {
+        mStartValue = startValue;
+        mEndValue = endValue;
+        return this;
+    }
+
+    /**
+     * Animate from the current property value to the given end value.
+     *
+     * @param endValue the end value
+     */
+    public void startFromCurrent(int endValue) {
+        mStartValue = mProperty.get(mTarget);
+        mEndValue = endValue;
+        start();
+    }
+
+    public int getStartValue() {
+        return mStartValue;
+    }
+
+    public int getEndValue() {
+        return mEndValue;
+    }
+
+    @Nonnull
+    public T getTarget() {
+        return mTarget;
+    }
+
+    @Override
+    protected void animateValue(float fraction) {
+        mProperty.setValue(mTarget, mStartValue + Math.round((mEndValue - mStartValue) * fraction));
+    }
+}
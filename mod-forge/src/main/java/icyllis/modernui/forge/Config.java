@@ -156,6 +156,8 @@ public final class Config {
         private final ForgeConfigSpec.BooleanValue blurEffect;
         private final ForgeConfigSpec.IntValue animationDuration;
         private final ForgeConfigSpec.IntValue blurRadius;
+        private final ForgeConfigSpec.BooleanValue blurFreeze;
+        private final ForgeConfigSpec.IntValue blurRefreshInterval;
         private final ForgeConfigSpec.DoubleValue backgroundAlpha;
         private final ForgeConfigSpec.BooleanValue tooltip;
         private final ForgeConfigSpec.ConfigValue<String> tooltipColor;
@@ -186,11 +188,19 @@ public final class Config {
                     .defineInRange("backgroundAlpha", 0.4, 0, 0.8);
 
             blurEffect = builder.comment(
-                    "Add blur effect to world renderer when opened, it is incompatible with OptiFine's FXAA shader or some mods.")
+                    "Add blur effect to world renderer when opened, it may be incompatible with OptiFine's shaders or some mods.")
                     .define("blurEffect", true);
             blurRadius = builder.comment(
                     "The blur effect radius, higher values result in a small loss of performance.")
                     .defineInRange("blurRadius", 10, 2, 18);
+            blurFreeze = builder.comment(
+                    "Blur the world only once when a screen opened and stop rendering the world behind the screen,",
+                    "this greatly improves performance, but the world behind the screen will not be animated.")
+                    .define("blurFreeze", true);
+            blurRefreshInterval = builder.comment(
+                    "The interval in milliseconds to re-render and blur the world when blurFreeze is enabled.",
+                    "(0 = only when the window is resized)")
+                    .defineInRange("blurRefreshInterval", 0, 0, 5000);
             blurBlacklist = builder.comment(
                     "A list of GUI screen superclasses that won't activate blur effect when opened.")
                     .defineList("blurBlacklist", () -> {
@@ -269,6 +279,8 @@ public final class Config {
             BlurHandler.sAnimationDuration = animationDuration.get();
             BlurHandler.sBlurRadius = blurRadius.get();
             BlurHandler.sBackgroundAlpha = backgroundAlpha.get().floatValue();
+            BlurHandler.sBlurFreeze = blurFreeze.get();
+            BlurHandler.sBlurRefreshInterval = blurRefreshInterval.get();
             BlurHandler.INSTANCE.loadBlacklist(blurBlacklist.get());
 
             TestHUD.sTooltip = tooltip.get();
@@ -21,12 +21,15 @@ package icyllis.modernui.forge;
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.forge.event.OpenMenuEvent;
 import icyllis.modernui.graphics.BlurHandler;
+import icyllis.modernui.graphics.DrawStats;
 import icyllis.modernui.graphics.RenderCore;
 import icyllis.modernui.mcimpl.MuiRegistries;
 import icyllis.modernui.mcimpl.TestMenu;
 import icyllis.modernui.test.TestUI;
+import icyllis.modernui.util.FrameProfiler;
 import net.minecraft.ChatFormatting;
 import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
 import net.minecraft.client.ProgressOption;
 import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.client.gui.screens.VideoSettingsScreen;
@@ -115,6 +118,8 @@ final class EventHandler {
     @Mod.EventBusSubscriber(modid = ModernUI.ID, value = Dist.CLIENT)
     static class Client {
 
+        private static final String DRAW_STATS_COMMAND = "/modernui drawstats";
+
         static ProgressOption NEW_GUI_SCALE;
         @Nullable
         private static Screen sCapturedVideoSettingsScreen;
@@ -158,6 +163,41 @@ final class EventHandler {
             }
         }
 
+        /**
+         * Client command {@code /modernui drawstats [count]}, reports View subtrees and texts
+         * with most draw calls to chat and log, while the frame profiler is enabled.
+         */
+        @SubscribeEvent
+        static void onClientChat(@Nonnull ClientChatEvent event) {
+            final String message = event.getMessage();
+            if (!message.equals(DRAW_STATS_COMMAND) && !message.startsWith(DRAW_STATS_COMMAND + " ")) {
+                return;
+            }
+            event.setCanceled(true);
+            int count = 5;
+            try {
+                String arg = message.substring(DRAW_STATS_COMMAND.length()).trim();
+                if (!arg.isEmpty()) {
+                    count = Math.max(Integer.parseInt(arg), 1);
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            final LocalPlayer player = Minecraft.getInstance().player;
+            if (!FrameProfiler.isEnabled()) {
+                if (player != null) {
+                    player.sendMessage(new TextComponent("[Modern UI] Frame profiler is disabled, " +
+                            "press Ctrl+F in developer mode to enable").withStyle(ChatFormatting.RED), Util.NIL_UUID);
+                }
+                return;
+            }
+            for (String line : DrawStats.dump(count)) {
+                ModernUI.LOGGER.info(FrameProfiler.MARKER, line);
+                if (player != null) {
+                    player.sendMessage(new TextComponent(line), Util.NIL_UUID);
+                }
+            }
+        }
+
         /*@SubscribeEvent(receiveCanceled = true)
         static void onGuiOpen(@Nonnull GuiOpenEvent event) {
 
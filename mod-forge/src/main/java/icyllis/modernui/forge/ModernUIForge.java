@@ -19,7 +19,9 @@
 package icyllis.modernui.forge;
 
 import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.ItemIconCache;
 import icyllis.modernui.graphics.RenderCore;
+import icyllis.modernui.graphics.font.EmojiManager;
 import icyllis.modernui.view.LayoutIO;
 import net.minecraft.client.Minecraft;
 import net.minecraft.server.packs.resources.ReloadableResourceManager;
@@ -70,7 +72,6 @@ public final class ModernUIForge extends ModernUI {
 
         init();
         Config.init();
-        LayoutIO.init();
         LocalStorage.init();
 
         if (FMLEnvironment.dist.isClient()) {
@@ -82,6 +83,12 @@ public final class ModernUIForge extends ModernUI {
                                         RenderCore.compileShaders(resourceManager);
                                 }
                         );
+                ((ReloadableResourceManager) Minecraft.getInstance().getResourceManager())
+                        .registerReloadListener(LayoutIO.getInstance());
+                ((ReloadableResourceManager) Minecraft.getInstance().getResourceManager())
+                        .registerReloadListener(EmojiManager.getInstance());
+                ((ReloadableResourceManager) Minecraft.getInstance().getResourceManager())
+                        .registerReloadListener(ItemIconCache.getInstance());
             }
             if (production) {
                 FMLJavaModLoadingContext.get().getModEventBus().register(EventHandler.ModClient.class);
@@ -122,6 +129,12 @@ public final class ModernUIForge extends ModernUI {
         return Minecraft.getInstance().getLanguageManager().getSelected().getJavaLocale();
     }
 
+    @Nonnull
+    @Override
+    public Path getCacheDirectory() {
+        return FMLPaths.CONFIGDIR.get().resolve(ModernUI.NAME_CPT);
+    }
+
     public static boolean isDeveloperMode() {
         return developerMode || production;
     }
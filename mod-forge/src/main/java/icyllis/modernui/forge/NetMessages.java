@@ -20,6 +20,7 @@ package icyllis.modernui.forge;
 
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.forge.network.NetworkHandler;
+import icyllis.modernui.forge.network.StatTracker;
 import icyllis.modernui.mcimpl.mixin.AccessFoodData;
 import icyllis.modernui.view.UIManager;
 import net.minecraft.client.player.LocalPlayer;
@@ -42,6 +43,12 @@ public final class NetMessages {
 
     static NetworkHandler network;
 
+    // food stats, synced at most once per 8 ticks
+    static StatTracker stats;
+
+    static final int STAT_FOOD_SATURATION = 0;
+    static final int STAT_FOOD_EXHAUSTION = 1;
+
     private NetMessages() {
     }
 
@@ -56,12 +63,13 @@ public final class NetMessages {
         return C::handle; // this supplier won't be called on dedicated server, so it's in the C class
     }
 
-    @Nonnull
-    public static NetworkHandler.Broadcaster food(float foodSaturationLevel, float foodExhaustionLevel) {
-        FriendlyByteBuf buf = network.targetAt(0);
-        buf.writeFloat(foodSaturationLevel);
-        buf.writeFloat(foodExhaustionLevel);
-        return network.prepare(buf);
+    static void init() {
+        stats = new StatTracker(network, 0, 8, 256.0f, 1024.0f);
+    }
+
+    public static void food(@Nonnull ServerPlayer player, float foodSaturationLevel, float foodExhaustionLevel) {
+        stats.set(player, STAT_FOOD_SATURATION, foodSaturationLevel);
+        stats.set(player, STAT_FOOD_EXHAUSTION, foodExhaustionLevel);
     }
 
     @Nonnull
@@ -79,6 +87,8 @@ public final class NetMessages {
     @OnlyIn(Dist.CLIENT)
     public static final class C {
 
+        private static final float[] sStatValues = new float[2];
+
         private C() {
         }
 
@@ -94,9 +104,15 @@ public final class NetMessages {
         }
 
         private static void food(@Nonnull FriendlyByteBuf buffer, @Nonnull LocalPlayer player) {
+            final float[] values = sStatValues;
+            final long mask = stats.read(buffer, values);
             FoodData foodData = player.getFoodData();
-            foodData.setSaturation(buffer.readFloat());
-            ((AccessFoodData) foodData).setExhaustionLevel(buffer.readFloat());
+            if ((mask & (1 << STAT_FOOD_SATURATION)) != 0) {
+                foodData.setSaturation(values[STAT_FOOD_SATURATION]);
+            }
+            if ((mask & (1 << STAT_FOOD_EXHAUSTION)) != 0) {
+                ((AccessFoodData) foodData).setExhaustionLevel(values[STAT_FOOD_EXHAUSTION]);
+            }
         }
 
         private static void menu(@Nonnull FriendlyByteBuf buffer, @Nonnull LocalPlayer player) {
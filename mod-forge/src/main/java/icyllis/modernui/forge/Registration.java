@@ -156,6 +156,7 @@ final class Registration {
 
         NetMessages.network = new NetworkHandler(ModernUI.ID, "main_network", () -> NetMessages::handle,
                 NetMessages::handle, protocol == null ? null : DigestUtils.md5Hex(protocol), optional);
+        NetMessages.init();
 
         //
 
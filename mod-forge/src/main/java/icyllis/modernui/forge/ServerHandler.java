@@ -22,7 +22,9 @@ import icyllis.modernui.ModernUI;
 import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.TranslatableComponent;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 import net.minecraftforge.fml.event.server.FMLServerStartedEvent;
@@ -57,6 +59,36 @@ final class ServerHandler {
     @SubscribeEvent
     void onStop(@Nonnull FMLServerStoppingEvent event) {
         started = false;
+        NetMessages.stats.clear();
+    }
+
+    @SubscribeEvent
+    void onEndTick(@Nonnull TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.END) {
+            NetMessages.stats.flush(ServerLifecycleHooks.getCurrentServer().getTickCount());
+        }
+    }
+
+    @SubscribeEvent
+    void onPlayerLoggedOut(@Nonnull PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getPlayer() instanceof ServerPlayer) {
+            NetMessages.stats.remove((ServerPlayer) event.getPlayer());
+        }
+    }
+
+    // the client recreates its player in these cases
+    @SubscribeEvent
+    void onPlayerRespawn(@Nonnull PlayerEvent.PlayerRespawnEvent event) {
+        if (event.getPlayer() instanceof ServerPlayer) {
+            NetMessages.stats.resync((ServerPlayer) event.getPlayer());
+        }
+    }
+
+    @SubscribeEvent
+    void onPlayerChangedDimension(@Nonnull PlayerEvent.PlayerChangedDimensionEvent event) {
+        if (event.getPlayer() instanceof ServerPlayer) {
+            NetMessages.stats.resync((ServerPlayer) event.getPlayer());
+        }
     }
 
     void determineShutdownTime() {
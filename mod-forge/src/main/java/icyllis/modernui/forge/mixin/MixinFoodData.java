@@ -19,6 +19,7 @@
 package icyllis.modernui.forge.mixin;
 
 import icyllis.modernui.forge.NetMessages;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.food.FoodData;
 import org.spongepowered.asm.mixin.Mixin;
@@ -35,21 +36,10 @@ public class MixinFoodData {
     @Shadow
     private float exhaustionLevel;
 
-    private float prevSaturationLevel;
-    private float prevExhaustionLevel;
-
-    private boolean needSync;
-
     @Inject(method = "tick", at = @At("TAIL"))
     private void postTick(Player player, CallbackInfo ci) {
-        if (saturationLevel != prevSaturationLevel || exhaustionLevel != prevExhaustionLevel) {
-            prevSaturationLevel = saturationLevel;
-            prevExhaustionLevel = exhaustionLevel;
-            needSync = true;
-        }
-        if (needSync && (player.level.getGameTime() & 0x7) == 0) {
-            NetMessages.food(saturationLevel, exhaustionLevel).sendToPlayer(player);
-            needSync = false;
+        if (player instanceof ServerPlayer) {
+            NetMessages.food((ServerPlayer) player, saturationLevel, exhaustionLevel);
         }
     }
 }
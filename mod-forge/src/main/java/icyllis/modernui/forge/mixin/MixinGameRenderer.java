@@ -0,0 +1,44 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.forge.mixin;
+
+import com.mojang.blaze3d.vertex.PoseStack;
+import icyllis.modernui.graphics.BlurHandler;
+import net.minecraft.client.renderer.GameRenderer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(GameRenderer.class)
+public class MixinGameRenderer {
+
+    @Inject(method = "renderLevel", at = @At("HEAD"), cancellable = true)
+    private void onRenderLevelHead(float partialTicks, long finishTimeNano, PoseStack stack, CallbackInfo ci) {
+        // the blurred backdrop is frozen, no need to render the level behind the screen
+        if (BlurHandler.INSTANCE.drawFrozenBackdrop()) {
+            ci.cancel();
+        }
+    }
+
+    @Inject(method = "renderLevel", at = @At("RETURN"))
+    private void onRenderLevelReturn(float partialTicks, long finishTimeNano, PoseStack stack, CallbackInfo ci) {
+        BlurHandler.INSTANCE.blurLevel();
+    }
+}
@@ -184,6 +184,22 @@ public class NetworkHandler {
         return buffer;
     }
 
+    /**
+     * Allocate a buffer to write packet data with index, for the message whose
+     * size is known, this avoids the default capacity and buffer expansion.
+     *
+     * @param index    The message index used on the opposite side, range from 0 to 32767
+     * @param capacity the initial capacity of the buffer in bytes, including the index
+     * @return a byte buf to write the packet data (message)
+     * @see #targetAt(int)
+     */
+    @Nonnull
+    public FriendlyByteBuf targetAt(int index, int capacity) {
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer(capacity));
+        buffer.writeShort(index);
+        return buffer;
+    }
+
     /**
      * Prepare to send a packet, you must dispatch this packet later,
      * for example {@link Broadcaster#sendToPlayer(Player)}
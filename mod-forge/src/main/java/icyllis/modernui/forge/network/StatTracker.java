@@ -0,0 +1,222 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.forge.network;
+
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Synchronizes a fixed set of float stats of each player from server to client.
+ * Values are quantized, only the stats that changed are sent as deltas to the
+ * last sent values, and all the changes of a player in a tick window are sent
+ * in one message.
+ * <p>
+ * The message is a flag byte, a varlong bit set of the stats in the message,
+ * followed by a zigzag varint delta for each stat. If the flag is set, the
+ * deltas are relative to zero, which is used for the first message and when
+ * the client discarded its player.
+ */
+public class StatTracker {
+
+    private static final int FLAG_FULL = 1;
+
+    private final NetworkHandler mNetwork;
+    private final int mIndex;
+    private final int mWindow;
+
+    // quantization step is 1 / scale
+    private final float[] mScales;
+
+    // server thread only
+    private final Map<UUID, Entry> mEntries = new Object2ObjectOpenHashMap<>();
+
+    // shared buffer to encode messages, the payload is copied to an exact sized buffer
+    private final FriendlyByteBuf mScratch = new FriendlyByteBuf(Unpooled.buffer(64));
+
+    // client thread only, the last received quantized values
+    private final int[] mReceived;
+
+    /**
+     * Create a stat tracker.
+     *
+     * @param network the network channel
+     * @param index   the message index
+     * @param window  the length of tick window, changes are sent at most once per window
+     * @param scales  quantization scale of each stat, at most 64 stats
+     */
+    public StatTracker(@Nonnull NetworkHandler network, int index, int window, @Nonnull float... scales) {
+        if (scales.length == 0 || scales.length > 64) {
+            throw new IllegalArgumentException("Stat count must be between 1 and 64");
+        }
+        if (window <= 0) {
+            throw new IllegalArgumentException("Tick window must be positive");
+        }
+        mNetwork = network;
+        mIndex = index;
+        mWindow = window;
+        mScales = scales.clone();
+        mReceived = new int[scales.length];
+    }
+
+    /**
+     * Update the value of a stat of a player. This is cheap if the quantized value
+     * didn't change, so it can be called every tick.
+     *
+     * @param player the server player
+     * @param stat   the stat index
+     * @param value  the current value
+     */
+    public void set(@Nonnull ServerPlayer player, int stat, float value) {
+        final int q = Math.round(value * mScales[stat]);
+        Entry entry = mEntries.get(player.getUUID());
+        if (entry == null) {
+            entry = new Entry(mScales.length);
+            mEntries.put(player.getUUID(), entry);
+        }
+        entry.mPlayer = player;
+        if (entry.mCurrent[stat] != q) {
+            entry.mCurrent[stat] = q;
+            if (q != entry.mSent[stat] || entry.mFull) {
+                entry.mDirty |= 1L << stat;
+            } else {
+                entry.mDirty &= ~(1L << stat);
+            }
+        }
+    }
+
+    /**
+     * Send all stats of a player on next flush, used when the client recreated its player.
+     *
+     * @param player the server player
+     */
+    public void resync(@Nonnull ServerPlayer player) {
+        Entry entry = mEntries.get(player.getUUID());
+        if (entry != null) {
+            entry.mFull = true;
+            entry.mDirty = -1L >>> (64 - mScales.length);
+        }
+    }
+
+    /**
+     * Stop tracking a player, used when the player logged out.
+     *
+     * @param player the server player
+     */
+    public void remove(@Nonnull ServerPlayer player) {
+        mEntries.remove(player.getUUID());
+    }
+
+    /**
+     * Stop tracking all players, used when the server stopped.
+     */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Send the pending changes if a tick window elapsed, called at the end of each server tick.
+     *
+     * @param tickCount the server tick count
+     */
+    public void flush(int tickCount) {
+        if (tickCount % mWindow != 0 || mEntries.isEmpty()) {
+            return;
+        }
+        final FriendlyByteBuf scratch = mScratch;
+        for (Entry entry : mEntries.values()) {
+            long dirty = entry.mDirty;
+            if (dirty == 0) {
+                continue;
+            }
+            final boolean full = entry.mFull;
+            scratch.clear();
+            scratch.writeByte(full ? FLAG_FULL : 0);
+            scratch.writeVarLong(dirty);
+            for (int stat = 0; dirty != 0; stat++, dirty >>>= 1) {
+                if ((dirty & 1) != 0) {
+                    int q = entry.mCurrent[stat];
+                    scratch.writeVarInt(zigzag(q - (full ? 0 : entry.mSent[stat])));
+                    entry.mSent[stat] = q;
+                }
+            }
+            entry.mDirty = 0;
+            entry.mFull = false;
+            FriendlyByteBuf buf = mNetwork.targetAt(mIndex, 2 + scratch.readableBytes());
+            buf.writeBytes(scratch);
+            mNetwork.prepare(buf).sendToPlayer(entry.mPlayer);
+        }
+    }
+
+    /**
+     * Decode a message on client.
+     *
+     * @param payload the message payload
+     * @param values  receives the dequantized values of the stats in the message
+     * @return the bit set of the stats in the message
+     */
+    @OnlyIn(Dist.CLIENT)
+    public long read(@Nonnull FriendlyByteBuf payload, @Nonnull float[] values) {
+        final int[] received = mReceived;
+        final boolean full = (payload.readByte() & FLAG_FULL) != 0;
+        final long mask = payload.readVarLong();
+        long bits = mask;
+        for (int stat = 0; bits != 0; stat++, bits >>>= 1) {
+            if ((bits & 1) != 0) {
+                int q = unzigzag(payload.readVarInt()) + (full ? 0 : received[stat]);
+                received[stat] = q;
+                values[stat] = q / mScales[stat];
+            }
+        }
+        return mask;
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static class Entry {
+
+        private ServerPlayer mPlayer;
+
+        private final int[] mCurrent;
+        private final int[] mSent;
+
+        private long mDirty;
+        private boolean mFull = true;
+
+        Entry(int count) {
+            mCurrent = new int[count];
+            mSent = new int[count];
+            // a new player sends every stat at the first time
+            mDirty = -1L >>> (64 - count);
+        }
+    }
+}
@@ -18,28 +18,37 @@
 
 package icyllis.modernui.graphics;
 
+import com.mojang.blaze3d.pipeline.RenderTarget;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.*;
 import com.mojang.math.Matrix4f;
-import icyllis.modernui.mcimpl.mixin.AccessGameRenderer;
-import icyllis.modernui.mcimpl.mixin.AccessPostChain;
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.shader.program.BlurShader;
+import icyllis.modernui.util.FrameProfiler;
 import icyllis.modernui.view.IMuiScreen;
 import it.unimi.dsi.fastutil.objects.ObjectArraySet;
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.screens.Screen;
-import net.minecraft.client.renderer.GameRenderer;
-import net.minecraft.client.renderer.PostChain;
-import net.minecraft.client.renderer.PostPass;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL30;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Set;
 
+/**
+ * Blurs the level behind screens with a dual filter (Kawase) blur. The level is copied
+ * to a half size texture, then downsampled and upsampled through a chain of smaller
+ * textures, the result is stretched to the main target. When the backdrop is frozen,
+ * the level is captured once and not rendered again until the window is resized or
+ * the refresh interval elapsed.
+ */
 @OnlyIn(Dist.CLIENT)
 public enum BlurHandler {
     INSTANCE;
@@ -51,9 +60,13 @@ public enum BlurHandler {
     public static float sAnimationDuration;
     public static float sBlurRadius;
     public static float sBackgroundAlpha;
+    public static boolean sBlurFreeze;
+    public static int sBlurRefreshInterval;
 
-    // minecraft namespace
-    private final ResourceLocation bilinearBlur = new ResourceLocation("shaders/post/blur_fast.json");
+    /**
+     * Max number of downsample passes
+     */
+    private static final int MAX_PASSES = 4;
 
     private final Minecraft minecraft = Minecraft.getInstance();
 
@@ -65,7 +78,7 @@ public enum BlurHandler {
     private boolean fadingIn;
 
     /**
-     * If blur post-processing shader is activated
+     * If the level behind current screen should be blurred
      */
     private boolean blurring;
 
@@ -79,12 +92,42 @@ public enum BlurHandler {
      */
     private float backgroundAlpha;
 
+    /**
+     * Current blur radius, animated
+     */
+    private float radius;
+
+    /*
+     * Index 0 is the captured level at half size, index 1 to MAX_PASSES are the downsample
+     * levels, the last one is the blurred result at half size
+     */
+    private final int[] framebuffers = new int[MAX_PASSES + 2];
+    private final int[] textures = new int[MAX_PASSES + 2];
+
+    /**
+     * The size of main target that framebuffers allocated for
+     */
+    private int width;
+    private int height;
+
+    /**
+     * If the level has been captured since blurring started
+     */
+    private boolean captured;
+
+    /**
+     * If the result should be blurred again from the captured level
+     */
+    private boolean dirty;
+
+    private long lastCaptureTime;
+
     BlurHandler() {
 
     }
 
     /**
-     * Use blur shader in game renderer post-processing.
+     * Blur the level when a screen opened.
      */
     public void count(@Nullable Screen nextScreen) {
         if (minecraft.level == null) {
@@ -99,19 +142,15 @@ public enum BlurHandler {
         }
         boolean blurDisabled = excluded || !sBlurEffect;
         if (blurDisabled && excluded && blurring) {
-            minecraft.gameRenderer.shutdownEffect();
-            fadingIn = false;
-            blurring = false;
+            stopBlur();
         }
 
         boolean hasGui = nextScreen != null;
-        GameRenderer gr = minecraft.gameRenderer;
         if (hasGui && !blurring && !screenOpened) {
-            if (!blurDisabled && gr.currentEffect() == null) {
-                ((AccessGameRenderer) gr).callLoadEffect(bilinearBlur);
-                blurring = true;
+            if (!blurDisabled) {
+                startBlur();
                 if (sAnimationDuration <= 0) {
-                    updateRadius(sBlurRadius);
+                    radius = sBlurRadius;
                 }
             }
             if (sAnimationDuration > 0) {
@@ -122,9 +161,7 @@ public enum BlurHandler {
                 backgroundAlpha = sBackgroundAlpha;
             }
         } else if (!hasGui && blurring) {
-            gr.shutdownEffect();
-            fadingIn = false;
-            blurring = false;
+            stopBlur();
         }
         screenOpened = hasGui;
     }
@@ -138,15 +175,24 @@ public enum BlurHandler {
             return;
         }
         if (minecraft.level != null) {
-            GameRenderer gr = minecraft.gameRenderer;
-            if (gr.currentEffect() == null) {
-                ((AccessGameRenderer) gr).callLoadEffect(bilinearBlur);
-                fadingIn = true;
-                blurring = true;
-            }
+            // the level may be changed during reloading
+            startBlur();
+            fadingIn = true;
         }
     }
 
+    private void startBlur() {
+        blurring = true;
+        captured = false;
+        radius = 0;
+    }
+
+    private void stopBlur() {
+        fadingIn = false;
+        blurring = false;
+        captured = false;
+    }
+
     public void loadBlacklist(@Nonnull List<? extends String> names) {
         blacklist.clear();
         for (String s : names) {
@@ -166,7 +212,8 @@ public enum BlurHandler {
         if (fadingIn) {
             float p = Math.min(time / sAnimationDuration, 1.0f);
             if (blurring) {
-                updateRadius(p * sBlurRadius);
+                radius = p * sBlurRadius;
+                dirty = true;
             }
             if (backgroundAlpha < sBackgroundAlpha) {
                 backgroundAlpha = p * sBackgroundAlpha;
@@ -177,14 +224,149 @@ public enum BlurHandler {
         }
     }
 
-    private void updateRadius(float radius) {
-        PostChain effect = minecraft.gameRenderer.currentEffect();
-        if (effect == null)
+    /**
+     * Called before rendering the level. If the backdrop is frozen and still valid,
+     * draw it to the main target instead of rendering the level.
+     *
+     * @return true to skip level rendering
+     */
+    public boolean drawFrozenBackdrop() {
+        if (!blurring || !sBlurFreeze || !captured) {
+            return false;
+        }
+        final RenderTarget target = minecraft.getMainRenderTarget();
+        if (target.width != width || target.height != height) {
+            return false;
+        }
+        if (sBlurRefreshInterval > 0 && Util.getMillis() - lastCaptureTime >= sBlurRefreshInterval) {
+            return false;
+        }
+        if (dirty) {
+            blurPasses();
+        }
+        drawResult(target);
+        return true;
+    }
+
+    /**
+     * Called after rendering the level, capture and blur it if needed.
+     */
+    public void blurLevel() {
+        if (!blurring) {
             return;
-        List<PostPass> passes = ((AccessPostChain) effect).getPasses();
-        for (PostPass s : passes) {
-            s.getEffect().safeGetUniform("Progress").set(radius);
         }
+        final RenderTarget target = minecraft.getMainRenderTarget();
+        if (target.width != width || target.height != height) {
+            allocate(target.width, target.height);
+        }
+        // copy the level to the half size texture, linear filtering is the first pass
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, target.frameBufferId);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, framebuffers[0]);
+        GL30.glBlitFramebuffer(0, 0, width, height, 0, 0, width >> 1, height >> 1,
+                GL11.GL_COLOR_BUFFER_BIT, GL11.GL_LINEAR);
+        captured = true;
+        lastCaptureTime = Util.getMillis();
+        blurPasses();
+        drawResult(target);
+    }
+
+    /**
+     * Blur the captured level to the result, the number of passes is determined by the
+     * configured radius, and the sample offset is scaled by current (animated) radius.
+     */
+    private void blurPasses() {
+        final int passes = Math.min(Math.max(Math.round(sBlurRadius / 5.0f), 1), MAX_PASSES);
+        final float offset = radius / (passes * 2.5f);
+        final int result = framebuffers.length - 1;
+
+        RenderSystem.disableBlend();
+        RenderSystem.disableAlphaTest();
+        RenderSystem.disableDepthTest();
+        RenderSystem.activeTexture(GL13.GL_TEXTURE0);
+
+        RenderCore.useShader(BlurShader.DOWN);
+        BlurShader.DOWN.setOffset(offset);
+        for (int i = 1; i <= passes; i++) {
+            blurPass(BlurShader.DOWN, i - 1, i, i + 1);
+        }
+        RenderCore.useShader(BlurShader.UP);
+        BlurShader.UP.setOffset(offset);
+        for (int i = passes - 1; i >= 1; i--) {
+            blurPass(BlurShader.UP, i + 1, i, i + 1);
+        }
+        blurPass(BlurShader.UP, 1, result, 1);
+        RenderCore.releaseShader();
+
+        RenderSystem.bindTexture(0);
+        RenderSystem.enableDepthTest();
+        RenderSystem.enableAlphaTest();
+        dirty = false;
+    }
+
+    /**
+     * Draw a full screen quad from the source level to the destination level.
+     *
+     * @param shift the destination size is the main target size right shifted by this
+     */
+    private void blurPass(@Nonnull BlurShader shader, int src, int dst, int shift) {
+        final int w = Math.max(width >> shift, 1);
+        final int h = Math.max(height >> shift, 1);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, framebuffers[dst]);
+        RenderSystem.viewport(0, 0, w, h);
+        RenderSystem.bindTexture(textures[src]);
+        shader.setHalfTexel(0.5f / w, 0.5f / h);
+
+        BufferBuilder builder = Tesselator.getInstance().getBuilder();
+        builder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_TEX);
+        builder.vertex(-1, -1, 0).uv(0, 0).endVertex();
+        builder.vertex(1, -1, 0).uv(1, 0).endVertex();
+        builder.vertex(1, 1, 0).uv(1, 1).endVertex();
+        builder.vertex(-1, 1, 0).uv(0, 1).endVertex();
+        builder.end();
+        BufferUploader.end(builder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+    }
+
+    /**
+     * Stretch the blurred result to the main target.
+     */
+    private void drawResult(@Nonnull RenderTarget target) {
+        GL30.glBindFramebuffer(GL30.GL_READ_FRAMEBUFFER, framebuffers[framebuffers.length - 1]);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, target.frameBufferId);
+        GL30.glBlitFramebuffer(0, 0, width >> 1, height >> 1, 0, 0, width, height,
+                GL11.GL_COLOR_BUFFER_BIT, GL11.GL_LINEAR);
+        target.bindWrite(true);
+    }
+
+    /**
+     * (Re)create the chain of framebuffers for the main target size.
+     */
+    private void allocate(int width, int height) {
+        this.width = width;
+        this.height = height;
+        for (int i = 0; i < framebuffers.length; i++) {
+            if (framebuffers[i] == 0) {
+                framebuffers[i] = GL30.glGenFramebuffers();
+                textures[i] = GL11.glGenTextures();
+            }
+            // the result has the same size as the captured level
+            final int shift = i == framebuffers.length - 1 ? 1 : i + 1;
+            RenderSystem.bindTexture(textures[i]);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_S, GL13.GL_CLAMP_TO_EDGE);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_WRAP_T, GL13.GL_CLAMP_TO_EDGE);
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, Math.max(width >> shift, 1),
+                    Math.max(height >> shift, 1), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+            GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, framebuffers[i]);
+            GL30.glFramebufferTexture2D(GL30.GL_DRAW_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D,
+                    textures[i], 0);
+            if (GL30.glCheckFramebufferStatus(GL30.GL_DRAW_FRAMEBUFFER) != GL30.GL_FRAMEBUFFER_COMPLETE) {
+                ModernUI.LOGGER.warn(RenderCore.MARKER, "Blur framebuffer {} is incomplete", i);
+            }
+        }
+        RenderSystem.bindTexture(0);
+        captured = false;
     }
 
     public void drawScreenBackground(@Nonnull Screen screen, @Nonnull PoseStack stack, int x1, int y1, int x2, int y2) {
@@ -18,29 +18,14 @@
 
 package icyllis.modernui.graphics;
 
-import com.mojang.blaze3d.platform.Window;
-import com.mojang.blaze3d.systems.RenderSystem;
-import com.mojang.blaze3d.vertex.BufferBuilder;
-import com.mojang.blaze3d.vertex.BufferUploader;
-import com.mojang.blaze3d.vertex.DefaultVertexFormat;
-import com.mojang.blaze3d.vertex.Tesselator;
-import icyllis.modernui.ModernUI;
-import icyllis.modernui.graphics.font.pipeline.TextRenderNode;
-import icyllis.modernui.graphics.text.TextLayoutProcessor;
 import icyllis.modernui.graphics.drawable.Drawable;
 import icyllis.modernui.graphics.math.Color3i;
 import icyllis.modernui.graphics.math.Icon;
 import icyllis.modernui.graphics.math.TextAlign;
-import icyllis.modernui.graphics.shader.program.*;
-import icyllis.modernui.view.UIManager;
 import icyllis.modernui.view.View;
 import net.minecraft.ChatFormatting;
-import net.minecraft.client.Minecraft;
-import net.minecraft.client.renderer.entity.ItemRenderer;
-import net.minecraft.network.chat.Style;
 import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
-import org.lwjgl.opengl.GL11;
 
 import javax.annotation.Nonnull;
 
@@ -48,10 +33,14 @@ import javax.annotation.Nonnull;
  * The main renderer of Modern UI, draw things for View:
  * likes rect, rounded rect, circle, ring, text, line, point, image etc.
  * <p>
- * The canvas actually uses shaders (hardware-accelerated)
+ * The canvas holds paint states, drawing is done by an implementation.
+ * {@link GLCanvas} actually uses shaders (hardware-accelerated)
  * to render in real-time, so there's no need to control redrawing.
  * Also avoided RenderType being used in GUI, for better performance
- * (reduces GL callings, because render states changed little)
+ * (reduces GL callings, because render states changed little).
+ * {@link RecordingCanvas} draws nothing but counts what would be submitted,
+ * which works without a GL context. This class itself touches no render state,
+ * the GL instance is created by {@link GLCanvas#getInstance()}.
  * <p>
  * The font renderer uses another system, which has two parts, one for Modern UI, and
  * the global one is using RenderType, make Modern UI font renderer work everywhere,
@@ -62,50 +51,26 @@ import javax.annotation.Nonnull;
  */
 @SuppressWarnings("unused")
 //TODO New render system (LOWEST PRIORITY)
-public class Canvas {
-
-    private static Canvas instance;
+public abstract class Canvas {
 
     /**
-     * Instances
+     * Paint colors
      */
-    private final Window mainWindow;
-    private final ItemRenderer itemRenderer;
-
-    private final TextLayoutProcessor fontEngine = TextLayoutProcessor.getInstance();
-
-    private final BufferBuilder bufferBuilder = Tesselator.getInstance().getBuilder();
-
+    protected int r = 255;
+    protected int g = 255;
+    protected int b = 255;
+    protected int a = 255;
 
     /**
-     * Shaders instance
+     * Layer opacity multiplied with paint alpha, set by views
      */
-    private final RingShader ring = RingShader.INSTANCE;
-    private final RoundedRectShader roundedRect = RoundedRectShader.INSTANCE;
-    private final RoundedFrameShader roundedFrame = RoundedFrameShader.INSTANCE;
-    private final CircleShader circle = CircleShader.INSTANCE;
-    private final FeatheredRectShader featheredRect = FeatheredRectShader.INSTANCE;
-
-
-    /**
-     * Paint colors
-     */
-    private int r = 255;
-    private int g = 255;
-    private int b = 255;
-    private int a = 255;
+    protected float layerAlpha = 1.0f;
 
 
     /**
      * Depth
      */
-    private double z = 0.0D;
-
-    /*
-     * Drawing location offset, view or drawable
-     */
-    /*private int drawingX = 0;
-    private int drawingY = 0;*/
+    protected double z = 0.0D;
 
     /**
      * Elapsed time from a gui open
@@ -116,36 +81,10 @@ public class Canvas {
     /**
      * Text align
      */
-    private float alignFactor = TextAlign.LEFT.offsetFactor;
+    protected float alignFactor = TextAlign.LEFT.offsetFactor;
 
 
-    /**
-     * GL states
-     */
-    private static boolean lineAA = false;
-
-
-    private Canvas(@Nonnull Minecraft minecraft) {
-        RenderCore.startRenderEngine();
-        mainWindow = minecraft.getWindow();
-        itemRenderer = minecraft.getItemRenderer();
-        fontEngine.initRenderer();
-    }
-
-    /**
-     * This will start the render engine of Modern UI. Always do not call this
-     * at the wrong time.
-     *
-     * @return the instance
-     * @see UIManager#initialize()
-     */
-    public static Canvas getInstance() {
-        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
-        if (instance == null) {
-            instance = new Canvas(Minecraft.getInstance());
-            ModernUI.LOGGER.debug(RenderCore.MARKER, "Render engine started");
-        }
-        return instance;
+    protected Canvas() {
     }
 
     /**
@@ -160,7 +99,7 @@ public class Canvas {
         this.r = r;
         this.g = g;
         this.b = b;
-        this.a = a;
+        this.a = (int) (a * layerAlpha);
     }
 
     /**
@@ -182,7 +121,7 @@ public class Canvas {
      * @param argb like 0x80404040 (=R64,G64,B64,A128)
      */
     public void setARGB(int argb) {
-        a = argb >> 24 & 0xff;
+        a = (int) ((argb >> 24 & 0xff) * layerAlpha);
         r = argb >> 16 & 0xff;
         g = argb >> 8 & 0xff;
         b = argb & 0xff;
@@ -205,7 +144,7 @@ public class Canvas {
      * @param a alpha [0,1]
      */
     public void setAlpha(float a) {
-        this.a = (int) (a * 255.0f);
+        this.a = (int) (a * layerAlpha * 255.0f);
     }
 
     /**
@@ -214,7 +153,7 @@ public class Canvas {
      * @param a alpha [0,255]
      */
     public void setAlpha(int a) {
-        this.a = a;
+        this.a = (int) (a * layerAlpha);
     }
 
     @Deprecated
@@ -229,7 +168,7 @@ public class Canvas {
         r = color.getRed();
         g = color.getGreen();
         b = color.getBlue();
-        this.a = a;
+        this.a = (int) (a * layerAlpha);
     }
 
     /**
@@ -239,7 +178,27 @@ public class Canvas {
         r = 255;
         g = 255;
         b = 255;
-        a = 255;
+        a = (int) (255 * layerAlpha);
+    }
+
+    /**
+     * Set the opacity of current layer, all alpha values set after this will be
+     * multiplied by it. This is used to apply view alpha.
+     *
+     * @param alpha layer alpha [0,1]
+     * @see View#setAlpha(float)
+     */
+    public void setLayerAlpha(float alpha) {
+        layerAlpha = alpha;
+    }
+
+    /**
+     * Get the opacity of current layer
+     *
+     * @return layer alpha [0,1]
+     */
+    public float getLayerAlpha() {
+        return layerAlpha;
     }
 
     /**
@@ -261,27 +220,14 @@ public class Canvas {
      *
      * @param aa anti-aliasing
      */
-    public void setLineAntiAliasing(boolean aa) {
-        if (aa) {
-            if (!lineAA) {
-                GL11.glEnable(GL11.GL_LINE_SMOOTH);
-                GL11.glHint(GL11.GL_LINE_SMOOTH_HINT, GL11.GL_NICEST);
-                lineAA = true;
-            }
-        } else if (lineAA) {
-            GL11.glDisable(GL11.GL_LINE_SMOOTH);
-            lineAA = false;
-        }
-    }
+    public abstract void setLineAntiAliasing(boolean aa);
 
     /**
      * Set line width for lines drawing
      *
      * @param width width, default is 1.0f (not affected by gui scale)
      */
-    public void setLineWidth(float width) {
-        RenderSystem.lineWidth(width);
-    }
+    public abstract void setLineWidth(float width);
 
     /**
      * Set z pos / level, determines the depth, higher value will draw at the top
@@ -328,14 +274,7 @@ public class Canvas {
      * @return the total advance of the text (text line width)
      * @see #setTextAlign(TextAlign)
      */
-    public float drawText(String text, float x, float y) {
-        if (text == null || text.isEmpty())
-            return 0;
-        final TextRenderNode node = fontEngine.lookupVanillaNode(text, Style.EMPTY);
-        if (alignFactor > 0)
-            x -= node.advance * alignFactor;
-        return node.drawText(bufferBuilder, text, x, y, r, g, b, a);
-    }
+    public abstract float drawText(String text, float x, float y);
 
     /**
      * Draw a rectangle on screen with given rect area
@@ -345,22 +284,7 @@ public class Canvas {
      * @param right  rect right
      * @param bottom rect bottom
      */
-    public void drawRect(float left, float top, float right, float bottom) {
-        RenderSystem.disableTexture();
-
-        /*left += drawingX;
-        top += drawingY;
-        right += drawingX;
-        bottom += drawingY;*/
-
-        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-    }
+    public abstract void drawRect(float left, float top, float right, float bottom);
 
     /**
      * Draw four rectangles outside the given rect with thickness
@@ -371,65 +295,7 @@ public class Canvas {
      * @param bottom    rect bottom
      * @param thickness thickness, must be integral multiple of 1.0
      */
-    public void drawRectOutline(float left, float top, float right, float bottom, float thickness) {
-        RenderSystem.disableTexture();
-
-        /*left += drawingX;
-        top += drawingY;
-        right += drawingX;
-        bottom += drawingY;*/
-
-        /*ShaderTools.useShader(featheredRect);
-        featheredRect.setThickness(0.25f);
-
-        featheredRect.setInnerRect(left - thickness + 0.25f, top - thickness + 0.25f, right - 0.25f, top - 0.25f);*/
-
-        final int r = this.r;
-        final int g = this.g;
-        final int b = this.b;
-        final int a = this.a;
-        final double z = this.z;
-
-        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(left - thickness, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, top - thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left - thickness, top - thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-
-        //featheredRect.setInnerRect(right + 0.25f, top - thickness + 0.25f, right + thickness - 0.25f, bottom - 0.25f);
-
-        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right + thickness, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right + thickness, top - thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, top - thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-
-        //featheredRect.setInnerRect(left + 0.25f, bottom + 0.25f, right + thickness - 0.25f, bottom + thickness - 0.25f);
-
-        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(left, bottom + thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right + thickness, bottom + thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right + thickness, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-
-        //featheredRect.setInnerRect(left - thickness + 0.25f, top + 0.25f, left - 0.25f, bottom + thickness - 0.25f);
-
-        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(left - thickness, bottom + thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left, bottom + thickness, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left - thickness, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-
-        //ShaderTools.releaseShader();
-    }
+    public abstract void drawRectOutline(float left, float top, float right, float bottom, float thickness);
 
     /**
      * Draw a rect frame with bevel angle
@@ -440,32 +306,7 @@ public class Canvas {
      * @param bottom rect bottom
      * @param bevel  bevel length
      */
-    public void drawOctagonRectFrame(float left, float top, float right, float bottom, float bevel) {
-        RenderSystem.disableTexture();
-
-        /*left += drawingX;
-        top += drawingY;
-        right += drawingX;
-        bottom += drawingY;*/
-
-        final int r = this.r;
-        final int g = this.g;
-        final int b = this.b;
-        final int a = this.a;
-        final double z = this.z;
-
-        bufferBuilder.begin(GL11.GL_LINE_LOOP, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(left, bottom - bevel, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left + bevel, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right - bevel, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, bottom - bevel, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, top + bevel, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right - bevel, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left + bevel, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left, top + bevel, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-    }
+    public abstract void drawOctagonRectFrame(float left, float top, float right, float bottom, float bevel);
 
     /**
      * Draw four lines around a closed rect area, anti-aliasing is needed
@@ -476,22 +317,7 @@ public class Canvas {
      * @param right  rect right
      * @param bottom rect bottom
      */
-    public void drawRectLines(float left, float top, float right, float bottom) {
-        RenderSystem.disableTexture();
-
-        /*left += drawingX;
-        top += drawingY;
-        right += drawingX;
-        bottom += drawingY;*/
-
-        bufferBuilder.begin(GL11.GL_LINE_LOOP, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(right, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(left, top, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-    }
+    public abstract void drawRectLines(float left, float top, float right, float bottom);
 
     /**
      * Draw ring / annulus on screen with given center pos and radius
@@ -503,13 +329,7 @@ public class Canvas {
      * @param innerRadius inner circle radius
      * @param outerRadius outer circle radius
      */
-    public void drawRing(float centerX, float centerY, float innerRadius, float outerRadius) {
-        RenderCore.useShader(ring);
-        ring.setRadius(innerRadius, outerRadius);
-        ring.setCenter(centerX, centerY);
-        drawRect(centerX - outerRadius, centerY - outerRadius, centerX + outerRadius, centerY + outerRadius);
-        RenderCore.releaseShader();
-    }
+    public abstract void drawRing(float centerX, float centerY, float innerRadius, float outerRadius);
 
     /**
      * Draw circle on screen with given center pos and radius
@@ -520,13 +340,7 @@ public class Canvas {
      * @param centerY center y pos
      * @param radius  circle radius
      */
-    public void drawCircle(float centerX, float centerY, float radius) {
-        RenderCore.useShader(circle);
-        circle.setRadius(radius);
-        circle.setCenter(centerX, centerY);
-        drawRect(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
-        RenderCore.releaseShader();
-    }
+    public abstract void drawCircle(float centerX, float centerY, float radius);
 
     /**
      * Draw a line with given two pos
@@ -536,20 +350,7 @@ public class Canvas {
      * @param stopX  x2
      * @param stopY  y2
      */
-    public void drawLine(float startX, float startY, float stopX, float stopY) {
-        RenderSystem.disableTexture();
-
-        /*startX += drawingX;
-        stopX += drawingX;
-        startY += drawingY;
-        stopY += drawingY;*/
-
-        bufferBuilder.begin(GL11.GL_LINES, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(startX, startY, z).color(r, g, b, a).endVertex();
-        bufferBuilder.vertex(stopX, stopY, z).color(r, g, b, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-    }
+    public abstract void drawLine(float startX, float startY, float stopX, float stopY);
 
     /**
      * Draw rounded rectangle on screen with given rect area and rounded radius
@@ -560,13 +361,7 @@ public class Canvas {
      * @param bottom the bottom of the rectangle
      * @param radius the rounded corner radius
      */
-    public void drawRoundedRect(float left, float top, float right, float bottom, float radius) {
-        RenderCore.useShader(roundedRect);
-        roundedRect.setRadius(radius);
-        roundedRect.setInnerRect(left + radius, top + radius, right - radius, bottom - radius);
-        drawRect(left, top, right, bottom);
-        RenderCore.releaseShader();
-    }
+    public abstract void drawRoundedRect(float left, float top, float right, float bottom, float radius);
 
     /**
      * Draw rounded rectangle frame in a rounded rect on screen
@@ -581,31 +376,10 @@ public class Canvas {
      * @param bottom the bottom of the rectangle
      * @param radius the rounded corner radius
      */
-    public void drawRoundedFrame(float left, float top, float right, float bottom, float radius) {
-        RenderCore.useShader(roundedFrame);
-        roundedFrame.setRadius(radius);
-        roundedFrame.setInnerRect(left + radius, top + radius, right - radius, bottom - radius);
-        drawRect(left, top, right, bottom);
-        RenderCore.releaseShader();
-    }
+    public abstract void drawRoundedFrame(float left, float top, float right, float bottom, float radius);
 
     // Alpha test
-    public void drawRoundedFrameT1(float left, float top, float right, float bottom, float radius) {
-        RenderCore.useShader(roundedFrame);
-        roundedFrame.setRadius(radius);
-        roundedFrame.setInnerRect(left + radius, top + radius, right - radius, bottom - radius);
-        RenderSystem.disableTexture();
-        RenderSystem.shadeModel(GL11.GL_SMOOTH);
-        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
-        bufferBuilder.vertex(left, bottom, z).color(170, 220, 240, a).endVertex();
-        bufferBuilder.vertex(right, bottom, z).color(201, 200, 232, a).endVertex();
-        bufferBuilder.vertex(right, top, z).color(232, 180, 223, a).endVertex();
-        bufferBuilder.vertex(left, top, z).color(201, 200, 232, a).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-        RenderSystem.shadeModel(GL11.GL_FLAT);
-        RenderCore.releaseShader();
-    }
+    public abstract void drawRoundedFrameT1(float left, float top, float right, float bottom, float radius);
 
     /**
      * Draw feathered rectangle frame in a rounded rect on screen
@@ -618,13 +392,7 @@ public class Canvas {
      * @param bottom    rect bottom
      * @param thickness feather thickness (&lt;= 0.5 is better)
      */
-    public void drawFeatheredRect(float left, float top, float right, float bottom, float thickness) {
-        RenderCore.useShader(featheredRect);
-        featheredRect.setThickness(thickness);
-        featheredRect.setInnerRect(left + thickness, top + thickness, right - thickness, bottom - thickness);
-        drawRect(left, top, right, bottom);
-        RenderCore.releaseShader();
-    }
+    public abstract void drawFeatheredRect(float left, float top, float right, float bottom, float thickness);
 
     /**
      * Draw icon on screen fitting to given rect area
@@ -635,24 +403,7 @@ public class Canvas {
      * @param right  rect right
      * @param bottom rect bottom
      */
-    public void drawIcon(@Nonnull Icon icon, float left, float top, float right, float bottom) {
-        RenderSystem.enableTexture();
-        icon.bindTexture();
-        BufferBuilder bufferBuilder = this.bufferBuilder;
-
-        /*left += drawingX;
-        top += drawingY;
-        right += drawingX;
-        bottom += drawingY;*/
-
-        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR_TEX);
-        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).uv(icon.getLeft(), icon.getBottom()).endVertex();
-        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).uv(icon.getRight(), icon.getBottom()).endVertex();
-        bufferBuilder.vertex(right, top, z).color(r, g, b, a).uv(icon.getRight(), icon.getTop()).endVertex();
-        bufferBuilder.vertex(left, top, z).color(r, g, b, a).uv(icon.getLeft(), icon.getTop()).endVertex();
-        bufferBuilder.end();
-        BufferUploader.end(bufferBuilder);
-    }
+    public abstract void drawIcon(@Nonnull Icon icon, float left, float top, float right, float bottom);
 
     /**
      * Draw item default instance, without any NBT data
@@ -662,11 +413,7 @@ public class Canvas {
      * @param x    x pos
      * @param y    y pos
      */
-    public void drawItem(@Nonnull Item item, float x, float y) {
-        itemRenderer.renderGuiItem(item.getDefaultInstance(), (int) (x), (int) (y));
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-    }
+    public abstract void drawItem(@Nonnull Item item, float x, float y);
 
     /**
      * Draw item stack with NBT
@@ -675,11 +422,7 @@ public class Canvas {
      * @param x     x pos
      * @param y     y pos
      */
-    public void drawItemStack(@Nonnull ItemStack stack, float x, float y) {
-        itemRenderer.renderGuiItem(stack, (int) (x), (int) (y));
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-    }
+    public abstract void drawItemStack(@Nonnull ItemStack stack, float x, float y);
 
     /**
      * Draw item stack with NBT and their damage bar, amount etc
@@ -688,12 +431,7 @@ public class Canvas {
      * @param x     x pos
      * @param y     y pos
      */
-    public void drawItemStackWithOverlays(@Nonnull ItemStack stack, float x, float y) {
-        itemRenderer.renderGuiItem(stack, (int) (x), (int) (y));
-        itemRenderer.renderGuiItemDecorations(Minecraft.getInstance().font, stack, (int) (x), (int) (y));
-        RenderSystem.enableBlend();
-        RenderSystem.defaultBlendFunc();
-    }
+    public abstract void drawItemStackWithOverlays(@Nonnull ItemStack stack, float x, float y);
 
     /**
      * At most cases, you've to call this
@@ -725,21 +463,13 @@ public class Canvas {
         drawingY = 0;*/
     }
 
-    public void save() {
-        RenderSystem.pushMatrix();
-    }
+    public abstract void save();
 
-    public void restore() {
-        RenderSystem.popMatrix();
-    }
+    public abstract void restore();
 
-    public void translate(float dx, float dy) {
-        RenderSystem.translatef(dx, dy, 0.0f);
-    }
+    public abstract void translate(float dx, float dy);
 
-    public void scale(float sx, float sy) {
-        RenderSystem.scalef(sx, sy, 1.0f);
-    }
+    public abstract void scale(float sx, float sy);
 
     /**
      * Scale the canvas and translate to pos
@@ -749,39 +479,11 @@ public class Canvas {
      * @param px pivot x pos
      * @param py pivot y pos
      */
-    public void scale(float sx, float sy, float px, float py) {
-        RenderSystem.scalef(sx, sy, 1.0f);
-        float dx;
-        float dy;
-        if (sx < 1) {
-            dx = 1.0f / sx - 1.0f;
-        } else {
-            dx = sx - 1.0f;
-        }
-        dx *= px;
-        if (sy < 1) {
-            dy = 1.0f / sy - 1.0f;
-        } else {
-            dy = sy - 1.0f;
-        }
-        dy *= py;
-        RenderSystem.translatef(dx, dy, 0.0f);
-    }
+    public abstract void scale(float sx, float sy, float px, float py);
 
-    public void clipVertical(@Nonnull View view) {
-        GL11.glEnable(GL11.GL_SCISSOR_TEST);
-        GL11.glScissor(0, mainWindow.getHeight() - view.getBottom(),
-                mainWindow.getWidth(), view.getHeight());
-    }
+    public abstract void clipVertical(@Nonnull View view);
 
-    public void clipStart(float x, float y, float width, float height) {
-        double scale = mainWindow.getGuiScale();
-        GL11.glEnable(GL11.GL_SCISSOR_TEST);
-        GL11.glScissor((int) (x * scale), (int) (mainWindow.getHeight() - ((y + height) * scale)),
-                (int) (width * scale), (int) (height * scale));
-    }
+    public abstract void clipStart(float x, float y, float width, float height);
 
-    public void clipEnd() {
-        GL11.glDisable(GL11.GL_SCISSOR_TEST);
-    }
+    public abstract void clipEnd();
 }
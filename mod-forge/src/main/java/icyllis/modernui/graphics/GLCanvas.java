@@ -0,0 +1,455 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics;
+
+import com.mojang.blaze3d.platform.Window;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.Tesselator;
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.font.pipeline.TextRenderNode;
+import icyllis.modernui.graphics.text.TextLayoutProcessor;
+import icyllis.modernui.graphics.math.Icon;
+import icyllis.modernui.graphics.shader.program.*;
+import icyllis.modernui.util.FrameProfiler;
+import icyllis.modernui.view.View;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.entity.ItemRenderer;
+import net.minecraft.network.chat.Style;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import org.lwjgl.opengl.GL11;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The canvas that renders with OpenGL on render thread, using the
+ * shared Tesselator buffer and Modern UI shaders.
+ */
+public class GLCanvas extends Canvas {
+
+    private static GLCanvas instance;
+
+    /**
+     * Instances
+     */
+    private final Window mainWindow;
+    private final ItemRenderer itemRenderer;
+    private final ItemIconCache itemIcons = ItemIconCache.getInstance();
+
+    private final TextLayoutProcessor fontEngine = TextLayoutProcessor.getInstance();
+
+    private final BufferBuilder bufferBuilder = Tesselator.getInstance().getBuilder();
+
+
+    /**
+     * Shaders instance
+     */
+    private final RingShader ring = RingShader.INSTANCE;
+    private final RoundedRectShader roundedRect = RoundedRectShader.INSTANCE;
+    private final RoundedFrameShader roundedFrame = RoundedFrameShader.INSTANCE;
+    private final CircleShader circle = CircleShader.INSTANCE;
+    private final FeatheredRectShader featheredRect = FeatheredRectShader.INSTANCE;
+
+
+    /**
+     * GL states
+     */
+    private static boolean lineAA = false;
+
+
+    GLCanvas(@Nonnull Minecraft minecraft) {
+        RenderCore.startRenderEngine();
+        mainWindow = minecraft.getWindow();
+        itemRenderer = minecraft.getItemRenderer();
+        fontEngine.initRenderer();
+    }
+
+    /**
+     * This will start the render engine of Modern UI. Always do not call this
+     * at the wrong time.
+     *
+     * @return the instance
+     * @see icyllis.modernui.view.UIManager#initialize()
+     */
+    public static GLCanvas getInstance() {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        if (instance == null) {
+            instance = new GLCanvas(Minecraft.getInstance());
+            ModernUI.LOGGER.debug(RenderCore.MARKER, "Render engine started");
+        }
+        return instance;
+    }
+
+    @Override
+    public void setLineAntiAliasing(boolean aa) {
+        if (aa) {
+            if (!lineAA) {
+                GL11.glEnable(GL11.GL_LINE_SMOOTH);
+                GL11.glHint(GL11.GL_LINE_SMOOTH_HINT, GL11.GL_NICEST);
+                lineAA = true;
+            }
+        } else if (lineAA) {
+            GL11.glDisable(GL11.GL_LINE_SMOOTH);
+            lineAA = false;
+        }
+    }
+
+    @Override
+    public void setLineWidth(float width) {
+        RenderSystem.lineWidth(width);
+    }
+
+    @Override
+    public float drawText(String text, float x, float y) {
+        if (text == null || text.isEmpty())
+            return 0;
+        final TextRenderNode node = fontEngine.lookupVanillaNode(text, Style.EMPTY);
+        if (alignFactor > 0)
+            x -= node.advance * alignFactor;
+        return node.drawText(bufferBuilder, text, x, y, r, g, b, a);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom) {
+        RenderSystem.disableTexture();
+
+        /*left += drawingX;
+        top += drawingY;
+        right += drawingX;
+        bottom += drawingY;*/
+
+        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+    }
+
+    @Override
+    public void drawRectOutline(float left, float top, float right, float bottom, float thickness) {
+        RenderSystem.disableTexture();
+
+        /*left += drawingX;
+        top += drawingY;
+        right += drawingX;
+        bottom += drawingY;*/
+
+        /*ShaderTools.useShader(featheredRect);
+        featheredRect.setThickness(0.25f);
+
+        featheredRect.setInnerRect(left - thickness + 0.25f, top - thickness + 0.25f, right - 0.25f, top - 0.25f);*/
+
+        final int r = this.r;
+        final int g = this.g;
+        final int b = this.b;
+        final int a = this.a;
+        final double z = this.z;
+
+        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(left - thickness, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, top - thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left - thickness, top - thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+
+        //featheredRect.setInnerRect(right + 0.25f, top - thickness + 0.25f, right + thickness - 0.25f, bottom - 0.25f);
+
+        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right + thickness, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right + thickness, top - thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, top - thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+
+        //featheredRect.setInnerRect(left + 0.25f, bottom + 0.25f, right + thickness - 0.25f, bottom + thickness - 0.25f);
+
+        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(left, bottom + thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right + thickness, bottom + thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right + thickness, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+
+        //featheredRect.setInnerRect(left - thickness + 0.25f, top + 0.25f, left - 0.25f, bottom + thickness - 0.25f);
+
+        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(left - thickness, bottom + thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left, bottom + thickness, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left - thickness, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+
+        //ShaderTools.releaseShader();
+    }
+
+    @Override
+    public void drawOctagonRectFrame(float left, float top, float right, float bottom, float bevel) {
+        RenderSystem.disableTexture();
+
+        /*left += drawingX;
+        top += drawingY;
+        right += drawingX;
+        bottom += drawingY;*/
+
+        final int r = this.r;
+        final int g = this.g;
+        final int b = this.b;
+        final int a = this.a;
+        final double z = this.z;
+
+        bufferBuilder.begin(GL11.GL_LINE_LOOP, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(left, bottom - bevel, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left + bevel, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right - bevel, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, bottom - bevel, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, top + bevel, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right - bevel, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left + bevel, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left, top + bevel, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+    }
+
+    @Override
+    public void drawRectLines(float left, float top, float right, float bottom) {
+        RenderSystem.disableTexture();
+
+        /*left += drawingX;
+        top += drawingY;
+        right += drawingX;
+        bottom += drawingY;*/
+
+        bufferBuilder.begin(GL11.GL_LINE_LOOP, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(right, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(left, top, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+    }
+
+    @Override
+    public void drawRing(float centerX, float centerY, float innerRadius, float outerRadius) {
+        RenderCore.useShader(ring);
+        ring.setRadius(innerRadius, outerRadius);
+        ring.setCenter(centerX, centerY);
+        drawRect(centerX - outerRadius, centerY - outerRadius, centerX + outerRadius, centerY + outerRadius);
+        RenderCore.releaseShader();
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius) {
+        RenderCore.useShader(circle);
+        circle.setRadius(radius);
+        circle.setCenter(centerX, centerY);
+        drawRect(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+        RenderCore.releaseShader();
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY) {
+        RenderSystem.disableTexture();
+
+        /*startX += drawingX;
+        stopX += drawingX;
+        startY += drawingY;
+        stopY += drawingY;*/
+
+        bufferBuilder.begin(GL11.GL_LINES, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(startX, startY, z).color(r, g, b, a).endVertex();
+        bufferBuilder.vertex(stopX, stopY, z).color(r, g, b, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+    }
+
+    @Override
+    public void drawRoundedRect(float left, float top, float right, float bottom, float radius) {
+        RenderCore.useShader(roundedRect);
+        roundedRect.setRadius(radius);
+        roundedRect.setInnerRect(left + radius, top + radius, right - radius, bottom - radius);
+        drawRect(left, top, right, bottom);
+        RenderCore.releaseShader();
+    }
+
+    @Override
+    public void drawRoundedFrame(float left, float top, float right, float bottom, float radius) {
+        RenderCore.useShader(roundedFrame);
+        roundedFrame.setRadius(radius);
+        roundedFrame.setInnerRect(left + radius, top + radius, right - radius, bottom - radius);
+        drawRect(left, top, right, bottom);
+        RenderCore.releaseShader();
+    }
+
+    @Override
+    public void drawRoundedFrameT1(float left, float top, float right, float bottom, float radius) {
+        RenderCore.useShader(roundedFrame);
+        roundedFrame.setRadius(radius);
+        roundedFrame.setInnerRect(left + radius, top + radius, right - radius, bottom - radius);
+        RenderSystem.disableTexture();
+        RenderSystem.shadeModel(GL11.GL_SMOOTH);
+        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR);
+        bufferBuilder.vertex(left, bottom, z).color(170, 220, 240, a).endVertex();
+        bufferBuilder.vertex(right, bottom, z).color(201, 200, 232, a).endVertex();
+        bufferBuilder.vertex(right, top, z).color(232, 180, 223, a).endVertex();
+        bufferBuilder.vertex(left, top, z).color(201, 200, 232, a).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+        RenderSystem.shadeModel(GL11.GL_FLAT);
+        RenderCore.releaseShader();
+    }
+
+    @Override
+    public void drawFeatheredRect(float left, float top, float right, float bottom, float thickness) {
+        RenderCore.useShader(featheredRect);
+        featheredRect.setThickness(thickness);
+        featheredRect.setInnerRect(left + thickness, top + thickness, right - thickness, bottom - thickness);
+        drawRect(left, top, right, bottom);
+        RenderCore.releaseShader();
+    }
+
+    @Override
+    public void drawIcon(@Nonnull Icon icon, float left, float top, float right, float bottom) {
+        RenderSystem.enableTexture();
+        icon.bindTexture();
+        FrameProfiler.count(FrameProfiler.TEXTURE_BIND);
+        BufferBuilder bufferBuilder = this.bufferBuilder;
+
+        /*left += drawingX;
+        top += drawingY;
+        right += drawingX;
+        bottom += drawingY;*/
+
+        bufferBuilder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR_TEX);
+        bufferBuilder.vertex(left, bottom, z).color(r, g, b, a).uv(icon.getLeft(), icon.getBottom()).endVertex();
+        bufferBuilder.vertex(right, bottom, z).color(r, g, b, a).uv(icon.getRight(), icon.getBottom()).endVertex();
+        bufferBuilder.vertex(right, top, z).color(r, g, b, a).uv(icon.getRight(), icon.getTop()).endVertex();
+        bufferBuilder.vertex(left, top, z).color(r, g, b, a).uv(icon.getLeft(), icon.getTop()).endVertex();
+        bufferBuilder.end();
+        BufferUploader.end(bufferBuilder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+    }
+
+    @Override
+    public void drawItem(@Nonnull Item item, float x, float y) {
+        drawItemStack(item.getDefaultInstance(), x, y);
+    }
+
+    @Override
+    public void drawItemStack(@Nonnull ItemStack stack, float x, float y) {
+        if (!itemIcons.drawItem(stack, x, y, z, bufferBuilder)) {
+            itemRenderer.renderGuiItem(stack, (int) (x), (int) (y));
+            FrameProfiler.count(FrameProfiler.DRAW_CALL);
+        }
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+    }
+
+    @Override
+    public void drawItemStackWithOverlays(@Nonnull ItemStack stack, float x, float y) {
+        if (!itemIcons.drawItem(stack, x, y, z, bufferBuilder)) {
+            itemRenderer.renderGuiItem(stack, (int) (x), (int) (y));
+            FrameProfiler.count(FrameProfiler.DRAW_CALL);
+        }
+        // count and durability change often, they are cheap to draw
+        itemRenderer.renderGuiItemDecorations(Minecraft.getInstance().font, stack, (int) (x), (int) (y));
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+    }
+
+    @Override
+    public void save() {
+        RenderSystem.pushMatrix();
+    }
+
+    @Override
+    public void restore() {
+        RenderSystem.popMatrix();
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        RenderSystem.translatef(dx, dy, 0.0f);
+    }
+
+    @Override
+    public void scale(float sx, float sy) {
+        RenderSystem.scalef(sx, sy, 1.0f);
+    }
+
+    @Override
+    public void scale(float sx, float sy, float px, float py) {
+        RenderSystem.scalef(sx, sy, 1.0f);
+        float dx;
+        float dy;
+        if (sx < 1) {
+            dx = 1.0f / sx - 1.0f;
+        } else {
+            dx = sx - 1.0f;
+        }
+        dx *= px;
+        if (sy < 1) {
+            dy = 1.0f / sy - 1.0f;
+        } else {
+            dy = sy - 1.0f;
+        }
+        dy *= py;
+        RenderSystem.translatef(dx, dy, 0.0f);
+    }
+
+    @Override
+    public void clipVertical(@Nonnull View view) {
+        GL11.glEnable(GL11.GL_SCISSOR_TEST);
+        GL11.glScissor(0, mainWindow.getHeight() - view.getBottom(),
+                mainWindow.getWidth(), view.getHeight());
+        FrameProfiler.count(FrameProfiler.SCISSOR_CHANGE);
+    }
+
+    @Override
+    public void clipStart(float x, float y, float width, float height) {
+        double scale = mainWindow.getGuiScale();
+        GL11.glEnable(GL11.GL_SCISSOR_TEST);
+        GL11.glScissor((int) (x * scale), (int) (mainWindow.getHeight() - ((y + height) * scale)),
+                (int) (width * scale), (int) (height * scale));
+        FrameProfiler.count(FrameProfiler.SCISSOR_CHANGE);
+    }
+
+    @Override
+    public void clipEnd() {
+        GL11.glDisable(GL11.GL_SCISSOR_TEST);
+        FrameProfiler.count(FrameProfiler.SCISSOR_CHANGE);
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.util.FrameProfiler;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanMap;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.color.item.ItemColors;
+import net.minecraft.client.renderer.ItemBlockRenderTypes;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.block.model.BakedQuad;
+import net.minecraft.client.renderer.entity.ItemRenderer;
+import net.minecraft.client.resources.model.BakedModel;
+import net.minecraft.core.Direction;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.ResourceManagerReloadListener;
+import net.minecraft.world.item.BlockItem;
+import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Item icons rendered once into a framebuffer atlas, then drawn as textured quads instead of
+ * rendering baked models every frame. An icon is keyed by the baked model after overrides,
+ * which follow NBT and damage, the item colors of its tint indices, and the pixel size.
+ * <p>
+ * Items that cannot be cached are rendered by ItemRenderer as usual: enchanted items (the glint
+ * is animated), models with animated sprites, custom renderers and translucent blocks. The atlas
+ * is invalidated on resource reload, and when it's full.
+ *
+ * @see GLCanvas#drawItemStack(ItemStack, float, float)
+ */
+@OnlyIn(Dist.CLIENT)
+public final class ItemIconCache implements ResourceManagerReloadListener {
+
+    private static final ItemIconCache INSTANCE = new ItemIconCache();
+
+    private static final int ATLAS_SIZE = 1024;
+
+    /**
+     * Item size in GUI scaled pixels
+     */
+    private static final int ITEM_SIZE = 16;
+
+    private static final int SPACING = 1;
+
+    /**
+     * If the atlas is full again in this time after a flush, stop caching for a while
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+
+    private final Minecraft minecraft = Minecraft.getInstance();
+
+    private final Map<Key, Icon> icons = new Object2ObjectOpenHashMap<>();
+
+    /**
+     * Whether a model (after overrides) is animated, or can't be cached
+     */
+    private final Reference2BooleanMap<BakedModel> uncachedModels = new Reference2BooleanOpenHashMap<>();
+
+    // reused for lookup
+    private final Key lookupKey = new Key();
+
+    private final Random random = new Random();
+
+    private int framebuffer;
+    private int colorTexture;
+    private int depthBuffer;
+
+    private int currPosX;
+    private int currPosY;
+    private int currLineHeight;
+
+    private boolean dirty = true;
+    private long lastFlushTime;
+
+    private ItemIconCache() {
+    }
+
+    @Nonnull
+    public static ItemIconCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Draw an item stack from the atlas at GUI position, the icon is rendered on first use.
+     *
+     * @param stack   the item stack
+     * @param x       left
+     * @param y       top
+     * @param z       depth
+     * @param builder the buffer builder to draw the quad
+     * @return {@code false} if the item cannot be cached and nothing is drawn
+     */
+    public boolean drawItem(@Nonnull ItemStack stack, float x, float y, double z, @Nonnull BufferBuilder builder) {
+        if (stack.isEmpty() || stack.hasFoil()) {
+            return false;
+        }
+        final ItemRenderer itemRenderer = minecraft.getItemRenderer();
+        final BakedModel model = itemRenderer.getModel(stack, null, null);
+        if (isUncached(stack, model)) {
+            return false;
+        }
+        final int size = (int) Math.ceil(ITEM_SIZE * minecraft.getWindow().getGuiScale());
+        if (size + SPACING * 2 > ATLAS_SIZE) {
+            return false;
+        }
+
+        final ItemColors itemColors = minecraft.getItemColors();
+        lookupKey.set(model, itemColors.getColor(stack, 0), itemColors.getColor(stack, 1), size);
+        Icon icon = icons.get(lookupKey);
+        if (icon == null) {
+            icon = renderIcon(stack, size);
+            if (icon == null) {
+                return false;
+            }
+            icons.put(lookupKey.copy(), icon);
+        }
+
+        RenderSystem.enableTexture();
+        RenderSystem.bindTexture(colorTexture);
+        FrameProfiler.count(FrameProfiler.TEXTURE_BIND);
+        builder.begin(GL11.GL_QUADS, DefaultVertexFormat.POSITION_COLOR_TEX);
+        builder.vertex(x, y + ITEM_SIZE, z).color(255, 255, 255, 255).uv(icon.u1, icon.v2).endVertex();
+        builder.vertex(x + ITEM_SIZE, y + ITEM_SIZE, z).color(255, 255, 255, 255).uv(icon.u2, icon.v2).endVertex();
+        builder.vertex(x + ITEM_SIZE, y, z).color(255, 255, 255, 255).uv(icon.u2, icon.v1).endVertex();
+        builder.vertex(x, y, z).color(255, 255, 255, 255).uv(icon.u1, icon.v1).endVertex();
+        builder.end();
+        BufferUploader.end(builder);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+        return true;
+    }
+
+    private boolean isUncached(@Nonnull ItemStack stack, @Nonnull BakedModel model) {
+        if (uncachedModels.containsKey(model)) {
+            return uncachedModels.getBoolean(model);
+        }
+        boolean uncached = model.isCustomRenderer();
+        if (!uncached && stack.getItem() instanceof BlockItem) {
+            // alpha is not correct when blending translucent quads onto the transparent atlas
+            uncached = ItemBlockRenderTypes.getChunkRenderType(
+                    ((BlockItem) stack.getItem()).getBlock().defaultBlockState()) == RenderType.translucent();
+        }
+        if (!uncached) {
+            uncached = isAnimated(model);
+        }
+        uncachedModels.put(model, uncached);
+        return uncached;
+    }
+
+    private boolean isAnimated(@Nonnull BakedModel model) {
+        for (Direction direction : Direction.values()) {
+            random.setSeed(42L);
+            for (BakedQuad quad : model.getQuads(null, direction, random)) {
+                if (quad.getSprite().getFrameCount() > 1) {
+                    return true;
+                }
+            }
+        }
+        random.setSeed(42L);
+        for (BakedQuad quad : model.getQuads(null, null, random)) {
+            if (quad.getSprite().getFrameCount() > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Render the item into a free cell of the atlas.
+     *
+     * @return the icon, or {@code null} if the atlas is full and was flushed just now
+     */
+    private Icon renderIcon(@Nonnull ItemStack stack, int size) {
+        if (dirty) {
+            allocate();
+        }
+        if (currPosX + size + SPACING > ATLAS_SIZE) {
+            currPosX = SPACING;
+            currPosY += currLineHeight + SPACING;
+            currLineHeight = 0;
+        }
+        if (currPosY + size + SPACING > ATLAS_SIZE) {
+            final long time = Util.getMillis();
+            if (time - lastFlushTime < FLUSH_INTERVAL) {
+                return null;
+            }
+            lastFlushTime = time;
+            icons.clear();
+            allocate();
+        }
+        final int x = currPosX;
+        final int y = currPosY;
+
+        final int lastFramebuffer = GL11.glGetInteger(GL30.GL_DRAW_FRAMEBUFFER_BINDING);
+        final int[] viewport = new int[4];
+        GL11.glGetIntegerv(GL11.GL_VIEWPORT, viewport);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, framebuffer);
+        RenderSystem.viewport(0, 0, ATLAS_SIZE, ATLAS_SIZE);
+        // the caller may be clipped in screen space, which means nothing to the atlas
+        final boolean scissor = GL11.glIsEnabled(GL11.GL_SCISSOR_TEST);
+        GL11.glDisable(GL11.GL_SCISSOR_TEST);
+
+        // the same projection as GUI, one unit is one pixel of the atlas
+        RenderSystem.matrixMode(GL11.GL_PROJECTION);
+        RenderSystem.pushMatrix();
+        RenderSystem.loadIdentity();
+        RenderSystem.ortho(0.0D, ATLAS_SIZE, ATLAS_SIZE, 0.0D, 1000.0D, 3000.0D);
+        RenderSystem.matrixMode(GL11.GL_MODELVIEW);
+        RenderSystem.pushMatrix();
+        RenderSystem.loadIdentity();
+        RenderSystem.translatef(x, y, -2000.0F);
+        RenderSystem.scalef((float) size / ITEM_SIZE, (float) size / ITEM_SIZE, 1.0F);
+
+        minecraft.getItemRenderer().renderGuiItem(stack, 0, 0);
+        FrameProfiler.count(FrameProfiler.DRAW_CALL);
+
+        RenderSystem.popMatrix();
+        RenderSystem.matrixMode(GL11.GL_PROJECTION);
+        RenderSystem.popMatrix();
+        RenderSystem.matrixMode(GL11.GL_MODELVIEW);
+
+        if (scissor) {
+            GL11.glEnable(GL11.GL_SCISSOR_TEST);
+        }
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, lastFramebuffer);
+        RenderSystem.viewport(viewport[0], viewport[1], viewport[2], viewport[3]);
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+
+        currLineHeight = Math.max(currLineHeight, size);
+        currPosX += size + SPACING;
+
+        // the texture origin is bottom left
+        return new Icon((float) x / ATLAS_SIZE, 1.0f - (float) y / ATLAS_SIZE,
+                (float) (x + size) / ATLAS_SIZE, 1.0f - (float) (y + size) / ATLAS_SIZE);
+    }
+
+    /**
+     * Create the atlas framebuffer if needed and clear it.
+     */
+    private void allocate() {
+        if (framebuffer == 0) {
+            colorTexture = GL11.glGenTextures();
+            RenderSystem.bindTexture(colorTexture);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
+            GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA8, ATLAS_SIZE, ATLAS_SIZE, 0,
+                    GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, (ByteBuffer) null);
+            RenderSystem.bindTexture(0);
+
+            depthBuffer = GL30.glGenRenderbuffers();
+            GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, depthBuffer);
+            GL30.glRenderbufferStorage(GL30.GL_RENDERBUFFER, GL30.GL_DEPTH_COMPONENT24, ATLAS_SIZE, ATLAS_SIZE);
+            GL30.glBindRenderbuffer(GL30.GL_RENDERBUFFER, 0);
+
+            framebuffer = GL30.glGenFramebuffers();
+            final int lastFramebuffer = GL11.glGetInteger(GL30.GL_DRAW_FRAMEBUFFER_BINDING);
+            GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, framebuffer);
+            GL30.glFramebufferTexture2D(GL30.GL_DRAW_FRAMEBUFFER, GL30.GL_COLOR_ATTACHMENT0, GL11.GL_TEXTURE_2D,
+                    colorTexture, 0);
+            GL30.glFramebufferRenderbuffer(GL30.GL_DRAW_FRAMEBUFFER, GL30.GL_DEPTH_ATTACHMENT, GL30.GL_RENDERBUFFER,
+                    depthBuffer);
+            if (GL30.glCheckFramebufferStatus(GL30.GL_DRAW_FRAMEBUFFER) != GL30.GL_FRAMEBUFFER_COMPLETE) {
+                ModernUI.LOGGER.warn(RenderCore.MARKER, "Item icon framebuffer is incomplete");
+            }
+            GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, lastFramebuffer);
+        }
+        final int lastFramebuffer = GL11.glGetInteger(GL30.GL_DRAW_FRAMEBUFFER_BINDING);
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, framebuffer);
+        // clear the whole atlas, not only the scissor rectangle of the caller
+        final boolean scissor = GL11.glIsEnabled(GL11.GL_SCISSOR_TEST);
+        GL11.glDisable(GL11.GL_SCISSOR_TEST);
+        RenderSystem.clearColor(0.0f, 0.0f, 0.0f, 0.0f);
+        RenderSystem.clearDepth(1.0D);
+        RenderSystem.clear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT, Minecraft.ON_OSX);
+        if (scissor) {
+            GL11.glEnable(GL11.GL_SCISSOR_TEST);
+        }
+        GL30.glBindFramebuffer(GL30.GL_DRAW_FRAMEBUFFER, lastFramebuffer);
+
+        currPosX = SPACING;
+        currPosY = SPACING;
+        currLineHeight = 0;
+        dirty = false;
+    }
+
+    /**
+     * Models and sprites are rebaked, all icons are invalid.
+     */
+    @Override
+    public void onResourceManagerReload(@Nonnull ResourceManager manager) {
+        icons.clear();
+        uncachedModels.clear();
+        dirty = true;
+    }
+
+    private static final class Key {
+
+        private BakedModel model;
+        private int color0;
+        private int color1;
+        private int size;
+
+        void set(BakedModel model, int color0, int color1, int size) {
+            this.model = model;
+            this.color0 = color0;
+            this.color1 = color1;
+            this.size = size;
+        }
+
+        @Nonnull
+        Key copy() {
+            Key key = new Key();
+            key.set(model, color0, color1, size);
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return model == key.model && color0 == key.color0 && color1 == key.color1 && size == key.size;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(model);
+            result = 31 * result + color0;
+            result = 31 * result + color1;
+            result = 31 * result + size;
+            return result;
+        }
+    }
+
+    private static final class Icon {
+
+        private final float u1;
+        private final float v1;
+        private final float u2;
+        private final float v2;
+
+        Icon(float u1, float v1, float u2, float v2) {
+            this.u1 = u1;
+            this.v1 = v1;
+            this.u2 = u2;
+            this.v2 = v2;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.graphics;
+
+import icyllis.modernui.graphics.math.Icon;
+import icyllis.modernui.view.View;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A canvas that draws nothing but records what {@link GLCanvas} would submit:
+ * draw calls, primitives, vertices and render state changes. It requires no
+ * GL context or window, so that the measure, layout and draw passes of a view
+ * tree can be run in benchmarks and tests.
+ * <p>
+ * Text is not laid out, each char except whitespaces and formatting codes is
+ * considered as a glyph with the same advance, override {@link #measureText(String)}
+ * to provide actual advances.
+ */
+public class RecordingCanvas extends Canvas {
+
+    /**
+     * Shader programs that may be in use, 0 is the fixed pipeline
+     */
+    private static final int NO_SHADER = 0;
+    private static final int RING_SHADER = 1;
+    private static final int ROUNDED_RECT_SHADER = 2;
+    private static final int ROUNDED_FRAME_SHADER = 3;
+    private static final int CIRCLE_SHADER = 4;
+    private static final int FEATHERED_RECT_SHADER = 5;
+
+    /**
+     * Advance of a glyph in GUI scale
+     */
+    private static final float GLYPH_ADVANCE = 6.0f;
+
+    /*
+     * Statistics
+     */
+    private int drawCalls;
+    private int vertexCount;
+    private int quadCount;
+    private int lineCount;
+    private int glyphCount;
+    private int itemCount;
+
+    private int shaderChanges;
+    private int uniformChanges;
+    private int textureChanges;
+    private int matrixChanges;
+    private int clipChanges;
+    private int lineStateChanges;
+    // blend functions and shade model of the fixed pipeline
+    private int fixedStateChanges;
+
+    private int maxSaveCount;
+
+    /*
+     * Emulated render states, only changes are counted like GlStateManager does
+     */
+    private boolean texture = true;
+    private int shader = NO_SHADER;
+    private boolean lineAA;
+    private float lineWidth = 1.0f;
+    private boolean scissor;
+    private int saveCount;
+
+    public RecordingCanvas() {
+    }
+
+    /**
+     * Reset all statistics, this is generally called at the beginning of a frame.
+     * Render states and the matrix stack are kept.
+     */
+    public void reset() {
+        drawCalls = 0;
+        vertexCount = 0;
+        quadCount = 0;
+        lineCount = 0;
+        glyphCount = 0;
+        itemCount = 0;
+        shaderChanges = 0;
+        uniformChanges = 0;
+        textureChanges = 0;
+        matrixChanges = 0;
+        clipChanges = 0;
+        lineStateChanges = 0;
+        fixedStateChanges = 0;
+        maxSaveCount = saveCount;
+    }
+
+    /**
+     * Get the advance of a single line of text, which is used to align text
+     * and returned by {@link #drawText(String, float, float)}.
+     *
+     * @param text the text to measure
+     * @return the total advance of the text
+     */
+    protected float measureText(@Nonnull String text) {
+        return countGlyphs(text) * GLYPH_ADVANCE;
+    }
+
+    private static int countGlyphs(@Nonnull String text) {
+        int count = 0;
+        for (int i = 0, e = text.length(); i < e; i++) {
+            char c = text.charAt(i);
+            if (c == '§') {
+                // skip formatting code
+                i++;
+            } else if (!Character.isWhitespace(c) && !Character.isLowSurrogate(c)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void setTexture(boolean texture) {
+        if (this.texture != texture) {
+            this.texture = texture;
+            textureChanges++;
+        }
+    }
+
+    private void useShader(int shader, int uniforms) {
+        if (this.shader != shader) {
+            this.shader = shader;
+            shaderChanges++;
+        }
+        uniformChanges += uniforms;
+    }
+
+    private void releaseShader() {
+        if (shader != NO_SHADER) {
+            shader = NO_SHADER;
+            shaderChanges++;
+        }
+    }
+
+    private void addQuads(int quads) {
+        drawCalls++;
+        vertexCount += quads << 2;
+        quadCount += quads;
+    }
+
+    private void addLines(int vertices, int lines) {
+        drawCalls++;
+        vertexCount += vertices;
+        lineCount += lines;
+    }
+
+    @Override
+    public void setLineAntiAliasing(boolean aa) {
+        if (lineAA != aa) {
+            lineAA = aa;
+            lineStateChanges++;
+        }
+    }
+
+    @Override
+    public void setLineWidth(float width) {
+        if (lineWidth != width) {
+            lineWidth = width;
+            lineStateChanges++;
+        }
+    }
+
+    @Override
+    public float drawText(String text, float x, float y) {
+        if (text == null || text.isEmpty())
+            return 0;
+        final int glyphs = countGlyphs(text);
+        if (glyphs > 0) {
+            // each glyph is drawn and bound separately
+            setTexture(true);
+            drawCalls += glyphs;
+            vertexCount += glyphs << 2;
+            quadCount += glyphs;
+            textureChanges += glyphs;
+            glyphCount += glyphs;
+        }
+        return measureText(text);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom) {
+        setTexture(false);
+        addQuads(1);
+    }
+
+    @Override
+    public void drawRectOutline(float left, float top, float right, float bottom, float thickness) {
+        setTexture(false);
+        for (int i = 0; i < 4; i++) {
+            addQuads(1);
+        }
+    }
+
+    @Override
+    public void drawOctagonRectFrame(float left, float top, float right, float bottom, float bevel) {
+        setTexture(false);
+        addLines(8, 8);
+    }
+
+    @Override
+    public void drawRectLines(float left, float top, float right, float bottom) {
+        setTexture(false);
+        addLines(4, 4);
+    }
+
+    @Override
+    public void drawRing(float centerX, float centerY, float innerRadius, float outerRadius) {
+        useShader(RING_SHADER, 2);
+        drawRect(centerX - outerRadius, centerY - outerRadius, centerX + outerRadius, centerY + outerRadius);
+        releaseShader();
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius) {
+        useShader(CIRCLE_SHADER, 2);
+        drawRect(centerX - radius, centerY - radius, centerX + radius, centerY + radius);
+        releaseShader();
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY) {
+        setTexture(false);
+        addLines(2, 1);
+    }
+
+    @Override
+    public void drawRoundedRect(float left, float top, float right, float bottom, float radius) {
+        useShader(ROUNDED_RECT_SHADER, 2);
+        drawRect(left, top, right, bottom);
+        releaseShader();
+    }
+
+    @Override
+    public void drawRoundedFrame(float left, float top, float right, float bottom, float radius) {
+        useShader(ROUNDED_FRAME_SHADER, 2);
+        drawRect(left, top, right, bottom);
+        releaseShader();
+    }
+
+    @Override
+    public void drawRoundedFrameT1(float left, float top, float right, float bottom, float radius) {
+        useShader(ROUNDED_FRAME_SHADER, 2);
+        setTexture(false);
+        // smooth shade model and back to flat
+        fixedStateChanges += 2;
+        addQuads(1);
+        releaseShader();
+    }
+
+    @Override
+    public void drawFeatheredRect(float left, float top, float right, float bottom, float thickness) {
+        useShader(FEATHERED_RECT_SHADER, 2);
+        drawRect(left, top, right, bottom);
+        releaseShader();
+    }
+
+    @Override
+    public void drawIcon(@Nonnull Icon icon, float left, float top, float right, float bottom) {
+        setTexture(true);
+        textureChanges++;
+        addQuads(1);
+    }
+
+    private void addItem() {
+        // the item renderer does its own state setup, then blend states are restored
+        drawCalls++;
+        itemCount++;
+        fixedStateChanges += 2;
+    }
+
+    @Override
+    public void drawItem(@Nonnull Item item, float x, float y) {
+        addItem();
+    }
+
+    @Override
+    public void drawItemStack(@Nonnull ItemStack stack, float x, float y) {
+        addItem();
+    }
+
+    @Override
+    public void drawItemStackWithOverlays(@Nonnull ItemStack stack, float x, float y) {
+        addItem();
+    }
+
+    @Override
+    public void save() {
+        matrixChanges++;
+        maxSaveCount = Math.max(maxSaveCount, ++saveCount);
+    }
+
+    @Override
+    public void restore() {
+        if (saveCount == 0) {
+            throw new IllegalStateException("Underflow in restore - more restores than saves");
+        }
+        matrixChanges++;
+        saveCount--;
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+        matrixChanges++;
+    }
+
+    @Override
+    public void scale(float sx, float sy) {
+        matrixChanges++;
+    }
+
+    @Override
+    public void scale(float sx, float sy, float px, float py) {
+        // scale then translate to pivot
+        matrixChanges += 2;
+    }
+
+    @Override
+    public void clipVertical(@Nonnull View view) {
+        clipStart(0, 0, 0, 0);
+    }
+
+    @Override
+    public void clipStart(float x, float y, float width, float height) {
+        if (!scissor) {
+            scissor = true;
+            clipChanges++;
+        }
+        clipChanges++;
+    }
+
+    @Override
+    public void clipEnd() {
+        if (scissor) {
+            scissor = false;
+            clipChanges++;
+        }
+    }
+
+    /**
+     * @return the number of draw calls, each glyph, shape or item is a draw call
+     */
+    public int getDrawCalls() {
+        return drawCalls;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getQuadCount() {
+        return quadCount;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getGlyphCount() {
+        return glyphCount;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return the total number of render state changes of all kinds
+     */
+    public int getStateChanges() {
+        return shaderChanges + uniformChanges + textureChanges + matrixChanges +
+                clipChanges + lineStateChanges + fixedStateChanges;
+    }
+
+    public int getShaderChanges() {
+        return shaderChanges;
+    }
+
+    public int getUniformChanges() {
+        return uniformChanges;
+    }
+
+    public int getTextureChanges() {
+        return textureChanges;
+    }
+
+    public int getMatrixChanges() {
+        return matrixChanges;
+    }
+
+    public int getClipChanges() {
+        return clipChanges;
+    }
+
+    /**
+     * @return the current depth of the matrix stack
+     */
+    public int getSaveCount() {
+        return saveCount;
+    }
+
+    /**
+     * @return the max depth of the matrix stack since last reset
+     */
+    public int getMaxSaveCount() {
+        return maxSaveCount;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingCanvas{" +
+                "drawCalls=" + drawCalls +
+                ", vertices=" + vertexCount +
+                ", quads=" + quadCount +
+                ", lines=" + lineCount +
+                ", glyphs=" + glyphCount +
+                ", items=" + itemCount +
+                ", shaderChanges=" + shaderChanges +
+                ", uniformChanges=" + uniformChanges +
+                ", textureChanges=" + textureChanges +
+                ", matrixChanges=" + matrixChanges +
+                ", clipChanges=" + clipChanges +
+                ", lineStateChanges=" + lineStateChanges +
+                ", fixedStateChanges=" + fixedStateChanges +
+                ", maxSaveCount=" + maxSaveCount +
+                '}';
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.os;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.Util;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules tasks on the render thread, pumped by the UI system every frame.
+ * Delayed tasks are kept in a binary heap ordered by their due time, so a frame
+ * only peeks the head instead of scanning all of them. Tasks can be posted from
+ * any thread, and each post returns a {@link Task} to cancel it.
+ * <p>
+ * Besides tasks, there are one-shot frame callbacks that run at the beginning of
+ * next frame, and idle handlers that run at the end of a frame only if the frame
+ * finished before its deadline.
+ */
+public final class Handler {
+
+    private static final Handler sInstance = new Handler();
+
+    // binary min-heap of pending tasks, render thread only
+    private Task[] mQueue = new Task[16];
+    private int mSize;
+
+    // assigned when a task enters the heap, tasks at the same time run in FIFO order
+    private long mSequence;
+
+    // tasks posted from other threads, moved into the heap on next frame
+    private final ConcurrentLinkedQueue<Task> mIncomingTasks = new ConcurrentLinkedQueue<>();
+
+    // swapped every frame, callbacks posted during a frame run on next frame
+    private ArrayList<FrameCallback> mFrameCallbacks = new ArrayList<>();
+    private ArrayList<FrameCallback> mRunningFrameCallbacks = new ArrayList<>();
+
+    private final ArrayList<IdleHandler> mIdleHandlers = new ArrayList<>();
+
+    // round robin, a slow idle handler doesn't starve the others
+    private int mIdleIndex;
+
+    private Handler() {
+    }
+
+    /**
+     * Returns the handler of the render thread.
+     *
+     * @return the instance
+     */
+    @Nonnull
+    public static Handler getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Run the runnable on the render thread on next frame.
+     *
+     * @param r the runnable
+     * @return the token to cancel the task
+     */
+    @Nonnull
+    public Task post(@Nonnull Runnable r) {
+        return postAtTime(r, Util.getMillis());
+    }
+
+    /**
+     * Run the runnable on the render thread after the delay elapsed. The task runs
+     * at the first frame that reaches the time.
+     *
+     * @param r           the runnable
+     * @param delayMillis the delay in milliseconds
+     * @return the token to cancel the task
+     */
+    @Nonnull
+    public Task postDelayed(@Nonnull Runnable r, long delayMillis) {
+        return postAtTime(r, Util.getMillis() + Math.max(delayMillis, 0));
+    }
+
+    /**
+     * Run the runnable on the render thread at the given time.
+     *
+     * @param r            the runnable
+     * @param uptimeMillis the time in {@link Util#getMillis()} base
+     * @return the token to cancel the task
+     */
+    @Nonnull
+    public Task postAtTime(@Nonnull Runnable r, long uptimeMillis) {
+        final Task task = new Task(r, uptimeMillis);
+        if (RenderSystem.isOnRenderThread()) {
+            enqueue(task);
+        } else {
+            mIncomingTasks.offer(task);
+        }
+        return task;
+    }
+
+    /**
+     * Cancel all pending tasks of the runnable, must be called on render thread.
+     *
+     * @param r the runnable
+     */
+    public void removeCallbacks(@Nonnull Runnable r) {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        for (Task task : mIncomingTasks) {
+            if (task.mRunnable == r) {
+                task.cancel();
+            }
+        }
+        boolean removed = false;
+        for (int i = 0; i < mSize; i++) {
+            final Task task = mQueue[i];
+            if (task.mRunnable == r && task.mState.compareAndSet(Task.PENDING, Task.CANCELLED)) {
+                removed = true;
+            }
+        }
+        if (removed) {
+            purge();
+        }
+    }
+
+    /**
+     * Run the callback once at the beginning of next frame, must be called on render thread.
+     *
+     * @param callback the callback
+     */
+    public void postFrameCallback(@Nonnull FrameCallback callback) {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        mFrameCallbacks.add(callback);
+    }
+
+    /**
+     * Remove a frame callback that has not run yet.
+     *
+     * @param callback the callback
+     */
+    public void removeFrameCallback(@Nonnull FrameCallback callback) {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        mFrameCallbacks.remove(callback);
+    }
+
+    /**
+     * Add an idle handler, it runs at the end of frames that have time left until it's
+     * removed or returns false, must be called on render thread.
+     *
+     * @param handler the idle handler
+     */
+    public void addIdleHandler(@Nonnull IdleHandler handler) {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        mIdleHandlers.add(handler);
+    }
+
+    public void removeIdleHandler(@Nonnull IdleHandler handler) {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        final int index = mIdleHandlers.indexOf(handler);
+        if (index >= 0) {
+            mIdleHandlers.remove(index);
+            if (index < mIdleIndex) {
+                mIdleIndex--;
+            }
+        }
+    }
+
+    public boolean hasIdleHandlers() {
+        return !mIdleHandlers.isEmpty();
+    }
+
+    /**
+     * Called by the UI system at the beginning of a frame, run due tasks and then
+     * frame callbacks. Tasks posted at this time by these tasks run on next frame.
+     *
+     * @param frameTime the drawing time in milliseconds, passed to frame callbacks
+     */
+    public void doFrame(long frameTime) {
+        Task task;
+        while ((task = mIncomingTasks.poll()) != null) {
+            if (task.isPending()) {
+                enqueue(task);
+            }
+        }
+        if (mSize > 0) {
+            final long now = Util.getMillis();
+            final long sequence = mSequence;
+            while (mSize > 0) {
+                task = mQueue[0];
+                if (task.mWhen > now || task.mSequence >= sequence) {
+                    break;
+                }
+                removeAt(0);
+                task.run();
+            }
+        }
+        if (!mFrameCallbacks.isEmpty()) {
+            final ArrayList<FrameCallback> callbacks = mFrameCallbacks;
+            mFrameCallbacks = mRunningFrameCallbacks;
+            mRunningFrameCallbacks = callbacks;
+            for (int i = 0, e = callbacks.size(); i < e; i++) {
+                callbacks.get(i).doFrame(frameTime);
+            }
+            callbacks.clear();
+        }
+    }
+
+    /**
+     * Called by the UI system at the end of a frame, run idle handlers until the
+     * deadline, each handler runs at most once.
+     *
+     * @param deadlineNanos the time in {@link Util#getNanos()} base
+     */
+    public void doIdle(long deadlineNanos) {
+        final ArrayList<IdleHandler> handlers = mIdleHandlers;
+        for (int n = handlers.size(); n > 0 && !handlers.isEmpty(); n--) {
+            if (Util.getNanos() >= deadlineNanos) {
+                return;
+            }
+            if (mIdleIndex >= handlers.size()) {
+                mIdleIndex = 0;
+            }
+            final IdleHandler handler = handlers.get(mIdleIndex++);
+            if (!handler.queueIdle()) {
+                removeIdleHandler(handler);
+            }
+        }
+    }
+
+    /**
+     * Cancel all tasks and callbacks, called when the UI is closed.
+     */
+    public void clear() {
+        Task task;
+        while ((task = mIncomingTasks.poll()) != null) {
+            task.cancel();
+        }
+        for (int i = 0; i < mSize; i++) {
+            task = mQueue[i];
+            task.mIndex = -1;
+            task.cancel();
+        }
+        Arrays.fill(mQueue, 0, mSize, null);
+        mSize = 0;
+        mFrameCallbacks.clear();
+        mIdleHandlers.clear();
+        mIdleIndex = 0;
+    }
+
+    private void enqueue(@Nonnull Task task) {
+        task.mSequence = mSequence++;
+        if (mSize == mQueue.length) {
+            mQueue = Arrays.copyOf(mQueue, mSize << 1);
+        }
+        siftUp(mSize++, task);
+    }
+
+    /**
+     * Remove tasks that are no longer pending and rebuild the heap.
+     */
+    private void purge() {
+        final Task[] queue = mQueue;
+        int j = 0;
+        for (int i = 0; i < mSize; i++) {
+            final Task task = queue[i];
+            if (task.isPending()) {
+                queue[j++] = task;
+            } else {
+                task.mIndex = -1;
+            }
+        }
+        Arrays.fill(queue, j, mSize, null);
+        mSize = j;
+        for (int i = (j >>> 1) - 1; i >= 0; i--) {
+            siftDown(i, queue[i]);
+        }
+        for (int i = 0; i < j; i++) {
+            queue[i].mIndex = i;
+        }
+    }
+
+    private void removeAt(int i) {
+        final Task[] queue = mQueue;
+        queue[i].mIndex = -1;
+        final int last = --mSize;
+        if (i == last) {
+            queue[last] = null;
+            return;
+        }
+        final Task moved = queue[last];
+        queue[last] = null;
+        siftDown(i, moved);
+        if (queue[i] == moved) {
+            siftUp(i, moved);
+        }
+    }
+
+    private void siftUp(int i, @Nonnull Task task) {
+        final Task[] queue = mQueue;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            final Task p = queue[parent];
+            if (!task.before(p)) {
+                break;
+            }
+            queue[i] = p;
+            p.mIndex = i;
+            i = parent;
+        }
+        queue[i] = task;
+        task.mIndex = i;
+    }
+
+    private void siftDown(int i, @Nonnull Task task) {
+        final Task[] queue = mQueue;
+        final int half = mSize >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            Task c = queue[child];
+            final int right = child + 1;
+            if (right < mSize && queue[right].before(c)) {
+                c = queue[child = right];
+            }
+            if (!c.before(task)) {
+                break;
+            }
+            queue[i] = c;
+            c.mIndex = i;
+            i = child;
+        }
+        queue[i] = task;
+        task.mIndex = i;
+    }
+
+    /**
+     * A posted runnable, also the token to cancel it.
+     */
+    public static final class Task {
+
+        private static final int PENDING = 0;
+        private static final int DONE = 1;
+        private static final int CANCELLED = 2;
+
+        private final Runnable mRunnable;
+        private final long mWhen;
+
+        private final AtomicInteger mState = new AtomicInteger(PENDING);
+
+        // render thread only
+        private long mSequence;
+        private int mIndex = -1;
+
+        private Task(@Nonnull Runnable runnable, long when) {
+            mRunnable = runnable;
+            mWhen = when;
+        }
+
+        /**
+         * Cancel the task if it has not run yet, this can be called from any thread.
+         * On render thread, the task is removed from the queue at once.
+         *
+         * @return true if the task was pending and is cancelled now
+         */
+        public boolean cancel() {
+            if (!mState.compareAndSet(PENDING, CANCELLED)) {
+                return false;
+            }
+            if (mIndex >= 0 && RenderSystem.isOnRenderThread()) {
+                sInstance.removeAt(mIndex);
+            }
+            return true;
+        }
+
+        /**
+         * @return true if the task has neither run nor been cancelled
+         */
+        public boolean isPending() {
+            return mState.get() == PENDING;
+        }
+
+        private void run() {
+            if (mState.compareAndSet(PENDING, DONE)) {
+                mRunnable.run();
+            }
+        }
+
+        private boolean before(@Nonnull Task o) {
+            return mWhen < o.mWhen || (mWhen == o.mWhen && mSequence < o.mSequence);
+        }
+    }
+
+    /**
+     * One-shot callback at the beginning of a frame.
+     */
+    @FunctionalInterface
+    public interface FrameCallback {
+
+        /**
+         * @param frameTime the drawing time in milliseconds
+         */
+        void doFrame(long frameTime);
+    }
+
+    /**
+     * Work that is deferred to frames with time left.
+     */
+    @FunctionalInterface
+    public interface IdleHandler {
+
+        /**
+         * Do a small piece of work, it should return as soon as possible.
+         *
+         * @return true to keep this handler, false to remove it
+         */
+        boolean queueIdle();
+    }
+}
@@ -30,9 +30,23 @@ public abstract class ApplicationUI {
 
     UIManager window;
 
+    // content view built before this UI is opened
+    volatile boolean mPreloading;
+    View mPreloadedView;
+    FrameLayout.LayoutParams mPreloadedParams;
+
+    /**
+     * Called to create views of this UI. If this UI is preloaded, this method
+     * will be called on a background thread, see {@link UIManager#preloadGUI}
+     */
     public abstract void onCreate();
 
     public void setContentView(View view, FrameLayout.LayoutParams params) {
-        window.setContentView(view, params);
+        if (window == null && mPreloading) {
+            mPreloadedView = view;
+            mPreloadedParams = params;
+        } else {
+            window.setContentView(view, params);
+        }
     }
 }
@@ -0,0 +1,187 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.view;
+
+import icyllis.modernui.widget.FrameLayout;
+import icyllis.modernui.widget.LinearLayout;
+import icyllis.modernui.widget.Orientation;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.function.Supplier;
+
+/**
+ * A layout resource in compact binary form with pre-resolved view factories,
+ * which can be inflated any number of times.
+ *
+ * @see LayoutIO
+ */
+public final class CompiledLayout {
+
+    private static final Orientation[] ORIENTATIONS = Orientation.values();
+
+    private final byte[] mData;
+
+    // the offset of root node
+    private final int mStart;
+
+    private final Supplier<? extends View>[] mFactories;
+
+    // read position, inflation is single threaded per call
+    private int mPos;
+
+    CompiledLayout(@Nonnull byte[] data, int start, @Nonnull Supplier<? extends View>[] factories) {
+        mData = data;
+        mStart = start;
+        mFactories = factories;
+    }
+
+    /**
+     * Returns the compiled data, which can be saved and loaded with {@link LayoutIO#load(byte[])}.
+     *
+     * @return the data, do not modify
+     */
+    @Nonnull
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * Create a new view hierarchy from this layout.
+     *
+     * @param root the view group that the hierarchy will be added to, used to create
+     *             the layout params of the root view, the hierarchy is not attached
+     * @return the root view of the inflated hierarchy
+     */
+    @Nonnull
+    public synchronized View inflate(@Nullable ViewGroup root) {
+        mPos = mStart;
+        final ViewGroup.LayoutParams params = root != null ? root.createDefaultLayoutParams() :
+                new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
+        return inflateNode(params);
+    }
+
+    @Nonnull
+    private View inflateNode(@Nonnull ViewGroup.LayoutParams params) {
+        final View view = mFactories[readVarInt()].get();
+        final byte[] data = mData;
+        for (int i = 0, e = readVarInt(); i < e; i++) {
+            switch (data[mPos++]) {
+                case LayoutIO.ATTR_ID:
+                    view.setId(readVarInt());
+                    break;
+                case LayoutIO.ATTR_WIDTH:
+                    params.width = readSize();
+                    break;
+                case LayoutIO.ATTR_HEIGHT:
+                    params.height = readSize();
+                    break;
+                case LayoutIO.ATTR_MARGINS: {
+                    final int l = readVarInt();
+                    final int t = readVarInt();
+                    final int r = readVarInt();
+                    final int b = readVarInt();
+                    if (params instanceof ViewGroup.MarginLayoutParams) {
+                        ((ViewGroup.MarginLayoutParams) params).setMargins(l, t, r, b);
+                    }
+                    break;
+                }
+                case LayoutIO.ATTR_LAYOUT_GRAVITY: {
+                    final int gravity = readVarInt();
+                    if (params instanceof FrameLayout.LayoutParams) {
+                        ((FrameLayout.LayoutParams) params).gravity = gravity;
+                    } else if (params instanceof LinearLayout.LayoutParams) {
+                        ((LinearLayout.LayoutParams) params).gravity = gravity;
+                    }
+                    break;
+                }
+                case LayoutIO.ATTR_LAYOUT_WEIGHT: {
+                    final float weight = readFloat();
+                    if (params instanceof LinearLayout.LayoutParams) {
+                        ((LinearLayout.LayoutParams) params).weight = weight;
+                    }
+                    break;
+                }
+                case LayoutIO.ATTR_GRAVITY: {
+                    final int gravity = readVarInt();
+                    if (view instanceof LinearLayout) {
+                        ((LinearLayout) view).setGravity(gravity);
+                    }
+                    break;
+                }
+                case LayoutIO.ATTR_ORIENTATION: {
+                    final Orientation orientation = ORIENTATIONS[data[mPos++]];
+                    if (view instanceof LinearLayout) {
+                        ((LinearLayout) view).setOrientation(orientation);
+                    }
+                    break;
+                }
+                case LayoutIO.ATTR_VISIBILITY:
+                    view.setVisibility(data[mPos++]);
+                    break;
+                case LayoutIO.ATTR_ALPHA:
+                    view.setAlpha(readFloat());
+                    break;
+                default:
+                    throw new IllegalStateException("Malformed layout data at " + (mPos - 1));
+            }
+        }
+        view.setLayoutParams(params);
+
+        final int count = readVarInt();
+        if (count > 0) {
+            if (!(view instanceof ViewGroup)) {
+                throw new IllegalStateException("View " + view + " cannot have children");
+            }
+            final ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < count; i++) {
+                final View child = inflateNode(group.createDefaultLayoutParams());
+                group.addView(child, child.getLayoutParams());
+            }
+        }
+        return view;
+    }
+
+    // sizes are in sp, the same as the LayoutParams constructor
+    private int readSize() {
+        final int size = readVarInt() - 2;
+        return size >= 0 ? ViewConfig.spToPx(size) : size;
+    }
+
+    private int readVarInt() {
+        final byte[] data = mData;
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[mPos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private float readFloat() {
+        final byte[] data = mData;
+        final int bits = (data[mPos] & 0xFF) << 24 | (data[mPos + 1] & 0xFF) << 16 |
+                (data[mPos + 2] & 0xFF) << 8 | (data[mPos + 3] & 0xFF);
+        mPos += 4;
+        return Float.intBitsToFloat(bits);
+    }
+}
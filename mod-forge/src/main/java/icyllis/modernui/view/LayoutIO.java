@@ -18,63 +18,442 @@
 
 package icyllis.modernui.view;
 
-import icyllis.modernui.view.View;
-import net.minecraftforge.api.distmarker.Dist;
-import net.minecraftforge.api.distmarker.OnlyIn;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.widget.*;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
 import net.minecraftforge.resource.IResourceType;
+import org.apache.commons.io.IOUtils;
 
-import java.lang.reflect.Constructor;
-import java.util.HashMap;
-import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.lang.invoke.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
-public final class LayoutIO {
+/**
+ * Layout resource pipeline. Layout definitions under {@code assets/<namespace>/layout/}
+ * are compiled into a compact binary form on resource reload (off the render thread),
+ * or can be compiled ahead of time with {@link #compile(JsonObject)} and shipped as
+ * {@code .mul} files. Inflating a compiled layout only uses pre-resolved view factories,
+ * there's no JSON parsing or reflection when a screen is opened.
+ * <p>
+ * A layout definition looks like:
+ * <pre>
+ * {
+ *   "view": "LinearLayout",
+ *   "width": "match_parent",
+ *   "height": "wrap_content",
+ *   "orientation": "vertical",
+ *   "gravity": "center",
+ *   "children": [
+ *     {"view": "com.example.MyView", "id": 3, "width": 120, "height": 16, "margins": [0, 4, 0, 4]}
+ *   ]
+ * }
+ * </pre>
+ *
+ * @see CompiledLayout
+ */
+public final class LayoutIO extends SimplePreparableReloadListener<Map<ResourceLocation, CompiledLayout>> {
 
     public static final Type UI_RESOURCE_TYPE = new Type();
 
-    private final Map<String, Constructor<? extends View>> constructorMap = new HashMap<>();
+    private static final LayoutIO INSTANCE = new LayoutIO();
+
+    private static final String FOLDER = "layout";
+
+    private static final String JSON_SUFFIX = ".json";
+
+    /**
+     * The file suffix of ahead-of-time compiled layouts
+     */
+    public static final String BINARY_SUFFIX = ".mul";
+
+    static final int MAGIC = 0x4D55494C; // MUIL
+    static final int VERSION = 2;
+
+    // attribute opcodes of the binary format
+    static final int ATTR_ID = 1;
+    static final int ATTR_WIDTH = 2;
+    static final int ATTR_HEIGHT = 3;
+    static final int ATTR_MARGINS = 4;
+    static final int ATTR_LAYOUT_GRAVITY = 5;
+    static final int ATTR_LAYOUT_WEIGHT = 6;
+    static final int ATTR_GRAVITY = 7;
+    static final int ATTR_ORIENTATION = 8;
+    static final int ATTR_VISIBILITY = 9;
+    static final int ATTR_ALPHA = 10;
+
+    // pre-resolved factories by view name, thread-safe because layouts are compiled on worker threads
+    private final Map<String, Supplier<? extends View>> mFactories = new ConcurrentHashMap<>();
+
+    // replaced as a whole on reload
+    private volatile Map<ResourceLocation, CompiledLayout> mLayouts = Collections.emptyMap();
+
+    private LayoutIO() {
+        registerView("View", View::new);
+        registerView("FrameLayout", FrameLayout::new);
+        registerView("LinearLayout", LinearLayout::new);
+        registerView("RelativeLayout", RelativeLayout::new);
+        registerView("AbsoluteLayout", AbsoluteLayout::new);
+        registerView("ScrollView", ScrollView::new);
+    }
+
+    @Nonnull
+    public static LayoutIO getInstance() {
+        return INSTANCE;
+    }
 
-    public static void init() {
-        /*((IReloadableResourceManager) Minecraft.getInstance().getResourceManager()).addReloadListener(
-                (ISelectiveResourceReloadListener) INSTANCE::onResourcesReload);*/
+    /**
+     * Register a factory for a view name used in layout definitions. Views that are
+     * not registered can be referenced by their fully qualified class name and must
+     * have a public no-arg constructor.
+     *
+     * @param name    the view name
+     * @param factory the factory to create a new view
+     */
+    public void registerView(@Nonnull String name, @Nonnull Supplier<? extends View> factory) {
+        mFactories.put(name, factory);
     }
 
-    /*private void onResourcesReload(IResourceManager manager, @Nonnull Predicate<IResourceType> t) {
-        if (!t.test(LayoutResourceManager.UI_RESOURCE_TYPE)) {
-            return;
+    /**
+     * Inflate a new view hierarchy from a compiled layout resource.
+     *
+     * @param location the layout location, e.g. {@code modernui:main_menu} for
+     *                 {@code assets/modernui/layout/main_menu.json}
+     * @param root     the view group that the hierarchy will be added to, used to create
+     *                 the layout params of the root view, the hierarchy is not attached
+     * @return the root view of the inflated hierarchy
+     * @throws IllegalArgumentException no such layout
+     */
+    @Nonnull
+    public View inflate(@Nonnull ResourceLocation location, @Nullable ViewGroup root) {
+        final CompiledLayout layout = mLayouts.get(location);
+        if (layout == null) {
+            throw new IllegalArgumentException("No layout resource found at " + location);
         }
-        //TODO
+        return layout.inflate(root);
     }
 
-    public void reloadLayoutResources() {
-        SelectiveReloadStateHandler.INSTANCE.beginReload(ReloadRequirements.include(UI_RESOURCE_TYPE));
-        Minecraft.getInstance().reloadResources();
-        SelectiveReloadStateHandler.INSTANCE.endReload();
-    }*/
+    /**
+     * Get a compiled layout resource.
+     *
+     * @param location the layout location
+     * @return the compiled layout or {@code null}
+     */
+    @Nullable
+    public CompiledLayout getLayout(@Nonnull ResourceLocation location) {
+        return mLayouts.get(location);
+    }
 
-    /*@Nonnull
-    public List<WidgetContainer> parseWidgets(ResourceLocation location) {
-        List<WidgetContainer> list = new ArrayList<>();
-        Type type = new TypeToken<List<WidgetContainer>>(){}.getType();
+    @Nonnull
+    @Override
+    protected Map<ResourceLocation, CompiledLayout> prepare(@Nonnull ResourceManager manager,
+                                                            @Nonnull ProfilerFiller profiler) {
+        final Map<ResourceLocation, CompiledLayout> layouts = new HashMap<>();
+        for (ResourceLocation file : manager.listResources(FOLDER,
+                p -> p.endsWith(JSON_SUFFIX) || p.endsWith(BINARY_SUFFIX))) {
+            final String path = file.getPath();
+            final boolean binary = path.endsWith(BINARY_SUFFIX);
+            final ResourceLocation location = new ResourceLocation(file.getNamespace(), path.substring(
+                    FOLDER.length() + 1, path.length() - (binary ? BINARY_SUFFIX : JSON_SUFFIX).length()));
+            try (Resource resource = manager.getResource(file)) {
+                final byte[] data;
+                if (binary) {
+                    data = IOUtils.toByteArray(resource.getInputStream());
+                } else {
+                    try (Reader reader = new BufferedReader(
+                            new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+                        data = compile(GsonHelper.parse(reader));
+                    }
+                }
+                // ahead-of-time compiled layouts take precedence
+                if (binary || !layouts.containsKey(location)) {
+                    layouts.put(location, load(data));
+                }
+            } catch (IOException | RuntimeException e) {
+                ModernUI.LOGGER.error(UIManager.MARKER, "Failed to load layout {}", file, e);
+            }
+        }
+        return layouts;
+    }
 
-        try (BufferedReader br =
-                     new BufferedReader(
-                             new InputStreamReader(
-                                     Minecraft.getInstance().getResourceManager().getResource(location).getInputStream()
-                             )
-                     )
-        ) {
-            list = gson.fromJson(br, type);
+    @Override
+    protected void apply(@Nonnull Map<ResourceLocation, CompiledLayout> layouts, @Nonnull ResourceManager manager,
+                         @Nonnull ProfilerFiller profiler) {
+        mLayouts = layouts;
+        ModernUI.LOGGER.debug(UIManager.MARKER, "Loaded {} layouts", layouts.size());
+    }
+
+    /**
+     * Compile a layout definition to the binary form. This can be used at build time
+     * to ship pre-compiled layouts.
+     *
+     * @param json the layout definition
+     * @return the compiled data
+     * @throws JsonParseException the definition is malformed
+     */
+    @Nonnull
+    public static byte[] compile(@Nonnull JsonObject json) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        final List<String> pool = new ArrayList<>();
+        try {
+            compileNode(json, new DataOutputStream(body), pool);
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            writeVarInt(out, pool.size());
+            for (String name : pool) {
+                out.writeUTF(name);
+            }
+            body.writeTo(out);
+            out.flush();
         } catch (IOException e) {
-            //ModernUI.LOGGER.debug(GlobalModuleManager.MARKER, "Can't find widget json at {}", location);
-            e.printStackTrace();
-            //TODO in editing mode, create new file in config folder
-        } catch (RuntimeException e) {
-            ModernUI.LOGGER.fatal(UIManager.MARKER, "Failed to parse widget json at {}", location);
-            e.printStackTrace();
-        }
-        list.removeIf(Objects::isNull);
-        return list;
-    }*/
+            // never happen on byte streams
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void compileNode(@Nonnull JsonObject json, @Nonnull DataOutputStream out,
+                                    @Nonnull List<String> pool) throws IOException {
+        final String name = GsonHelper.getAsString(json, "view");
+        int index = pool.indexOf(name);
+        if (index < 0) {
+            index = pool.size();
+            pool.add(name);
+        }
+        writeVarInt(out, index);
+
+        final ByteArrayOutputStream attrBytes = new ByteArrayOutputStream(32);
+        final DataOutputStream attrs = new DataOutputStream(attrBytes);
+        int count = 0;
+        for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+            final JsonElement value = entry.getValue();
+            switch (entry.getKey()) {
+                case "view":
+                case "children":
+                    continue;
+                case "id":
+                    attrs.writeByte(ATTR_ID);
+                    writeVarInt(attrs, GsonHelper.convertToInt(value, "id"));
+                    break;
+                case "width":
+                    attrs.writeByte(ATTR_WIDTH);
+                    writeVarInt(attrs, parseSize(value, "width"));
+                    break;
+                case "height":
+                    attrs.writeByte(ATTR_HEIGHT);
+                    writeVarInt(attrs, parseSize(value, "height"));
+                    break;
+                case "margins": {
+                    final JsonArray array = GsonHelper.convertToJsonArray(value, "margins");
+                    if (array.size() != 4) {
+                        throw new JsonParseException("Margins must be [left, top, right, bottom]");
+                    }
+                    attrs.writeByte(ATTR_MARGINS);
+                    for (int i = 0; i < 4; i++) {
+                        writeVarInt(attrs, GsonHelper.convertToInt(array.get(i), "margin"));
+                    }
+                    break;
+                }
+                case "layout_gravity":
+                    attrs.writeByte(ATTR_LAYOUT_GRAVITY);
+                    writeVarInt(attrs, parseGravity(value));
+                    break;
+                case "layout_weight":
+                    attrs.writeByte(ATTR_LAYOUT_WEIGHT);
+                    attrs.writeFloat(GsonHelper.convertToFloat(value, "layout_weight"));
+                    break;
+                case "gravity":
+                    attrs.writeByte(ATTR_GRAVITY);
+                    writeVarInt(attrs, parseGravity(value));
+                    break;
+                case "orientation":
+                    attrs.writeByte(ATTR_ORIENTATION);
+                    attrs.writeByte(Orientation.valueOf(
+                            GsonHelper.convertToString(value, "orientation").toUpperCase(Locale.ROOT)).ordinal());
+                    break;
+                case "visibility": {
+                    final String s = GsonHelper.convertToString(value, "visibility");
+                    attrs.writeByte(ATTR_VISIBILITY);
+                    attrs.writeByte(s.equals("gone") ? View.GONE : s.equals("invisible") ? View.INVISIBLE : View.VISIBLE);
+                    break;
+                }
+                case "alpha":
+                    attrs.writeByte(ATTR_ALPHA);
+                    attrs.writeFloat(GsonHelper.convertToFloat(value, "alpha"));
+                    break;
+                default:
+                    throw new JsonParseException("Unknown layout attribute '" + entry.getKey() + "'");
+            }
+            count++;
+        }
+        writeVarInt(out, count);
+        attrBytes.writeTo(out);
+
+        if (json.has("children")) {
+            final JsonArray children = GsonHelper.getAsJsonArray(json, "children");
+            writeVarInt(out, children.size());
+            for (JsonElement child : children) {
+                compileNode(GsonHelper.convertToJsonObject(child, "child"), out, pool);
+            }
+        } else {
+            writeVarInt(out, 0);
+        }
+    }
+
+    // encoded with an offset so that MATCH_PARENT and WRAP_CONTENT are unsigned
+    private static int parseSize(@Nonnull JsonElement value, @Nonnull String key) {
+        if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+            switch (value.getAsString()) {
+                case "match_parent":
+                    return ViewGroup.LayoutParams.MATCH_PARENT + 2;
+                case "wrap_content":
+                    return ViewGroup.LayoutParams.WRAP_CONTENT + 2;
+            }
+        }
+        return GsonHelper.convertToInt(value, key) + 2;
+    }
+
+    private static int parseGravity(@Nonnull JsonElement value) {
+        if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber()) {
+            return value.getAsInt();
+        }
+        int gravity = 0;
+        for (String s : value.getAsString().split("\\|")) {
+            switch (s.trim()) {
+                case "top":
+                    gravity |= Gravity.TOP;
+                    break;
+                case "bottom":
+                    gravity |= Gravity.BOTTOM;
+                    break;
+                case "left":
+                    gravity |= Gravity.LEFT;
+                    break;
+                case "right":
+                    gravity |= Gravity.RIGHT;
+                    break;
+                case "center_vertical":
+                    gravity |= Gravity.VERTICAL_CENTER;
+                    break;
+                case "center_horizontal":
+                    gravity |= Gravity.HORIZONTAL_CENTER;
+                    break;
+                case "center":
+                    gravity |= Gravity.CENTER;
+                    break;
+                case "fill":
+                    gravity |= Gravity.FILL;
+                    break;
+                default:
+                    throw new JsonParseException("Unknown gravity '" + s + "'");
+            }
+        }
+        return gravity;
+    }
+
+    /**
+     * Load a compiled layout and resolve its view factories.
+     *
+     * @param data the compiled data
+     * @return the compiled layout ready to inflate
+     * @throws IOException the data is malformed
+     * @see #compile(JsonObject)
+     */
+    @Nonnull
+    public CompiledLayout load(@Nonnull byte[] data) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a compiled layout");
+        }
+        final int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported layout version " + version);
+        }
+        final int size = readVarInt(in);
+        @SuppressWarnings("unchecked") final Supplier<? extends View>[] factories = new Supplier[size];
+        for (int i = 0; i < size; i++) {
+            factories[i] = getFactory(in.readUTF());
+        }
+        // the remaining is the root node
+        return new CompiledLayout(data, data.length - in.available(), factories);
+    }
+
+    @Nonnull
+    private Supplier<? extends View> getFactory(@Nonnull String name) {
+        Supplier<? extends View> factory = mFactories.get(name);
+        if (factory == null) {
+            factory = createFactory(name);
+            mFactories.put(name, factory);
+        }
+        return factory;
+    }
+
+    /**
+     * Generate a factory calling the public no-arg constructor of the given view class,
+     * this is only done once for each class.
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull
+    private static Supplier<? extends View> createFactory(@Nonnull String className) {
+        final Class<? extends View> clazz;
+        final MethodHandle constructor;
+        try {
+            clazz = Class.forName(className).asSubclass(View.class);
+            constructor = MethodHandles.publicLookup().findConstructor(clazz, MethodType.methodType(void.class));
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new IllegalArgumentException("Cannot create view " + className, e);
+        }
+        try {
+            final CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(), "get",
+                    MethodType.methodType(Supplier.class), MethodType.methodType(Object.class),
+                    constructor, MethodType.methodType(clazz));
+            return (Supplier<? extends View>) site.getTarget().invoke();
+        } catch (Throwable e) {
+            // the class is not visible from our class loader
+            return () -> {
+                try {
+                    return (View) constructor.invoke();
+                } catch (Throwable t) {
+                    throw new RuntimeException("Failed to create view " + className, t);
+                }
+            };
+        }
+    }
+
+    static void writeVarInt(@Nonnull DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(@Nonnull DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
 
     private static class Type implements IResourceType {
 
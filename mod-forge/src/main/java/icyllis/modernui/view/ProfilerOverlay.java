@@ -0,0 +1,153 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.view;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import icyllis.modernui.graphics.Canvas;
+import icyllis.modernui.graphics.DrawStats;
+import icyllis.modernui.graphics.math.TextAlign;
+import icyllis.modernui.util.FrameProfiler;
+import net.minecraft.Util;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws the frame graph and statistics of {@link FrameProfiler} and {@link DrawStats}
+ * at the top right corner, on top of everything in GUI scaled coordinates.
+ */
+@OnlyIn(Dist.CLIENT)
+final class ProfilerOverlay {
+
+    // graph height of a 60 FPS frame budget
+    private static final float GRAPH_HEIGHT = 50;
+    private static final float BUDGET_NANOS = 1_000_000_000 / 60.0f;
+
+    private static final int LINE_HEIGHT = 10;
+    private static final int PADDING = 4;
+    private static final int TOP_VIEWS = 5;
+    private static final int TOP_SUBTREES = 3;
+
+    // stacked sections of the graph, others are nested in them
+    private static final int[] STACKED_SECTIONS = {FrameProfiler.INPUT, FrameProfiler.ANIMATION,
+            FrameProfiler.MEASURE, FrameProfiler.LAYOUT, FrameProfiler.DRAW};
+    private static final int[] SECTION_COLORS = {0x4fc3f7, 0x81c784, 0xba68c8, 0x9575cd, 0xffb74d,
+            0xe57373, 0xf06292, 0xa1887f};
+
+    // the text is refreshed a few times a second, so that it doesn't create text layouts every frame
+    private static final long UPDATE_INTERVAL = 500;
+
+    private static final List<String> sLines = new ArrayList<>();
+    private static long sLastUpdateTime;
+
+    private ProfilerOverlay() {
+    }
+
+    static void draw(@Nonnull Canvas canvas, int screenWidth) {
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.disableAlphaTest();
+        RenderSystem.disableDepthTest();
+
+        final float graphWidth = FrameProfiler.HISTORY_SIZE;
+        final float right = screenWidth - PADDING;
+        final float left = right - graphWidth;
+        final float graphBottom = PADDING + GRAPH_HEIGHT;
+        final int textLines = FrameProfiler.SECTION_COUNT + FrameProfiler.COUNTER_COUNT + TOP_VIEWS + TOP_SUBTREES + 2;
+        final float bottom = graphBottom + PADDING + textLines * LINE_HEIGHT;
+
+        canvas.setARGB(0xa0000000);
+        canvas.drawRect(left - 90, PADDING - 2, right + 2, bottom + 2);
+
+        // the newest frame is at the right
+        final float scale = GRAPH_HEIGHT / BUDGET_NANOS;
+        final int frames = Math.min(FrameProfiler.getFrameCount(), FrameProfiler.HISTORY_SIZE);
+        for (int i = 0; i < frames; i++) {
+            float x = right - i - 1;
+            float y = graphBottom;
+            for (int section : STACKED_SECTIONS) {
+                float height = FrameProfiler.getSectionNanos(i, section) * scale;
+                if (height >= 0.25f) {
+                    canvas.setARGB(0xe0000000 | SECTION_COLORS[section]);
+                    canvas.drawRect(x, Math.max(y - height, PADDING), x + 1, y);
+                    y -= height;
+                }
+            }
+        }
+        canvas.setARGB(0x80ffffff);
+        canvas.drawLine(left, PADDING, right, PADDING);
+
+        final long time = Util.getMillis();
+        if (time - sLastUpdateTime >= UPDATE_INTERVAL || sLines.isEmpty()) {
+            sLastUpdateTime = time;
+            updateLines();
+        }
+        float y = graphBottom + PADDING;
+        canvas.setTextAlign(TextAlign.LEFT);
+        for (int i = 0, e = sLines.size(); i < e; i++) {
+            if (i < FrameProfiler.SECTION_COUNT) {
+                canvas.setRGB(SECTION_COLORS[i]);
+                canvas.setAlpha(255);
+            } else if (i == FrameProfiler.SECTION_COUNT) {
+                canvas.resetColor();
+            }
+            canvas.drawText(sLines.get(i), left - 86, y);
+            y += LINE_HEIGHT;
+        }
+
+        RenderSystem.enableDepthTest();
+        RenderSystem.enableTexture();
+        RenderSystem.enableAlphaTest();
+        RenderSystem.disableBlend();
+    }
+
+    /**
+     * Format the statistics, sections are the first lines.
+     */
+    private static void updateLines() {
+        final List<String> lines = sLines;
+        lines.clear();
+        for (int section = 0; section < FrameProfiler.SECTION_COUNT; section++) {
+            lines.add(String.format("%s: %.1f μs", FrameProfiler.getSectionName(section),
+                    FrameProfiler.getAverageNanos(section) / 1000.0f));
+        }
+        for (int counter = 0; counter < FrameProfiler.COUNTER_COUNT; counter++) {
+            lines.add(FrameProfiler.getCounterName(counter) + ": " + FrameProfiler.getCounter(0, counter));
+        }
+        final int profiled = Math.max(FrameProfiler.getFrameCount(), 1);
+        lines.add("Views (μs/frame, m/l/d):");
+        for (FrameProfiler.ViewStats stats : FrameProfiler.getTopViews(TOP_VIEWS)) {
+            final String name = stats.getViewClass().getName();
+            lines.add(String.format("%s %.1f/%.1f/%.1f", name.substring(name.lastIndexOf('.') + 1),
+                    stats.getNanos(FrameProfiler.MEASURE) / 1000.0f / profiled,
+                    stats.getNanos(FrameProfiler.LAYOUT) / 1000.0f / profiled,
+                    stats.getNanos(FrameProfiler.DRAW) / 1000.0f / profiled));
+        }
+        lines.add("Subtrees (draws/shaders/textures):");
+        for (DrawStats.Entry entry : DrawStats.getTopViews(TOP_SUBTREES)) {
+            lines.add(String.format("%s %.1f/%.1f/%.1f", entry.getName(),
+                    (float) entry.getCount(FrameProfiler.DRAW_CALL) / profiled,
+                    (float) entry.getCount(FrameProfiler.SHADER_CHANGE) / profiled,
+                    (float) entry.getCount(FrameProfiler.TEXTURE_BIND) / profiled));
+        }
+    }
+}
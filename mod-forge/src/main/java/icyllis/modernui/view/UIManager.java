@@ -22,7 +22,7 @@ import com.ibm.icu.util.ULocale;
 import com.mojang.blaze3d.platform.Window;
 import com.mojang.blaze3d.systems.RenderSystem;
 import icyllis.modernui.ModernUI;
-import icyllis.modernui.animation.Animation;
+import icyllis.modernui.animation.AnimationHandler;
 import icyllis.modernui.graphics.text.ModernFontRenderer;
 import icyllis.modernui.graphics.text.TextLayoutProcessor;
 import icyllis.modernui.forge.ModernUIForge;
@@ -30,9 +30,13 @@ import icyllis.modernui.forge.event.OpenMenuEvent;
 import icyllis.modernui.forge.mixin.MixinMouseHandler;
 import icyllis.modernui.graphics.BlurHandler;
 import icyllis.modernui.graphics.Canvas;
+import icyllis.modernui.graphics.DrawStats;
+import icyllis.modernui.graphics.GLCanvas;
 import icyllis.modernui.graphics.math.Point;
+import icyllis.modernui.os.Handler;
 import icyllis.modernui.test.TestHUD;
 import icyllis.modernui.test.TestPauseUI;
+import icyllis.modernui.util.FrameProfiler;
 import icyllis.modernui.widget.FrameLayout;
 import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
@@ -58,10 +62,9 @@ import org.lwjgl.opengl.GL11;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * UI system service, manages everything related to UI in Modern UI.
@@ -111,11 +114,14 @@ public final class UIManager {
     private int mWidth;
     private int mHeight;
 
-    // a list of animations in render loop
-    private final List<Animation> animations = new ArrayList<>();
+    // drives animations in render loop, only when there are running animations
+    private final AnimationHandler mAnimationHandler = AnimationHandler.getInstance();
 
-    // a list of UI tasks
-    private final List<DelayedTask> tasks = new CopyOnWriteArrayList<>();
+    // builds application UIs before they are opened
+    private final UIPreloader mPreloader = new UIPreloader(minecraft);
+
+    // schedules UI tasks, frame callbacks and idle handlers on render thread
+    private final Handler mHandler = Handler.getInstance();
 
     // elapsed ticks from a gui open, update every tick, 20 = 1 second
     private int mTicks = 0;
@@ -123,6 +129,9 @@ public final class UIManager {
     // elapsed time from a gui open in milliseconds, update every frame
     private long mDrawingTimeMillis;
 
+    // the time when current frame started, to check the time left for idle work
+    private long mFrameStartNanos;
+
     // the canvas to draw things shared in all views and drawables
     // lazy loading because this class is loaded before GL initialization
     // will be init when Minecraft finished loading, and open MainMenuScreen
@@ -197,7 +206,7 @@ public final class UIManager {
     public static void initialize() {
         RenderSystem.assertThread(RenderSystem::isOnRenderThread);
         if (instance.mCanvas == null) {
-            instance.mCanvas = Canvas.getInstance();
+            instance.mCanvas = GLCanvas.getInstance();
         } else {
             throw new IllegalStateException("Already initialized");
         }
@@ -214,6 +223,25 @@ public final class UIManager {
         minecraft.setScreen(new MMainScreen(this));
     }
 
+    /**
+     * Build the views of an application UI and warm up layouts of the given texts
+     * before the UI is opened, so that opening it won't stall the game. The view
+     * hierarchy is created on a background thread, thus {@link ApplicationUI#onCreate()}
+     * should only create views and must not touch the world or render system. The
+     * rest work is done on render thread in idle frames. The UI can be opened by
+     * {@link #openGUI(ApplicationUI)} at any time, an unfinished preload is taken over.
+     *
+     * @param applicationUI the application user interface to preload
+     * @param texts         the strings that the UI will draw, or {@code null}
+     * @return a future completed on render thread when the preload is done
+     */
+    @Nonnull
+    public CompletableFuture<ApplicationUI> preloadGUI(@Nonnull ApplicationUI applicationUI,
+                                                       @Nullable Collection<String> texts) {
+        RenderSystem.assertThread(RenderSystem::isOnRenderThread);
+        return mPreloader.preload(applicationUI, texts == null ? Collections.emptyList() : texts);
+    }
+
     /**
      * Close all screens and destroy current application UI
      *
@@ -285,8 +313,15 @@ public final class UIManager {
      */
     void start(@Nonnull IMuiScreen screen, int width, int height) {
         if (mMuiScreen == null) {
+            mPreloader.claim(mApplicationUI);
             mApplicationUI.window = this;
-            mApplicationUI.onCreate();
+            if (mApplicationUI.mPreloadedView != null) {
+                setContentView(mApplicationUI.mPreloadedView, mApplicationUI.mPreloadedParams);
+                mApplicationUI.mPreloadedView = null;
+                mApplicationUI.mPreloadedParams = null;
+            } else {
+                mApplicationUI.onCreate();
+            }
         }
         mMuiScreen = screen;
 
@@ -360,18 +395,8 @@ public final class UIManager {
     }
 
     /**
-     * Add an active animation, which will be removed from list if finished
-     *
-     * @param animation animation to add
-     */
-    public void addAnimation(@Nonnull Animation animation) {
-        if (!animations.contains(animation)) {
-            animations.add(animation);
-        }
-    }
-
-    /**
-     * Post a task that will run on next pre-tick after delayed ticks
+     * Post a task that will run on render thread after delayed ticks, one tick is
+     * 50 milliseconds. Use {@link #getHandler()} for millisecond precision.
      *
      * @param runnable     runnable task
      * @param delayedTicks delayed ticks to run the task
@@ -381,7 +406,18 @@ public final class UIManager {
             runnable.run();
             return;
         }
-        tasks.add(new DelayedTask(runnable, delayedTicks));
+        mHandler.postDelayed(runnable, delayedTicks * 50L);
+    }
+
+    /**
+     * Get the handler to schedule tasks on render thread, pending tasks are
+     * cancelled when the UI is closed.
+     *
+     * @return the handler
+     */
+    @Nonnull
+    public Handler getHandler() {
+        return mHandler;
     }
 
     /*private void setMousePos(double mouseX, double mouseY) {
@@ -675,6 +711,10 @@ public final class UIManager {
                 minecraft.getLanguageManager().getLanguages().forEach(l ->
                         ModernUI.LOGGER.info(MARKER, "Locale {} RTL {}", l.getCode(), ULocale.forLocale(l.getJavaLocale()).isRightToLeft()));
                 break;
+            case GLFW.GLFW_KEY_F:
+                FrameProfiler.setEnabled(!FrameProfiler.isEnabled());
+                DrawStats.reset();
+                break;
             case GLFW.GLFW_KEY_P:
                 if (minecraft.screen == null) {
                     break;
@@ -872,8 +912,8 @@ public final class UIManager {
     void stop() {
         // Hotfix 1.4.7
         if (mCloseScreen) {
-            animations.clear();
-            tasks.clear();
+            mAnimationHandler.clear();
+            mHandler.clear();
             mMuiScreen = null;
             if (mApplicationUI != null) {
                 mApplicationUI.window = null;
@@ -893,18 +933,6 @@ public final class UIManager {
         if (event.phase == TickEvent.Phase.START) {
             ++mTicks;
             mAppWindow.tick(mTicks);
-            // view ticking is always performed before tasks
-            if (!tasks.isEmpty()) {
-                Iterator<DelayedTask> iterator = tasks.iterator();
-                DelayedTask task;
-                while (iterator.hasNext()) {
-                    task = iterator.next();
-                    task.tick(mTicks);
-                    if (task.shouldRemove()) {
-                        iterator.remove();
-                    }
-                }
-            }
         } else {
             if (mPendingRepostCursorEvent) {
                 onCursorEvent(mCursorX, mCursorY);
@@ -917,17 +945,17 @@ public final class UIManager {
         if (event.phase == TickEvent.Phase.START) {
             // to millis, the Timer is different from that in Event when game paused
             mDrawingTimeMillis += (long) (minecraft.getDeltaFrameTime() * 50.0);
-
-            for (Animation animation : animations) {
-                animation.update(mDrawingTimeMillis);
+            mFrameStartNanos = Util.getNanos();
+
+            // tasks may start animations on the same frame
+            mHandler.doFrame(mDrawingTimeMillis);
+            if (mAnimationHandler.hasCallbacks()) {
+                final long start = FrameProfiler.begin();
+                mAnimationHandler.doAnimationFrame(mDrawingTimeMillis);
+                FrameProfiler.end(FrameProfiler.ANIMATION, start);
             }
             BlurHandler.INSTANCE.update(mDrawingTimeMillis);
         } else {
-            // remove animations from loop on end
-            if (!animations.isEmpty()) {
-                animations.removeIf(Animation::shouldRemove);
-            }
-
             // layout after updating animations and before drawing
             if (mLayoutRequested) {
                 // fixed at 40Hz
@@ -936,6 +964,26 @@ public final class UIManager {
                     doLayout();
                 }
             }
+            if (mPreloader.hasPendingWork()) {
+                mPreloader.doIdleWork(UIPreloader.FRAME_BUDGET_NANOS);
+            }
+            if (mHandler.hasIdleHandlers()) {
+                // only if this frame finished before the frame rate limit, 260 means unlimited
+                final int limit = minecraft.getWindow().getFramerateLimit();
+                final long frameNanos = 1_000_000_000L / (limit > 0 && limit < 260 ? limit : 60);
+                final long deadline = Math.min(mFrameStartNanos + frameNanos,
+                        Util.getNanos() + UIPreloader.FRAME_BUDGET_NANOS);
+                mHandler.doIdle(deadline);
+            }
+            if (FrameProfiler.isEnabled()) {
+                FrameProfiler.endFrame();
+                if (mCanvas != null) {
+                    // the overlay is not counted in the frame it reports, nor in next frame
+                    FrameProfiler.setSuspended(true);
+                    ProfilerOverlay.draw(mCanvas, minecraft.getWindow().getGuiScaledWidth());
+                    FrameProfiler.setSuspended(false);
+                }
+            }
         }
     }
 
@@ -0,0 +1,201 @@
+/*
+ * Modern UI.
+ * Copyright (C) 2019-2021 BloCamLimb. All rights reserved.
+ *
+ * Modern UI is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * Modern UI is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with Modern UI. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package icyllis.modernui.view;
+
+import icyllis.modernui.ModernUI;
+import icyllis.modernui.graphics.text.TextLayoutProcessor;
+import icyllis.modernui.widget.FrameLayout;
+import net.minecraft.Util;
+import net.minecraft.client.Minecraft;
+import net.minecraft.network.chat.Style;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Builds application UIs before they are opened. The view hierarchy is created
+ * on a background thread, then text layouts are warmed up and the hierarchy is
+ * pre-measured on render thread in idle frames, within a small time budget.
+ *
+ * @see UIManager#preloadGUI(ApplicationUI, Collection)
+ */
+@OnlyIn(Dist.CLIENT)
+final class UIPreloader {
+
+    // time limit of work for each frame, in nanoseconds
+    static final long FRAME_BUDGET_NANOS = 2_000_000;
+
+    private final Minecraft minecraft;
+
+    // render thread only
+    private final List<Entry> mPending = new ArrayList<>();
+
+    UIPreloader(Minecraft minecraft) {
+        this.minecraft = minecraft;
+    }
+
+    /**
+     * Schedule a preload, must be called on render thread.
+     *
+     * @param ui    the application UI to preload
+     * @param texts the strings to warm up
+     * @return a future completed with the given UI when the preload is done
+     */
+    @Nonnull
+    CompletableFuture<ApplicationUI> preload(@Nonnull ApplicationUI ui, @Nonnull Collection<String> texts) {
+        for (Entry entry : mPending) {
+            if (entry.mUI == ui) {
+                return entry.mFuture;
+            }
+        }
+        ui.mPreloading = true;
+        Entry entry = new Entry(ui, texts.toArray(new String[0]),
+                CompletableFuture.runAsync(ui::onCreate, Util.backgroundExecutor()));
+        mPending.add(entry);
+        return entry.mFuture;
+    }
+
+    boolean hasPendingWork() {
+        return !mPending.isEmpty();
+    }
+
+    /**
+     * Advance pending preloads until the budget is exhausted.
+     *
+     * @param budgetNanos time limit in nanoseconds
+     */
+    void doIdleWork(long budgetNanos) {
+        final long deadline = Util.getNanos() + budgetNanos;
+        for (int i = 0; i < mPending.size(); ) {
+            Entry entry = mPending.get(i);
+            if (!entry.mCreated.isDone()) {
+                i++;
+                continue;
+            }
+            if (entry.step(deadline)) {
+                mPending.remove(i);
+                entry.finish();
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Take over a preload that is being opened, waiting for its view hierarchy
+     * if it's still being created. The remaining warm up is skipped.
+     *
+     * @param ui the application UI to open
+     */
+    void claim(@Nonnull ApplicationUI ui) {
+        for (int i = 0; i < mPending.size(); i++) {
+            Entry entry = mPending.get(i);
+            if (entry.mUI == ui) {
+                mPending.remove(i);
+                entry.finish();
+                return;
+            }
+        }
+    }
+
+    private final class Entry {
+
+        private final ApplicationUI mUI;
+        private final String[] mTexts;
+
+        private final CompletableFuture<Void> mCreated;
+        private final CompletableFuture<ApplicationUI> mFuture = new CompletableFuture<>();
+
+        private int mTextIndex;
+
+        Entry(ApplicationUI ui, String[] texts, CompletableFuture<Void> created) {
+            mUI = ui;
+            mTexts = texts;
+            mCreated = created;
+        }
+
+        /**
+         * @return {@code true} if all the work is done
+         */
+        boolean step(long deadline) {
+            if (mCreated.isCompletedExceptionally()) {
+                return true;
+            }
+            final TextLayoutProcessor processor = TextLayoutProcessor.getInstance();
+            while (mTextIndex < mTexts.length) {
+                String text = mTexts[mTextIndex++];
+                if (text != null && !text.isEmpty()) {
+                    processor.lookupVanillaNode(text, Style.EMPTY);
+                }
+                if (Util.getNanos() >= deadline) {
+                    return false;
+                }
+            }
+            View view = mUI.mPreloadedView;
+            if (view != null) {
+                measureAndLayout(view, mUI.mPreloadedParams);
+            }
+            return true;
+        }
+
+        void finish() {
+            try {
+                mCreated.join();
+            } catch (CompletionException e) {
+                ModernUI.LOGGER.error(UIManager.MARKER, "Failed to preload {}", mUI, e.getCause());
+                mUI.mPreloadedView = null;
+                mUI.mPreloadedParams = null;
+            }
+            mUI.mPreloading = false;
+            mFuture.complete(mUI);
+        }
+    }
+
+    /**
+     * Measure and layout the view as the content of decor view in current window size,
+     * so that the first layout pass after opening will hit the measure cache.
+     */
+    private void measureAndLayout(@Nonnull View view, @Nullable FrameLayout.LayoutParams params) {
+        final int width = minecraft.getWindow().getWidth();
+        final int height = minecraft.getWindow().getHeight();
+        int horizontalMargins = 0;
+        int childWidth = FrameLayout.LayoutParams.MATCH_PARENT;
+        int childHeight = FrameLayout.LayoutParams.MATCH_PARENT;
+        int verticalMargins = 0;
+        if (params != null) {
+            horizontalMargins = params.leftMargin + params.rightMargin;
+            verticalMargins = params.topMargin + params.bottomMargin;
+            childWidth = params.width;
+            childHeight = params.height;
+        }
+        int widthSpec = ViewGroup.getChildMeasureSpec(
+                MeasureSpec.makeMeasureSpec(width, MeasureSpec.Mode.EXACTLY), horizontalMargins, childWidth);
+        int heightSpec = ViewGroup.getChildMeasureSpec(
+                MeasureSpec.makeMeasureSpec(height, MeasureSpec.Mode.EXACTLY), verticalMargins, childHeight);
+        view.measure(widthSpec, heightSpec);
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+}
@@ -19,9 +19,12 @@
 package icyllis.modernui.view;
 
 import icyllis.modernui.ModernUI;
+import icyllis.modernui.animation.FloatProperty;
 import icyllis.modernui.graphics.Canvas;
+import icyllis.modernui.graphics.DrawStats;
 import icyllis.modernui.graphics.drawable.Drawable;
 import icyllis.modernui.graphics.math.Point;
+import icyllis.modernui.util.FrameProfiler;
 import icyllis.modernui.widget.ScrollController;
 import org.apache.logging.log4j.Marker;
 import org.apache.logging.log4j.MarkerManager;
@@ -256,15 +259,107 @@ public class View {
      */
     private ViewGroup.LayoutParams mLayoutParams;
 
+    /**
+     * Render properties, these are applied on drawing and don't affect layout.
+     * {@link #setTranslationX(float)}
+     * {@link #setAlpha(float)}
+     * {@link #setScaleX(float)}
+     */
+    private float mTranslationX;
+    private float mTranslationY;
+    private float mScaleX = 1.0f;
+    private float mScaleY = 1.0f;
+    private float mAlpha = 1.0f;
+
+    /**
+     * Properties for animators.
+     *
+     * @see icyllis.modernui.animation.FloatAnimator
+     */
+    public static final FloatProperty<View> TRANSLATION_X = new FloatProperty<View>("translationX") {
+        @Override
+        public void setValue(@Nonnull View object, float value) {
+            object.setTranslationX(value);
+        }
+
+        @Override
+        public float get(@Nonnull View object) {
+            return object.getTranslationX();
+        }
+    };
+
+    public static final FloatProperty<View> TRANSLATION_Y = new FloatProperty<View>("translationY") {
+        @Override
+        public void setValue(@Nonnull View object, float value) {
+            object.setTranslationY(value);
+        }
+
+        @Override
+        public float get(@Nonnull View object) {
+            return object.getTranslationY();
+        }
+    };
+
+    public static final FloatProperty<View> SCALE_X = new FloatProperty<View>("scaleX") {
+        @Override
+        public void setValue(@Nonnull View object, float value) {
+            object.setScaleX(value);
+        }
+
+        @Override
+        public float get(@Nonnull View object) {
+            return object.getScaleX();
+        }
+    };
+
+    public static final FloatProperty<View> SCALE_Y = new FloatProperty<View>("scaleY") {
+        @Override
+        public void setValue(@Nonnull View object, float value) {
+            object.setScaleY(value);
+        }
+
+        @Override
+        public float get(@Nonnull View object) {
+            return object.getScaleY();
+        }
+    };
+
+    public static final FloatProperty<View> ALPHA = new FloatProperty<View>("alpha") {
+        @Override
+        public void setValue(@Nonnull View object, float value) {
+            object.setAlpha(value);
+        }
+
+        @Override
+        public float get(@Nonnull View object) {
+            return object.getAlpha();
+        }
+    };
+
     /**
      * Raw draw method, do not override this
      *
      * @param canvas the canvas to draw content
      */
     public void draw(@Nonnull Canvas canvas) {
-        if ((mViewFlags & VISIBILITY_MASK) == 0) {
+        if ((mViewFlags & VISIBILITY_MASK) == 0 && mAlpha > 0) {
             canvas.save();
-            canvas.translate(mLeft, mTop);
+            canvas.translate(mLeft + mTranslationX, mTop + mTranslationY);
+            if (mScaleX != 1.0f || mScaleY != 1.0f) {
+                // pivot is the center of this view
+                final float px = getWidth() * 0.5f;
+                final float py = getHeight() * 0.5f;
+                canvas.translate(px, py);
+                canvas.scale(mScaleX, mScaleY);
+                canvas.translate(-px, -py);
+            }
+            final float layerAlpha = canvas.getLayerAlpha();
+            if (mAlpha < 1.0f) {
+                canvas.setLayerAlpha(layerAlpha * mAlpha);
+            }
+
+            final long start = FrameProfiler.beginView();
+            final boolean stats = DrawStats.begin();
 
             onDraw(canvas);
 
@@ -274,10 +369,111 @@ public class View {
             if (verticalScrollBar != null) {
                 verticalScrollBar.draw(canvas);
             }
+            DrawStats.endView(getClass(), stats);
+            FrameProfiler.endView(getClass(), FrameProfiler.DRAW, start);
+            if (mAlpha < 1.0f) {
+                canvas.setLayerAlpha(layerAlpha);
+            }
             canvas.restore();
         }
     }
 
+    /**
+     * Get the horizontal offset of this view relative to its left position.
+     *
+     * @return the horizontal translation in pixels
+     */
+    public float getTranslationX() {
+        return mTranslationX;
+    }
+
+    /**
+     * Set the horizontal offset of this view relative to its left position,
+     * this is a render property and doesn't cause a layout pass.
+     *
+     * @param translationX the horizontal translation in pixels
+     */
+    public void setTranslationX(float translationX) {
+        mTranslationX = translationX;
+    }
+
+    /**
+     * Get the vertical offset of this view relative to its top position.
+     *
+     * @return the vertical translation in pixels
+     */
+    public float getTranslationY() {
+        return mTranslationY;
+    }
+
+    /**
+     * Set the vertical offset of this view relative to its top position,
+     * this is a render property and doesn't cause a layout pass.
+     *
+     * @param translationY the vertical translation in pixels
+     */
+    public void setTranslationY(float translationY) {
+        mTranslationY = translationY;
+    }
+
+    /**
+     * Get the horizontal scale of this view around its center.
+     *
+     * @return the horizontal scale, default is 1.0
+     */
+    public float getScaleX() {
+        return mScaleX;
+    }
+
+    /**
+     * Set the horizontal scale of this view around its center,
+     * this is a render property and doesn't cause a layout pass.
+     *
+     * @param scaleX the horizontal scale
+     */
+    public void setScaleX(float scaleX) {
+        mScaleX = scaleX;
+    }
+
+    /**
+     * Get the vertical scale of this view around its center.
+     *
+     * @return the vertical scale, default is 1.0
+     */
+    public float getScaleY() {
+        return mScaleY;
+    }
+
+    /**
+     * Set the vertical scale of this view around its center,
+     * this is a render property and doesn't cause a layout pass.
+     *
+     * @param scaleY the vertical scale
+     */
+    public void setScaleY(float scaleY) {
+        mScaleY = scaleY;
+    }
+
+    /**
+     * Get the opacity of this view.
+     *
+     * @return the opacity [0,1], default is 1.0
+     */
+    public float getAlpha() {
+        return mAlpha;
+    }
+
+    /**
+     * Set the opacity of this view, which is multiplied with the opacity of all
+     * paints used in drawing of this view and its descendants. A completely
+     * transparent view will not be drawn.
+     *
+     * @param alpha the opacity [0,1]
+     */
+    public void setAlpha(float alpha) {
+        mAlpha = Math.max(0.0f, Math.min(alpha, 1.0f));
+    }
+
     /**
      * Draw this view if visible
      * Before you draw in the method, you have to call {@link Canvas#moveTo(View)},
@@ -328,7 +524,9 @@ public class View {
         if (changed || (mPrivateFlags & PFLAG_LAYOUT_REQUIRED) != 0) {
             layoutScrollBars();
 
+            final long start = FrameProfiler.beginView();
             onLayout(changed);
+            FrameProfiler.endView(getClass(), FrameProfiler.LAYOUT, start);
 
             mPrivateFlags &= ~PFLAG_LAYOUT_REQUIRED;
         }
@@ -451,7 +649,9 @@ public class View {
             // remove the flag first anyway
             mPrivateFlags &= ~PFLAG_MEASURED_DIMENSION_SET;
 
+            final long start = FrameProfiler.beginView();
             onMeasure(widthMeasureSpec, heightMeasureSpec);
+            FrameProfiler.endView(getClass(), FrameProfiler.MEASURE, start);
 
             // the flag should be added in onMeasure() by calling setMeasuredDimension()
             if ((mPrivateFlags & PFLAG_MEASURED_DIMENSION_SET) == 0) {
@@ -21,6 +21,7 @@ package icyllis.modernui.view;
 import icyllis.modernui.ModernUI;
 import icyllis.modernui.graphics.Canvas;
 import icyllis.modernui.graphics.math.Point;
+import icyllis.modernui.util.FrameProfiler;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -93,7 +94,9 @@ public final class ViewRootImpl implements ViewParent {
             return;
         }
 
+        long start = FrameProfiler.begin();
         mView.measure(widthSpec, heightSpec);
+        FrameProfiler.end(FrameProfiler.MEASURE, start);
 
         /*inBounds[2] = MeasureSpec.getSize(widthSpec);
         inBounds[3] = MeasureSpec.getSize(heightSpec);
@@ -101,22 +104,30 @@ public final class ViewRootImpl implements ViewParent {
         Gravity.apply(lp.gravity, mView.getMeasuredWidth(), mView.getMeasuredHeight(),
                 inBounds, lp.x, lp.y, outBounds);*/
 
+        start = FrameProfiler.begin();
         mView.layout(0, 0, mView.getMeasuredWidth(), mView.getMeasuredHeight());
+        FrameProfiler.end(FrameProfiler.LAYOUT, start);
     }
 
     void onDraw(Canvas canvas) {
         if (mView != null) {
+            final long start = FrameProfiler.begin();
             mView.draw(canvas);
+            FrameProfiler.end(FrameProfiler.DRAW, start);
         }
     }
 
     boolean onInputEvent(InputEvent event) {
         if (mView != null) {
+            final long start = FrameProfiler.begin();
+            final boolean handled;
             if (event instanceof KeyEvent) {
-                return processKeyEvent((KeyEvent) event);
+                handled = processKeyEvent((KeyEvent) event);
             } else {
-                return processPointerEvent((MotionEvent) event);
+                handled = processPointerEvent((MotionEvent) event);
             }
+            FrameProfiler.end(FrameProfiler.INPUT, start);
+            return handled;
         }
         return false;
     }